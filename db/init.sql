@@ -1,4 +1,4 @@
-CREATE TABLE final_records (
+CREATE TABLE IF NOT EXISTS final_records (
     latitude                         DOUBLE PRECISION NOT NULL,
     longitude                        DOUBLE PRECISION NOT NULL,
     date                             DATE NOT NULL,
@@ -45,6 +45,11 @@ CREATE TABLE final_records (
     snowfall_mm                      DOUBLE PRECISION,
 
     fetched_at                       TIMESTAMPTZ DEFAULT NOW(),
+    -- хэш содержимого строки (без fetched_at) для режима обновления db.writeMode=refresh
+    content_hash                     BIGINT,
 
     PRIMARY KEY (latitude, longitude, date)
-);
\ No newline at end of file
+);
+
+-- Для таблицы, созданной до появления content_hash (writer добавляет колонку и сам при старте)
+ALTER TABLE final_records ADD COLUMN IF NOT EXISTS content_hash BIGINT;
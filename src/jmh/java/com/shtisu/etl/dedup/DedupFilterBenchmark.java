@@ -0,0 +1,107 @@
+package com.shtisu.etl.dedup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BloomDedupFilter} против {@link PackedKeySet}: put, mightContain записанного и нового ключа
+ * (следующий год тех же точек) и сохранение фильтра из keys ключей. Размер файла и число ложных
+ * срабатываний на keys новых ключах печатаются при подготовке.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupFilterBenchmark {
+
+    private static final double FPP = 0.001;
+    private static final int DAYS = 365;
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    @Param({"BLOOM", "EXACT"})
+    public DedupFilterType type;
+
+    @Param({"1000000"})
+    public int keys;
+
+    private DedupFilter filled;
+    private DedupFilter empty;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        filled = type.create(keys, FPP);
+        for (int i = 0; i < keys; i++) {
+            filled.put(date(i), lat(i / DAYS), lon(i / DAYS));
+        }
+        long falsePositives = 0;
+        for (int i = 0; i < keys; i++) {
+            if (filled.mightContain(date(i).plusYears(1), lat(i / DAYS), lon(i / DAYS))) falsePositives++;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filled.writeTo(bytes);
+        System.out.printf("%n%s: file %.2f MB (%.2f B/key), false positives %d of %d%n",
+                type, bytes.size() / 1e6, bytes.size() / (double) keys, falsePositives, keys);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        empty = type.create(keys, FPP);
+        next = 0;
+    }
+
+    @Benchmark
+    public void put() {
+        int i = next++ % keys;
+        empty.put(date(i), lat(i / DAYS), lon(i / DAYS));
+    }
+
+    @Benchmark
+    public boolean mightContainKnown() {
+        int i = next++ % keys;
+        return filled.mightContain(date(i), lat(i / DAYS), lon(i / DAYS));
+    }
+
+    @Benchmark
+    public boolean mightContainFresh() {
+        int i = next++ % keys;
+        return filled.mightContain(date(i).plusYears(1), lat(i / DAYS), lon(i / DAYS));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int writeTo() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filled.writeTo(bytes);
+        return bytes.size();
+    }
+
+    private static LocalDate date(int i) {
+        return START.plusDays(i % DAYS);
+    }
+
+    private static double lat(int location) {
+        return -60.0 + (location / 400) * 0.25;
+    }
+
+    private static double lon(int location) {
+        return -50.0 + (location % 400) * 0.25;
+    }
+}
@@ -0,0 +1,47 @@
+package com.shtisu.etl.parser;
+
+import com.shtisu.etl.client.SyntheticOpenMeteo;
+import com.shtisu.etl.model.OpenMeteoResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ответа API на 1 день, месяц и год (синтетические ответы из sample-open-meteo.json).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenMeteoApiJsonParserBenchmark {
+
+    @Param({"1", "31", "365"})
+    public int days;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        json = SyntheticOpenMeteo.json(55.0, 83.0, start, start.plusDays(days - 1L));
+    }
+
+    @Benchmark
+    public OpenMeteoResponse parse() throws IOException {
+        return OpenMeteoApiJsonParser.parse(json);
+    }
+}
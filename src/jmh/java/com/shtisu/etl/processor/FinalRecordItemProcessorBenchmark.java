@@ -0,0 +1,51 @@
+package com.shtisu.etl.processor;
+
+import com.shtisu.etl.client.SyntheticOpenMeteo;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.model.OpenMeteoResponse;
+import com.shtisu.etl.parser.OpenMeteoApiJsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * processRange на ответах за 1 день, месяц и год.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FinalRecordItemProcessorBenchmark {
+
+    @Param({"1", "31", "365"})
+    public int days;
+
+    private final FinalRecordItemProcessor processor = new FinalRecordItemProcessor();
+    private OpenMeteoResponse response;
+
+    @Setup
+    public void setUp() throws IOException {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        response = OpenMeteoApiJsonParser.parse(SyntheticOpenMeteo.json(55.0, 83.0, start, start.plusDays(days - 1L)));
+    }
+
+    @Benchmark
+    public List<FinalRecord> processRange() {
+        return processor.processRange(response);
+    }
+}
@@ -0,0 +1,71 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * CsvItemWriter.write пачки новых записей (одна точка × days дней) в CSV во временном каталоге.
+ * Каталог и writer создаются заново на каждую итерацию, поэтому CSV и фильтр не растут бесконечно.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvItemWriterBenchmark {
+
+    @Param({"31", "365"})
+    public int days;
+
+    private List<FinalRecord> records;
+    private Path dir;
+    private CsvItemWriter writer;
+    private long point;
+
+    @Setup(Level.Trial)
+    public void loadRecords() throws IOException {
+        records = WriterBenchmarkData.records(days);
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws IOException {
+        dir = Files.createTempDirectory("csv-bench");
+        writer = new CsvItemWriter(dir.resolve("weather.csv"), dir.resolve("weather.bloom"), 10_000_000, 0.001);
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        writer.write(WriterBenchmarkData.moveTo(records, point++));
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws Exception {
+        writer.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
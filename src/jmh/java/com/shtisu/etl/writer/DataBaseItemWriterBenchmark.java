@@ -0,0 +1,87 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.model.FinalRecord;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataBaseItemWriter.write пачки новых записей (одна точка × days дней) в H2 в памяти.
+ * Таблица очищается, а writer создаётся заново на каждую итерацию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataBaseItemWriterBenchmark {
+
+    @Param({"31", "365"})
+    public int days;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private List<FinalRecord> records;
+    private HikariDataSource ds;
+    private Path bloom;
+    private DataBaseItemWriter writer;
+    private long point;
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws IOException, SQLException {
+        records = WriterBenchmarkData.records(days);
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:etl_bench;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        config.setUsername("sa");
+        config.setPassword("");
+        ds = new HikariDataSource(config);
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws IOException, SQLException {
+        FinalRecordsTestTable.clear(ds);
+        bloom = Files.createTempFile("db-bench", ".bloom");
+        Files.delete(bloom);
+        writer = new DataBaseItemWriter(ds, bloom, 10_000_000, 0.001, AdaptiveBatchSizer.fixed(batchSize),
+                DbWriteMode.INSERT, DedupFilterType.BLOOM);
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        writer.write(WriterBenchmarkData.moveTo(records, point++));
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws Exception {
+        writer.close();
+        Files.deleteIfExists(bloom);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() {
+        ds.close();
+    }
+}
@@ -0,0 +1,117 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.model.FinalRecord;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Последовательный {@link DataBaseItemWriter} (workers = 0) против {@link ParallelDataBaseItemWriter}:
+ * write пачки rows новых записей (точки сетки 0.25° по 30 дней) в H2 в памяти.
+ * Каждый вызов сдвигает даты пачки на 30 дней, чтобы все ключи были новыми.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelDataBaseItemWriterBenchmark {
+
+    private static final int DAYS = 30;
+    private static final long EXPECTED_ENTRIES = 1_000_000;
+    // Маленькая вероятность ложноположительных, чтобы фильтр не отбрасывал заметную часть новых строк
+    private static final double FPP = 1e-6;
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int workers;
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private List<FinalRecord> records;
+    private HikariDataSource ds;
+    private Path bloom;
+    private DataBaseItemWriter writer;
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws SQLException {
+        records = generate(rows);
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:etl_parallel_bench;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        config.setUsername("sa");
+        config.setPassword("");
+        // по соединению на поток записи и одно для подсчёта строк
+        config.setMaximumPoolSize(Math.max(2, workers + 1));
+        ds = new HikariDataSource(config);
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws IOException, SQLException {
+        FinalRecordsTestTable.clear(ds);
+        bloom = Files.createTempFile("parallel-bench", ".bloom");
+        Files.delete(bloom);
+        writer = workers == 0
+                ? new DataBaseItemWriter(ds, bloom, EXPECTED_ENTRIES, FPP, AdaptiveBatchSizer.fixed(batchSize),
+                        DbWriteMode.INSERT, DedupFilterType.BLOOM)
+                : new ParallelDataBaseItemWriter(ds, bloom, EXPECTED_ENTRIES, FPP, batchSize, DbWriteMode.INSERT, workers);
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        for (FinalRecord r : records) {
+            r.setDate(r.getDate().plusDays(DAYS));
+        }
+        writer.write(records);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws Exception {
+        writer.close();
+        Files.deleteIfExists(bloom);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() {
+        ds.close();
+    }
+
+    private static List<FinalRecord> generate(int rows) {
+        List<FinalRecord> records = new ArrayList<>(rows);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        for (int i = 0; records.size() < rows; i++) {
+            double lat = -60.0 + (i / 400) * 0.25;
+            double lon = -50.0 + (i % 400) * 0.25;
+            for (int d = 0; d < DAYS && records.size() < rows; d++) {
+                records.add(FinalRecordsTestTable.record(lat, lon, start.plusDays(d)));
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,37 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.client.SyntheticOpenMeteo;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.parser.OpenMeteoApiJsonParser;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Записи для бенчмарков writer'ов: ответ точки за records дней, прогнанный через processRange.
+ * Каждый вызов бенчмарка переносит пачку в новую точку, чтобы все ключи были новыми и проходили дедупликацию.
+ */
+final class WriterBenchmarkData {
+
+    private WriterBenchmarkData() {
+    }
+
+    static List<FinalRecord> records(int days) throws IOException {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        return new FinalRecordItemProcessor().processRange(OpenMeteoApiJsonParser.parse(
+                SyntheticOpenMeteo.json(0.0, 83.0, start, start.plusDays(days - 1L))));
+    }
+
+    /** Переносит пачку в точку с номером point (узлы сетки 0.001°, у каждого номера свой) */
+    static List<FinalRecord> moveTo(List<FinalRecord> records, long point) {
+        double latitude = -90 + (point % 180_000) * 1e-3;
+        double longitude = -180 + (point / 180_000 % 360_000) * 1e-3;
+        for (FinalRecord r : records) {
+            r.setLatitude(latitude);
+            r.setLongitude(longitude);
+        }
+        return records;
+    }
+}
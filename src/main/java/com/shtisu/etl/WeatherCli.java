@@ -1,12 +1,22 @@
 package com.shtisu.etl;
 
 import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.config.AppProperties;
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.job.WeatherJobCommand;
+import com.shtisu.etl.metrics.MetricsServer;
 import com.shtisu.etl.model.FinalRecord;
 import com.shtisu.etl.model.OpenMeteoResponse;
 import com.shtisu.etl.parser.OpenMeteoApiJsonParser;
 import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import com.shtisu.etl.scan.CsvScanCommand;
 import com.shtisu.etl.writer.CsvItemWriter;
 import com.shtisu.etl.writer.DataBaseItemWriter;
+import com.shtisu.etl.writer.DbWriteMode;
+import com.shtisu.etl.writer.ParallelDataBaseItemWriter;
+import com.shtisu.etl.writer.RollupCommand;
+import com.shtisu.etl.writer.TeeRecordWriter;
+import com.shtisu.etl.web.WeatherServerCommand;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 
@@ -23,6 +33,10 @@ import java.util.*;
 
 /**
  * Простой CLI для запуска ETL-сценариев.
+ * С аргументами работает без диалога: {@code WeatherCli <spec.yaml>} выполняет файл задания (см. {@link WeatherJobCommand}),
+ * {@code WeatherCli serve} запускает REST-сервис (см. {@link WeatherServerCommand}),
+ * {@code WeatherCli rollup} пересчитывает агрегаты (см. {@link RollupCommand}),
+ * {@code WeatherCli scan} считает агрегаты по CSV (см. {@link CsvScanCommand}).
  */
 public class WeatherCli {
 
@@ -45,11 +59,26 @@ public class WeatherCli {
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            System.exit(WeatherServerCommand.execute(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("rollup")) {
+            System.exit(RollupCommand.execute(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("scan")) {
+            System.exit(CsvScanCommand.execute(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0) {
+            System.exit(WeatherJobCommand.execute(args));
+        }
         WeatherCli app = new WeatherCli(
                 new OpenMeteoApiClient(DEFAULT_API_BASE),
                 new FinalRecordItemProcessor()
         );
-        app.run();
+        // metrics.port задан — метрики на /actuator/prometheus до выхода из меню
+        try (MetricsServer ignored = MetricsServer.startIfEnabled()) {
+            app.run();
+        }
     }
 
     private void run() {
@@ -60,6 +89,8 @@ public class WeatherCli {
                 case 1 -> apiToDb();
                 case 2 -> apiToCsv();
                 case 3 -> jsonFlow();
+                case 4 -> rebuildBloomFilters();
+                case 5 -> apiToDbAndCsv();
                 case 0 -> {
                     System.out.println("Выход...");
                     return;
@@ -77,6 +108,8 @@ public class WeatherCli {
                 1. API -> DataBase
                 2. API -> CSV
                 3. JSON -> DataBase -> CSV
+                4. Перестроить BloomFilter по данным DB / CSV
+                5. API -> DataBase + CSV (один запрос, запись в оба хранилища)
                 0. Выход
                 ===============================""");
     }
@@ -93,12 +126,15 @@ public class WeatherCli {
         List<FinalRecord> records = fetchFromApi(lat, lon, start, end);
 
         Path dbBloom = readPathOrDefault("Путь к bloom-файлу DB (Enter — по умолчанию): ", DEFAULT_DB_BLOOM);
-        int batchSize = readIntWithDefault("Batch size для DB writer (по умолчанию 100 000): ", 100_000);
+        int expected = readIntWithDefault("Ожидаемое число записей для BloomFilter DB (по умолчанию 100 000): ", 100_000);
         double fpRate = readDoubleWithDefault("False positive rate для DB writer (по умолчанию 0.001): ", 0.001);
+        int batchSize = readIntWithDefault("Batch size для DB writer, строк на коммит (по умолчанию 1 000): ", 1_000);
+        DbWriteMode mode = readWriteMode();
 
-        try(DataBaseItemWriter dbWriter = new DataBaseItemWriter(dbBloom, batchSize, fpRate);)  {
+        try(DataBaseItemWriter dbWriter = newDbWriter(dbBloom, expected, fpRate, batchSize, mode);)  {
             dbWriter.write(records);
             System.out.println("Готово: записано в DB.");
+            System.out.println("Дедупликация: " + dbWriter.getDedupStats());
         } catch (Exception e) {
             System.err.println("Ошибка при записи в DB: " + e.getMessage());
             e.printStackTrace();
@@ -117,18 +153,71 @@ public class WeatherCli {
 
         Path csvPath  = readPathOrDefault("Путь к CSV (Enter — по умолчанию): ", DEFAULT_CSV_PATH);
         Path csvBloom = readPathOrDefault("Путь к bloom-файлу CSV (Enter — по умолчанию): ", DEFAULT_CSV_BLOOM);
-        int batchSize = readIntWithDefault("Batch size для CSV writer (по умолчанию 100_000): ", 100_000);
+        int expected = readIntWithDefault("Ожидаемое число записей для BloomFilter CSV (по умолчанию 100_000): ", 100_000);
         double fpRate = readDoubleWithDefault("False positive rate для CSV writer (по умолчанию 0.01): ", 0.001);
 
-        try (CsvItemWriter csvWriter = new CsvItemWriter(csvPath, csvBloom, batchSize, fpRate)) {
+        try (CsvItemWriter csvWriter = new CsvItemWriter(csvPath, csvBloom, expected, fpRate)) {
             csvWriter.write(records);
             System.out.println("Готово: записано в CSV.");
+            System.out.println("Дедупликация: " + csvWriter.getDedupStats());
         } catch (Exception e) {
             System.err.println("Ошибка при записи в CSV: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Запись из Api сразу в базу данных и csv: данные запрашиваются и обрабатываются один раз,
+     * а пишутся в оба хранилища параллельно через {@link TeeRecordWriter}
+     */
+    private void apiToDbAndCsv() {
+        double lat = readDoubleOrRandom("Введите широту (latitude) [Enter — рандом]: ");
+        double lon = readDoubleOrRandom("Введите долготу (longitude) [Enter — рандом]: ");
+        LocalDate start = readDateOrDefault("Введите start date (YYYY-MM-DD) [Enter — сегодня]: ", LocalDate.now());
+        LocalDate end   = readDateOrDefault("Введите end date   (YYYY-MM-DD) [Enter — сегодня]: ", LocalDate.now());
+
+        List<FinalRecord> records = fetchFromApi(lat, lon, start, end);
+
+        Path dbBloom = readPathOrDefault("Путь к bloom-файлу DB (Enter — по умолчанию): ", DEFAULT_DB_BLOOM);
+        Path csvPath  = readPathOrDefault("Путь к CSV (Enter — по умолчанию): ", DEFAULT_CSV_PATH);
+        Path csvBloom = readPathOrDefault("Путь к bloom-файлу CSV (Enter — по умолчанию): ", DEFAULT_CSV_BLOOM);
+        int expected = readIntWithDefault("Ожидаемое число записей для BloomFilter (по умолчанию 100 000): ", 100_000);
+        double fpRate = readDoubleWithDefault("False positive rate (по умолчанию 0.001): ", 0.001);
+        int batchSize = readIntWithDefault("Batch size для DB writer, строк на коммит (по умолчанию 1 000): ", 1_000);
+        DbWriteMode mode = readWriteMode();
+
+        DataBaseItemWriter dbWriter = null;
+        CsvItemWriter csvWriter = null;
+        try {
+            dbWriter = newDbWriter(dbBloom, expected, fpRate, batchSize, mode);
+            csvWriter = new CsvItemWriter(csvPath, csvBloom, expected, fpRate);
+        } catch (Exception e) {
+            System.err.println("Ошибка при открытии хранилищ: " + e.getMessage());
+            e.printStackTrace();
+            closeQuietly(dbWriter);
+            return;
+        }
+        try (TeeRecordWriter tee = new TeeRecordWriter(List.of(dbWriter, csvWriter), 4)) {
+            tee.write(records);
+            tee.flush();
+            System.out.println("Готово: записано в DB и CSV.");
+            System.out.println("Дедупликация DB: " + dbWriter.getDedupStats());
+            System.out.println("Дедупликация CSV: " + csvWriter.getDedupStats());
+        } catch (Exception e) {
+            System.err.println("Ошибка при записи в DB / CSV: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (Exception e) {
+            System.err.println("Ошибка при закрытии: " + e.getMessage());
+        }
+    }
+
     /**
      * Запись в csv или базу данных из файла Json
      */
@@ -163,12 +252,15 @@ public class WeatherCli {
      */
     private void jsonToDb(List<FinalRecord> records) {
         Path dbBloom = readPathOrDefault("Путь к bloom-файлу DB (Enter — по умолчанию): ", DEFAULT_DB_BLOOM);
-        int batch = readIntWithDefault("Batch size для DB (по умолчанию 100_000): ", 100_000);
+        int expected = readIntWithDefault("Ожидаемое число записей для BloomFilter DB (по умолчанию 100_000): ", 100_000);
         double fpRate = readDoubleWithDefault("FP rate для DB (по умолчанию 0.01): ", 0.001);
+        int batch = readIntWithDefault("Batch size для DB, строк на коммит (по умолчанию 1_000): ", 1_000);
+        DbWriteMode mode = readWriteMode();
 
-        try (DataBaseItemWriter dbWriter = new DataBaseItemWriter(dbBloom, batch, fpRate)) {
+        try (DataBaseItemWriter dbWriter = newDbWriter(dbBloom, expected, fpRate, batch, mode)) {
             dbWriter.write(records);
             System.out.println("Запись в DB завершена.");
+            System.out.println("Дедупликация: " + dbWriter.getDedupStats());
         } catch (Exception e) {
             System.err.println("Ошибка при записи в DB: " + e.getMessage());
             e.printStackTrace();
@@ -181,18 +273,61 @@ public class WeatherCli {
     private void jsonToCsv(List<FinalRecord> records) {
         Path csvPath  = readPathOrDefault("Путь к CSV-файлу (Enter — по умолчанию): ", DEFAULT_CSV_PATH);
         Path csvBloom = readPathOrDefault("Путь к bloom-файлу CSV (Enter — по умолчанию): ", DEFAULT_CSV_BLOOM);
-        int batch = readIntWithDefault("Batch size для CSV (по умолчанию 100_000): ", 100_000);
+        int expected = readIntWithDefault("Ожидаемое число записей для BloomFilter CSV (по умолчанию 100_000): ", 100_000);
         double fpRate = readDoubleWithDefault("FP rate для CSV (по умолчанию 0.01): ", 0.001);
 
-        try (CsvItemWriter csvWriter = new CsvItemWriter(csvPath, csvBloom, batch, fpRate)) {
+        try (CsvItemWriter csvWriter = new CsvItemWriter(csvPath, csvBloom, expected, fpRate)) {
             csvWriter.write(records);
             System.out.println("Запись в CSV завершена.");
+            System.out.println("Дедупликация: " + csvWriter.getDedupStats());
         } catch (Exception e) {
             System.err.println("Ошибка при записи в CSV: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Принудительно перестраивает BloomFilter по фактическому содержимому базы данных или CSV.
+     * Нужен, если в хранилище писали в обход фильтра или файл фильтра потерян.
+     */
+    private void rebuildBloomFilters() {
+        System.out.println("""
+            Какой BloomFilter перестроить?
+            1. DataBase
+            2. CSV
+            0. Отмена
+            """);
+
+        int dest = readInt("Ваш выбор: ");
+        switch (dest) {
+            case 1 -> {
+                Path dbBloom = readPathOrDefault("Путь к bloom-файлу DB (Enter — по умолчанию): ", DEFAULT_DB_BLOOM);
+                double fpRate = readDoubleWithDefault("False positive rate для DB (по умолчанию 0.001): ", 0.001);
+                try (DataBaseItemWriter dbWriter = new DataBaseItemWriter(dbBloom, 100_000, fpRate)) {
+                    dbWriter.rebuildDedupFilter();
+                    System.out.println("BloomFilter DB перестроен.");
+                } catch (Exception e) {
+                    System.err.println("Ошибка при перестроении BloomFilter DB: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            case 2 -> {
+                Path csvPath  = readPathOrDefault("Путь к CSV (Enter — по умолчанию): ", DEFAULT_CSV_PATH);
+                Path csvBloom = readPathOrDefault("Путь к bloom-файлу CSV (Enter — по умолчанию): ", DEFAULT_CSV_BLOOM);
+                double fpRate = readDoubleWithDefault("False positive rate для CSV (по умолчанию 0.001): ", 0.001);
+                try (CsvItemWriter csvWriter = new CsvItemWriter(csvPath, csvBloom, 100_000, fpRate)) {
+                    csvWriter.rebuildDedupFilter();
+                    System.out.println("BloomFilter CSV перестроен.");
+                } catch (Exception e) {
+                    System.err.println("Ошибка при перестроении BloomFilter CSV: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            case 0 -> System.out.println("Отмена.");
+            default -> System.out.println("Неизвестный выбор.");
+        }
+    }
+
     // ====== Вспомогательные методы ======
 
     /**
@@ -336,6 +471,33 @@ public class WeatherCli {
         }
     }
 
+    /**
+     * DB writer: последовательный или параллельный по db.writerThreads из application.properties
+     */
+    private DataBaseItemWriter newDbWriter(Path bloom, long expected, double fpRate, int batch, DbWriteMode mode) throws IOException {
+        int threads = AppProperties.getInt("db.writerThreads", 1);
+        if (threads > 1) {
+            return new ParallelDataBaseItemWriter(DataSourceFactory.getDataSource(), bloom, expected, fpRate, batch, mode, threads);
+        }
+        return new DataBaseItemWriter(bloom, expected, fpRate, batch, mode);
+    }
+
+    /**
+     * Режим загрузки в DB: insert, copy или refresh, по умолчанию — из application.properties (db.writeMode)
+     */
+    private DbWriteMode readWriteMode() {
+        DbWriteMode def = DbWriteMode.parse(AppProperties.get("db.writeMode", "insert"));
+        System.out.print("Режим загрузки в DB: insert / copy / refresh (Enter — " + def.name().toLowerCase() + "): ");
+        String line = SC.nextLine().trim();
+        if (line.isEmpty()) return def;
+        try {
+            return DbWriteMode.parse(line);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Неизвестный режим. Использую значение по умолчанию: " + def.name().toLowerCase());
+            return def;
+        }
+    }
+
     private Path readPath(String prompt) {
         while (true) {
             System.out.print(prompt);
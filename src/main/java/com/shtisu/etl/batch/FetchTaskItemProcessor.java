@@ -0,0 +1,30 @@
+package com.shtisu.etl.batch;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.job.FetchTask;
+import com.shtisu.etl.job.JobRunner;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.batch.item.ItemProcessor;
+
+import java.util.List;
+
+/**
+ * Запрос к API (одна точка или тайл сетки) и преобразование ответа в записи по дням ({@link FinalRecordItemProcessor}).
+ */
+public class FetchTaskItemProcessor implements ItemProcessor<FetchTask, List<FinalRecord>> {
+
+    private final OpenMeteoApiClient client;
+    private final FinalRecordItemProcessor processor;
+
+    public FetchTaskItemProcessor(OpenMeteoApiClient client, FinalRecordItemProcessor processor) {
+        this.client = client;
+        this.processor = processor;
+    }
+
+    @Override
+    public List<FinalRecord> process(@NotNull FetchTask task) throws Exception {
+        return JobRunner.fetchRecords(client, processor, task);
+    }
+}
@@ -0,0 +1,50 @@
+package com.shtisu.etl.batch;
+
+import com.shtisu.etl.job.FetchPlan;
+import com.shtisu.etl.job.FetchTask;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+/**
+ * Читает запросы своего диапазона [from, to). Число прочитанных запросов сохраняется в контексте шага
+ * при каждой фиксации чанка, поэтому перезапущенный диапазон продолжает с первого незафиксированного запроса.
+ * Запросы вычисляются планом по номеру ({@link FetchPlan#get(long)}) и в памяти не хранятся.
+ */
+public class FetchTaskItemReader extends AbstractItemCountingItemStreamItemReader<FetchTask> {
+
+    private final FetchPlan plan;
+    private final int from;
+    private final int to;
+    private int next;
+
+    public FetchTaskItemReader(FetchPlan plan, int from, int to) {
+        this.plan = plan;
+        this.from = from;
+        this.to = to;
+        setName("fetchTasks");
+        setMaxItemCount(to - from);
+    }
+
+    @Override
+    protected FetchTask doRead() {
+        return from + next < to ? plan.get(from + next++) : null;
+    }
+
+    @Override
+    protected void doOpen() {
+        next = 0;
+    }
+
+    @Override
+    protected void doClose() {
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        next = itemIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchTaskItemReader[" + from + ".." + to + ")";
+    }
+}
@@ -0,0 +1,38 @@
+package com.shtisu.etl.batch;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Делит список запросов задания на gridSize непрерывных диапазонов [from, to).
+ * Запросы упорядочены по точкам и тайлам ({@link com.shtisu.etl.job.FetchPlan}), поэтому диапазон —
+ * это группа соседних тайлов со всеми их кусками периода.
+ * Границы лежат в контексте шага и при перезапуске берутся оттуда, а не считаются заново.
+ */
+public class FetchTaskRangePartitioner implements Partitioner {
+
+    static final String FROM = "from";
+    static final String TO = "to";
+
+    private final int taskCount;
+
+    public FetchTaskRangePartitioner(int taskCount) {
+        this.taskCount = taskCount;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        int parts = Math.max(1, Math.min(gridSize, taskCount));
+        Map<String, ExecutionContext> result = new LinkedHashMap<>();
+        for (int i = 0; i < parts; i++) {
+            ExecutionContext ctx = new ExecutionContext();
+            ctx.putInt(FROM, (int) ((long) taskCount * i / parts));
+            ctx.putInt(TO, (int) ((long) taskCount * (i + 1) / parts));
+            result.put("range" + i, ctx);
+        }
+        return result;
+    }
+}
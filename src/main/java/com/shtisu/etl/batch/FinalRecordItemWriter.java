@@ -0,0 +1,63 @@
+package com.shtisu.etl.batch;
+
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.writer.CsvItemWriter;
+import com.shtisu.etl.writer.DataBaseItemWriter;
+import com.shtisu.etl.writer.FinalRecordWriter;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ItemWriter поверх {@link CsvItemWriter} / {@link DataBaseItemWriter}: записи всех запросов чанка
+ * пишутся одной пачкой в каждое хранилище.
+ *
+ * Диапазоны пишут из разных потоков, а writer'ы хранилищ рассчитаны на один поток, поэтому запись в
+ * хранилище идёт под его монитором. write() возвращается только после записи (и коммита для базы данных),
+ * так что зафиксированный Spring Batch чанк уже лежит в хранилище. Если процесс упадёт между записью и
+ * фиксацией, чанк повторится при перезапуске, а фильтр дедупликации отбросит уже записанные строки.
+ */
+public class FinalRecordItemWriter implements ItemWriter<List<FinalRecord>>, AutoCloseable {
+
+    private final List<FinalRecordWriter> sinks;
+
+    public FinalRecordItemWriter(@NotNull List<FinalRecordWriter> sinks) {
+        this.sinks = List.copyOf(sinks);
+    }
+
+    @Override
+    public void write(@NotNull Chunk<? extends List<FinalRecord>> chunk) throws Exception {
+        List<FinalRecord> records = new ArrayList<>();
+        for (List<FinalRecord> item : chunk) {
+            records.addAll(item);
+        }
+        for (FinalRecordWriter sink : sinks) {
+            synchronized (sink) {
+                sink.write(records);
+            }
+        }
+    }
+
+    /** Хранилища в порядке задания */
+    public List<FinalRecordWriter> getSinks() {
+        return sinks;
+    }
+
+    @Override
+    public void close() throws Exception {
+        Exception failure = null;
+        for (FinalRecordWriter sink : sinks) {
+            try {
+                synchronized (sink) {
+                    sink.close();
+                }
+            } catch (Exception e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
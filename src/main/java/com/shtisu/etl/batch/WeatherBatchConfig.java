@@ -0,0 +1,162 @@
+package com.shtisu.etl.batch;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.config.AppProperties;
+import com.shtisu.etl.job.FetchPlan;
+import com.shtisu.etl.job.FetchTask;
+import com.shtisu.etl.job.JobRunner;
+import com.shtisu.etl.job.JobSpec;
+import com.shtisu.etl.metrics.EtlMetrics;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import com.shtisu.etl.writer.FinalRecordWriter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Задание Spring Batch поверх {@link JobSpec}.
+ *
+ * Шаг fetchLocations делит запросы задания на диапазоны точек ({@link FetchTaskRangePartitioner}) и выполняет
+ * их параллельно на {@link TaskExecutor} (parallelism.fetchThreads потоков). Каждый диапазон — чанковый
+ * шаг fetchRange: {@link FetchTaskItemReader} → {@link FetchTaskItemProcessor} → {@link FinalRecordItemWriter}.
+ *
+ * JobRepository хранится в H2-файле (batch.repositoryUrl), поэтому после падения задание с теми же
+ * параметрами перезапускается: завершённые диапазоны пропускаются, а незавершённые продолжают
+ * с первого незафиксированного чанка. Запрос к API при ошибке ввода-вывода повторяется до трёх раз.
+ */
+@Configuration
+@EnableBatchProcessing(dataSourceRef = "batchDataSource", transactionManagerRef = "batchTransactionManager")
+public class WeatherBatchConfig {
+
+    // Сколько раз пробуем запрос к API при ошибке ввода-вывода
+    private static final int FETCH_ATTEMPTS = 3;
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource batchDataSource() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(AppProperties.get("batch.repositoryUrl", "jdbc:h2:file:./cache/batch-repository"));
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(AppProperties.getInt("batch.repositoryPoolSize", 10));
+        config.setPoolName("batch-repository");
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(EtlMetrics.registry()));
+        HikariDataSource ds = new HikariDataSource(config);
+        initializeSchema(ds);
+        return ds;
+    }
+
+    @Bean
+    public PlatformTransactionManager batchTransactionManager(DataSource batchDataSource) {
+        return new DataSourceTransactionManager(batchDataSource);
+    }
+
+    @Bean
+    public FetchPlan fetchPlan(JobSpec spec) {
+        return JobRunner.plan(spec);
+    }
+
+    @Bean(destroyMethod = "close")
+    public FinalRecordItemWriter finalRecordItemWriter(JobSpec spec) throws IOException {
+        List<FinalRecordWriter> sinks = new ArrayList<>();
+        for (JobSpec.Sink sink : spec.getSinks()) {
+            sinks.add(JobRunner.openWriter(sink));
+        }
+        return new FinalRecordItemWriter(sinks);
+    }
+
+    @Bean
+    public FetchTaskItemProcessor fetchTaskItemProcessor(JobSpec spec) {
+        return new FetchTaskItemProcessor(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor());
+    }
+
+    @Bean
+    @StepScope
+    public FetchTaskItemReader fetchTaskItemReader(FetchPlan fetchPlan,
+                                                   @Value("#{stepExecutionContext['from']}") Integer from,
+                                                   @Value("#{stepExecutionContext['to']}") Integer to) {
+        return new FetchTaskItemReader(fetchPlan, from, to);
+    }
+
+    @Bean
+    public Step fetchRange(JobRepository jobRepository,
+                           PlatformTransactionManager batchTransactionManager,
+                           JobSpec spec,
+                           FetchTaskItemReader fetchTaskItemReader,
+                           FetchTaskItemProcessor fetchTaskItemProcessor,
+                           FinalRecordItemWriter finalRecordItemWriter) {
+        return new StepBuilder("fetchRange", jobRepository)
+                .<FetchTask, List<FinalRecord>>chunk(spec.getParallelism().getChunkSize(), batchTransactionManager)
+                .reader(fetchTaskItemReader)
+                .processor(fetchTaskItemProcessor)
+                .writer(finalRecordItemWriter)
+                .faultTolerant()
+                .retry(IOException.class)
+                .retryLimit(FETCH_ATTEMPTS)
+                .build();
+    }
+
+    @Bean
+    public TaskExecutor fetchTaskExecutor(JobSpec spec) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("batch-fetch-");
+        executor.setConcurrencyLimit(spec.getParallelism().getFetchThreads());
+        return executor;
+    }
+
+    @Bean
+    public Step fetchLocations(JobRepository jobRepository,
+                               JobSpec spec,
+                               FetchPlan fetchPlan,
+                               Step fetchRange,
+                               TaskExecutor fetchTaskExecutor) {
+        int partitions = spec.getParallelism().getPartitions() > 0
+                ? spec.getParallelism().getPartitions()
+                : spec.getParallelism().getFetchThreads();
+        return new StepBuilder("fetchLocations", jobRepository)
+                .partitioner("fetchRange", new FetchTaskRangePartitioner(Math.toIntExact(fetchPlan.size())))
+                .step(fetchRange)
+                .gridSize(partitions)
+                .taskExecutor(fetchTaskExecutor)
+                .build();
+    }
+
+    @Bean
+    public Job weatherJob(JobRepository jobRepository, Step fetchLocations) {
+        return new JobBuilder("weatherJob", jobRepository)
+                .start(fetchLocations)
+                .build();
+    }
+
+    /** Создаёт таблицы JobRepository (BATCH_*), если их ещё нет */
+    private static void initializeSchema(DataSource ds) throws SQLException {
+        try (Connection c = ds.getConnection();
+             ResultSet rs = c.getMetaData().getTables(null, null, "BATCH_JOB_INSTANCE", null)) {
+            if (rs.next()) return;
+        }
+        new ResourceDatabasePopulator(new ClassPathResource("org/springframework/batch/core/schema-h2.sql")).execute(ds);
+    }
+}
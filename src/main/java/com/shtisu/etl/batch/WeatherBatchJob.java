@@ -0,0 +1,59 @@
+package com.shtisu.etl.batch;
+
+import com.shtisu.etl.job.JobSpec;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Запускает {@link JobSpec} как задание Spring Batch (см. {@link WeatherBatchConfig}).
+ *
+ * Экземпляр задания определяется параметрами spec (путь к файлу задания) и specHash (его содержимое):
+ * повторный запуск того же файла после сбоя — это перезапуск, а изменённый файл — новое задание.
+ */
+public final class WeatherBatchJob {
+
+    private WeatherBatchJob() {
+    }
+
+    /**
+     * @param spec       задание
+     * @param specId     путь к файлу задания (идентифицирует экземпляр задания)
+     * @param specHash   хэш содержимого файла задания
+     * @return выполнение задания (статус, шаги диапазонов и их счётчики)
+     */
+    @NotNull
+    public static JobExecution run(@NotNull JobSpec spec, @NotNull String specId, long specHash) throws Exception {
+        try (AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext()) {
+            ctx.registerBean(JobSpec.class, () -> spec);
+            ctx.register(WeatherBatchConfig.class);
+            ctx.refresh();
+
+            JobParameters params = new JobParametersBuilder()
+                    .addString("spec", specId)
+                    .addLong("specHash", specHash)
+                    .toJobParameters();
+            JobExecution execution = ctx.getBean(JobLauncher.class).run(ctx.getBean(Job.class), params);
+            printSummary(execution);
+            return execution;
+        }
+    }
+
+    private static void printSummary(JobExecution execution) {
+        System.out.printf("Задание %s (Spring Batch, выполнение %d): %s%n",
+                execution.getJobInstance().getJobName(), execution.getId(), execution.getStatus());
+        for (StepExecution step : execution.getStepExecutions()) {
+            if (step.getStepName().startsWith("fetchLocations")) continue;
+            System.out.printf("  %s: %s, запросов %d, записано пачек %d%s%n", step.getStepName(), step.getStatus(),
+                    step.getReadCount(), step.getCommitCount(),
+                    step.getStatus() == BatchStatus.FAILED && !step.getFailureExceptions().isEmpty()
+                            ? ", ошибка: " + step.getFailureExceptions().get(0).getMessage() : "");
+        }
+    }
+}
@@ -5,11 +5,17 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
 
+import com.shtisu.etl.metrics.EtlMetrics;
 import com.shtisu.etl.model.OpenMeteoResponse;
 import com.shtisu.etl.parser.OpenMeteoApiJsonParser;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -17,6 +23,14 @@ import lombok.extern.slf4j.Slf4j;
  */
 public class OpenMeteoApiClient {
 
+    // Задержка запроса к API (до получения всего тела ответа) и размер ответа
+    private static final Timer FETCH_SUCCESS = fetchTimer("success");
+    private static final Timer FETCH_ERROR = fetchTimer("error");
+    private static final DistributionSummary RESPONSE_BYTES = DistributionSummary.builder("etl.fetch.bytes")
+            .description("Open-Meteo response body size")
+            .baseUnit("bytes")
+            .register(EtlMetrics.registry());
+
     private final HttpClient http;
     private final String baseUrl;
 
@@ -42,25 +56,59 @@ public class OpenMeteoApiClient {
                                    LocalDate end) throws IOException, InterruptedException {
 
 
-        String url = buildUrl(latitude, longitude, start, end);
+        return OpenMeteoApiJsonParser.parse(get(buildUrl(String.valueOf(latitude), String.valueOf(longitude), start, end)));
+    }
+
+    /**
+     * Один запрос сразу по нескольким координатам (API принимает их через запятую).
+     *
+     * @return ответы в том же порядке, что и координаты
+     */
+    public List<OpenMeteoResponse> fetchAll(double[] latitudes,
+                                            double[] longitudes,
+                                            LocalDate start,
+                                            LocalDate end) throws IOException, InterruptedException {
+        if (latitudes.length == 0 || latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("latitudes and longitudes must be non-empty and of equal length");
+        }
+        StringJoiner lats = new StringJoiner(",");
+        StringJoiner lons = new StringJoiner(",");
+        for (int i = 0; i < latitudes.length; i++) {
+            lats.add(String.valueOf(latitudes[i]));
+            lons.add(String.valueOf(longitudes[i]));
+        }
+        List<OpenMeteoResponse> responses = OpenMeteoApiJsonParser.parseAll(get(buildUrl(lats.toString(), lons.toString(), start, end)));
+        if (responses.size() != latitudes.length) {
+            throw new IOException("Expected " + latitudes.length + " locations in response, got " + responses.size());
+        }
+        return responses;
+    }
+
+    private String get(String url) throws IOException, InterruptedException {
         HttpRequest req = HttpRequest.newBuilder()
                 .uri(URI.create(url))
                 .GET()
                 .build();
 
-        HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
-        if (resp.statusCode() != 200) {
-            throw new IOException("Unexpected HTTP status: " + resp.statusCode());
+        long started = System.nanoTime();
+        boolean ok = false;
+        try {
+            HttpResponse<byte[]> resp = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+            RESPONSE_BYTES.record(resp.body().length);
+            if (resp.statusCode() != 200) {
+                throw new IOException("Unexpected HTTP status: " + resp.statusCode());
+            }
+            ok = true;
+            return new String(resp.body(), StandardCharsets.UTF_8);
+        } finally {
+            (ok ? FETCH_SUCCESS : FETCH_ERROR).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
         }
-
-
-        return OpenMeteoApiJsonParser.parse(resp.body());
     }
 
     /**
      * Строем запрос к Open Meteo Api
      */
-    private String buildUrl(double lat, double lon, LocalDate start, LocalDate end) {
+    private String buildUrl(String lat, String lon, LocalDate start, LocalDate end) {
         StringJoiner sj = new StringJoiner("&", baseUrl + "/v1/forecast?", "");
         sj.add("latitude="     + lat);
         sj.add("longitude="    + lon);
@@ -96,4 +144,10 @@ public class OpenMeteoApiClient {
         return sj.toString();
     }
 
+    private static Timer fetchTimer(String outcome) {
+        return Timer.builder("etl.fetch")
+                .description("Open-Meteo request latency")
+                .tag("outcome", outcome)
+                .register(EtlMetrics.registry());
+    }
 }
@@ -0,0 +1,51 @@
+package com.shtisu.etl.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Доступ к настройкам из application.properties (classpath).
+ * Файл читается один раз при первом обращении.
+ */
+public final class AppProperties {
+
+    private static final Properties PROPERTIES = load();
+
+    private AppProperties() { }
+
+    public static String get(String key, String def) {
+        String value = PROPERTIES.getProperty(key, def);
+        return value == null ? null : value.trim();
+    }
+
+    public static int getInt(String key, int def) {
+        return Integer.parseInt(get(key, Integer.toString(def)));
+    }
+
+    public static long getLong(String key, long def) {
+        return Long.parseLong(get(key, Long.toString(def)));
+    }
+
+    public static double getDouble(String key, double def) {
+        return Double.parseDouble(get(key, Double.toString(def)));
+    }
+
+    public static boolean getBoolean(String key, boolean def) {
+        return Boolean.parseBoolean(get(key, Boolean.toString(def)));
+    }
+
+    private static Properties load() {
+        try (InputStream in = AppProperties.class
+                .getClassLoader()
+                .getResourceAsStream("application.properties")) {
+            if (in == null) throw new IllegalStateException("application.properties not found in classpath");
+
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
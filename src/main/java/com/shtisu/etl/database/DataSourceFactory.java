@@ -1,58 +1,54 @@
 package com.shtisu.etl.database;
 
-import com.zaxxer.hikari.HikariConfig;
+import com.shtisu.etl.config.AppProperties;
+import com.shtisu.etl.metrics.EtlMetrics;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Properties;
 
 
 /**
- * Класс для создание подключения к базе данных, а также настройки параметров подключения
+ * Класс для создание подключения к базе данных, а также настройки параметров подключения.
+ * Пул создаётся при первом вызове {@link #getDataSource()} (класс-держатель), а первое соединение
+ * открывается при первом getConnection() — сценарии без базы данных (JSON/API → CSV) пул не поднимают.
  */
 public class DataSourceFactory {
 
-    private static final HikariDataSource dateSource;
-
     private DataSourceFactory() { }
+
     public static DataSource getDataSource() {
-        return dateSource;
+        return Holder.DATA_SOURCE;
     }
 
+    // JVM инициализирует держатель при первом обращении и ровно один раз
+    private static final class Holder {
+        static final HikariDataSource DATA_SOURCE = create();
+    }
 
-    static {
-        try (InputStream in = DataSourceFactory.class
-                .getClassLoader()
-                .getResourceAsStream("application.properties")){
-            if(in == null) throw new IllegalStateException("application.properties not found in classpath");
-
-            Properties properties = new Properties();
-            properties.load(in);
-
-            HikariConfig config = new HikariConfig();
-            // Берем данные для базы данных из application.properties
-            // Настраиваем setConnectionTimeout и т.д
-            config.setJdbcUrl(properties.getProperty("db.url"));
-            config.setUsername(properties.getProperty("db.user"));
-            config.setPassword(properties.getProperty("db.password"));
-            config.setMaximumPoolSize(
-                    Integer.parseInt(properties.getProperty("db.maximumPoolSize", "10"))
-            );
-            config.setConnectionTimeout(30000);
-            config.setIdleTimeout(600000);
-            config.setValidationTimeout(5000);
-
-            dateSource = new HikariDataSource(config);
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private static HikariDataSource create() {
+        // Конструктор без конфигурации не запускает пул: он поднимается при первом getConnection()
+        HikariDataSource dataSource = new HikariDataSource();
+        // Берем данные для базы данных из application.properties
+        // Настраиваем setConnectionTimeout и т.д
+        String url = AppProperties.get("db.url", null);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(AppProperties.get("db.user", null));
+        dataSource.setPassword(AppProperties.get("db.password", ""));
+        dataSource.setMaximumPoolSize(AppProperties.getInt("db.maximumPoolSize", 10));
+        dataSource.setConnectionTimeout(30000);
+        dataSource.setIdleTimeout(600000);
+        dataSource.setValidationTimeout(5000);
+        // Метрики пула (hikaricp.connections.*) в общем реестре, тег pool=etl-db
+        dataSource.setPoolName("etl-db");
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(EtlMetrics.registry()));
+
+        // Драйвер PostgreSQL переписывает JDBC-батч из одиночных INSERT в многострочные INSERT ... VALUES (...), (...),
+        // что на порядок сокращает число обращений к серверу при пакетной записи
+        if (url != null && url.startsWith("jdbc:postgresql:")) {
+            dataSource.addDataSourceProperty("reWriteBatchedInserts",
+                    AppProperties.get("db.reWriteBatchedInserts", "true"));
         }
+        return dataSource;
     }
-
-
-
-
-
 }
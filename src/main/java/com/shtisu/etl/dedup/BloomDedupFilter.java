@@ -0,0 +1,66 @@
+package com.shtisu.etl.dedup;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * {@link DedupFilter} на Guava BloomFilter по строковому ключу {@link DedupKeys#of}.
+ * Формат файла — стандартная сериализация Guava, совместимая с ранее сохранёнными *.bloom.
+ */
+public final class BloomDedupFilter implements DedupFilter {
+
+    private final BloomFilter<CharSequence> filter;
+
+    private BloomDedupFilter(@NotNull BloomFilter<CharSequence> filter) {
+        this.filter = filter;
+    }
+
+    @NotNull
+    public static BloomDedupFilter create(long expectedEntries, double fpp) {
+        return new BloomDedupFilter(BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedEntries, fpp));
+    }
+
+    @NotNull
+    static BloomDedupFilter readFrom(@NotNull InputStream in) throws IOException {
+        return new BloomDedupFilter(BloomFilter.readFrom(in, Funnels.stringFunnel(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public boolean mightContain(@NotNull LocalDate date, double latitude, double longitude) {
+        return filter.mightContain(DedupKeys.of(date, latitude, longitude));
+    }
+
+    @Override
+    public void put(@NotNull LocalDate date, double latitude, double longitude) {
+        filter.put(DedupKeys.of(date, latitude, longitude));
+    }
+
+    @Override
+    public long size() {
+        return filter.approximateElementCount();
+    }
+
+    @NotNull
+    @Override
+    public DedupFilterType type() {
+        return DedupFilterType.BLOOM;
+    }
+
+    @Override
+    public void writeTo(@NotNull OutputStream out) throws IOException {
+        filter.writeTo(out);
+    }
+
+    /** Текущая ожидаемая вероятность ложноположительного срабатывания */
+    @Override
+    public double estimatedFpp() {
+        return filter.expectedFpp();
+    }
+}
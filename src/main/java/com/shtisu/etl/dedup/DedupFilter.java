@@ -0,0 +1,66 @@
+package com.shtisu.etl.dedup;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * Фильтр дедупликации по ключу (date, latitude, longitude): отвечает, могла ли запись уже попасть в хранилище.
+ *
+ * Реализации:
+ * {@link BloomDedupFilter} — вероятностный, компактный, но с ложноположительными срабатываниями
+ * (новая запись может быть принята за уже записанную и потеряна);
+ * {@link ScalableBloomFilter} — цепочки BloomFilter по месяцам, растут вместе с числом ключей;
+ * {@link LockFreeBloomFilter} — BloomFilter на атомарных словах по упакованному ключу;
+ * {@link PackedKeySet} — точный, ключ упаковывается в long с фиксированной точностью координат.
+ *
+ * Методы {@link #mightContain} и {@link #put} потокобезопасны: фильтр общий для параллельных
+ * потоков записи и перестроения.
+ */
+public interface DedupFilter {
+
+    /** true, если ключ мог быть добавлен ранее; false — ключа точно нет */
+    boolean mightContain(@NotNull LocalDate date, double latitude, double longitude);
+
+    /** Добавляет ключ */
+    void put(@NotNull LocalDate date, double latitude, double longitude);
+
+    /** Количество добавленных ключей (для BloomFilter — оценка) */
+    long size();
+
+    /**
+     * Оценка вероятности ложного срабатывания при текущем заполнении (0 для точных фильтров).
+     * Если она заметно выше заданной fpp, фильтр переполнен и новые записи начинают теряться.
+     */
+    default double estimatedFpp() {
+        return 0;
+    }
+
+    /** Точный фильтр: положительный ответ не требует проверки по хранилищу */
+    default boolean isExact() {
+        return false;
+    }
+
+    /** Фильтр переполнен: оценка вероятности ложного срабатывания более чем вдвое выше заданной */
+    default boolean isSaturated(double fpp) {
+        return estimatedFpp() > 2 * fpp;
+    }
+
+    /** Тип фильтра (по нему выбирается формат файла) */
+    @NotNull
+    DedupFilterType type();
+
+    /** Сериализует фильтр в поток; читается обратно через {@link DedupFilterType#readFrom} */
+    void writeTo(@NotNull OutputStream out) throws IOException;
+
+    default boolean mightContain(@NotNull FinalRecord r) {
+        return mightContain(r.getDate(), r.getLatitude(), r.getLongitude());
+    }
+
+    default void put(@NotNull FinalRecord r) {
+        put(r.getDate(), r.getLatitude(), r.getLongitude());
+    }
+}
@@ -0,0 +1,327 @@
+package com.shtisu.etl.dedup;
+
+import com.shtisu.etl.util.CsvSegments;
+import org.jetbrains.annotations.NotNull;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Перестроение фильтра дедупликации по фактическому содержимому хранилища (CSV-файла или таблицы final_records).
+ * Используется, когда файл фильтра отсутствует, повреждён или устарел: без этого каждая уже записанная строка
+ * выглядит новой, CSV получает дубликаты, а база — поток пустых ON CONFLICT.
+ *
+ * Размер фильтра считается по реальному количеству строк (с запасом на рост), а не по значению из настроек.
+ * {@link DedupFilter} потокобезопасен, поэтому несколько потоков пишут в один фильтр напрямую.
+ */
+public final class DedupFilterRebuilder {
+
+    // Запас ёмкости фильтра относительно текущего числа строк, чтобы фильтр не "насытился" сразу после перестроения
+    private static final long GROWTH_FACTOR = 2;
+
+    // Максимальный размер одного отображаемого в память сегмента CSV
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    // Размер страницы при keyset-пагинации по таблице
+    private static final int PAGE_SIZE = 10_000;
+
+    private static final String STATS_SQL =
+            "SELECT COUNT(*), MIN(latitude), MAX(latitude) FROM final_records";
+
+    private DedupFilterRebuilder() { }
+
+    /**
+     * Параллельно сканирует CSV-файл и добавляет ключи всех строк в новый фильтр.
+     * Файл делится на сегменты по границам строк, каждый сегмент отображается в память и разбирается своим потоком.
+     *
+     * @param csvPath            путь к CSV-файлу (формат {@code CsvItemWriter})
+     * @param type               тип фильтра
+     * @param minExpectedEntries минимальная ёмкость фильтра (значение из настроек)
+     * @param fpp                допустимая вероятность ложноположительного срабатывания
+     * @param threads            количество потоков сканирования
+     */
+    @NotNull
+    public static DedupFilter fromCsv(@NotNull Path csvPath,
+                                      @NotNull DedupFilterType type,
+                                      long minExpectedEntries,
+                                      double fpp,
+                                      int threads) throws IOException {
+        if (!Files.exists(csvPath) || Files.size(csvPath) == 0) {
+            return type.create(minExpectedEntries, fpp);
+        }
+
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            List<long[]> segments = CsvSegments.splitAtLines(ch, threads, MAX_SEGMENT_BYTES);
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, segments.size())));
+            try {
+                // Первый проход: считаем строки, чтобы подобрать размер фильтра
+                List<Callable<Long>> counters = new ArrayList<>();
+                for (long[] s : segments) {
+                    counters.add(() -> countLines(ch.map(FileChannel.MapMode.READ_ONLY, s[0], s[1] - s[0])));
+                }
+                long lines = 0;
+                for (Long c : invokeAll(pool, counters)) {
+                    lines += c;
+                }
+
+                // Второй проход: добавляем ключи (строка заголовка не разбирается и пропускается)
+                DedupFilter filter = type.create(expectedEntriesFor(lines, minExpectedEntries), fpp);
+                List<Callable<Long>> scanners = new ArrayList<>();
+                for (long[] s : segments) {
+                    scanners.add(() -> scanCsvSegment(ch.map(FileChannel.MapMode.READ_ONLY, s[0], s[1] - s[0]), filter));
+                }
+                invokeAll(pool, scanners);
+                return filter;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Добавляет в фильтр ключи строк, дописанных в CSV начиная с байта from (с начала строки), —
+     * чтобы догнать чужую дозапись, не перечитывая весь файл. Хвост отображается в память частями
+     * не больше 1 ГБ, оборванная последняя строка пропускается.
+     *
+     * @return сколько строк разобрано
+     */
+    public static long appendFromCsv(@NotNull Path csvPath, long from, @NotNull DedupFilter filter) throws IOException {
+        long added = 0;
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long position = from;
+            while (position < size) {
+                long length = Math.min(size - position, MAX_SEGMENT_BYTES);
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    // часть заканчивается на последнем переводе строки, остаток — в следующей части
+                    while (end > 0 && buf.get(end - 1) != '\n') end--;
+                    if (end == 0) {
+                        throw new IOException("CSV line longer than " + MAX_SEGMENT_BYTES + " bytes: " + csvPath);
+                    }
+                    buf.limit(end);
+                }
+                added += scanCsvSegment(buf, filter);
+                position += end;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Параллельно сканирует таблицу final_records и добавляет ключи всех строк в новый фильтр.
+     * Диапазон широт делится на полосы, каждая полоса читается отдельным соединением с keyset-пагинацией
+     * по первичному ключу (latitude, longitude, date), поэтому ни один запрос не делает OFFSET и не держит
+     * в памяти весь результат.
+     *
+     * @param ds                 пул соединений
+     * @param type               тип фильтра
+     * @param minExpectedEntries минимальная ёмкость фильтра (значение из настроек)
+     * @param fpp                допустимая вероятность ложноположительного срабатывания
+     * @param threads            количество параллельных соединений
+     */
+    @NotNull
+    public static DedupFilter fromDatabase(@NotNull DataSource ds,
+                                           @NotNull DedupFilterType type,
+                                           long minExpectedEntries,
+                                           double fpp,
+                                           int threads) throws SQLException {
+        long rows;
+        double minLat;
+        double maxLat;
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(STATS_SQL)) {
+            rs.next();
+            rows = rs.getLong(1);
+            minLat = rs.getDouble(2);
+            maxLat = rs.getDouble(3);
+        }
+
+        DedupFilter filter = type.create(expectedEntriesFor(rows, minExpectedEntries), fpp);
+        if (rows == 0) {
+            return filter;
+        }
+
+        int bands = maxLat > minLat ? Math.max(1, threads) : 1;
+        double width = (maxLat - minLat) / bands;
+        ExecutorService pool = Executors.newFixedThreadPool(bands);
+        try {
+            List<Callable<Long>> scanners = new ArrayList<>();
+            for (int b = 0; b < bands; b++) {
+                double from = minLat + b * width;
+                double to = b == bands - 1 ? maxLat : minLat + (b + 1) * width;
+                boolean last = b == bands - 1;
+                scanners.add(() -> scanLatitudeBand(ds, from, to, last, filter));
+            }
+            invokeAll(pool, scanners);
+        } catch (IOException e) {
+            throw new SQLException(e.getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return filter;
+    }
+
+    /**
+     * Ёмкость фильтра по фактическому числу строк: не меньше значения из настроек и с запасом на рост.
+     */
+    public static long expectedEntriesFor(long rows, long minExpectedEntries) {
+        return Math.max(1, Math.max(minExpectedEntries, rows * GROWTH_FACTOR));
+    }
+
+    // ====== CSV ======
+
+    private static long countLines(@NotNull MappedByteBuffer buf) {
+        long lines = 0;
+        int limit = buf.limit();
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) == '\n') lines++;
+        }
+        if (limit > 0 && buf.get(limit - 1) != '\n') lines++;
+        return lines;
+    }
+
+    /**
+     * Разбирает первые три поля каждой строки сегмента (latitude;longitude;date) и добавляет ключ в фильтр.
+     * Строки, которые не разбираются (заголовок, оборванная последняя строка), пропускаются.
+     */
+    private static long scanCsvSegment(@NotNull MappedByteBuffer buf,
+                                       @NotNull DedupFilter filter) {
+        long added = 0;
+        int limit = buf.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buf.get(lineEnd) != '\n') lineEnd++;
+
+            if (putCsvKey(buf, lineStart, lineEnd, filter)) {
+                added++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return added;
+    }
+
+    private static boolean putCsvKey(@NotNull MappedByteBuffer buf, int from, int to, @NotNull DedupFilter filter) {
+        String[] fields = new String[3];
+        int field = 0;
+        int start = from;
+        for (int i = from; i < to && field < 3; i++) {
+            byte b = buf.get(i);
+            if (b == ';' || b == '\r') {
+                fields[field++] = ascii(buf, start, i);
+                start = i + 1;
+            }
+        }
+        if (field < 3) return false;
+        try {
+            filter.put(LocalDate.parse(fields[2]),
+                    Double.parseDouble(fields[0]),
+                    Double.parseDouble(fields[1]));
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @NotNull
+    private static String ascii(@NotNull MappedByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buf.get(from, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    // ====== Database ======
+
+    /**
+     * Читает одну полосу широт [from, to) (или [from, to] для последней полосы) страницами по PAGE_SIZE строк.
+     */
+    private static long scanLatitudeBand(@NotNull DataSource ds,
+                                         double from,
+                                         double to,
+                                         boolean inclusiveTo,
+                                         @NotNull DedupFilter filter) throws SQLException {
+        String bound = inclusiveTo ? "latitude <= ?" : "latitude < ?";
+        String firstPage = "SELECT latitude, longitude, date FROM final_records " +
+                "WHERE latitude >= ? AND " + bound + " " +
+                "ORDER BY latitude, longitude, date LIMIT " + PAGE_SIZE;
+        String nextPage = "SELECT latitude, longitude, date FROM final_records " +
+                "WHERE latitude >= ? AND " + bound + " AND (latitude, longitude, date) > (?, ?, ?) " +
+                "ORDER BY latitude, longitude, date LIMIT " + PAGE_SIZE;
+
+        long added = 0;
+        try (Connection conn = ds.getConnection();
+             PreparedStatement first = conn.prepareStatement(firstPage);
+             PreparedStatement next = conn.prepareStatement(nextPage)) {
+            conn.setReadOnly(true);
+
+            PreparedStatement ps = first;
+            ps.setDouble(1, from);
+            ps.setDouble(2, to);
+            while (true) {
+                int fetched = 0;
+                double lastLat = 0;
+                double lastLon = 0;
+                Date lastDate = null;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lastLat = rs.getDouble(1);
+                        lastLon = rs.getDouble(2);
+                        lastDate = rs.getDate(3);
+                        filter.put(lastDate.toLocalDate(), lastLat, lastLon);
+                        fetched++;
+                    }
+                }
+                added += fetched;
+                if (fetched < PAGE_SIZE) break;
+
+                ps = next;
+                ps.setDouble(1, from);
+                ps.setDouble(2, to);
+                ps.setDouble(3, lastLat);
+                ps.setDouble(4, lastLon);
+                ps.setDate(5, lastDate);
+            }
+        }
+        return added;
+    }
+
+    @NotNull
+    private static List<Long> invokeAll(@NotNull ExecutorService pool,
+                                        @NotNull List<Callable<Long>> tasks) throws IOException {
+        List<Long> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<Long> f : pool.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Dedup filter rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Dedup filter rebuild failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,106 @@
+package com.shtisu.etl.dedup;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Чтение и сохранение фильтра дедупликации на диск.
+ * Рядом с файлом фильтра (*.bloom) хранится файл метаданных (*.bloom.meta), в котором записаны тип фильтра
+ * и "отпечаток" хранилища на момент сохранения: размер CSV-файла в байтах или количество строк в таблице.
+ * Если отпечаток не совпадает с текущим состоянием хранилища, значит в него писали в обход фильтра
+ * (или файл фильтра старый) — такой фильтр считается устаревшим и его нужно перестроить.
+ * То же при смене типа фильтра в настройках и при смене формата ключей ({@link DedupKeys#FORMAT_VERSION}).
+ */
+public final class DedupFilterStore {
+
+    private static final String META_SUFFIX = ".meta";
+    private static final String SINK_SIZE = "sinkSize";
+    private static final String TYPE = "type";
+    private static final String KEY_FORMAT = "keyFormat";
+
+    private DedupFilterStore() { }
+
+    /**
+     * Загружает фильтр, если он существует, читается без ошибок, имеет нужный тип
+     * и соответствует текущему размеру хранилища.
+     *
+     * @param path     путь к файлу фильтра
+     * @param sinkSize текущий "отпечаток" хранилища (размер CSV или количество строк в таблице)
+     * @param type     ожидаемый тип фильтра
+     * @return фильтр или пустой Optional, если файла нет, он повреждён или устарел
+     */
+    public static Optional<DedupFilter> load(@NotNull Path path, long sinkSize, @NotNull DedupFilterType type) {
+        Path metaPath = metaPath(path);
+        try {
+            if (!Files.exists(path) || Files.size(path) == 0 || !Files.exists(metaPath)) {
+                return Optional.empty();
+            }
+            Properties meta = new Properties();
+            try (InputStream is = Files.newInputStream(metaPath)) {
+                meta.load(is);
+            }
+            if (Long.parseLong(meta.getProperty(SINK_SIZE, "-1")) != sinkSize) {
+                return Optional.empty();
+            }
+            // файлы, сохранённые до появления типа в метаданных, — это BloomFilter
+            if (DedupFilterType.parse(meta.getProperty(TYPE, "bloom")) != type) {
+                return Optional.empty();
+            }
+            // файлы без версии формата ключей построены по ключам версии 1
+            if (Integer.parseInt(meta.getProperty(KEY_FORMAT, "1")) != DedupKeys.FORMAT_VERSION) {
+                return Optional.empty();
+            }
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(path, StandardOpenOption.READ))) {
+                return Optional.of(type.readFrom(is));
+            }
+        } catch (IOException | RuntimeException e) {
+            // повреждённый файл фильтра или метаданных → фильтр нужно перестроить
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Сохраняет фильтр и его метаданные. Фильтр пишется во временный файл и затем атомарно
+     * переименовывается, чтобы падение процесса посреди записи не оставило повреждённый файл.
+     */
+    public static void save(@NotNull Path path,
+                            @NotNull DedupFilter filter,
+                            long sinkSize) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            filter.writeTo(os);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Properties meta = new Properties();
+        meta.setProperty(SINK_SIZE, Long.toString(sinkSize));
+        meta.setProperty(TYPE, filter.type().name().toLowerCase(Locale.ROOT));
+        meta.setProperty(KEY_FORMAT, Integer.toString(DedupKeys.FORMAT_VERSION));
+        try (OutputStream os = Files.newOutputStream(metaPath(path),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            meta.store(os, "dedup filter metadata");
+        }
+    }
+
+    @NotNull
+    static Path metaPath(@NotNull Path path) {
+        return path.resolveSibling(path.getFileName() + META_SUFFIX);
+    }
+}
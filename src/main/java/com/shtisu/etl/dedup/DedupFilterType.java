@@ -0,0 +1,56 @@
+package com.shtisu.etl.dedup;
+
+import com.shtisu.etl.config.AppProperties;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Тип фильтра дедупликации (настройка dedup.filter).
+ */
+public enum DedupFilterType {
+    /** Guava BloomFilter по строковому ключу date:lat:lon */
+    BLOOM,
+    /** Точное множество упакованных ключей (см. {@link DedupKeys#pack}) */
+    EXACT,
+    /** Растущие цепочки BloomFilter по месяцам (см. {@link ScalableBloomFilter}) */
+    SCALABLE,
+    /** BloomFilter без блокировок по упакованному ключу (см. {@link LockFreeBloomFilter}) */
+    LOCKFREE;
+
+    /** Пустой фильтр под ожидаемое число ключей (fpp не используется для EXACT) */
+    @NotNull
+    public DedupFilter create(long expectedEntries, double fpp) {
+        return switch (this) {
+            case BLOOM -> BloomDedupFilter.create(expectedEntries, fpp);
+            case EXACT -> new PackedKeySet(expectedEntries);
+            case SCALABLE -> new ScalableBloomFilter(expectedEntries, fpp, AppProperties.getInt("dedup.retainMonths", 0));
+            case LOCKFREE -> new LockFreeBloomFilter(expectedEntries, fpp);
+        };
+    }
+
+    /** Читает фильтр этого типа, записанный через {@link DedupFilter#writeTo} */
+    @NotNull
+    public DedupFilter readFrom(@NotNull InputStream in) throws IOException {
+        return switch (this) {
+            case BLOOM -> BloomDedupFilter.readFrom(in);
+            case EXACT -> PackedKeySet.readFrom(in);
+            case SCALABLE -> ScalableBloomFilter.readFrom(in);
+            case LOCKFREE -> LockFreeBloomFilter.readFrom(in);
+        };
+    }
+
+    /** Разбирает значение из настроек (bloom, exact, scalable, lockfree) */
+    @NotNull
+    public static DedupFilterType parse(@NotNull String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /** Тип фильтра из application.properties (dedup.filter), по умолчанию BLOOM */
+    @NotNull
+    public static DedupFilterType configured() {
+        return parse(AppProperties.get("dedup.filter", "bloom"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.shtisu.etl.dedup;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Построение ключа дедупликации date:latitude:longitude.
+ * Один и тот же формат используется и при записи, и при перестроении BloomFilter из CSV/базы данных,
+ * иначе перестроенный фильтр не узнает уже записанные строки. Координаты в строковом ключе — целые числа
+ * в единицах 1e-4 градуса: 40.8 и 40.800003 (координата ячейки сетки, прочитанная как float) дают один ключ,
+ * и ключ не зависит от того, как число было отформатировано. Смена формата — {@link #FORMAT_VERSION}.
+ *
+ * Кроме строкового ключа есть упакованный в long ({@link #pack}): координаты с точностью 1e-4 градуса (~11 м)
+ * и номер дня. Раскладка бит: latitude — 21 бит, longitude — 22 бита, день от 1900-01-01 — 21 бит (до 7641 года).
+ * Старшие биты — координаты, поэтому в отсортированном (беззнаково) множестве ключи одной точки идут подряд
+ * по дням, и разности соседних ключей маленькие.
+ */
+public final class DedupKeys {
+
+    /**
+     * Версия формата ключей; сохраняется рядом с фильтром ({@link DedupFilterStore}), и фильтр со старыми
+     * ключами перестраивается. 1 — координаты строкой из Double.toString, 2 — в единицах 1e-4 градуса.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final DateTimeFormatter FMT_DATE = DateTimeFormatter.ISO_DATE;
+
+    // Точность координат в упакованном ключе: 1e-4 градуса
+    private static final double COORD_SCALE = 10_000;
+
+    private static final int LON_BITS = 22;
+    private static final int DAY_BITS = 21;
+
+    private static final long MAX_LAT = 180 * (long) COORD_SCALE;
+    private static final long MAX_LON = 360 * (long) COORD_SCALE;
+    private static final long MAX_DAY = (1L << DAY_BITS) - 1;
+
+    // День 0 упакованного ключа
+    private static final long DAY_OFFSET = LocalDate.of(1900, 1, 1).toEpochDay();
+
+    private DedupKeys() { }
+
+    /** Ключ для записи: date:lat:lon */
+    @NotNull
+    public static String of(@NotNull FinalRecord r) {
+        return of(r.getDate(), r.getLatitude(), r.getLongitude());
+    }
+
+    /** Ключ из отдельных полей: date:lat:lon, координаты в единицах 1e-4 градуса */
+    @NotNull
+    public static String of(@NotNull LocalDate date, double latitude, double longitude) {
+        return date.format(FMT_DATE)
+                + ":" + coordinate(latitude)
+                + ":" + coordinate(longitude);
+    }
+
+    /** Координата в ключе: целое число единиц 1e-4 градуса */
+    public static long coordinate(double degrees) {
+        return Math.round(degrees * COORD_SCALE);
+    }
+
+    /**
+     * Границы координат с тем же значением в ключе, что и у degrees: {нижняя, верхняя} включительно
+     * (точка ровно на верхней границе округляется уже в следующую единицу).
+     */
+    @NotNull
+    public static double[] coordinateRange(double degrees) {
+        long units = coordinate(degrees);
+        return new double[]{(units - 0.5) / COORD_SCALE, (units + 0.5) / COORD_SCALE};
+    }
+
+    /**
+     * Упакованный ключ (latitude, longitude, date) с точностью координат 1e-4 градуса.
+     *
+     * @throws IllegalArgumentException если координаты вне допустимого диапазона или дата раньше 1900-01-01
+     */
+    public static long pack(@NotNull LocalDate date, double latitude, double longitude) {
+        long lat = Math.round((latitude + 90) * COORD_SCALE);
+        long lon = Math.round((longitude + 180) * COORD_SCALE);
+        long day = date.toEpochDay() - DAY_OFFSET;
+        if (lat < 0 || lat > MAX_LAT || lon < 0 || lon > MAX_LON || day < 0 || day > MAX_DAY) {
+            throw new IllegalArgumentException("Key out of packable range: " + date + ":" + latitude + ":" + longitude);
+        }
+        return lat << (LON_BITS + DAY_BITS) | lon << DAY_BITS | day;
+    }
+
+    /** Упакованный ключ записи */
+    public static long pack(@NotNull FinalRecord r) {
+        return pack(r.getDate(), r.getLatitude(), r.getLongitude());
+    }
+}
@@ -0,0 +1,84 @@
+package com.shtisu.etl.dedup;
+
+import com.shtisu.etl.metrics.EtlMetrics;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики двухуровневой дедупликации: сколько ключей проверено фильтром, сколько из них фильтр счёл
+ * уже записанными и сколько из этих "положительных" подтвердилось точной проверкой по хранилищу.
+ * Неподтверждённые положительные — ложные срабатывания фильтра; без проверки такие записи были бы потеряны.
+ * Те же счётчики копятся в {@link EtlMetrics} (etl.dedup.*, тег sink) — по всем writer'ам хранилища с запуска.
+ * Потокобезопасен.
+ */
+public final class DedupStats {
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder positives = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    private final Counter checkedCounter;
+    private final Counter positivesCounter;
+    private final Counter confirmedCounter;
+    private final Counter falsePositivesCounter;
+
+    /** @param sink хранилище для тега метрик (csv, db) */
+    public DedupStats(String sink) {
+        this.checkedCounter = counter("etl.dedup.checked", sink);
+        this.positivesCounter = counter("etl.dedup.positives", sink);
+        this.confirmedCounter = counter("etl.dedup.confirmed", sink);
+        this.falsePositivesCounter = counter("etl.dedup.false.positives", sink);
+    }
+
+    /** Ключ проверен фильтром */
+    public void recordCheck(boolean positive) {
+        checked.increment();
+        checkedCounter.increment();
+        if (positive) {
+            positives.increment();
+            positivesCounter.increment();
+        }
+    }
+
+    /** Результат точной проверки пачки положительных ключей */
+    public void recordVerification(long confirmedDuplicates, long falsePositiveCount) {
+        confirmed.add(confirmedDuplicates);
+        falsePositives.add(falsePositiveCount);
+        confirmedCounter.increment(confirmedDuplicates);
+        falsePositivesCounter.increment(falsePositiveCount);
+    }
+
+    public long getChecked() {
+        return checked.sum();
+    }
+
+    public long getPositives() {
+        return positives.sum();
+    }
+
+    public long getConfirmedDuplicates() {
+        return confirmed.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /** Фактическая доля ложных срабатываний среди действительно новых ключей */
+    public double falsePositiveRate() {
+        long fresh = getChecked() - getConfirmedDuplicates();
+        return fresh <= 0 ? 0 : (double) getFalsePositives() / fresh;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("checked=%d positives=%d confirmed=%d falsePositives=%d fpRate=%.6f",
+                getChecked(), getPositives(), getConfirmedDuplicates(), getFalsePositives(), falsePositiveRate());
+    }
+
+    private static Counter counter(String name, String sink) {
+        return Counter.builder(name).tag("sink", sink).register(EtlMetrics.registry());
+    }
+}
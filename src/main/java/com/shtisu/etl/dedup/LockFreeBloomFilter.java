@@ -0,0 +1,189 @@
+package com.shtisu.etl.dedup;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BloomFilter без блокировок по упакованному ключу {@link DedupKeys#pack}.
+ *
+ * Биты лежат в {@link AtomicLongArray}; бит выставляется через compareAndSet слова, поэтому любое число
+ * потоков одновременно вызывает {@link #put} и {@link #mightContain} без блокировок и без потерянных бит.
+ * Хэшируется сам long-ключ (два финализатора MurmurHash3 и двойное хэширование Кирша–Митценмахера),
+ * поэтому на запись не создаются ни строка ключа, ни её UTF-8 байты.
+ *
+ * Координаты в ключе округляются до 1e-4 градуса (как в {@link PackedKeySet}).
+ */
+public final class LockFreeBloomFilter implements DedupFilter {
+
+    private static final int MAGIC = 0x45544C42; // "ETLB"
+    private static final byte VERSION = 1;
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    // Сколько бит выставлено (для оценки заполнения и FPP)
+    private final LongAdder bitCount = new LongAdder();
+    // Сколько ключей добавлено (добавление, изменившее хотя бы один бит)
+    private final LongAdder keyCount = new LongAdder();
+
+    /**
+     * @param expectedEntries ожидаемое число ключей
+     * @param fpp             допустимая вероятность ложного срабатывания (0–1)
+     */
+    public LockFreeBloomFilter(long expectedEntries, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        }
+        long n = Math.max(1, expectedEntries);
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2 — те же формулы, что у Guava BloomFilter
+        long m = Math.max(64, (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        int words = Math.toIntExact((m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    private LockFreeBloomFilter(AtomicLongArray bits, int hashFunctions, long keys) {
+        this.bits = bits;
+        this.bitSize = (long) bits.length() << 6;
+        this.hashFunctions = hashFunctions;
+        for (int i = 0; i < bits.length(); i++) {
+            bitCount.add(Long.bitCount(bits.get(i)));
+        }
+        keyCount.add(keys);
+    }
+
+    @Override
+    public boolean mightContain(@NotNull LocalDate date, double latitude, double longitude) {
+        return mightContain(DedupKeys.pack(date, latitude, longitude));
+    }
+
+    @Override
+    public void put(@NotNull LocalDate date, double latitude, double longitude) {
+        put(DedupKeys.pack(date, latitude, longitude));
+    }
+
+    /** Может ли упакованный ключ быть в фильтре */
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashFunctions; i++) {
+            long idx = Math.floorMod(h1 + i * h2, bitSize);
+            if ((bits.get((int) (idx >>> 6)) & (1L << idx)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Добавляет упакованный ключ.
+     *
+     * @return true, если изменился хотя бы один бит (ключ точно не был добавлен раньше)
+     */
+    public boolean put(long key) {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x9E3779B97F4A7C15L);
+        boolean changed = false;
+        for (int i = 0; i < hashFunctions; i++) {
+            long idx = Math.floorMod(h1 + i * h2, bitSize);
+            if (setBit((int) (idx >>> 6), 1L << idx)) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            keyCount.increment();
+        }
+        return changed;
+    }
+
+    @Override
+    public long size() {
+        return keyCount.sum();
+    }
+
+    /** Доля выставленных бит */
+    public double fillRatio() {
+        return (double) bitCount.sum() / bitSize;
+    }
+
+    @Override
+    public double estimatedFpp() {
+        return Math.pow(fillRatio(), hashFunctions);
+    }
+
+    @NotNull
+    @Override
+    public DedupFilterType type() {
+        return DedupFilterType.LOCKFREE;
+    }
+
+    /**
+     * Пишет снимок бит. Параллельные put во время записи не ломают файл, но могут в него не попасть —
+     * как и у остальных фильтров, сохранять стоит после коммита пачки.
+     */
+    @Override
+    public void writeTo(@NotNull OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(hashFunctions);
+        out.writeLong(keyCount.sum());
+        out.writeInt(bits.length());
+        for (int i = 0; i < bits.length(); i++) {
+            out.writeLong(bits.get(i));
+        }
+        out.flush();
+    }
+
+    @NotNull
+    static LockFreeBloomFilter readFrom(@NotNull InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a lock-free bloom filter file");
+        }
+        int hashFunctions = in.readInt();
+        long keys = in.readLong();
+        int words = in.readInt();
+        if (hashFunctions < 1 || words < 1) {
+            throw new IOException("Invalid lock-free bloom filter header");
+        }
+        AtomicLongArray bits = new AtomicLongArray(words);
+        for (int i = 0; i < words; i++) {
+            bits.set(i, in.readLong());
+        }
+        return new LockFreeBloomFilter(bits, hashFunctions, keys);
+    }
+
+    /** Выставляет бит через CAS; true — если бит выставил именно этот вызов */
+    private boolean setBit(int word, long mask) {
+        while (true) {
+            long old = bits.get(word);
+            if ((old & mask) != 0) return false;
+            if (bits.compareAndSet(word, old, old | mask)) {
+                bitCount.increment();
+                return true;
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,215 @@
+package com.shtisu.etl.dedup;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Точный {@link DedupFilter}: множество упакованных ключей {@link DedupKeys#pack} в хэш-таблице
+ * с открытой адресацией (линейное пробирование) на примитивном массиве long.
+ *
+ * В отличие от BloomFilter ложноположительных срабатываний нет (ключи совпадают, только если точки совпадают
+ * с точностью 1e-4 градуса), на каждую запись не создаются строка и её UTF-8 байты, а поиск — один хэш
+ * и в среднем пара чтений из одного массива. В памяти ~10–21 байт на ключ (таблица заполнена от 37,5% до 75%).
+ *
+ * Файл: magic, версия, число ключей, затем ключи по возрастанию (беззнаково) — первый целиком,
+ * остальные как varint-разность с предыдущим. Дни одной точки идут подряд, поэтому типичный ключ
+ * занимает на диске 1 байт.
+ *
+ * Методы синхронизированы: множество общее для параллельных потоков записи и перестроения.
+ */
+public final class PackedKeySet implements DedupFilter {
+
+    private static final int MAGIC = 0x45544C4B; // "ETLK"
+    private static final byte VERSION = 1;
+
+    // Пустая ячейка; сам ключ 0 хранится отдельным флагом
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD = 0.75;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int size;
+    private boolean containsEmptyKey;
+
+    /**
+     * @param expectedEntries ожидаемое число ключей (таблица растёт и сверх него)
+     */
+    public PackedKeySet(long expectedEntries) {
+        this.table = new long[capacityFor(expectedEntries)];
+    }
+
+    @Override
+    public boolean mightContain(@NotNull LocalDate date, double latitude, double longitude) {
+        return contains(DedupKeys.pack(date, latitude, longitude));
+    }
+
+    @Override
+    public void put(@NotNull LocalDate date, double latitude, double longitude) {
+        add(DedupKeys.pack(date, latitude, longitude));
+    }
+
+    /** Есть ли упакованный ключ в множестве */
+    public synchronized boolean contains(long key) {
+        if (key == EMPTY) return containsEmptyKey;
+        int mask = table.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = table[i];
+            if (k == key) return true;
+            if (k == EMPTY) return false;
+        }
+    }
+
+    /**
+     * Добавляет упакованный ключ.
+     *
+     * @return true, если ключа ещё не было
+     */
+    public synchronized boolean add(long key) {
+        if (key == EMPTY) {
+            if (containsEmptyKey) return false;
+            containsEmptyKey = true;
+            size++;
+            return true;
+        }
+        if (!insert(table, key)) return false;
+        if (++size > table.length * MAX_LOAD) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public DedupFilterType type() {
+        return DedupFilterType.EXACT;
+    }
+
+    @Override
+    public void writeTo(@NotNull OutputStream os) throws IOException {
+        long[] keys = sortedKeys();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(keys.length);
+        long prev = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0) {
+                out.writeLong(keys[0]);
+            } else {
+                writeVarLong(out, keys[i] - prev);
+            }
+            prev = keys[i];
+        }
+        out.flush();
+    }
+
+    @NotNull
+    static PackedKeySet readFrom(@NotNull InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a packed key set file");
+        }
+        long count = in.readLong();
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid key count: " + count);
+        }
+        PackedKeySet set = new PackedKeySet(count);
+        long key = 0;
+        for (long i = 0; i < count; i++) {
+            key = i == 0 ? in.readLong() : key + readVarLong(in);
+            set.add(key);
+        }
+        return set;
+    }
+
+    /** Ключи по возрастанию в беззнаковом порядке */
+    @NotNull
+    private synchronized long[] sortedKeys() {
+        long[] keys = new long[size];
+        int n = 0;
+        if (containsEmptyKey) keys[n++] = EMPTY;
+        for (long k : table) {
+            if (k != EMPTY) keys[n++] = k;
+        }
+        // беззнаковая сортировка: переворачиваем знаковый бит, сортируем, возвращаем обратно
+        for (int i = 0; i < n; i++) keys[i] ^= Long.MIN_VALUE;
+        Arrays.sort(keys, 0, n);
+        for (int i = 0; i < n; i++) keys[i] ^= Long.MIN_VALUE;
+        return keys;
+    }
+
+    private static boolean insert(long[] table, long key) {
+        int mask = table.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            long k = table[i];
+            if (k == key) return false;
+            if (k == EMPTY) {
+                table[i] = key;
+                return true;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] next = new long[capacity];
+        for (long k : table) {
+            if (k != EMPTY) insert(next, k);
+        }
+        table = next;
+    }
+
+    private static int capacityFor(long expectedEntries) {
+        long needed = (long) Math.ceil(Math.max(1, expectedEntries) / MAX_LOAD) + 1;
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Too many keys for PackedKeySet: " + expectedEntries);
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    /** Финализатор MurmurHash3: соседние ключи (дни одной точки) расходятся по таблице */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
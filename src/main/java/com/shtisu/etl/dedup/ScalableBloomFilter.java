@@ -0,0 +1,331 @@
+package com.shtisu.etl.dedup;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Масштабируемый BloomFilter, разбитый по месяцам даты ключа.
+ *
+ * У каждого месяца своя цепочка BloomFilter: ключи добавляются в последний, проверяются по всем.
+ * Когда последний фильтр заполнен до расчётной ёмкости, в цепочку добавляется новый — вдвое больше
+ * и со вдвое меньшей вероятностью ложного срабатывания (Scalable Bloom Filters, Almeida и др.),
+ * поэтому суммарная вероятность по цепочке не превышает заданную fpp, сколько бы ключей ни пришло.
+ * Ёмкость первого фильтра нового месяца берётся из оценки HyperLogLog числа различных ключей
+ * последнего заполненного месяца: сетка точек от месяца к месяцу почти не меняется.
+ *
+ * Месяцы старше dedup.retainMonths (если задано) выводятся из оборота: их фильтры освобождаются,
+ * а ключи этих месяцев считаются уже записанными — архивные месяцы не перезагружаются.
+ */
+public final class ScalableBloomFilter implements DedupFilter {
+
+    private static final int MAGIC = 0x45544C53; // "ETLS"
+    private static final byte VERSION = 1;
+
+    // Во сколько раз растёт ёмкость следующего фильтра цепочки
+    private static final int GROWTH = 2;
+    // Во сколько раз уменьшается fpp следующего фильтра цепочки
+    private static final double TIGHTENING = 0.5;
+    private static final long MIN_CAPACITY = 1_024;
+
+    private static final HashFunction HLL_HASH = Hashing.murmur3_128();
+
+    private final double fpp;
+    private final long initialCapacity;
+    private final int retainMonths;
+
+    private final ConcurrentSkipListMap<YearMonth, MonthShard> shards = new ConcurrentSkipListMap<>();
+
+    // Месяцы раньше этого выведены из оборота (null — ни один)
+    private volatile YearMonth retiredBefore;
+
+    /**
+     * @param expectedEntries ожидаемое общее число ключей: первый месяц получает 1/12 от него (но не меньше 1024)
+     * @param fpp             допустимая суммарная вероятность ложного срабатывания для каждого месяца
+     * @param retainMonths    сколько последних месяцев держать в памяти, 0 — все
+     */
+    public ScalableBloomFilter(long expectedEntries, double fpp, int retainMonths) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        }
+        this.fpp = fpp;
+        this.initialCapacity = Math.max(MIN_CAPACITY, expectedEntries / 12);
+        this.retainMonths = Math.max(0, retainMonths);
+    }
+
+    @Override
+    public boolean mightContain(@NotNull LocalDate date, double latitude, double longitude) {
+        YearMonth month = YearMonth.from(date);
+        if (isRetired(month)) return true;
+        MonthShard shard = shards.get(month);
+        return shard != null && shard.mightContain(DedupKeys.of(date, latitude, longitude));
+    }
+
+    @Override
+    public void put(@NotNull LocalDate date, double latitude, double longitude) {
+        YearMonth month = YearMonth.from(date);
+        if (isRetired(month)) return;
+        String key = DedupKeys.of(date, latitude, longitude);
+        MonthShard shard = shards.get(month);
+        if (shard == null) {
+            shard = shards.computeIfAbsent(month, m -> new MonthShard(capacityForNewMonth(), fpp));
+            retireOldMonths();
+        }
+        shard.put(key);
+    }
+
+    /** Оценка числа различных добавленных ключей (по HyperLogLog всех месяцев в обороте) */
+    @Override
+    public long size() {
+        long total = 0;
+        for (MonthShard shard : shards.values()) {
+            total += shard.hll.estimate();
+        }
+        return total;
+    }
+
+    @NotNull
+    @Override
+    public DedupFilterType type() {
+        return DedupFilterType.SCALABLE;
+    }
+
+    /** Наибольшая по месяцам оценка вероятности ложного срабатывания при текущем заполнении */
+    @Override
+    public double estimatedFpp() {
+        double worst = 0;
+        for (MonthShard shard : shards.values()) {
+            worst = Math.max(worst, shard.estimatedFpp());
+        }
+        return worst;
+    }
+
+    /** Наибольшая по месяцам доля заполнения последнего фильтра цепочки (относительно расчётной ёмкости) */
+    public double fillRatio() {
+        double worst = 0;
+        for (MonthShard shard : shards.values()) {
+            SubFilter active = shard.active();
+            worst = Math.max(worst, (double) active.count.get() / active.capacity);
+        }
+        return worst;
+    }
+
+    /** Число месяцев в обороте */
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /** Общее число BloomFilter во всех цепочках */
+    public int subFilterCount() {
+        int n = 0;
+        for (MonthShard shard : shards.values()) {
+            n += shard.chain.size();
+        }
+        return n;
+    }
+
+    /** Месяц, раньше которого ключи выведены из оборота, или null */
+    public YearMonth retiredBefore() {
+        return retiredBefore;
+    }
+
+    /**
+     * Выводит из оборота месяцы раньше указанного: их фильтры освобождаются,
+     * ключи этих месяцев дальше считаются уже записанными.
+     */
+    public synchronized void retireBefore(@NotNull YearMonth month) {
+        if (retiredBefore != null && !month.isAfter(retiredBefore)) return;
+        retiredBefore = month;
+        shards.headMap(month).clear();
+    }
+
+    @Override
+    public void writeTo(@NotNull OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeDouble(fpp);
+        out.writeLong(initialCapacity);
+        out.writeInt(retainMonths);
+        YearMonth retired = retiredBefore;
+        out.writeInt(retired == null ? -1 : monthIndex(retired));
+
+        List<Map.Entry<YearMonth, MonthShard>> entries = new ArrayList<>(shards.entrySet());
+        out.writeInt(entries.size());
+        for (Map.Entry<YearMonth, MonthShard> e : entries) {
+            out.writeInt(monthIndex(e.getKey()));
+            e.getValue().writeTo(out);
+        }
+        out.flush();
+    }
+
+    @NotNull
+    static ScalableBloomFilter readFrom(@NotNull InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a scalable bloom filter file");
+        }
+        double fpp = in.readDouble();
+        long initialCapacity = in.readLong();
+        int retainMonths = in.readInt();
+        ScalableBloomFilter filter = new ScalableBloomFilter(initialCapacity * 12, fpp, retainMonths);
+        int retired = in.readInt();
+        filter.retiredBefore = retired < 0 ? null : month(retired);
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            YearMonth month = month(in.readInt());
+            filter.shards.put(month, MonthShard.readFrom(in));
+        }
+        return filter;
+    }
+
+    private boolean isRetired(YearMonth month) {
+        YearMonth retired = retiredBefore;
+        return retired != null && month.isBefore(retired);
+    }
+
+    /** Ёмкость первого фильтра нового месяца: оценка HyperLogLog последнего месяца в обороте */
+    private long capacityForNewMonth() {
+        Map.Entry<YearMonth, MonthShard> last = shards.lastEntry();
+        long estimate = last == null ? 0 : last.getValue().hll.estimate();
+        return Math.max(initialCapacity, estimate);
+    }
+
+    private void retireOldMonths() {
+        if (retainMonths == 0 || shards.isEmpty()) return;
+        YearMonth newest = shards.lastKey();
+        if (shards.firstKey().isBefore(newest.minusMonths(retainMonths - 1))) {
+            retireBefore(newest.minusMonths(retainMonths - 1));
+        }
+    }
+
+    private static int monthIndex(YearMonth m) {
+        return m.getYear() * 12 + m.getMonthValue() - 1;
+    }
+
+    private static YearMonth month(int index) {
+        return YearMonth.of(Math.floorDiv(index, 12), Math.floorMod(index, 12) + 1);
+    }
+
+    /** Цепочка BloomFilter одного месяца и HyperLogLog его ключей */
+    private static final class MonthShard {
+        private final HyperLogLog hll;
+        // Цепочка только растёт, чтения идут без блокировок
+        private final List<SubFilter> chain;
+
+        /**
+         * @param capacity ёмкость первого фильтра
+         * @param fpp      суммарная fpp цепочки: fpp0 * (1 + r + r^2 + ...) = fpp0 / (1 - r)
+         */
+        MonthShard(long capacity, double fpp) {
+            this(new HyperLogLog(), List.of(new SubFilter(capacity, fpp * (1 - TIGHTENING))));
+        }
+
+        private MonthShard(HyperLogLog hll, List<SubFilter> chain) {
+            this.hll = hll;
+            this.chain = new CopyOnWriteArrayList<>(chain);
+        }
+
+        boolean mightContain(String key) {
+            // последний фильтр самый большой — с него и начинаем
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                if (chain.get(i).filter.mightContain(key)) return true;
+            }
+            return false;
+        }
+
+        void put(String key) {
+            hll.offer(HLL_HASH.hashUnencodedChars(key).asLong());
+            if (mightContain(key)) return;
+            SubFilter active = active();
+            if (active.filter.put(key) && active.count.incrementAndGet() >= active.capacity) {
+                grow(active);
+            }
+        }
+
+        SubFilter active() {
+            return chain.get(chain.size() - 1);
+        }
+
+        double estimatedFpp() {
+            double none = 1;
+            for (SubFilter s : chain) {
+                none *= 1 - s.filter.expectedFpp();
+            }
+            return 1 - none;
+        }
+
+        private synchronized void grow(SubFilter full) {
+            if (active() != full) return; // уже вырос в другом потоке
+            // новый фильтр не меньше оценки числа ключей месяца: если месяц оказался намного больше ожидаемого,
+            // цепочка не растёт по одному удвоению на каждом шаге
+            long capacity = Math.max(full.capacity * GROWTH, hll.estimate());
+            chain.add(new SubFilter(capacity, full.fpp * TIGHTENING));
+        }
+
+        synchronized void writeTo(DataOutputStream out) throws IOException {
+            hll.writeTo(out);
+            out.writeInt(chain.size());
+            for (SubFilter s : chain) {
+                out.writeLong(s.capacity);
+                out.writeDouble(s.fpp);
+                out.writeLong(s.count.get());
+                s.filter.writeTo(out);
+            }
+        }
+
+        static MonthShard readFrom(DataInputStream in) throws IOException {
+            HyperLogLog hll = HyperLogLog.readFrom(in);
+            int n = in.readInt();
+            List<SubFilter> chain = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                long capacity = in.readLong();
+                double fpp = in.readDouble();
+                long count = in.readLong();
+                BloomFilter<CharSequence> filter = BloomFilter.readFrom(in, Funnels.stringFunnel(StandardCharsets.UTF_8));
+                chain.add(new SubFilter(filter, capacity, fpp, count));
+            }
+            if (n == 0) throw new IOException("Empty bloom filter chain");
+            return new MonthShard(hll, chain);
+        }
+    }
+
+    /** Один BloomFilter цепочки с расчётной ёмкостью и числом добавленных ключей */
+    private static final class SubFilter {
+        final BloomFilter<CharSequence> filter;
+        final long capacity;
+        final double fpp;
+        final AtomicLong count;
+
+        SubFilter(long capacity, double fpp) {
+            this(BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity, fpp), capacity, fpp, 0);
+        }
+
+        SubFilter(BloomFilter<CharSequence> filter, long capacity, double fpp, long count) {
+            this.filter = filter;
+            this.capacity = capacity;
+            this.fpp = fpp;
+            this.count = new AtomicLong(count);
+        }
+    }
+}
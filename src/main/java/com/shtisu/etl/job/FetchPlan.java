@@ -0,0 +1,152 @@
+package com.shtisu.etl.job;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * План запросов задания: отдельные точки и тайлы сетки × куски периода по chunkDays дней.
+ *
+ * Сетка (узлы bbox с шагом step) режется на квадратные тайлы по tileSize × tileSize соседних узлов;
+ * один тайл — один запрос к API с несколькими координатами, и его записи пишутся одной пачкой.
+ * Запросы не хранятся списком, а вычисляются по номеру ({@link #get(long)}), поэтому память не зависит
+ * от размера сетки, а Spring Batch может делить план на диапазоны номеров.
+ *
+ * Порядок: сначала отдельные точки, затем тайлы полосами по широте (внутри полосы — по долготе),
+ * внутри тайла — узлы по широте, затем по долготе; все куски периода одного тайла идут подряд.
+ * Так соседние запросы пишут соседние ключи (latitude, longitude, date) — индекс и страницы таблицы
+ * заполняются локально, а не вразброс по всей сетке.
+ */
+public final class FetchPlan implements Iterable<FetchTask> {
+
+    private final double[] pointLatitudes;
+    private final double[] pointLongitudes;
+    private final JobSpec.Grid grid;
+    private final long gridRows;
+    private final long gridCols;
+    private final int tileSize;
+    private final long tileRows;
+    private final long tileCols;
+    private final LocalDate start;
+    private final LocalDate end;
+    private final int chunkDays;
+    private final long chunks;
+
+    private FetchPlan(JobSpec spec, LocalDate end) {
+        List<JobSpec.Location> locations = spec.getLocations();
+        this.pointLatitudes = new double[locations.size()];
+        this.pointLongitudes = new double[locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            pointLatitudes[i] = locations.get(i).getLatitude();
+            pointLongitudes[i] = locations.get(i).getLongitude();
+        }
+        this.grid = spec.getGrid();
+        if (grid != null) {
+            // шаг считается по индексу, чтобы не накапливать ошибку округления
+            this.gridRows = (long) Math.floor((grid.getMaxLatitude() - grid.getMinLatitude()) / grid.getStep() + 1e-9) + 1;
+            this.gridCols = (long) Math.floor((grid.getMaxLongitude() - grid.getMinLongitude()) / grid.getStep() + 1e-9) + 1;
+            this.tileSize = grid.getTileSize();
+        } else {
+            this.gridRows = 0;
+            this.gridCols = 0;
+            this.tileSize = 1;
+        }
+        this.tileRows = (gridRows + tileSize - 1) / tileSize;
+        this.tileCols = (gridCols + tileSize - 1) / tileSize;
+        this.start = spec.getStartDate();
+        this.end = end;
+        this.chunkDays = spec.getChunkDays();
+        this.chunks = (ChronoUnit.DAYS.between(start, end) + chunkDays) / chunkDays;
+    }
+
+    /**
+     * План задания. Конец периода в будущем обрезается до сегодняшнего дня, как и в CLI.
+     */
+    @NotNull
+    public static FetchPlan of(@NotNull JobSpec spec) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate end = spec.getEndDate().isAfter(today) ? today : spec.getEndDate();
+        if (end.isBefore(spec.getEndDate())) {
+            System.out.println("endDate не может быть в будущем. Использую " + today);
+        }
+        return new FetchPlan(spec, end);
+    }
+
+    /** Число запросов */
+    public long size() {
+        return groupCount() * chunks;
+    }
+
+    /** Число точек (отдельных и узлов сетки) */
+    public long pointCount() {
+        return pointLatitudes.length + gridRows * gridCols;
+    }
+
+    /** Запрос с номером index (0 ≤ index < size()) */
+    @NotNull
+    public FetchTask get(long index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Task " + index + " of " + size());
+        }
+        long group = index / chunks;
+        LocalDate from = start.plusDays((index % chunks) * chunkDays);
+        LocalDate to = from.plusDays(chunkDays - 1L);
+        if (to.isAfter(end)) to = end;
+
+        if (group < pointLatitudes.length) {
+            int p = (int) group;
+            return new FetchTask(pointLatitudes[p], pointLongitudes[p], from, to);
+        }
+        long tile = group - pointLatitudes.length;
+        long row0 = (tile / tileCols) * tileSize;
+        long col0 = (tile % tileCols) * tileSize;
+        int rows = (int) Math.min(tileSize, gridRows - row0);
+        int cols = (int) Math.min(tileSize, gridCols - col0);
+        double[] lats = new double[rows * cols];
+        double[] lons = new double[rows * cols];
+        int k = 0;
+        for (int i = 0; i < rows; i++) {
+            double lat = round(grid.getMinLatitude() + (row0 + i) * grid.getStep());
+            for (int j = 0; j < cols; j++) {
+                lats[k] = lat;
+                lons[k] = round(grid.getMinLongitude() + (col0 + j) * grid.getStep());
+                k++;
+            }
+        }
+        return new FetchTask(lats, lons, from, to);
+    }
+
+    /** Запросы по порядку; каждый вычисляется при обращении */
+    @NotNull
+    @Override
+    public Iterator<FetchTask> iterator() {
+        return new Iterator<>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public FetchTask next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+
+    // отдельные точки + тайлы сетки
+    private long groupCount() {
+        return pointLatitudes.length + tileRows * tileCols;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 1e6) / 1e6;
+    }
+}
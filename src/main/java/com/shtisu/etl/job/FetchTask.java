@@ -0,0 +1,71 @@
+package com.shtisu.etl.job;
+
+import java.time.LocalDate;
+import java.util.StringJoiner;
+
+/**
+ * Один запрос к API: одна точка или тайл соседних ячеек сетки (несколько координат в одном запросе)
+ * и один кусок периода.
+ */
+public final class FetchTask {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final LocalDate start;
+    private final LocalDate end;
+
+    public FetchTask(double latitude, double longitude, LocalDate start, LocalDate end) {
+        this(new double[]{latitude}, new double[]{longitude}, start, end);
+    }
+
+    public FetchTask(double[] latitudes, double[] longitudes, LocalDate start, LocalDate end) {
+        if (latitudes.length == 0 || latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("latitudes and longitudes must be non-empty and of equal length");
+        }
+        this.latitudes = latitudes.clone();
+        this.longitudes = longitudes.clone();
+        this.start = start;
+        this.end = end;
+    }
+
+    /** Число координат в запросе */
+    public int size() {
+        return latitudes.length;
+    }
+
+    public double[] getLatitudes() {
+        return latitudes.clone();
+    }
+
+    public double[] getLongitudes() {
+        return longitudes.clone();
+    }
+
+    public LocalDate getStart() {
+        return start;
+    }
+
+    public LocalDate getEnd() {
+        return end;
+    }
+
+    /** Ключ запроса в файле контрольных точек: широты;долготы;start;end (координаты тайла через запятую) */
+    public String key() {
+        StringJoiner lats = new StringJoiner(",");
+        StringJoiner lons = new StringJoiner(",");
+        for (int i = 0; i < latitudes.length; i++) {
+            lats.add(String.valueOf(latitudes[i]));
+            lons.add(String.valueOf(longitudes[i]));
+        }
+        return lats + ";" + lons + ";" + start + ";" + end;
+    }
+
+    @Override
+    public String toString() {
+        if (latitudes.length == 1) {
+            return String.format("%.4f, %.4f %s..%s", latitudes[0], longitudes[0], start, end);
+        }
+        return String.format("тайл %d точек %.4f..%.4f, %.4f..%.4f %s..%s", latitudes.length,
+                latitudes[0], latitudes[latitudes.length - 1], longitudes[0], longitudes[longitudes.length - 1], start, end);
+    }
+}
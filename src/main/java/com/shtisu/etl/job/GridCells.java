@@ -0,0 +1,200 @@
+package com.shtisu.etl.job;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Выученное соответствие запрошенных координат ячейкам сетки модели. Open-Meteo привязывает запрос
+ * к ближайшей ячейке своей сетки и возвращает её координаты, с ними и сохраняются записи; поэтому две близкие
+ * точки дают одни и те же строки. После первого ответа точка запрашивается по координатам своей ячейки,
+ * и запросы разных точек одной ячейки совпадают (см. {@link #canonical}).
+ *
+ * Запрошенные координаты приводятся к 1e-4 градуса, как в упакованном ключе дедупликации, поэтому
+ * 55.03 и 55.030000000000001 — одна точка. Точка, которая сама ещё не запрашивалась, относится к ближайшей
+ * выученной ячейке, если отстоит от неё по каждой оси меньше чем на половину шага сетки (gridStep задания);
+ * шаг не задан — не дальше, чем уже запрошенные точки отстояли от своих ячеек (это нижняя оценка половины шага,
+ * поэтому точка не попадёт в чужую ячейку, но и не каждая точка ячейки будет узнана). Сетка предполагается
+ * регулярной: если API по-разному привязывает точки в разных регионах (разные модели), шаг задавать не нужно.
+ * Файл — строки {@code latitude;longitude;cellLatitude;cellLongitude};
+ * {@link #save()} переписывает его через временный файл и атомарное переименование, как {@link WatermarkStore}.
+ */
+public final class GridCells {
+
+    // Точность запрошенных координат: 1e-4 градуса (~11 м)
+    private static final double COORD_SCALE = 10_000;
+
+    private final Path path;
+    private final Map<Long, double[]> cells;
+    // Различные выученные ячейки по их координатам (с точностью 1e-4): поиск ближайшей по полосе широт
+    private final NavigableMap<Long, double[]> distinct = new TreeMap<>();
+    // Шаг сетки в градусах, 0 — не задан
+    private final double step;
+    // Наибольшее отклонение запрошенной точки от своей ячейки по широте и долготе
+    private double maxLatOffset;
+    private double maxLonOffset;
+    private boolean dirty;
+
+    private GridCells(Path path, Map<Long, double[]> cells, double step) {
+        this.path = path;
+        this.cells = cells;
+        this.step = step;
+        for (Map.Entry<Long, double[]> e : cells.entrySet()) {
+            long k = e.getKey();
+            index((int) (k >> 32) / COORD_SCALE, (int) k / COORD_SCALE, e.getValue());
+        }
+    }
+
+    /** Читает выученные ячейки без заданного шага сетки */
+    @NotNull
+    public static GridCells open(@NotNull Path path) throws IOException {
+        return open(path, 0);
+    }
+
+    /**
+     * Читает выученные ячейки (файла может не быть — тогда ни одна ячейка не известна).
+     *
+     * @param step шаг сетки модели в градусах; 0 — не задан, радиус ячейки оценивается по выученным точкам
+     */
+    @NotNull
+    public static GridCells open(@NotNull Path path, double step) throws IOException {
+        if (step < 0) {
+            throw new IllegalArgumentException("gridStep must not be negative: " + step);
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Map<Long, double[]> cells = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] f = line.trim().split(";");
+                if (f.length != 4) continue;
+                try {
+                    cells.put(key(Double.parseDouble(f[0]), Double.parseDouble(f[1])),
+                            new double[]{Double.parseDouble(f[2]), Double.parseDouble(f[3])});
+                } catch (NumberFormatException e) {
+                    System.err.println("Пропускаю повреждённую строку ячеек сетки " + path + ": " + line);
+                }
+            }
+        }
+        return new GridCells(path, cells, step);
+    }
+
+    /**
+     * Координаты ячейки {latitude, longitude} для точки: выученной для неё самой или ближайшей выученной
+     * в пределах половины шага сетки; null, если ячейка точки не известна
+     */
+    @Nullable
+    public synchronized double[] cellOf(double latitude, double longitude) {
+        double[] cell = resolve(latitude, longitude);
+        return cell == null ? null : cell.clone();
+    }
+
+    /** Запоминает ячейку, к которой API привязал запрошенную точку */
+    public synchronized void learn(double latitude, double longitude, double cellLatitude, double cellLongitude) {
+        double[] cell = {cellLatitude, cellLongitude};
+        double[] old = cells.put(key(latitude, longitude), cell);
+        if (old == null || old[0] != cellLatitude || old[1] != cellLongitude) {
+            dirty = true;
+        }
+        index(latitude, longitude, cell);
+    }
+
+    /**
+     * Запрос с координатами известных ячеек вместо запрошенных (неизвестные координаты остаются как есть).
+     *
+     * @return тот же запрос, если ни одна его точка ещё не запрашивалась
+     */
+    @NotNull
+    public synchronized FetchTask canonical(@NotNull FetchTask task) {
+        double[] lats = task.getLatitudes();
+        double[] lons = task.getLongitudes();
+        boolean known = false;
+        for (int i = 0; i < lats.length; i++) {
+            double[] cell = resolve(lats[i], lons[i]);
+            if (cell != null) {
+                lats[i] = cell[0];
+                lons[i] = cell[1];
+                known = true;
+            }
+        }
+        return known ? new FetchTask(lats, lons, task.getStart(), task.getEnd()) : task;
+    }
+
+    public synchronized int size() {
+        return cells.size();
+    }
+
+    /** Записывает ячейки на диск, если появились новые */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+        List<String> lines = new ArrayList<>(cells.size());
+        for (Map.Entry<Long, double[]> e : cells.entrySet()) {
+            long k = e.getKey();
+            lines.add((int) (k >> 32) / COORD_SCALE + ";" + (int) k / COORD_SCALE
+                    + ";" + e.getValue()[0] + ";" + e.getValue()[1]);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    /** Ячейка точки: выученная для неё самой, иначе ближайшая выученная в пределах радиуса ячейки */
+    @Nullable
+    private double[] resolve(double latitude, double longitude) {
+        double[] cell = cells.get(key(latitude, longitude));
+        if (cell != null) return cell;
+        double latRadius = step > 0 ? step / 2 : maxLatOffset;
+        double lonRadius = step > 0 ? step / 2 : maxLonOffset;
+        if (latRadius == 0 || lonRadius == 0) return null;
+
+        // ключи упорядочены по широте: полоса [latitude - r, latitude + r] со всеми долготами
+        long from = Math.round((latitude - latRadius) * COORD_SCALE) - 1;
+        long to = Math.round((latitude + latRadius) * COORD_SCALE) + 1;
+        double[] nearest = null;
+        double best = Double.MAX_VALUE;
+        for (double[] candidate : distinct.subMap(from << 32, true, to << 32 | 0xFFFF_FFFFL, true).values()) {
+            double dLat = Math.abs(candidate[0] - latitude);
+            double dLon = Math.abs(candidate[1] - longitude);
+            if (!within(dLat, latRadius) || !within(dLon, lonRadius)) continue;
+            double distance = dLat * dLat + dLon * dLon;
+            if (distance < best) {
+                best = distance;
+                nearest = candidate;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Внутри радиуса ячейки: при заданном шаге строго меньше половины шага (точка на границе может
+     * отойти к соседней ячейке), при оценке по выученным точкам — не дальше самой далёкой из них
+     */
+    private boolean within(double offset, double radius) {
+        return step > 0 ? offset < radius : offset <= radius;
+    }
+
+    /** Добавляет ячейку в индекс и обновляет оценку её радиуса по запрошенной точке */
+    private void index(double latitude, double longitude, double[] cell) {
+        distinct.putIfAbsent(key(cell[0], cell[1]), cell);
+        maxLatOffset = Math.max(maxLatOffset, Math.abs(latitude - cell[0]));
+        maxLonOffset = Math.max(maxLonOffset, Math.abs(longitude - cell[1]));
+    }
+
+    /** Координаты с точностью 1e-4: широта в старших 32 битах, долгота в младших */
+    private static long key(double latitude, double longitude) {
+        return Math.round(latitude * COORD_SCALE) << 32 | (Math.round(longitude * COORD_SCALE) & 0xFFFF_FFFFL);
+    }
+}
@@ -0,0 +1,126 @@
+package com.shtisu.etl.job;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Файл контрольных точек задания: по строке на запрос (точка + кусок периода), записи которого
+ * уже лежат в хранилищах. При повторном запуске такие запросы пропускаются.
+ *
+ * Файл только дописывается, пачками: {@link #markAll} пишет все строки пачки одним write и одним fsync.
+ * Строка, оборванная при падении процесса, при чтении пропускается — её запрос просто выполнится снова.
+ */
+public final class JobCheckpoint implements AutoCloseable {
+
+    private final Path path;
+    private final Set<String> done;
+    private final FileChannel channel;
+
+    private JobCheckpoint(Path path, Set<String> done, FileChannel channel) {
+        this.path = path;
+        this.done = done;
+        this.channel = channel;
+    }
+
+    /** Открывает файл контрольных точек (создаёт, если его нет) и читает уже выполненные запросы */
+    @NotNull
+    public static JobCheckpoint open(@NotNull Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Set<String> done = new HashSet<>();
+        if (Files.exists(path)) {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            // последняя строка без перевода строки могла оборваться — не доверяем ей
+            boolean complete = Files.size(path) == 0 || endsWithNewline(path);
+            for (int i = 0; i < lines.size(); i++) {
+                if (i == lines.size() - 1 && !complete) break;
+                String line = lines.get(i).trim();
+                if (isValid(line)) done.add(line);
+            }
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (Files.size(path) > 0 && !endsWithNewline(path)) {
+            // отделяем оборванную строку от новых
+            channel.write(ByteBuffer.wrap("\n".getBytes(StandardCharsets.UTF_8)));
+        }
+        return new JobCheckpoint(path, done, channel);
+    }
+
+    /** Выполнен ли запрос в прошлых запусках */
+    public synchronized boolean isDone(@NotNull FetchTask task) {
+        return done.contains(task.key());
+    }
+
+    /** Отмечает запросы выполненными: одна запись в файл и один fsync на всю пачку */
+    public synchronized void markAll(@NotNull Collection<FetchTask> tasks) throws IOException {
+        if (tasks.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        for (FetchTask task : tasks) {
+            if (done.add(task.key())) {
+                sb.append(task.key()).append('\n');
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /** Сколько запросов отмечено выполненными */
+    public synchronized int size() {
+        return done.size();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Строка — целый ключ {@link FetchTask#key()}, а не обрывок */
+    private static boolean isValid(String line) {
+        String[] f = line.split(";");
+        if (f.length != 4) return false;
+        try {
+            String[] lats = f[0].split(",");
+            String[] lons = f[1].split(",");
+            if (lats.length != lons.length) return false;
+            for (int i = 0; i < lats.length; i++) {
+                Double.parseDouble(lats[i]);
+                Double.parseDouble(lons[i]);
+            }
+            LocalDate.parse(f[2]);
+            LocalDate.parse(f[3]);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean endsWithNewline(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() == 0) return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            ch.read(last, ch.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.shtisu.etl.job;
+
+import com.shtisu.etl.dedup.DedupStats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Итог пакетного задания: сколько запросов выполнено, сколько записей получено и записано, скорость.
+ */
+public class JobReport {
+
+    private final String name;
+    private final int tasks;
+    private final int skippedTasks;
+    private final int failedTasks;
+    private final long fetchedRecords;
+    private final long fetchNanos;
+    private final long elapsedNanos;
+    private final List<SinkResult> sinks;
+
+    JobReport(String name, int tasks, int skippedTasks, int failedTasks, long fetchedRecords, long fetchNanos, long elapsedNanos,
+              List<SinkResult> sinks) {
+        this.name = name;
+        this.tasks = tasks;
+        this.skippedTasks = skippedTasks;
+        this.failedTasks = failedTasks;
+        this.fetchedRecords = fetchedRecords;
+        this.fetchNanos = fetchNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.sinks = new ArrayList<>(sinks);
+    }
+
+    /** Итог одного хранилища: записано строк (-1 — неизвестно) и счётчики дедупликации */
+    public static final class SinkResult {
+        private final String sink;
+        private final long writtenRows;
+        private final DedupStats dedupStats;
+
+        SinkResult(String sink, long writtenRows, DedupStats dedupStats) {
+            this.sink = sink;
+            this.writtenRows = writtenRows;
+            this.dedupStats = dedupStats;
+        }
+
+        public String getSink() {
+            return sink;
+        }
+
+        public long getWrittenRows() {
+            return writtenRows;
+        }
+
+        public DedupStats getDedupStats() {
+            return dedupStats;
+        }
+    }
+
+    public int getTasks() {
+        return tasks;
+    }
+
+    /** Запросы, пропущенные по файлу контрольных точек (выполнены в прошлых запусках) */
+    public int getSkippedTasks() {
+        return skippedTasks;
+    }
+
+    public int getFailedTasks() {
+        return failedTasks;
+    }
+
+    public long getFetchedRecords() {
+        return fetchedRecords;
+    }
+
+    public List<SinkResult> getSinks() {
+        return sinks;
+    }
+
+    /** Получено записей в секунду за всё время задания */
+    public double recordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : fetchedRecords * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public boolean isSuccessful() {
+        return failedTasks == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Задание %s: запросов %d, с ошибкой %d, пропущено по контрольной точке %d%n",
+                name, tasks, failedTasks, skippedTasks));
+        sb.append(String.format("Получено записей: %d за %.1f с (%.0f записей/с), средний запрос к API %.0f мс%n",
+                fetchedRecords, elapsedNanos / 1e9, recordsPerSecond(),
+                tasks == 0 ? 0.0 : fetchNanos / 1e6 / tasks));
+        for (SinkResult s : sinks) {
+            sb.append(String.format("  %s: записано %s, дедупликация: %s%n", s.getSink(),
+                    s.getWrittenRows() < 0 ? "?" : String.valueOf(s.getWrittenRows()), s.getDedupStats()));
+        }
+        return sb.toString();
+    }
+}
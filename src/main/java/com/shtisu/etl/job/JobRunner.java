@@ -0,0 +1,432 @@
+package com.shtisu.etl.job;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.config.AppProperties;
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.dedup.DedupStats;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.model.OpenMeteoResponse;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import com.shtisu.etl.writer.ConcurrentFinalRecordWriter;
+import com.shtisu.etl.writer.CsvItemWriter;
+import com.shtisu.etl.writer.DataBaseItemWriter;
+import com.shtisu.etl.writer.DbWriteMode;
+import com.shtisu.etl.writer.FinalRecordWriter;
+import com.shtisu.etl.writer.LazyRecordWriter;
+import com.shtisu.etl.writer.ParallelDataBaseItemWriter;
+import com.shtisu.etl.writer.TeeRecordWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Выполняет {@link JobSpec} без диалога: для каждой точки (или тайла сетки) и каждого куска периода запрашивает API
+ * ({@link OpenMeteoApiClient}), превращает ответ в записи ({@link FinalRecordItemProcessor}) и пишет их
+ * во все хранилища задания (те же {@link CsvItemWriter} и {@link DataBaseItemWriter}, что и в CLI).
+ *
+ * Запросы идут в parallelism.fetchThreads потоков и пишут в {@link ConcurrentFinalRecordWriter}, поэтому
+ * потоки запросов не ждут записи и не мешают друг другу. Если хранилищ несколько, за ним стоит развилка
+ * {@link TeeRecordWriter}: каждая пачка пишется во все хранилища параллельно, у каждого своя очередь.
+ * Ошибка запроса отмечается в отчёте и не останавливает задание, ошибка записи — останавливает.
+ *
+ * Если задан checkpointPath, каждые checkpointEvery выполненных запросов хранилища сбрасываются
+ * ({@link ConcurrentFinalRecordWriter#flush()}) и эти запросы одной пачкой дописываются в файл контрольных
+ * точек ({@link JobCheckpoint}). Повторный запуск после падения пропускает отмеченные запросы и продолжает
+ * с остальных; неудавшиеся запросы не отмечаются и повторяются.
+ *
+ * Если задан gridCellsPath, точки запрашиваются по координатам уже известных ячеек сетки модели ({@link GridCells}):
+ * повторный запрос той же ячейки за тот же кусок периода в задании пропускается, а контрольные точки
+ * отмечаются по координатам ячейки — близкая точка в следующем запуске тоже не пойдёт в API.
+ */
+public class JobRunner {
+
+    // Сколько пачек может ждать записи (в обёртке и в очереди каждого хранилища развилки)
+    static final int SINK_QUEUE_CAPACITY = 4;
+
+    // Сколько последних запросов ячеек помнится для пропуска повторов
+    static final int CELL_TASKS_LIMIT = 100_000;
+
+    /**
+     * Запросы по известным ячейкам, отправленные в этом запуске: повтор ячейки за тот же кусок периода пропускается.
+     * Помнятся только последние {@link #CELL_TASKS_LIMIT} — повтор забытой ячейки просто запрашивается ещё раз.
+     * Неудавшийся запрос забывается, чтобы следующие точки ячейки запросили её снова; повторы, пропущенные
+     * пока он выполнялся, считаются неудавшимися — они не отмечены в контрольных точках и загрузятся в следующем запуске.
+     */
+    private static final class CellTasks {
+        // ключ запроса → сколько его повторов пропущено
+        private final Map<String, int[]> sent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                return size() > CELL_TASKS_LIMIT;
+            }
+        };
+
+        /** true, если запрос уже отправлен (повтор отмечается), иначе запоминает его */
+        synchronized boolean skip(String key) {
+            int[] duplicates = sent.get(key);
+            if (duplicates != null) {
+                duplicates[0]++;
+                return true;
+            }
+            sent.put(key, new int[1]);
+            return false;
+        }
+
+        /** Забывает неудавшийся запрос; возвращает, сколько его повторов было пропущено */
+        synchronized int failed(String key) {
+            int[] duplicates = sent.remove(key);
+            return duplicates == null ? 0 : duplicates[0];
+        }
+    }
+
+    private final OpenMeteoApiClient client;
+    private final FinalRecordItemProcessor processor;
+
+    public JobRunner(OpenMeteoApiClient client, FinalRecordItemProcessor processor) {
+        this.client = client;
+        this.processor = processor;
+    }
+
+    /**
+     * Хранилище задания. Открывается при первой записи ({@link LazyRecordWriter}): фильтр дедупликации
+     * и пул соединений поднимаются в потоке-писателе параллельно с первыми запросами к API.
+     */
+    static final class OpenSink {
+        final String name;
+        final String type;
+        final LazyRecordWriter<FinalRecordWriter> writer;
+
+        OpenSink(String name, String type, LazyRecordWriter<FinalRecordWriter> writer) {
+            this.name = name;
+            this.type = type;
+            this.writer = writer;
+        }
+
+        FinalRecordWriter writer() {
+            return writer;
+        }
+
+        DedupStats dedupStats() {
+            FinalRecordWriter opened = writer.getIfOpen();
+            if (opened instanceof CsvItemWriter csv) return csv.getDedupStats();
+            if (opened instanceof DataBaseItemWriter db) return db.getDedupStats();
+            return new DedupStats(type);
+        }
+
+        long writtenRows() {
+            FinalRecordWriter opened = writer.getIfOpen();
+            if (opened instanceof CsvItemWriter csv) return csv.getWrittenRows();
+            if (opened instanceof DataBaseItemWriter db) return db.getInsertedRows();
+            return 0;
+        }
+    }
+
+    /**
+     * Пачка выполненных запросов, ожидающих контрольной точки. Запрос попадает сюда, когда его записи
+     * уже отданы всем хранилищам; commit() сначала забирает пачку, затем сбрасывает хранилища — поэтому
+     * всё, что отмечено в файле, уже записано.
+     */
+    private static final class Checkpointer {
+        final JobCheckpoint checkpoint;
+        final ConcurrentFinalRecordWriter output;
+        final int every;
+        final ConcurrentLinkedQueue<FetchTask> pending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pendingCount = new AtomicInteger();
+        final ReentrantLock lock = new ReentrantLock();
+
+        Checkpointer(JobCheckpoint checkpoint, ConcurrentFinalRecordWriter output, int every) {
+            this.checkpoint = checkpoint;
+            this.output = output;
+            this.every = every;
+        }
+
+        /** Отмечает запрос выполненным; пачку фиксирует один поток, остальные не ждут */
+        void completed(FetchTask task) throws Exception {
+            pending.add(task);
+            if (pendingCount.incrementAndGet() >= every && lock.tryLock()) {
+                try {
+                    commit();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        void commit() throws Exception {
+            List<FetchTask> batch = new ArrayList<>();
+            for (FetchTask t; (t = pending.poll()) != null; ) {
+                batch.add(t);
+                pendingCount.decrementAndGet();
+            }
+            if (batch.isEmpty()) return;
+            output.flush();
+            checkpoint.markAll(batch);
+        }
+    }
+
+    /**
+     * Выполняет задание и возвращает отчёт. Ход выполнения печатается в System.out.
+     *
+     * План обходится лениво ({@link FetchPlan}), в работе одновременно не больше 2 × fetchThreads
+     * запросов, а отправленные запросы ячеек помнятся не больше {@link #CELL_TASKS_LIMIT}, поэтому память
+     * не зависит от размера сетки.
+     *
+     * @throws Exception если не удалось открыть хранилище или записать в него
+     */
+    @NotNull
+    public JobReport run(@NotNull JobSpec spec) throws Exception {
+        JobSpecLoader.validate(spec);
+        FetchPlan plan = plan(spec);
+        JobCheckpoint checkpoint = spec.getCheckpointPath() == null ? null : JobCheckpoint.open(Paths.get(spec.getCheckpointPath()));
+        GridCells cells = spec.getGridCellsPath() == null ? null : GridCells.open(Paths.get(spec.getGridCellsPath()), spec.getGridCellStep());
+        CellTasks cellTasks = new CellTasks();
+        // повторы ячеек, пропущенные из-за её неудавшегося запроса: они не загружены
+        AtomicInteger lostDuplicates = new AtomicInteger();
+        long total = plan.size();
+        int threads = (int) Math.min(spec.getParallelism().getFetchThreads(), Math.max(1, total));
+        System.out.printf("Задание %s: %d точек, %d запросов в %d потоков, хранилищ %d%s%n",
+                spec.getName(), plan.pointCount(), total, threads, spec.getSinks().size(),
+                checkpoint != null && checkpoint.size() > 0 ? ", выполнено ранее: " + checkpoint.size() : "");
+
+        long started = System.nanoTime();
+        List<OpenSink> sinks = new ArrayList<>();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong fetched = new AtomicLong();
+        AtomicLong fetchNanos = new AtomicLong();
+        AtomicReference<Exception> writeFailure = new AtomicReference<>();
+        long progressStep = Math.max(1, total / 100);
+        int submitted = 0;
+        int skipped = 0;
+        int sameCell = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "job-fetch");
+            t.setDaemon(true);
+            return t;
+        });
+        // ограничивает число запросов в работе: следующий берётся из плана, только когда освободилось место
+        Semaphore inFlight = new Semaphore(threads * 2);
+        ConcurrentFinalRecordWriter output = null;
+        try {
+            List<FinalRecordWriter> writers = new ArrayList<>();
+            int bufferSize = Integer.MAX_VALUE;
+            for (JobSpec.Sink sink : spec.getSinks()) {
+                OpenSink opened = open(sink);
+                sinks.add(opened);
+                writers.add(opened.writer());
+                bufferSize = Math.min(bufferSize, sink.getBatchSize());
+            }
+            // несколько хранилищ — развилка, у каждого своя очередь и свой поток записи
+            FinalRecordWriter target = writers.size() == 1 ? writers.get(0) : new TeeRecordWriter(writers, SINK_QUEUE_CAPACITY);
+            ConcurrentFinalRecordWriter out = new ConcurrentFinalRecordWriter(target, bufferSize, SINK_QUEUE_CAPACITY);
+            output = out;
+            Checkpointer checkpointer = checkpoint == null ? null
+                    : new Checkpointer(checkpoint, out, spec.getCheckpointEvery());
+            for (FetchTask planned : plan) {
+                FetchTask task = cells == null ? planned : cells.canonical(planned);
+                if (checkpoint != null && (checkpoint.isDone(task) || task != planned && checkpoint.isDone(planned))) {
+                    skipped++;
+                    continue;
+                }
+                if (task != planned && cellTasks.skip(task.key())) {
+                    skipped++;
+                    sameCell++;
+                    continue;
+                }
+                inFlight.acquire();
+                // ошибка записи: новые запросы не начинаем
+                if (writeFailure.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                submitted++;
+                long position = skipped + submitted;
+                pool.execute(() -> {
+                    try {
+                        List<FinalRecord> records;
+                        long t0 = System.nanoTime();
+                        try {
+                            records = fetchRecords(client, processor, task, cells);
+                        } catch (Exception e) {
+                            int lost = task != planned ? cellTasks.failed(task.key()) : 0;
+                            lostDuplicates.addAndGet(lost);
+                            failed.addAndGet(1 + lost);
+                            System.err.println("Ошибка запроса " + task + ": " + e.getMessage());
+                            progress(position, total, progressStep, task, -1);
+                            return;
+                        } finally {
+                            fetchNanos.addAndGet(System.nanoTime() - t0);
+                        }
+                        fetched.addAndGet(records.size());
+                        out.write(records);
+                        if (checkpointer != null) {
+                            checkpointer.completed(task);
+                            // ячейки, выученные этим запросом: отмечаем и по их координатам
+                            FetchTask learned = cells == null ? task : cells.canonical(task);
+                            if (learned != task && !learned.key().equals(task.key())) {
+                                checkpointer.completed(learned);
+                            }
+                        }
+                        progress(position, total, progressStep, task, records.size());
+                    } catch (Exception e) {
+                        writeFailure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            // последняя неполная пачка контрольной точки
+            if (writeFailure.get() == null && checkpointer != null) {
+                checkpointer.commit();
+            }
+        } finally {
+            pool.shutdownNow();
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+            if (cells != null) {
+                try {
+                    cells.save();
+                } catch (IOException e) {
+                    System.err.println("Не удалось сохранить ячейки сетки: " + e.getMessage());
+                }
+            }
+            // обёртка закрывает и хранилища; если до неё не дошло — закрываем открытые хранилища сами
+            List<AutoCloseable> toClose = new ArrayList<>();
+            if (output != null) {
+                toClose.add(output);
+            } else {
+                for (OpenSink sink : sinks) toClose.add(sink.writer());
+            }
+            for (AutoCloseable c : toClose) {
+                try {
+                    c.close();
+                } catch (Exception e) {
+                    writeFailure.compareAndSet(null, e);
+                }
+            }
+        }
+        if (writeFailure.get() != null) {
+            throw writeFailure.get();
+        }
+        skipped -= lostDuplicates.get();
+        sameCell -= lostDuplicates.get();
+        if (skipped > 0) {
+            System.out.println("Пропущено выполненных ранее запросов: " + (skipped - sameCell));
+        }
+        if (sameCell > 0) {
+            System.out.println("Пропущено повторов уже запрошенных ячеек сетки: " + sameCell);
+        }
+
+        List<JobReport.SinkResult> results = new ArrayList<>();
+        for (OpenSink sink : sinks) {
+            results.add(new JobReport.SinkResult(sink.name, sink.writtenRows(), sink.dedupStats()));
+        }
+        return new JobReport(spec.getName(), submitted, skipped, failed.get(), fetched.get(), fetchNanos.get(),
+                System.nanoTime() - started, results);
+    }
+
+    /**
+     * Раскладывает задание на запросы: отдельные точки и тайлы сетки × куски периода по chunkDays дней
+     * (см. {@link FetchPlan}).
+     */
+    @NotNull
+    public static FetchPlan plan(@NotNull JobSpec spec) {
+        return FetchPlan.of(spec);
+    }
+
+    /**
+     * Выполняет запрос и превращает ответ в записи. Тайл загружается одним запросом с несколькими
+     * координатами, записи всех его точек возвращаются одной пачкой.
+     */
+    @NotNull
+    public static List<FinalRecord> fetchRecords(@NotNull OpenMeteoApiClient client,
+                                                 @NotNull FinalRecordItemProcessor processor,
+                                                 @NotNull FetchTask task) throws IOException, InterruptedException {
+        return fetchRecords(client, processor, task, null);
+    }
+
+    /**
+     * То же, и запоминает в cells ячейку сетки каждой запрошенной точки (ответы тайла идут в порядке координат).
+     */
+    @NotNull
+    public static List<FinalRecord> fetchRecords(@NotNull OpenMeteoApiClient client,
+                                                 @NotNull FinalRecordItemProcessor processor,
+                                                 @NotNull FetchTask task,
+                                                 @Nullable GridCells cells) throws IOException, InterruptedException {
+        double[] lats = task.getLatitudes();
+        double[] lons = task.getLongitudes();
+        if (task.size() == 1) {
+            OpenMeteoResponse response = client.fetch(lats[0], lons[0], task.getStart(), task.getEnd());
+            if (cells != null) {
+                cells.learn(lats[0], lons[0], response.getLatitude(), response.getLongitude());
+            }
+            return processor.processRange(response);
+        }
+        List<OpenMeteoResponse> responses = client.fetchAll(lats, lons, task.getStart(), task.getEnd());
+        List<FinalRecord> records = new ArrayList<>();
+        for (int i = 0; i < responses.size(); i++) {
+            if (cells != null) {
+                cells.learn(lats[i], lons[i], responses.get(i).getLatitude(), responses.get(i).getLongitude());
+            }
+            records.addAll(processor.processRange(responses.get(i)));
+        }
+        return records;
+    }
+
+    static OpenSink open(JobSpec.Sink sink) {
+        LazyRecordWriter<FinalRecordWriter> writer = new LazyRecordWriter<>(() -> openWriter(sink));
+        if ("csv".equalsIgnoreCase(sink.getType())) {
+            return new OpenSink("csv " + sink.getPath(), "csv", writer);
+        }
+        return new OpenSink("db (" + writeMode(sink).name().toLowerCase() + ")", "db", writer);
+    }
+
+    /**
+     * Открывает writer хранилища задания: {@link CsvItemWriter} для csv, {@link DataBaseItemWriter}
+     * (или {@link ParallelDataBaseItemWriter} при writerThreads > 1) для db. Writer не потокобезопасен.
+     */
+    @NotNull
+    public static FinalRecordWriter openWriter(@NotNull JobSpec.Sink sink) throws IOException {
+        if ("csv".equalsIgnoreCase(sink.getType())) {
+            return new CsvItemWriter(Paths.get(sink.getPath()), Paths.get(sink.getFilterPath()),
+                    sink.getExpectedEntries(), sink.getFpp());
+        }
+        DbWriteMode mode = writeMode(sink);
+        int threads = sink.getWriterThreads() > 0 ? sink.getWriterThreads() : AppProperties.getInt("db.writerThreads", 1);
+        return threads > 1
+                ? new ParallelDataBaseItemWriter(DataSourceFactory.getDataSource(), Paths.get(sink.getFilterPath()),
+                        sink.getExpectedEntries(), sink.getFpp(), sink.getBatchSize(), mode, threads)
+                : new DataBaseItemWriter(Paths.get(sink.getFilterPath()), sink.getExpectedEntries(), sink.getFpp(),
+                        sink.getBatchSize(), mode);
+    }
+
+    private static DbWriteMode writeMode(JobSpec.Sink sink) {
+        return DbWriteMode.parse(sink.getWriteMode() != null
+                ? sink.getWriteMode() : AppProperties.get("db.writeMode", "insert"));
+    }
+
+    private static void progress(long done, long total, long step, FetchTask task, int records) {
+        if (done % step == 0 || done == total) {
+            System.out.printf("[%d/%d] %s: %s%n", done, total, task,
+                    records < 0 ? "ошибка" : records + " записей");
+        }
+    }
+}
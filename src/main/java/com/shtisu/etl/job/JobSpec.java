@@ -0,0 +1,122 @@
+package com.shtisu.etl.job;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Описание пакетного задания (JSON или YAML, см. {@link JobSpecLoader}): какие точки и за какой период
+ * загрузить из API, куда писать и сколькими потоками.
+ *
+ * Пример YAML:
+ * <pre>
+ * name: novosibirsk-2024
+ * startDate: 2024-01-01
+ * endDate: 2024-12-31
+ * chunkDays: 31
+ * locations:
+ *   - {latitude: 55.03, longitude: 82.92}
+ * grid: {minLatitude: 50, maxLatitude: 56, minLongitude: 80, maxLongitude: 90, step: 0.5, tileSize: 4}
+ * parallelism: {fetchThreads: 4}
+ * checkpointPath: cache/novosibirsk-2024.checkpoint
+ * gridCellsPath: cache/grid-cells
+ * sinks:
+ *   - {type: csv, path: data/weather.csv, filterPath: cache/CsvWeather.bloom}
+ *   - {type: db, filterPath: cache/DataBaseWeather.bloom, writeMode: copy, writerThreads: 4}
+ * </pre>
+ */
+@Data
+public class JobSpec {
+
+    /** Имя задания (для отчёта) */
+    private String name = "weather-job";
+    /** Адрес Open Meteo API */
+    private String apiBaseUrl = "https://api.open-meteo.com";
+    private LocalDate startDate;
+    private LocalDate endDate;
+    /** Период режется на запросы не длиннее chunkDays дней */
+    private int chunkDays = 31;
+    /** Отдельные точки */
+    private List<Location> locations = new ArrayList<>();
+    /** Прямоугольная сетка точек (необязательно) */
+    private Grid grid;
+    private Parallelism parallelism = new Parallelism();
+    /** Файл контрольных точек (необязательно): выполненные запросы пропускаются при повторном запуске */
+    private String checkpointPath;
+    /** Через сколько выполненных запросов хранилища сбрасываются и запросы отмечаются в файле контрольных точек */
+    private int checkpointEvery = 50;
+    /**
+     * Файл выученных ячеек сетки модели (необязательно, см. {@link GridCells}): точки, попадающие в уже
+     * загруженную ячейку, запрашиваются по координатам ячейки, а повторы в одном задании пропускаются
+     */
+    private String gridCellsPath;
+    /**
+     * Шаг сетки модели в градусах (необязательно): точка относится к выученной ячейке ближе половины шага,
+     * даже если сама ещё не запрашивалась; 0 — радиус ячейки оценивается по уже запрошенным точкам
+     */
+    private double gridCellStep;
+    /** Режим демона (weather-job --daemon): расписание обновления и водяные знаки точек */
+    private Refresh refresh = new Refresh();
+    private List<Sink> sinks = new ArrayList<>();
+
+    @Data
+    public static class Location {
+        private double latitude;
+        private double longitude;
+    }
+
+    /**
+     * Узлы сетки от min до max включительно с шагом step градусов. Соседние узлы объединяются в тайлы
+     * tileSize × tileSize, каждый тайл загружается одним запросом с несколькими координатами.
+     */
+    @Data
+    public static class Grid {
+        private double minLatitude;
+        private double maxLatitude;
+        private double minLongitude;
+        private double maxLongitude;
+        private double step;
+        private int tileSize = 1;
+    }
+
+    @Data
+    public static class Parallelism {
+        /** Сколько запросов к API выполняется одновременно */
+        private int fetchThreads = 1;
+        /** Для Spring Batch: на сколько диапазонов точек делится задание; 0 — по числу fetchThreads */
+        private int partitions;
+        /** Для Spring Batch: сколько запросов к API в одном чанке (между фиксациями прогресса) */
+        private int chunkSize = 10;
+    }
+
+    /**
+     * Обновление по расписанию: каждые intervalMinutes (плюс случайно до jitterMinutes, чтобы демоны
+     * не ходили в API одновременно) догружаются дни после водяного знака каждой точки
+     * по вчерашний день включительно (lagDays = 1 — сегодняшние данные ещё неполные); endDate демон не использует.
+     */
+    @Data
+    public static class Refresh {
+        private long intervalMinutes = 180;
+        private long jitterMinutes = 10;
+        /** Файл водяных знаков (обязателен для демона) */
+        private String watermarkPath;
+        private int lagDays = 1;
+    }
+
+    /** Хранилище: csv (path + filterPath) или db (filterPath, batchSize, writeMode, writerThreads) */
+    @Data
+    public static class Sink {
+        private String type;
+        private String path;
+        private String filterPath;
+        private long expectedEntries = 100_000;
+        private double fpp = 0.001;
+        private int batchSize = 1_000;
+        /** insert, copy или refresh; по умолчанию — db.writeMode */
+        private String writeMode;
+        /** Потоки записи в базу; 0 — db.writerThreads */
+        private int writerThreads;
+    }
+}
@@ -0,0 +1,135 @@
+package com.shtisu.etl.job;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jetbrains.annotations.NotNull;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Читает {@link JobSpec} из JSON (*.json) или YAML (*.yaml, *.yml) и проверяет его.
+ */
+public final class JobSpecLoader {
+
+    // Тайл 10 × 10 — 100 координат в одном запросе: длина URL и ответа остаются разумными
+    static final int MAX_TILE_SIZE = 10;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+
+    private JobSpecLoader() {
+    }
+
+    @NotNull
+    public static JobSpec load(@NotNull Path path) throws IOException {
+        String text = Files.readString(path);
+        String name = path.getFileName().toString().toLowerCase();
+        JobSpec spec;
+        try {
+            if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+                Object tree = yaml().load(text);
+                spec = MAPPER.convertValue(tree, JobSpec.class);
+            } else {
+                spec = MAPPER.readValue(text, JobSpec.class);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid job spec " + path + ": " + e.getMessage(), e);
+        }
+        validate(spec);
+        return spec;
+    }
+
+    /**
+     * Читает и проверяет задание в JSON (тело запроса REST-сервиса).
+     *
+     * @throws IllegalArgumentException если JSON не разбирается или задание некорректно
+     */
+    @NotNull
+    public static JobSpec parseJson(@NotNull String json) {
+        JobSpec spec;
+        try {
+            spec = MAPPER.readValue(json, JobSpec.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid job spec: " + e.getMessage(), e);
+        }
+        validate(spec);
+        return spec;
+    }
+
+    static void validate(@NotNull JobSpec spec) {
+        if (spec.getStartDate() == null || spec.getEndDate() == null) {
+            throw new IllegalArgumentException("startDate and endDate are required");
+        }
+        if (spec.getEndDate().isBefore(spec.getStartDate())) {
+            throw new IllegalArgumentException("endDate is before startDate");
+        }
+        if (spec.getChunkDays() < 1) {
+            throw new IllegalArgumentException("chunkDays must be positive");
+        }
+        if (spec.getLocations().isEmpty() && spec.getGrid() == null) {
+            throw new IllegalArgumentException("locations or grid is required");
+        }
+        if (spec.getGrid() != null && spec.getGrid().getStep() <= 0) {
+            throw new IllegalArgumentException("grid.step must be positive");
+        }
+        if (spec.getGrid() != null && (spec.getGrid().getTileSize() < 1 || spec.getGrid().getTileSize() > MAX_TILE_SIZE)) {
+            throw new IllegalArgumentException("grid.tileSize must be between 1 and " + MAX_TILE_SIZE);
+        }
+        if (spec.getGridCellStep() < 0) {
+            throw new IllegalArgumentException("gridCellStep must not be negative");
+        }
+        if (spec.getSinks().isEmpty()) {
+            throw new IllegalArgumentException("at least one sink is required");
+        }
+        if (spec.getParallelism().getFetchThreads() < 1) {
+            throw new IllegalArgumentException("parallelism.fetchThreads must be positive");
+        }
+        if (spec.getCheckpointEvery() < 1) {
+            throw new IllegalArgumentException("checkpointEvery must be positive");
+        }
+        if (spec.getParallelism().getPartitions() < 0 || spec.getParallelism().getChunkSize() < 1) {
+            throw new IllegalArgumentException("parallelism.partitions must be >= 0 and chunkSize positive");
+        }
+        for (JobSpec.Sink sink : spec.getSinks()) {
+            if (sink.getFilterPath() == null) {
+                throw new IllegalArgumentException("sink.filterPath is required");
+            }
+            if ("csv".equalsIgnoreCase(sink.getType())) {
+                if (sink.getPath() == null) throw new IllegalArgumentException("csv sink requires path");
+            } else if (!"db".equalsIgnoreCase(sink.getType())) {
+                throw new IllegalArgumentException("Unknown sink type: " + sink.getType() + " (expected csv or db)");
+            }
+        }
+    }
+
+    /**
+     * YAML без неявного распознавания дат: SnakeYAML превратил бы 2024-01-01 в java.util.Date,
+     * а дата должна остаться строкой для LocalDate.
+     */
+    private static Yaml yaml() {
+        LoaderOptions options = new LoaderOptions();
+        DumperOptions dumper = new DumperOptions();
+        return new Yaml(new SafeConstructor(options), new Representer(dumper), dumper, options, new Resolver() {
+            @Override
+            protected void addImplicitResolvers() {
+                addImplicitResolver(Tag.BOOL, BOOL, "yYnNtTfFoO");
+                addImplicitResolver(Tag.INT, INT, "-+0123456789");
+                addImplicitResolver(Tag.FLOAT, FLOAT, "-+0123456789.");
+                addImplicitResolver(Tag.MERGE, MERGE, "<");
+                addImplicitResolver(Tag.NULL, NULL, "~nN\0");
+                addImplicitResolver(Tag.NULL, EMPTY, null);
+            }
+        });
+    }
+}
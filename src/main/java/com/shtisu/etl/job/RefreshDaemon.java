@@ -0,0 +1,264 @@
+package com.shtisu.etl.job;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import com.shtisu.etl.writer.ConcurrentFinalRecordWriter;
+import com.shtisu.etl.writer.FinalRecordWriter;
+import com.shtisu.etl.writer.TeeRecordWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Демон инкрементального обновления: один раз открывает клиента, хранилища и фильтры дедупликации
+ * и по расписанию ({@link JobSpec.Refresh}) догружает точки задания (locations) — для каждой только дни
+ * после её водяного знака ({@link WatermarkStore}).
+ *
+ * Точки обновляются параллельно, не больше parallelism.fetchThreads одновременно; куски периода одной точки
+ * идут по порядку, и на первой ошибке точка останавливается до следующего обновления. Водяные знаки
+ * сохраняются только после сброса хранилищ, поэтому они никогда не опережают записанные данные.
+ * Обновления не перекрываются: следующее планируется после окончания предыдущего.
+ *
+ * Если задан gridCellsPath, точки запрашиваются по координатам известных ячеек сетки модели ({@link GridCells}),
+ * и точки одной ячейки с одинаковым водяным знаком загружаются одним запросом.
+ */
+public class RefreshDaemon implements AutoCloseable {
+
+    private final JobSpec spec;
+    private final OpenMeteoApiClient client;
+    private final FinalRecordItemProcessor processor;
+    private final Clock clock;
+    private final WatermarkStore watermarks;
+    private final GridCells cells;
+    private final List<JobRunner.OpenSink> sinks = new ArrayList<>();
+    private final ConcurrentFinalRecordWriter output;
+    private final ExecutorService pool;
+    private final ScheduledExecutorService scheduler;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean closed;
+
+    public RefreshDaemon(@NotNull JobSpec spec,
+                         @NotNull OpenMeteoApiClient client,
+                         @NotNull FinalRecordItemProcessor processor,
+                         @NotNull Clock clock) throws IOException {
+        JobSpecLoader.validate(spec);
+        if (spec.getRefresh().getWatermarkPath() == null) {
+            throw new IllegalArgumentException("refresh.watermarkPath is required for daemon mode");
+        }
+        if (spec.getLocations().isEmpty()) {
+            throw new IllegalArgumentException("daemon mode refreshes locations; none given");
+        }
+        if (spec.getRefresh().getIntervalMinutes() < 1 || spec.getRefresh().getJitterMinutes() < 0
+                || spec.getRefresh().getLagDays() < 0) {
+            throw new IllegalArgumentException("refresh.intervalMinutes must be positive, jitterMinutes and lagDays >= 0");
+        }
+        if (spec.getGrid() != null) {
+            System.err.println("Демон обновляет только locations, сетка задания пропускается");
+        }
+        this.spec = spec;
+        this.client = client;
+        this.processor = processor;
+        this.clock = clock;
+        this.watermarks = WatermarkStore.open(Paths.get(spec.getRefresh().getWatermarkPath()));
+        this.cells = spec.getGridCellsPath() == null ? null : GridCells.open(Paths.get(spec.getGridCellsPath()), spec.getGridCellStep());
+
+        List<FinalRecordWriter> writers = new ArrayList<>();
+        int bufferSize = Integer.MAX_VALUE;
+        for (JobSpec.Sink sink : spec.getSinks()) {
+            JobRunner.OpenSink opened = JobRunner.open(sink);
+            sinks.add(opened);
+            writers.add(opened.writer());
+            bufferSize = Math.min(bufferSize, sink.getBatchSize());
+        }
+        FinalRecordWriter target = writers.size() == 1
+                ? writers.get(0) : new TeeRecordWriter(writers, JobRunner.SINK_QUEUE_CAPACITY);
+        this.output = new ConcurrentFinalRecordWriter(target, bufferSize, JobRunner.SINK_QUEUE_CAPACITY);
+        this.pool = Executors.newFixedThreadPool(spec.getParallelism().getFetchThreads(), r -> {
+            Thread t = new Thread(r, "refresh-fetch");
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "refresh-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        // при остановке запланированное, но не начатое обновление отменяется
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler = scheduler;
+    }
+
+    /** Запускает обновления: первое сразу, следующие — через интервал с разбросом */
+    public void start() {
+        schedule(0);
+    }
+
+    /** Ждёт остановки демона ({@link #close()}) */
+    public void awaitTermination() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Одно обновление всех точек.
+     *
+     * @return отчёт: запросы, точки без новых дней (skipped), ошибки; записано строк — с запуска демона
+     * @throws Exception если не удалось записать в хранилище или сохранить водяные знаки
+     */
+    @NotNull
+    public synchronized JobReport tick() throws Exception {
+        long started = System.nanoTime();
+        LocalDate target = LocalDate.now(clock).minusDays(spec.getRefresh().getLagDays());
+        AtomicInteger tasks = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong fetched = new AtomicLong();
+        AtomicLong fetchNanos = new AtomicLong();
+        int upToDate = 0;
+
+        List<JobSpec.Location> pending = new ArrayList<>();
+        List<Future<LocalDate>> futures = new ArrayList<>();
+        // точки одной ячейки с одним и тем же первым днём делят загрузку
+        Map<String, Future<LocalDate>> byCell = new HashMap<>();
+        for (JobSpec.Location location : spec.getLocations()) {
+            LocalDate from = nextDay(location);
+            if (from.isAfter(target)) {
+                upToDate++;
+                continue;
+            }
+            double[] cell = cells == null ? null : cells.cellOf(location.getLatitude(), location.getLongitude());
+            double latitude = cell == null ? location.getLatitude() : cell[0];
+            double longitude = cell == null ? location.getLongitude() : cell[1];
+            pending.add(location);
+            futures.add(byCell.computeIfAbsent(latitude + ";" + longitude + ";" + from, k -> pool.submit(
+                    () -> refresh(latitude, longitude, from, target, tasks, failed, fetched, fetchNanos))));
+        }
+
+        List<LocalDate> loaded = new ArrayList<>(futures.size());
+        Exception writeFailure = null;
+        for (Future<LocalDate> f : futures) {
+            try {
+                loaded.add(f.get());
+            } catch (ExecutionException e) {
+                if (writeFailure == null) writeFailure = (Exception) e.getCause();
+                loaded.add(null);
+            }
+        }
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+        // водяные знаки сдвигаются только после того, как записи дошли до хранилищ
+        output.flush();
+        boolean advanced = false;
+        for (int i = 0; i < pending.size(); i++) {
+            if (loaded.get(i) != null) {
+                watermarks.advance(pending.get(i).getLatitude(), pending.get(i).getLongitude(), loaded.get(i));
+                advanced = true;
+            }
+        }
+        if (advanced) {
+            watermarks.save();
+        }
+        if (cells != null) {
+            cells.save();
+        }
+
+        List<JobReport.SinkResult> results = new ArrayList<>();
+        for (JobRunner.OpenSink sink : sinks) {
+            results.add(new JobReport.SinkResult(sink.name, sink.writtenRows(), sink.dedupStats()));
+        }
+        return new JobReport(spec.getName(), tasks.get(), upToDate, failed.get(), fetched.get(), fetchNanos.get(),
+                System.nanoTime() - started, results);
+    }
+
+    /** Первый день, который нужно загрузить для точки */
+    private LocalDate nextDay(JobSpec.Location location) {
+        LocalDate mark = watermarks.get(location.getLatitude(), location.getLongitude());
+        if (mark == null || mark.isBefore(spec.getStartDate())) {
+            return spec.getStartDate();
+        }
+        return mark.plusDays(1);
+    }
+
+    /**
+     * Загружает дни точки [from, to] кусками по chunkDays и возвращает последний загруженный день
+     * (null — ни один кусок не загрузился). Ошибка записи пробрасывается.
+     */
+    private LocalDate refresh(double latitude, double longitude, LocalDate from, LocalDate to, AtomicInteger tasks,
+                              AtomicInteger failed, AtomicLong fetched, AtomicLong fetchNanos) throws Exception {
+        LocalDate last = null;
+        for (LocalDate start = from; !start.isAfter(to); start = start.plusDays(spec.getChunkDays())) {
+            LocalDate end = start.plusDays(spec.getChunkDays() - 1L);
+            FetchTask task = new FetchTask(latitude, longitude, start, end.isAfter(to) ? to : end);
+            tasks.incrementAndGet();
+            List<FinalRecord> records;
+            long t0 = System.nanoTime();
+            try {
+                records = JobRunner.fetchRecords(client, processor, task, cells);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("Ошибка обновления " + task + ": " + e.getMessage());
+                return last;
+            } finally {
+                fetchNanos.addAndGet(System.nanoTime() - t0);
+            }
+            fetched.addAndGet(records.size());
+            output.write(records);
+            last = task.getEnd();
+        }
+        return last;
+    }
+
+    private void schedule(long delayMillis) {
+        if (closed) return;
+        scheduler.schedule(() -> {
+            try {
+                System.out.print(tick());
+            } catch (Exception e) {
+                System.err.println("Ошибка обновления: " + e.getMessage());
+            }
+            schedule(nextDelayMillis());
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private long nextDelayMillis() {
+        JobSpec.Refresh refresh = spec.getRefresh();
+        long jitter = refresh.getJitterMinutes() == 0 ? 0
+                : ThreadLocalRandom.current().nextLong(TimeUnit.MINUTES.toMillis(refresh.getJitterMinutes()) + 1);
+        return TimeUnit.MINUTES.toMillis(refresh.getIntervalMinutes()) + jitter;
+    }
+
+    /** Останавливает расписание, дожидается текущего обновления и закрывает хранилища */
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            pool.shutdownNow();
+            try {
+                output.close();
+            } finally {
+                stopped.countDown();
+            }
+        }
+    }
+}
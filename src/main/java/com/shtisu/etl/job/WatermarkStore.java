@@ -0,0 +1,83 @@
+package com.shtisu.etl.job;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Водяные знаки обновления: для каждой точки — последний день, данные за который уже лежат во всех хранилищах.
+ * Файл — строки {@code latitude;longitude;date}; {@link #save()} переписывает его целиком через временный файл
+ * и атомарное переименование, поэтому после падения на диске остаётся либо старая, либо новая версия.
+ */
+public final class WatermarkStore {
+
+    private final Path path;
+    private final Map<String, LocalDate> marks;
+
+    private WatermarkStore(Path path, Map<String, LocalDate> marks) {
+        this.path = path;
+        this.marks = marks;
+    }
+
+    /** Читает водяные знаки (файла может не быть — тогда их нет ни у одной точки) */
+    @NotNull
+    public static WatermarkStore open(@NotNull Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Map<String, LocalDate> marks = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] f = line.trim().split(";");
+                if (f.length != 3) continue;
+                try {
+                    marks.put(key(Double.parseDouble(f[0]), Double.parseDouble(f[1])), LocalDate.parse(f[2]));
+                } catch (NumberFormatException | DateTimeParseException e) {
+                    System.err.println("Пропускаю повреждённую строку водяных знаков " + path + ": " + line);
+                }
+            }
+        }
+        return new WatermarkStore(path, marks);
+    }
+
+    /** Последний загруженный день точки или null, если точка ещё не загружалась */
+    @Nullable
+    public synchronized LocalDate get(double latitude, double longitude) {
+        return marks.get(key(latitude, longitude));
+    }
+
+    /** Сдвигает водяной знак точки вперёд (назад никогда не сдвигается) */
+    public synchronized void advance(double latitude, double longitude, @NotNull LocalDate date) {
+        marks.merge(key(latitude, longitude), date, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    public synchronized int size() {
+        return marks.size();
+    }
+
+    /** Записывает водяные знаки на диск */
+    public synchronized void save() throws IOException {
+        List<String> lines = new ArrayList<>(marks.size());
+        for (Map.Entry<String, LocalDate> e : marks.entrySet()) {
+            lines.add(e.getKey() + ";" + e.getValue());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(double latitude, double longitude) {
+        return latitude + ";" + longitude;
+    }
+}
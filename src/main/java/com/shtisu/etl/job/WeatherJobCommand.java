@@ -0,0 +1,88 @@
+package com.shtisu.etl.job;
+
+import com.google.common.hash.Hashing;
+import com.shtisu.etl.batch.WeatherBatchJob;
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.metrics.MetricsServer;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.Callable;
+
+/**
+ * Неинтерактивный запуск: {@code weather-job [--spring-batch | --daemon] <spec.yaml|spec.json>}.
+ * Код возврата 0 — всё загружено, 1 — часть запросов к API не удалась, 2 — ошибка задания или записи.
+ */
+@Command(name = "weather-job", mixinStandardHelpOptions = true,
+        description = "Загружает данные Open Meteo по файлу задания (JSON/YAML) в CSV и/или базу данных.")
+public class WeatherJobCommand implements Callable<Integer> {
+
+    @Parameters(index = "0", paramLabel = "SPEC", description = "Файл задания (.json, .yaml, .yml)")
+    private Path specPath;
+
+    @Option(names = "--plan", description = "Только показать число запросов, ничего не загружая")
+    private boolean planOnly;
+
+    @Option(names = "--daemon", description = "Работать постоянно и догружать новые дни точек по расписанию (refresh)")
+    private boolean daemon;
+
+    @Option(names = "--spring-batch", description = "Выполнить как задание Spring Batch с перезапуском упавших диапазонов")
+    private boolean springBatch;
+
+    public static void main(String[] args) {
+        System.exit(execute(args));
+    }
+
+    /** Выполняет команду и возвращает код возврата */
+    public static int execute(String... args) {
+        return new CommandLine(new WeatherJobCommand()).execute(args);
+    }
+
+    @Override
+    public Integer call() {
+        // metrics.port задан — метрики конвейера доступны на /actuator/prometheus, пока работает команда
+        try (MetricsServer ignored = MetricsServer.startIfEnabled()) {
+            JobSpec spec = JobSpecLoader.load(specPath);
+            if (planOnly) {
+                FetchPlan plan = JobRunner.plan(spec);
+                System.out.printf("Задание %s: %d точек, %d запросов%n", spec.getName(), plan.pointCount(), plan.size());
+                return 0;
+            }
+            if (daemon) {
+                RefreshDaemon refreshDaemon = new RefreshDaemon(spec, new OpenMeteoApiClient(spec.getApiBaseUrl()),
+                        new FinalRecordItemProcessor(), Clock.systemUTC());
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        refreshDaemon.close();
+                    } catch (Exception e) {
+                        System.err.println("Ошибка остановки демона: " + e.getMessage());
+                    }
+                }, "refresh-shutdown"));
+                refreshDaemon.start();
+                refreshDaemon.awaitTermination();
+                return 0;
+            }
+            if (springBatch) {
+                long specHash = Hashing.murmur3_128().hashBytes(Files.readAllBytes(specPath)).asLong();
+                JobExecution execution = WeatherBatchJob.run(spec, specPath.toAbsolutePath().normalize().toString(), specHash);
+                return execution.getStatus() == BatchStatus.COMPLETED ? 0 : 1;
+            }
+            JobReport report = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor())
+                    .run(spec);
+            System.out.print(report);
+            return report.isSuccessful() ? 0 : 1;
+        } catch (Exception e) {
+            System.err.println("Ошибка задания: " + e.getMessage());
+            e.printStackTrace();
+            return 2;
+        }
+    }
+}
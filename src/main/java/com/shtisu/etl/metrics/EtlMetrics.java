@@ -0,0 +1,77 @@
+package com.shtisu.etl.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Общий реестр метрик конвейера (Micrometer, формат Prometheus). Этапы регистрируют в нём свои таймеры
+ * и счётчики при загрузке класса, поэтому метрики копятся и без HTTP-сервера; наружу их отдаёт
+ * {@link MetricsServer} (Spring Boot Actuator, /actuator/prometheus). У каждого контекста Spring свой
+ * реестр Actuator, подключённый к общему ({@link #attach}): он считает с момента запуска сервера.
+ *
+ * Метрики:
+ * <ul>
+ *   <li>etl.fetch (таймер, outcome=success|error) и etl.fetch.bytes — запросы к API и объём ответов;</li>
+ *   <li>etl.parse — разбор JSON; etl.process и etl.process.days — processRange и число дней,
+ *       время на день = etl_process_seconds_sum / etl_process_days_total;</li>
+ *   <li>etl.dedup.checked / positives / confirmed / false.positives (sink=csv|db) — проверки фильтра
+ *       дедупликации, доля попаданий и ложных срабатываний;</li>
+ *   <li>etl.csv.bytes и etl.csv.rows — запись в CSV;</li>
+ *   <li>etl.db.batch (отправка пачки) и etl.db.commit (mode=insert|copy|refresh), etl.db.batch.rows;</li>
+ *   <li>hikaricp.* — пул соединений (pool=etl-db, batch-repository).</li>
+ * </ul>
+ */
+public final class EtlMetrics {
+
+    // Реестр процесса: этапы регистрируют метрики здесь, а значения копят дочерние реестры
+    private static final CompositeMeterRegistry REGISTRY = new CompositeMeterRegistry();
+
+    // Живёт весь процесс и не отдаётся контекстам Spring — его никто не закрывает и не настраивает повторно
+    private static final PrometheusMeterRegistry PROMETHEUS = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    static {
+        REGISTRY.add(PROMETHEUS);
+    }
+
+    private EtlMetrics() {
+    }
+
+    @NotNull
+    public static MeterRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Подключает реестр контекста Spring (MetricsServer, WeatherServer) к реестру процесса: уже
+     * зарегистрированные метрики конвейера появляются в нём сразу, новые — по мере регистрации.
+     * {@link Attachment#close()} отключает реестр; закрывает его сам контекст.
+     */
+    @NotNull
+    public static Attachment attach(@NotNull MeterRegistry registry) {
+        REGISTRY.add(registry);
+        return new Attachment(registry);
+    }
+
+    /** Текущие значения всех метрик в текстовом формате Prometheus (с запуска процесса) */
+    @NotNull
+    public static String scrape() {
+        return PROMETHEUS.scrape();
+    }
+
+    /** Подключённый реестр контекста; отключается вместе с контекстом */
+    public static final class Attachment implements AutoCloseable {
+        private final MeterRegistry registry;
+
+        private Attachment(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void close() {
+            REGISTRY.remove(registry);
+        }
+    }
+}
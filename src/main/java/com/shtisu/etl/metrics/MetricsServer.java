@@ -0,0 +1,78 @@
+package com.shtisu.etl.metrics;
+
+import com.shtisu.etl.config.AppProperties;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.batch.BatchAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * HTTP-сервер метрик: минимальное приложение Spring Boot с Actuator, которое отдаёт метрики
+ * {@link EtlMetrics} на /actuator/prometheus (и /actuator/health). Базы данных и Spring Batch
+ * в этом контексте нет — только веб-сервер и эндпоинты.
+ *
+ * Запускается, если задан metrics.port (0 — свободный порт); останавливается в {@link #close()}.
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private MetricsServer(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Контекст сервера: свой реестр Actuator, подключённый к реестру конвейера {@link EtlMetrics}.
+     * На нём же построен REST-сервис (WeatherServer).
+     */
+    @SpringBootConfiguration(proxyBeanMethods = false)
+    @EnableAutoConfiguration(exclude = {DataSourceAutoConfiguration.class, BatchAutoConfiguration.class})
+    public static class Config {
+
+        @Bean
+        EtlMetrics.Attachment etlMetricsAttachment(PrometheusMeterRegistry registry) {
+            return EtlMetrics.attach(registry);
+        }
+    }
+
+    /** Сервер на порту metrics.port или null, если metrics.port не задан */
+    @Nullable
+    public static MetricsServer startIfEnabled() {
+        int port = AppProperties.getInt("metrics.port", -1);
+        return port < 0 ? null : start(port);
+    }
+
+    @NotNull
+    public static MetricsServer start(int port) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Config.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=" + port,
+                        "spring.main.banner-mode=off",
+                        "spring.main.register-shutdown-hook=false",
+                        "spring.config.name=metrics",
+                        "management.endpoints.web.exposure.include=prometheus,health")
+                .run();
+        MetricsServer server = new MetricsServer(context);
+        System.out.println("Метрики: http://localhost:" + server.getPort() + "/actuator/prometheus");
+        return server;
+    }
+
+    /** Фактический порт сервера */
+    public int getPort() {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
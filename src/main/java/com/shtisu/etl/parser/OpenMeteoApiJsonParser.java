@@ -1,13 +1,18 @@
 package com.shtisu.etl.parser;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shtisu.etl.metrics.EtlMetrics;
 import com.shtisu.etl.model.OpenMeteoResponse;
+import io.micrometer.core.instrument.Timer;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -20,8 +25,34 @@ public class OpenMeteoApiJsonParser {
             .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
+    // Время разбора одного ответа API
+    private static final Timer PARSE_TIMER = Timer.builder("etl.parse")
+            .description("JSON parsing of Open-Meteo responses")
+            .register(EtlMetrics.registry());
+
     public static OpenMeteoResponse parse(String json) throws IOException {
-        return MAPPER.readValue(json,OpenMeteoResponse.class );
+        long started = System.nanoTime();
+        try {
+            return MAPPER.readValue(json,OpenMeteoResponse.class );
+        } finally {
+            PARSE_TIMER.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Ответ на запрос с несколькими координатами — JSON-массив объектов (по одному на координату, в порядке запроса);
+     * на запрос с одной координатой API отвечает одним объектом.
+     */
+    public static List<OpenMeteoResponse> parseAll(String json) throws IOException {
+        if (json.stripLeading().startsWith("[")) {
+            long started = System.nanoTime();
+            try {
+                return MAPPER.readValue(json, new TypeReference<List<OpenMeteoResponse>>() { });
+            } finally {
+                PARSE_TIMER.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+        return List.of(parse(json));
     }
 
 }
@@ -1,10 +1,13 @@
 package com.shtisu.etl.processor;
 
+import com.shtisu.etl.metrics.EtlMetrics;
 import com.shtisu.etl.model.DailyData;
 import com.shtisu.etl.model.FinalRecord;
 import com.shtisu.etl.model.HourlyData;
 import com.shtisu.etl.model.OpenMeteoResponse;
 import com.shtisu.etl.util.UnitConverter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.batch.item.ItemProcessor;
 
@@ -13,6 +16,7 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -23,10 +27,20 @@ import java.util.stream.Stream;
  * Преобразует ответ OpenMeteo в список {@link FinalRecord}: один объект на каждый день диапазона.
  */
 public class FinalRecordItemProcessor  {
+
+    // Время processRange и число полученных дней: время на день = sum(etl.process) / etl.process.days
+    private static final Timer PROCESS_TIMER = Timer.builder("etl.process")
+            .description("processRange time per API response")
+            .register(EtlMetrics.registry());
+    private static final Counter PROCESSED_DAYS = Counter.builder("etl.process.days")
+            .description("Daily records produced by processRange")
+            .register(EtlMetrics.registry());
+
     /**
      * Главный метод: из одного API-ответа делает список FinalRecord (по дням).
      */
     public List<FinalRecord> processRange(@NotNull OpenMeteoResponse resp) {
+        long started = System.nanoTime();
 
         DailyData d = Objects.requireNonNull(resp.getDaily(), "daily is null");
         HourlyData h = Objects.requireNonNull(resp.getHourly(), "hourly is null");
@@ -85,6 +99,8 @@ public class FinalRecordItemProcessor  {
             rec.setFetchedAt(Instant.now());
             result.add(rec);
         }
+        PROCESS_TIMER.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        PROCESSED_DAYS.increment(result.size());
         return result;
 
     }
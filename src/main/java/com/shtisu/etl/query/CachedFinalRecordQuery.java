@@ -0,0 +1,150 @@
+package com.shtisu.etl.query;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.metrics.EtlMetrics;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.writer.DbCommitListeners;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link FinalRecordQuery} с кэшем прочитанного: записи кэшируются блоками "точка × месяц"
+ * ({@link RecordBlock}, столбцовый вид), запрос диапазона собирается из блоков его месяцев,
+ * и к базе идут только месяцы, которых нет в кэше. Пустые месяцы тоже кэшируются.
+ *
+ * Кэш ограничен суммарным весом блоков (байты, maxBytes) — при переполнении вытесняются давно
+ * не читавшиеся — и сроком жизни блока (expireMinutes, страховка от записи в базу другими процессами).
+ * Запись в этом процессе сбрасывает блоки точно: после каждого коммита {@link DbCommitListeners}
+ * сообщает записи пачки, и удаляются блоки их точек и месяцев.
+ *
+ * Попадания, промахи, вытеснения и размер — метрики cache.* с тегом cache=final-records.
+ */
+public class CachedFinalRecordQuery extends FinalRecordQuery implements AutoCloseable {
+
+    /**
+     * Ключ блока: точка в единицах ключа дедупликации ({@link DedupKeys#coordinate}) и месяц — запрос 40.8
+     * и коммит строк с 40.800003 дают один ключ, как и чтение из базы ({@link FinalRecordQuery})
+     */
+    static final class BlockKey {
+        final long latitude;
+        final long longitude;
+        final YearMonth month;
+
+        BlockKey(double latitude, double longitude, YearMonth month) {
+            this.latitude = DedupKeys.coordinate(latitude);
+            this.longitude = DedupKeys.coordinate(longitude);
+            this.month = month;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BlockKey k)) return false;
+            return latitude == k.latitude && longitude == k.longitude && month.equals(k.month);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Long.hashCode(latitude) + Long.hashCode(longitude)) + month.hashCode();
+        }
+    }
+
+    private final Cache<BlockKey, RecordBlock> cache;
+    // Число коммитов, о которых сообщил DbCommitListeners: блок, при загрузке которого был коммит, перепроверяется
+    private final AtomicLong commits = new AtomicLong();
+    private final DbCommitListeners.Listener listener = this::committed;
+
+    /**
+     * @param maxBytes      наибольший суммарный вес блоков
+     * @param expireMinutes сколько блок живёт после загрузки
+     */
+    public CachedFinalRecordQuery(@NotNull DataSource ds, long maxBytes, long expireMinutes) {
+        super(ds);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<BlockKey, RecordBlock>weigher((key, block) -> block.weight())
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(EtlMetrics.registry(), cache, "final-records");
+        DbCommitListeners.add(listener);
+    }
+
+    @Nullable
+    @Override
+    public LocalDate stream(double latitude, double longitude, @NotNull LocalDate from, @NotNull LocalDate to,
+                            @Nullable LocalDate after, int limit, @NotNull RowHandler handler) throws Exception {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        long lower = (after != null && !after.isBefore(from) ? after : from.minusDays(1)).toEpochDay();
+        long upper = to.toEpochDay();
+        int rows = 0;
+        for (YearMonth month = YearMonth.from(LocalDate.ofEpochDay(lower + 1)); !month.atDay(1).isAfter(to);
+             month = month.plusMonths(1)) {
+            RecordBlock block = block(latitude, longitude, month);
+            for (int i = 0; i < block.size(); i++) {
+                long day = block.epochDay(i);
+                if (day <= lower || day > upper) continue;
+                handler.accept(block.get(i));
+                if (++rows == limit) {
+                    return LocalDate.ofEpochDay(day);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Блок месяца из кэша или из базы */
+    private RecordBlock block(double latitude, double longitude, YearMonth month) throws Exception {
+        BlockKey key = new BlockKey(latitude, longitude, month);
+        RecordBlock block = cache.getIfPresent(key);
+        if (block != null) {
+            return block;
+        }
+        long commitsBefore = commits.get();
+        List<FinalRecord> records = new ArrayList<>();
+        // без ограничения в день месяца: у точки могут быть строки с разной записью координат (40.8 и 40.800003)
+        super.stream(latitude, longitude, month.atDay(1), month.atEndOfMonth(), null, Integer.MAX_VALUE, records::add);
+        // координаты строк, а не запроса: блок отдают все записи точки с тем же ключом
+        block = records.isEmpty()
+                ? RecordBlock.of(latitude, longitude, records)
+                : RecordBlock.of(records.get(0).getLatitude(), records.get(0).getLongitude(), records);
+        cache.put(key, block);
+        // коммит во время чтения мог сбросить ключ до put: такой блок мог устареть — не оставляем его
+        if (commits.get() != commitsBefore) {
+            cache.invalidate(key);
+        }
+        return block;
+    }
+
+    private void committed(Collection<FinalRecord> records) {
+        commits.incrementAndGet();
+        Set<BlockKey> keys = new HashSet<>();
+        for (FinalRecord r : records) {
+            keys.add(new BlockKey(r.getLatitude(), r.getLongitude(), YearMonth.from(r.getDate())));
+        }
+        cache.invalidateAll(keys);
+    }
+
+    /** Отписывается от коммитов */
+    @Override
+    public void close() {
+        DbCommitListeners.remove(listener);
+        cache.invalidateAll();
+    }
+}
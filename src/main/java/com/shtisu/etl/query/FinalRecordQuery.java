@@ -0,0 +1,154 @@
+package com.shtisu.etl.query;
+
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.writer.DataBaseItemWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Чтение final_records по точке и диапазону дат с keyset-пагинацией: страница начинается после даты
+ * последней записи предыдущей ({@code after}), а не со смещения, поэтому запрос всегда идёт диапазоном
+ * по первичному ключу (latitude, longitude, date) и не пересчитывает пропущенные строки.
+ * Точка сравнивается с точностью ключа дедупликации ({@link DedupKeys#coordinateRange}), а не как double:
+ * строки хранят координаты ячейки, прочитанные как float (40.800003), и запрос 40.8 их находит.
+ *
+ * Строки не собираются в список: каждая отдаётся обработчику сразу после чтения, а драйвер получает их
+ * порциями по {@link #FETCH_SIZE} (PostgreSQL читает курсором только вне автокоммита).
+ */
+public class FinalRecordQuery {
+
+    // Строк за одно обращение драйвера к серверу
+    static final int FETCH_SIZE = 500;
+
+    private static final String SELECT_SQL =
+            "SELECT " + DataBaseItemWriter.COLUMN_LIST + " FROM final_records " +
+                    "WHERE latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ? AND date > ? AND date <= ? " +
+                    "ORDER BY date LIMIT ?";
+
+    /** Обработчик очередной строки; может писать в поток ответа */
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(FinalRecord record) throws Exception;
+    }
+
+    private final DataSource ds;
+
+    public FinalRecordQuery(@NotNull DataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * Отдаёт обработчику записи точки за даты (after, to] (или [from, to], если after не задан)
+     * по возрастанию даты, не больше limit.
+     *
+     * @return дата последней отданной записи — курсор следующей страницы, если страница заполнена; иначе null
+     */
+    @Nullable
+    public LocalDate stream(double latitude, double longitude, @NotNull LocalDate from, @NotNull LocalDate to,
+                            @Nullable LocalDate after, int limit, @NotNull RowHandler handler) throws Exception {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        LocalDate lowerExclusive = after != null && !after.isBefore(from) ? after : from.minusDays(1);
+        int rows = 0;
+        LocalDate last = null;
+        try (Connection conn = ds.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_SQL)) {
+                ps.setFetchSize(FETCH_SIZE);
+                double[] lat = DedupKeys.coordinateRange(latitude);
+                double[] lon = DedupKeys.coordinateRange(longitude);
+                ps.setDouble(1, lat[0]);
+                ps.setDouble(2, lat[1]);
+                ps.setDouble(3, lon[0]);
+                ps.setDouble(4, lon[1]);
+                ps.setDate(5, Date.valueOf(lowerExclusive));
+                ps.setDate(6, Date.valueOf(to));
+                ps.setInt(7, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        FinalRecord r = read(rs);
+                        handler.accept(r);
+                        last = r.getDate();
+                        rows++;
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return rows == limit ? last : null;
+    }
+
+    /** Строка SELECT {@link DataBaseItemWriter#COLUMN_LIST} → запись, в порядке колонок */
+    @NotNull
+    static FinalRecord read(@NotNull ResultSet rs) throws SQLException {
+        FinalRecord r = new FinalRecord();
+        int idx = 1;
+
+        r.setLatitude(rs.getDouble(idx++));
+        r.setLongitude(rs.getDouble(idx++));
+        r.setDate(rs.getDate(idx++).toLocalDate());
+        r.setSunriseIso(instant(rs.getTimestamp(idx++)));
+        r.setSunsetIso(instant(rs.getTimestamp(idx++)));
+        r.setDaylightHours(rs.getDouble(idx++));
+
+        r.setAvgTemperature2m24h(rs.getDouble(idx++));
+        r.setAvgRelativeHumidity2m24h(rs.getDouble(idx++));
+        r.setAvgDewPoint2m24h(rs.getDouble(idx++));
+        r.setAvgApparentTemperature24h(rs.getDouble(idx++));
+        r.setAvgTemperature80m24h(rs.getDouble(idx++));
+        r.setAvgTemperature120m24h(rs.getDouble(idx++));
+        r.setAvgWindSpeed10m24h(rs.getDouble(idx++));
+        r.setAvgWindSpeed80m24h(rs.getDouble(idx++));
+        r.setAvgVisibility24h(rs.getDouble(idx++));
+        r.setTotalRain24h(rs.getDouble(idx++));
+        r.setTotalShowers24h(rs.getDouble(idx++));
+        r.setTotalSnowfall24h(rs.getDouble(idx++));
+
+        r.setAvgTemperature2mDaylight(rs.getDouble(idx++));
+        r.setAvgRelativeHumidity2mDaylight(rs.getDouble(idx++));
+        r.setAvgDewPoint2mDaylight(rs.getDouble(idx++));
+        r.setAvgApparentTemperatureDaylight(rs.getDouble(idx++));
+        r.setAvgTemperature80mDaylight(rs.getDouble(idx++));
+        r.setAvgTemperature120mDaylight(rs.getDouble(idx++));
+        r.setAvgWindSpeed10mDaylight(rs.getDouble(idx++));
+        r.setAvgWindSpeed80mDaylight(rs.getDouble(idx++));
+        r.setAvgVisibilityDaylight(rs.getDouble(idx++));
+        r.setTotalRainDaylight(rs.getDouble(idx++));
+        r.setTotalShowersDaylight(rs.getDouble(idx++));
+        r.setTotalSnowfallDaylight(rs.getDouble(idx++));
+
+        r.setWindSpeed10mMPerS(rs.getDouble(idx++));
+        r.setWindSpeed80mMPerS(rs.getDouble(idx++));
+        r.setTemperature2mCelsius(rs.getDouble(idx++));
+        r.setApparentTemperatureCelsius(rs.getDouble(idx++));
+        r.setTemperature80mCelsius(rs.getDouble(idx++));
+        r.setTemperature120mCelsius(rs.getDouble(idx++));
+        r.setSoilTemperature0cmCelsius(rs.getDouble(idx++));
+        r.setSoilTemperature6cmCelsius(rs.getDouble(idx++));
+        r.setRainMm(rs.getDouble(idx++));
+        r.setShowersMm(rs.getDouble(idx++));
+        r.setSnowfallMm(rs.getDouble(idx++));
+
+        r.setFetchedAt(instant(rs.getTimestamp(idx)));
+        return r;
+    }
+
+    private static Instant instant(Timestamp ts) {
+        return ts == null ? null : ts.toInstant();
+    }
+}
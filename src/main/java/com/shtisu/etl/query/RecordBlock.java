@@ -0,0 +1,151 @@
+package com.shtisu.etl.query;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Записи одной точки за месяц в столбцовом виде: день — int, каждое числовое поле — свой double[],
+ * моменты времени — long (мкс, точность TIMESTAMPTZ; {@link #NO_INSTANT} вместо null).
+ * Около 330 байт на день против ~1 КБ у объекта FinalRecord с тремя Instant и LocalDate;
+ * записи собираются заново только при выдаче.
+ * Неизменяем, дни по возрастанию.
+ */
+final class RecordBlock {
+
+    static final long NO_INSTANT = Long.MIN_VALUE;
+
+    /** Числовое поле записи: чтение и запись */
+    private static final class Column {
+        final ToDoubleFunction<FinalRecord> get;
+        final ObjDoubleConsumer<FinalRecord> set;
+
+        Column(ToDoubleFunction<FinalRecord> get, ObjDoubleConsumer<FinalRecord> set) {
+            this.get = get;
+            this.set = set;
+        }
+    }
+
+    private static final Column[] COLUMNS = {
+            new Column(FinalRecord::getDaylightHours, FinalRecord::setDaylightHours),
+
+            new Column(FinalRecord::getAvgTemperature2m24h, FinalRecord::setAvgTemperature2m24h),
+            new Column(FinalRecord::getAvgRelativeHumidity2m24h, FinalRecord::setAvgRelativeHumidity2m24h),
+            new Column(FinalRecord::getAvgDewPoint2m24h, FinalRecord::setAvgDewPoint2m24h),
+            new Column(FinalRecord::getAvgApparentTemperature24h, FinalRecord::setAvgApparentTemperature24h),
+            new Column(FinalRecord::getAvgTemperature80m24h, FinalRecord::setAvgTemperature80m24h),
+            new Column(FinalRecord::getAvgTemperature120m24h, FinalRecord::setAvgTemperature120m24h),
+            new Column(FinalRecord::getAvgWindSpeed10m24h, FinalRecord::setAvgWindSpeed10m24h),
+            new Column(FinalRecord::getAvgWindSpeed80m24h, FinalRecord::setAvgWindSpeed80m24h),
+            new Column(FinalRecord::getAvgVisibility24h, FinalRecord::setAvgVisibility24h),
+            new Column(FinalRecord::getTotalRain24h, FinalRecord::setTotalRain24h),
+            new Column(FinalRecord::getTotalShowers24h, FinalRecord::setTotalShowers24h),
+            new Column(FinalRecord::getTotalSnowfall24h, FinalRecord::setTotalSnowfall24h),
+
+            new Column(FinalRecord::getAvgTemperature2mDaylight, FinalRecord::setAvgTemperature2mDaylight),
+            new Column(FinalRecord::getAvgRelativeHumidity2mDaylight, FinalRecord::setAvgRelativeHumidity2mDaylight),
+            new Column(FinalRecord::getAvgDewPoint2mDaylight, FinalRecord::setAvgDewPoint2mDaylight),
+            new Column(FinalRecord::getAvgApparentTemperatureDaylight, FinalRecord::setAvgApparentTemperatureDaylight),
+            new Column(FinalRecord::getAvgTemperature80mDaylight, FinalRecord::setAvgTemperature80mDaylight),
+            new Column(FinalRecord::getAvgTemperature120mDaylight, FinalRecord::setAvgTemperature120mDaylight),
+            new Column(FinalRecord::getAvgWindSpeed10mDaylight, FinalRecord::setAvgWindSpeed10mDaylight),
+            new Column(FinalRecord::getAvgWindSpeed80mDaylight, FinalRecord::setAvgWindSpeed80mDaylight),
+            new Column(FinalRecord::getAvgVisibilityDaylight, FinalRecord::setAvgVisibilityDaylight),
+            new Column(FinalRecord::getTotalRainDaylight, FinalRecord::setTotalRainDaylight),
+            new Column(FinalRecord::getTotalShowersDaylight, FinalRecord::setTotalShowersDaylight),
+            new Column(FinalRecord::getTotalSnowfallDaylight, FinalRecord::setTotalSnowfallDaylight),
+
+            new Column(FinalRecord::getWindSpeed10mMPerS, FinalRecord::setWindSpeed10mMPerS),
+            new Column(FinalRecord::getWindSpeed80mMPerS, FinalRecord::setWindSpeed80mMPerS),
+            new Column(FinalRecord::getTemperature2mCelsius, FinalRecord::setTemperature2mCelsius),
+            new Column(FinalRecord::getApparentTemperatureCelsius, FinalRecord::setApparentTemperatureCelsius),
+            new Column(FinalRecord::getTemperature80mCelsius, FinalRecord::setTemperature80mCelsius),
+            new Column(FinalRecord::getTemperature120mCelsius, FinalRecord::setTemperature120mCelsius),
+            new Column(FinalRecord::getSoilTemperature0cmCelsius, FinalRecord::setSoilTemperature0cmCelsius),
+            new Column(FinalRecord::getSoilTemperature6cmCelsius, FinalRecord::setSoilTemperature6cmCelsius),
+            new Column(FinalRecord::getRainMm, FinalRecord::setRainMm),
+            new Column(FinalRecord::getShowersMm, FinalRecord::setShowersMm),
+            new Column(FinalRecord::getSnowfallMm, FinalRecord::setSnowfallMm),
+    };
+
+    // Заголовок объекта и ссылки на массивы — грубо, для веса в кэше
+    private static final int OVERHEAD_BYTES = 64 + 8 * COLUMNS.length;
+
+    private final double latitude;
+    private final double longitude;
+    private final int[] epochDays;
+    private final long[] sunrise;
+    private final long[] sunset;
+    private final long[] fetchedAt;
+    private final double[][] values;
+
+    private RecordBlock(double latitude, double longitude, int size) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.epochDays = new int[size];
+        this.sunrise = new long[size];
+        this.sunset = new long[size];
+        this.fetchedAt = new long[size];
+        this.values = new double[COLUMNS.length][size];
+    }
+
+    /** Блок из записей одной точки, упорядоченных по дате */
+    @NotNull
+    static RecordBlock of(double latitude, double longitude, @NotNull List<FinalRecord> records) {
+        RecordBlock b = new RecordBlock(latitude, longitude, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            FinalRecord r = records.get(i);
+            b.epochDays[i] = (int) r.getDate().toEpochDay();
+            b.sunrise[i] = micros(r.getSunriseIso());
+            b.sunset[i] = micros(r.getSunsetIso());
+            b.fetchedAt[i] = micros(r.getFetchedAt());
+            for (int c = 0; c < COLUMNS.length; c++) {
+                b.values[c][i] = COLUMNS[c].get.applyAsDouble(r);
+            }
+        }
+        return b;
+    }
+
+    int size() {
+        return epochDays.length;
+    }
+
+    long epochDay(int i) {
+        return epochDays[i];
+    }
+
+    /** Запись дня i */
+    @NotNull
+    FinalRecord get(int i) {
+        FinalRecord r = new FinalRecord();
+        r.setLatitude(latitude);
+        r.setLongitude(longitude);
+        r.setDate(LocalDate.ofEpochDay(epochDays[i]));
+        r.setSunriseIso(instant(sunrise[i]));
+        r.setSunsetIso(instant(sunset[i]));
+        r.setFetchedAt(instant(fetchedAt[i]));
+        for (int c = 0; c < COLUMNS.length; c++) {
+            COLUMNS[c].set.accept(r, values[c][i]);
+        }
+        return r;
+    }
+
+    /** Примерный размер в байтах — вес в кэше */
+    int weight() {
+        return OVERHEAD_BYTES + size() * (Integer.BYTES + 3 * Long.BYTES + COLUMNS.length * Double.BYTES);
+    }
+
+    private static long micros(Instant instant) {
+        return instant == null ? NO_INSTANT : instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+    }
+
+    private static Instant instant(long micros) {
+        return micros == NO_INSTANT ? null
+                : Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+}
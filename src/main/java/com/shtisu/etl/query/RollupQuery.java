@@ -0,0 +1,100 @@
+package com.shtisu.etl.query;
+
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.writer.RollupPeriod;
+import com.shtisu.etl.writer.RollupTables;
+import org.jetbrains.annotations.NotNull;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Средние показателей точки по неделям или месяцам из таблиц агрегатов ({@link RollupTables}):
+ * одна строка на период вместо сканирования его дней в final_records.
+ * Точка сравнивается с точностью ключа дедупликации ({@link DedupKeys#coordinateRange}); строки одного периода
+ * с разными записями координат точки (40.8 и 40.800003) складываются — суммы и дни в агрегатах аддитивны.
+ */
+public class RollupQuery {
+
+    private static final String[] MEASURES = RollupTables.measures();
+
+    /** Агрегат одного периода */
+    public static final class Row {
+        private final LocalDate periodStart;
+        private final int days;
+        private final Map<String, Double> averages;
+
+        Row(LocalDate periodStart, int days, Map<String, Double> averages) {
+            this.periodStart = periodStart;
+            this.days = days;
+            this.averages = averages;
+        }
+
+        public LocalDate getPeriodStart() {
+            return periodStart;
+        }
+
+        /** Сколько дней периода есть в final_records */
+        public int getDays() {
+            return days;
+        }
+
+        /** Показатель → среднее за дни периода */
+        public Map<String, Double> getAverages() {
+            return averages;
+        }
+    }
+
+    private final DataSource ds;
+
+    public RollupQuery(@NotNull DataSource ds) {
+        this.ds = ds;
+    }
+
+    /** Периоды точки, пересекающиеся с [from, to], по возрастанию */
+    @NotNull
+    public List<Row> read(@NotNull RollupPeriod period, double latitude, double longitude,
+                          @NotNull LocalDate from, @NotNull LocalDate to) throws SQLException {
+        String sums = Arrays.stream(RollupTables.SUM_LIST.split(", "))
+                .map(c -> "SUM(" + c + ")")
+                .collect(Collectors.joining(", "));
+        String sql = "SELECT period_start, SUM(days), " + sums + " FROM " + period.table() +
+                " WHERE latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ? AND period_start >= ? AND period_start <= ?" +
+                " GROUP BY period_start ORDER BY period_start";
+        List<Row> rows = new ArrayList<>();
+        try (Connection conn = ds.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            double[] lat = DedupKeys.coordinateRange(latitude);
+            double[] lon = DedupKeys.coordinateRange(longitude);
+            ps.setDouble(1, lat[0]);
+            ps.setDouble(2, lat[1]);
+            ps.setDouble(3, lon[0]);
+            ps.setDouble(4, lon[1]);
+            ps.setDate(5, Date.valueOf(period.start(from)));
+            ps.setDate(6, Date.valueOf(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int days = rs.getInt(2);
+                    Map<String, Double> averages = new LinkedHashMap<>();
+                    for (int m = 0; m < MEASURES.length; m++) {
+                        averages.put(MEASURES[m], days == 0 ? null : rs.getDouble(3 + m) / days);
+                    }
+                    rows.add(new Row(rs.getDate(1).toLocalDate(), days, Collections.unmodifiableMap(averages)));
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,134 @@
+package com.shtisu.etl.scan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Разбор чисел и дат прямо из байтов CSV, без String и без выделения памяти.
+ */
+final class CsvNumbers {
+
+    // Значащих цифр в мантиссе: 18 цифр помещаются в long; остальные уже за пределами точности double
+    private static final int MAX_DIGITS = 18;
+
+    // Точные (правильно округлённые) степени 10
+    private static final double[] POW10 = new double[309];
+
+    static {
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = Double.parseDouble("1e" + i);
+        }
+    }
+
+    private CsvNumbers() { }
+
+    /**
+     * Число в формате Double.toString / десятичной записи ("-10.06", "5.08", "1.0E-4", "NaN", "Infinity").
+     * Мантисса до 18 цифр умножается на степень 10 — результат может отличаться от Double.parseDouble
+     * на одну-две единицы последнего разряда, для агрегатов это не важно.
+     *
+     * @return значение или NaN, если поле пустое или не число
+     */
+    static double parseDouble(ByteBuffer b, int from, int to) {
+        int i = from;
+        if (i >= to) return Double.NaN;
+        boolean negative = false;
+        byte c = b.get(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            if (++i >= to) return Double.NaN;
+            c = b.get(i);
+        }
+        if (c == 'N') return Double.NaN;
+        if (c == 'I') return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        for (; i < to; i++) {
+            c = b.get(i);
+            if (c < '0' || c > '9') break;
+            any = true;
+            if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++;
+            }
+        }
+        if (i < to && b.get(i) == '.') {
+            for (i++; i < to; i++) {
+                c = b.get(i);
+                if (c < '0' || c > '9') break;
+                any = true;
+                if (digits < MAX_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                }
+            }
+        }
+        if (!any) return Double.NaN;
+        if (i < to && (b.get(i) == 'E' || b.get(i) == 'e')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < to && (b.get(i) == '-' || b.get(i) == '+')) {
+                negativeExp = b.get(i) == '-';
+                i++;
+            }
+            int e = 0;
+            boolean anyExp = false;
+            for (; i < to; i++) {
+                c = b.get(i);
+                if (c < '0' || c > '9') break;
+                anyExp = true;
+                if (e < 10_000) e = e * 10 + (c - '0');
+            }
+            if (!anyExp) return Double.NaN;
+            exponent += negativeExp ? -e : e;
+        }
+        if (i != to) return Double.NaN;
+
+        double value = mantissa;
+        if (mantissa != 0 && exponent != 0) {
+            value = scale(value, exponent);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double scale(double value, int exponent) {
+        if (exponent > 0) {
+            return exponent < POW10.length ? value * POW10[exponent] : Double.POSITIVE_INFINITY;
+        }
+        int e = -exponent;
+        if (e < POW10.length) return value / POW10[e];
+        // субнормальные числа: делим в два шага
+        value /= POW10[POW10.length - 1];
+        e -= POW10.length - 1;
+        return e < POW10.length ? value / POW10[e] : 0;
+    }
+
+    /**
+     * Дата "YYYY-MM-DD..." как число YYYYMMDD (сравнивается как дата).
+     *
+     * @return -1, если поле не дата
+     */
+    static int parseDate(ByteBuffer b, int from, int to) {
+        if (to - from < 10 || b.get(from + 4) != '-' || b.get(from + 7) != '-') return -1;
+        int year = digits(b, from, 4);
+        int month = digits(b, from + 5, 2);
+        int day = digits(b, from + 8, 2);
+        if (year < 0 || month < 0 || day < 0) return -1;
+        return year * 10_000 + month * 100 + day;
+    }
+
+    private static int digits(ByteBuffer b, int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = b.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+}
@@ -0,0 +1,45 @@
+package com.shtisu.etl.scan;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запрос к CSV (см. {@link CsvScanner}): какие колонки агрегировать, как группировать строки и какие отбросить.
+ * Колонки — имена из заголовка CSV ({@code CsvItemWriter.header()}).
+ */
+@Data
+public class CsvScanQuery {
+
+    /** Группировка строк */
+    public enum GroupBy {
+        /** Одна группа на весь файл */
+        NONE,
+        /** По точке (latitude, longitude с точностью 1e-4 градуса) */
+        LOCATION,
+        /** По месяцу даты */
+        MONTH
+    }
+
+    /** Условие min &lt;= колонка &lt;= max; null — без границы. Строки с NaN в колонке не проходят */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Range {
+        private String column;
+        private Double min;
+        private Double max;
+    }
+
+    private GroupBy groupBy = GroupBy.NONE;
+    /** Колонки, по которым считаются avg/sum/min/max */
+    private List<String> measures = new ArrayList<>();
+    private List<Range> filters = new ArrayList<>();
+    /** Первая и последняя дата (включительно); null — без границы */
+    private LocalDate from;
+    private LocalDate to;
+}
@@ -0,0 +1,109 @@
+package com.shtisu.etl.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Результат {@link CsvScanner}: агрегаты групп по ключу и объём прочитанного.
+ */
+public class CsvScanResult {
+
+    /** Агрегаты одной группы; индексы показателей — в порядке {@link CsvScanQuery#getMeasures()} */
+    public static class Group {
+        private final String key;
+        private final long rows;
+        private final long[] counts;
+        private final double[] sums;
+        private final double[] mins;
+        private final double[] maxs;
+
+        Group(String key, long rows, long[] counts, double[] sums, double[] mins, double[] maxs) {
+            this.key = key;
+            this.rows = rows;
+            this.counts = counts;
+            this.sums = sums;
+            this.mins = mins;
+            this.maxs = maxs;
+        }
+
+        /** "latitude;longitude", "2025-06" или "all" */
+        public String getKey() {
+            return key;
+        }
+
+        /** Строк группы, прошедших фильтры */
+        public long getRows() {
+            return rows;
+        }
+
+        /** Сколько значений показателя учтено (NaN пропускаются) */
+        public long count(int measure) {
+            return counts[measure];
+        }
+
+        public double sum(int measure) {
+            return sums[measure];
+        }
+
+        /** Среднее или NaN, если значений нет */
+        public double avg(int measure) {
+            return counts[measure] == 0 ? Double.NaN : sums[measure] / counts[measure];
+        }
+
+        /** Минимум или NaN, если значений нет */
+        public double min(int measure) {
+            return counts[measure] == 0 ? Double.NaN : mins[measure];
+        }
+
+        /** Максимум или NaN, если значений нет */
+        public double max(int measure) {
+            return counts[measure] == 0 ? Double.NaN : maxs[measure];
+        }
+    }
+
+    private final List<Group> groups;
+    private final long scannedRows;
+    private final long matchedRows;
+    private final long bytes;
+    private final long nanos;
+
+    CsvScanResult(List<Group> groups, long scannedRows, long matchedRows, long bytes, long nanos) {
+        this.groups = groups;
+        this.scannedRows = scannedRows;
+        this.matchedRows = matchedRows;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    /** Группы по возрастанию ключа */
+    @NotNull
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /** Строк данных в файле */
+    public long getScannedRows() {
+        return scannedRows;
+    }
+
+    /** Строк, прошедших фильтры */
+    public long getMatchedRows() {
+        return matchedRows;
+    }
+
+    /** Размер файла */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Время сканирования, нс */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /** Скорость сканирования, ГБ/с */
+    public double gigabytesPerSecond() {
+        return nanos == 0 ? 0 : bytes / (double) nanos;
+    }
+}
@@ -0,0 +1,412 @@
+package com.shtisu.etl.scan;
+
+import com.shtisu.etl.util.CsvSegments;
+import com.shtisu.etl.writer.CsvItemWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Параллельный разбор CSV ({@link CsvItemWriter}) для разовых агрегатов: фильтры и avg/sum/min/max
+ * по группам (точка, месяц или весь файл), без загрузки файла в базу или в память.
+ *
+ * Файл делится на сегменты по границам строк ({@link CsvSegments}), каждый сегмент отображается в память
+ * и разбирается своим потоком. В строке разбираются только нужные запросу колонки и только до последней
+ * из них; числа читаются прямо из байтов ({@link CsvNumbers}), группы копятся в примитивных массивах потока —
+ * на строку нет ни одного объекта. Результаты потоков сливаются в конце.
+ *
+ * Позиции колонок берутся из заголовка файла; файл без заголовка читается в порядке {@code CsvItemWriter.header()}.
+ */
+public final class CsvScanner {
+
+    // Наибольший размер одного отображаемого в память сегмента
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    // Сегментов на поток: мелкие сегменты выравнивают нагрузку, если потоки работают с разной скоростью
+    private static final int SEGMENTS_PER_THREAD = 4;
+
+    // Координаты в ключе группы — с точностью 1e-4 градуса, как в ключах дедупликации
+    private static final double COORD_SCALE = 10_000;
+    private static final long LAT_OFFSET = 90 * (long) COORD_SCALE;
+    private static final long LON_OFFSET = 180 * (long) COORD_SCALE;
+
+    private CsvScanner() { }
+
+    /**
+     * @param threads число потоков разбора
+     * @throws IllegalArgumentException если колонки запроса нет в схеме CSV
+     */
+    @NotNull
+    public static CsvScanResult scan(@NotNull Path csv, @NotNull CsvScanQuery query, int threads) throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            Plan plan = new Plan(query, columnsOf(ch));
+            List<long[]> segments = CsvSegments.splitAtLines(ch, Math.max(1, threads) * SEGMENTS_PER_THREAD, MAX_SEGMENT_BYTES);
+            List<Callable<Partial>> tasks = new ArrayList<>(segments.size());
+            for (long[] s : segments) {
+                tasks.add(() -> {
+                    Partial partial = new Partial(plan.measures.length);
+                    scanSegment(ch.map(FileChannel.MapMode.READ_ONLY, s[0], s[1] - s[0]), s[0] == 0 && plan.header, plan, partial);
+                    return partial;
+                });
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, segments.size())));
+            try {
+                return merge(query.getGroupBy(), plan.measures.length, invokeAll(pool, tasks), ch.size(),
+                        System.nanoTime() - started);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /** Колонки запроса → позиции в строке */
+    private static final class Plan {
+        final boolean header;
+        final CsvScanQuery.GroupBy groupBy;
+        // Номер слота в values для колонки строки или -1, если колонка не нужна
+        final int[] slotOf;
+        // Последняя нужная колонка: дальше строка не разбирается
+        final int lastColumn;
+        final int dateColumn;
+        final int latSlot;
+        final int lonSlot;
+        final int[] measures;
+        final int[] filterSlots;
+        final double[] filterMin;
+        final double[] filterMax;
+        final int from;
+        final int to;
+        final int slots;
+
+        Plan(CsvScanQuery query, Columns columns) {
+            this.header = columns.header;
+            this.groupBy = query.getGroupBy();
+            this.slotOf = new int[columns.names.size()];
+            Arrays.fill(slotOf, -1);
+            int[] next = {0};
+            int last = -1;
+
+            measures = new int[query.getMeasures().size()];
+            for (int m = 0; m < measures.length; m++) {
+                measures[m] = slot(columns, query.getMeasures().get(m), next);
+            }
+            List<CsvScanQuery.Range> filters = query.getFilters();
+            filterSlots = new int[filters.size()];
+            filterMin = new double[filters.size()];
+            filterMax = new double[filters.size()];
+            for (int f = 0; f < filterSlots.length; f++) {
+                CsvScanQuery.Range range = filters.get(f);
+                filterSlots[f] = slot(columns, range.getColumn(), next);
+                filterMin[f] = range.getMin() == null ? Double.NEGATIVE_INFINITY : range.getMin();
+                filterMax[f] = range.getMax() == null ? Double.POSITIVE_INFINITY : range.getMax();
+            }
+            boolean location = groupBy == CsvScanQuery.GroupBy.LOCATION;
+            latSlot = location ? slot(columns, "latitude", next) : -1;
+            lonSlot = location ? slot(columns, "longitude", next) : -1;
+
+            from = query.getFrom() == null ? Integer.MIN_VALUE : yyyymmdd(query.getFrom().getYear(),
+                    query.getFrom().getMonthValue(), query.getFrom().getDayOfMonth());
+            to = query.getTo() == null ? Integer.MAX_VALUE : yyyymmdd(query.getTo().getYear(),
+                    query.getTo().getMonthValue(), query.getTo().getDayOfMonth());
+            boolean needDate = groupBy == CsvScanQuery.GroupBy.MONTH || query.getFrom() != null || query.getTo() != null;
+            dateColumn = needDate ? columns.indexOf("date") : -1;
+
+            for (int c = 0; c < slotOf.length; c++) {
+                if (slotOf[c] >= 0) last = c;
+            }
+            this.lastColumn = Math.max(last, dateColumn);
+            this.slots = next[0];
+        }
+
+        private int slot(Columns columns, String name, int[] next) {
+            int column = columns.indexOf(name);
+            if (slotOf[column] < 0) {
+                slotOf[column] = next[0]++;
+            }
+            return slotOf[column];
+        }
+    }
+
+    /** Колонки файла: из заголовка или схемы CsvItemWriter */
+    private static final class Columns {
+        final List<String> names;
+        final boolean header;
+
+        Columns(List<String> names, boolean header) {
+            this.names = names;
+            this.header = header;
+        }
+
+        int indexOf(String name) {
+            if (!Arrays.asList(CsvItemWriter.header()).contains(name)) {
+                throw new IllegalArgumentException("Нет такой колонки в CSV: " + name);
+            }
+            int i = names.indexOf(name);
+            if (i < 0) {
+                throw new IllegalArgumentException("Колонки " + name + " нет в заголовке файла");
+            }
+            return i;
+        }
+    }
+
+    /** Заголовок — первая строка, если она начинается с буквы */
+    private static Columns columnsOf(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(ch.size(), 64 * 1024));
+        ch.read(buf, 0);
+        buf.flip();
+        if (!buf.hasRemaining() || !Character.isLetter(buf.get(0))) {
+            return new Columns(Arrays.asList(CsvItemWriter.header()), false);
+        }
+        String first = StandardCharsets.UTF_8.decode(buf).toString();
+        int end = first.indexOf('\n');
+        String line = (end < 0 ? first : first.substring(0, end)).trim();
+        return new Columns(Arrays.asList(line.split(";")), true);
+    }
+
+    /** Агрегаты групп одного потока: ключ → индекс группы, значения — в плоских массивах [группа * показателей + показатель] */
+    private static final class Partial {
+        final int measures;
+        long scanned;
+        long matched;
+        // открытая адресация: keys/index по хэшу ключа, index хранит номер группы + 1 (0 — пусто)
+        long[] keys = new long[64];
+        int[] index = new int[64];
+        int groups;
+        long[] groupKeys = new long[16];
+        long[] rows = new long[16];
+        long[] counts;
+        double[] sums;
+        double[] mins;
+        double[] maxs;
+
+        Partial(int measures) {
+            this.measures = measures;
+            int n = 16 * Math.max(1, measures);
+            counts = new long[n];
+            sums = new double[n];
+            mins = new double[n];
+            maxs = new double[n];
+        }
+
+        int group(long key) {
+            int mask = keys.length - 1;
+            int h = mix(key) & mask;
+            while (index[h] != 0) {
+                if (keys[h] == key) return index[h] - 1;
+                h = (h + 1) & mask;
+            }
+            int g = groups++;
+            if (g == groupKeys.length) grow();
+            keys[h] = key;
+            index[h] = g + 1;
+            groupKeys[g] = key;
+            for (int m = 0; m < measures; m++) {
+                mins[g * measures + m] = Double.POSITIVE_INFINITY;
+                maxs[g * measures + m] = Double.NEGATIVE_INFINITY;
+            }
+            if (groups * 2 > keys.length) rehash();
+            return g;
+        }
+
+        void add(int group, int measure, double value) {
+            if (Double.isNaN(value)) return;
+            int i = group * measures + measure;
+            counts[i]++;
+            sums[i] += value;
+            if (value < mins[i]) mins[i] = value;
+            if (value > maxs[i]) maxs[i] = value;
+        }
+
+        private void grow() {
+            int capacity = groupKeys.length * 2;
+            groupKeys = Arrays.copyOf(groupKeys, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            int n = capacity * Math.max(1, measures);
+            counts = Arrays.copyOf(counts, n);
+            sums = Arrays.copyOf(sums, n);
+            mins = Arrays.copyOf(mins, n);
+            maxs = Arrays.copyOf(maxs, n);
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldIndex = index;
+            keys = new long[oldKeys.length * 2];
+            index = new int[oldIndex.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldIndex[i] == 0) continue;
+                int h = mix(oldKeys[i]) & mask;
+                while (index[h] != 0) h = (h + 1) & mask;
+                keys[h] = oldKeys[i];
+                index[h] = oldIndex[i];
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /** Разбирает строки сегмента и добавляет прошедшие фильтры в агрегаты потока */
+    private static void scanSegment(MappedByteBuffer buf, boolean skipHeader, Plan plan, Partial partial) {
+        int limit = buf.limit();
+        double[] values = new double[plan.slots];
+        int pos = 0;
+        if (skipHeader) {
+            while (pos < limit && buf.get(pos) != '\n') pos++;
+            pos++;
+        }
+        while (pos < limit) {
+            int p = pos;
+            int column = 0;
+            int fieldStart = pos;
+            int date = -1;
+            boolean complete = plan.lastColumn < 0;
+            while (!complete) {
+                byte c = 0;
+                while (p < limit && (c = buf.get(p)) != ';' && c != '\n') p++;
+                int fieldEnd = p;
+                if (fieldEnd > fieldStart && buf.get(fieldEnd - 1) == '\r') fieldEnd--;
+                int slot = plan.slotOf[column];
+                if (slot >= 0) {
+                    values[slot] = CsvNumbers.parseDouble(buf, fieldStart, fieldEnd);
+                }
+                if (column == plan.dateColumn) {
+                    date = CsvNumbers.parseDate(buf, fieldStart, fieldEnd);
+                }
+                if (column == plan.lastColumn) {
+                    complete = true;
+                } else if (p >= limit || c == '\n') {
+                    break;
+                } else {
+                    column++;
+                    fieldStart = ++p;
+                }
+            }
+            // остаток строки не разбирается
+            while (p < limit && buf.get(p) != '\n') p++;
+            boolean empty = p == pos || (p == pos + 1 && buf.get(pos) == '\r');
+            if (!empty) {
+                partial.scanned++;
+                // строка короче нужного (оборванная запись) не учитывается
+                if (complete) {
+                    accept(plan, partial, values, date);
+                }
+            }
+            pos = p + 1;
+        }
+    }
+
+    private static void accept(Plan plan, Partial partial, double[] values, int date) {
+        if (plan.dateColumn >= 0 && (date < 0 || date < plan.from || date > plan.to)) return;
+        for (int f = 0; f < plan.filterSlots.length; f++) {
+            double v = values[plan.filterSlots[f]];
+            // NaN не проходит ни одно сравнение
+            if (!(v >= plan.filterMin[f] && v <= plan.filterMax[f])) return;
+        }
+        long key = switch (plan.groupBy) {
+            case NONE -> 0;
+            case MONTH -> date / 100;
+            case LOCATION -> locationKey(values[plan.latSlot], values[plan.lonSlot]);
+        };
+        int group = partial.group(key);
+        partial.matched++;
+        partial.rows[group]++;
+        for (int m = 0; m < plan.measures.length; m++) {
+            partial.add(group, m, values[plan.measures[m]]);
+        }
+    }
+
+    private static long locationKey(double latitude, double longitude) {
+        long lat = Math.round(latitude * COORD_SCALE) + LAT_OFFSET;
+        long lon = Math.round(longitude * COORD_SCALE) + LON_OFFSET;
+        return lat << 32 | lon;
+    }
+
+    private static String label(CsvScanQuery.GroupBy groupBy, long key) {
+        return switch (groupBy) {
+            case NONE -> "all";
+            case MONTH -> YearMonth.of((int) (key / 100), (int) (key % 100)).toString();
+            case LOCATION -> ((key >>> 32) - LAT_OFFSET) / COORD_SCALE + ";"
+                    + ((key & 0xFFFF_FFFFL) - LON_OFFSET) / COORD_SCALE;
+        };
+    }
+
+    private static int yyyymmdd(int year, int month, int day) {
+        return year * 10_000 + month * 100 + day;
+    }
+
+    /** Сливает агрегаты потоков */
+    private static CsvScanResult merge(CsvScanQuery.GroupBy groupBy, int measures, List<Partial> partials,
+                                       long bytes, long nanos) {
+        Partial total = new Partial(measures);
+        for (Partial p : partials) {
+            total.scanned += p.scanned;
+            total.matched += p.matched;
+            for (int g = 0; g < p.groups; g++) {
+                int into = total.group(p.groupKeys[g]);
+                total.rows[into] += p.rows[g];
+                for (int m = 0; m < measures; m++) {
+                    int from = g * measures + m;
+                    int to = into * measures + m;
+                    total.counts[to] += p.counts[from];
+                    total.sums[to] += p.sums[from];
+                    total.mins[to] = Math.min(total.mins[to], p.mins[from]);
+                    total.maxs[to] = Math.max(total.maxs[to], p.maxs[from]);
+                }
+            }
+        }
+        List<CsvScanResult.Group> groups = new ArrayList<>(total.groups);
+        Map<Long, Integer> order = new TreeMap<>();
+        for (int g = 0; g < total.groups; g++) {
+            order.put(total.groupKeys[g], g);
+        }
+        for (Map.Entry<Long, Integer> e : order.entrySet()) {
+            int g = e.getValue();
+            int from = g * measures;
+            groups.add(new CsvScanResult.Group(label(groupBy, e.getKey()), total.rows[g],
+                    Arrays.copyOfRange(total.counts, from, from + measures),
+                    Arrays.copyOfRange(total.sums, from, from + measures),
+                    Arrays.copyOfRange(total.mins, from, from + measures),
+                    Arrays.copyOfRange(total.maxs, from, from + measures)));
+        }
+        return new CsvScanResult(groups, total.scanned, total.matched, bytes, nanos);
+    }
+
+    @NotNull
+    private static List<Partial> invokeAll(@NotNull ExecutorService pool,
+                                           @NotNull List<Callable<Partial>> tasks) throws IOException {
+        List<Partial> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<Partial> f : pool.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("CSV scan failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,61 @@
+package com.shtisu.etl.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Деление CSV-файла на сегменты для параллельного разбора: каждый сегмент начинается с начала строки,
+ * поэтому строки не режутся между потоками, и каждый можно отобразить в память (MappedByteBuffer — до 2 ГБ).
+ */
+public final class CsvSegments {
+
+    private CsvSegments() { }
+
+    /**
+     * Делит файл на сегменты [start, end), границы которых совпадают с началом строки.
+     *
+     * @param parts           желаемое число сегментов
+     * @param maxSegmentBytes наибольший размер сегмента (сегментов станет больше, если файл крупный)
+     */
+    @NotNull
+    public static List<long[]> splitAtLines(@NotNull FileChannel ch, int parts, long maxSegmentBytes) throws IOException {
+        long size = ch.size();
+        parts = (int) Math.max(Math.max(1, parts), (size + maxSegmentBytes - 1) / maxSegmentBytes);
+        List<long[]> segments = new ArrayList<>(parts);
+        long start = 0;
+        for (int i = 1; i <= parts && start < size; i++) {
+            long end = i == parts ? size : alignToLineStart(ch, i * (size / parts));
+            if (end > start) {
+                segments.add(new long[]{start, end});
+                start = end;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Сдвигает позицию вперёд до начала следующей строки (позиция сразу после '\n').
+     */
+    private static long alignToLineStart(@NotNull FileChannel ch, long pos) throws IOException {
+        long size = ch.size();
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long p = Math.max(0, pos - 1);
+        while (p < size) {
+            buf.clear();
+            int n = ch.read(buf, p);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return p + i + 1;
+                }
+            }
+            p += n;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,101 @@
+package com.shtisu.etl.web;
+
+import com.shtisu.etl.job.JobReport;
+import com.shtisu.etl.job.JobSpec;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Задание загрузки, принятое REST-сервисом: спецификация и состояние выполнения.
+ * Состояние меняет только поток исполнителя, читают — обработчики запросов.
+ */
+public class IngestionJob {
+
+    /** Состояние задания */
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id;
+    private final JobSpec spec;
+    private final Instant submittedAt;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile JobReport report;
+    private volatile String error;
+
+    IngestionJob(String id, JobSpec spec, Instant submittedAt) {
+        this.id = id;
+        this.spec = spec;
+        this.submittedAt = submittedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public JobSpec getSpec() {
+        return spec;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public JobReport getReport() {
+        return report;
+    }
+
+    void started(Instant at) {
+        startedAt = at;
+        status = Status.RUNNING;
+    }
+
+    void finished(Instant at, JobReport report) {
+        this.report = report;
+        finishedAt = at;
+        // часть запросов к API не удалась — задание выполнено, но не полностью
+        status = report.isSuccessful() ? Status.SUCCEEDED : Status.FAILED;
+        if (!report.isSuccessful()) {
+            error = "failed requests: " + report.getFailedTasks();
+        }
+    }
+
+    void failed(Instant at, Exception e) {
+        error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        finishedAt = at;
+        status = Status.FAILED;
+    }
+
+    /** Состояние для ответа GET /jobs/{id} */
+    Map<String, Object> describe() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("id", id);
+        out.put("name", spec.getName());
+        out.put("status", status);
+        out.put("submittedAt", submittedAt);
+        out.put("startedAt", startedAt);
+        out.put("finishedAt", finishedAt);
+        JobReport r = report;
+        if (r != null) {
+            out.put("tasks", r.getTasks());
+            out.put("skippedTasks", r.getSkippedTasks());
+            out.put("failedTasks", r.getFailedTasks());
+            out.put("fetchedRecords", r.getFetchedRecords());
+            List<Map<String, Object>> sinks = new ArrayList<>();
+            for (JobReport.SinkResult s : r.getSinks()) {
+                Map<String, Object> sink = new LinkedHashMap<>();
+                sink.put("sink", s.getSink());
+                sink.put("writtenRows", s.getWrittenRows());
+                sinks.add(sink);
+            }
+            out.put("sinks", sinks);
+        }
+        out.put("error", error);
+        return out;
+    }
+}
@@ -0,0 +1,125 @@
+package com.shtisu.etl.web;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.job.JobReport;
+import com.shtisu.etl.job.JobRunner;
+import com.shtisu.etl.job.JobSpec;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронное выполнение заданий загрузки для REST-сервиса. Задания идут на ограниченном пуле:
+ * jobThreads одновременно и не больше queueCapacity в очереди; сверх этого {@link #submit} отказывает
+ * ({@link RejectedExecutionException}), а не заводит поток на каждое задание.
+ * Каждое задание выполняет {@link JobRunner} со своими потоками запросов (parallelism.fetchThreads).
+ *
+ * Хранятся последние {@link #RETAINED_JOBS} заданий; более старые завершённые забываются.
+ */
+public class IngestionService implements AutoCloseable {
+
+    // Сколько заданий помнит сервис для GET /jobs/{id}
+    static final int RETAINED_JOBS = 1_000;
+
+    /** Выполнение одного задания */
+    @FunctionalInterface
+    public interface Executor {
+        JobReport run(JobSpec spec) throws Exception;
+    }
+
+    private final Executor executor;
+    private final Clock clock;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+
+    /** Задания выполняет {@link JobRunner} с клиентом на apiBaseUrl задания */
+    public IngestionService(int jobThreads, int queueCapacity) {
+        this(spec -> new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec),
+                jobThreads, queueCapacity, Clock.systemUTC());
+    }
+
+    public IngestionService(@NotNull Executor executor, int jobThreads, int queueCapacity, @NotNull Clock clock) {
+        if (jobThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("jobThreads and queueCapacity must be positive");
+        }
+        this.executor = executor;
+        this.clock = clock;
+        this.pool = new ThreadPoolExecutor(jobThreads, jobThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "ingest-job");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Ставит задание в очередь.
+     *
+     * @throws RejectedExecutionException если очередь заполнена
+     */
+    @NotNull
+    public IngestionJob submit(@NotNull JobSpec spec) {
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), spec, clock.instant());
+        jobs.put(job.getId(), job);
+        try {
+            pool.execute(() -> execute(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        order.add(job.getId());
+        evictFinished();
+        return job;
+    }
+
+    @Nullable
+    public IngestionJob get(@NotNull String id) {
+        return jobs.get(id);
+    }
+
+    private void execute(IngestionJob job) {
+        job.started(clock.instant());
+        try {
+            job.finished(clock.instant(), executor.run(job.getSpec()));
+        } catch (Exception e) {
+            System.err.println("Ошибка задания " + job.getId() + ": " + e.getMessage());
+            job.failed(clock.instant(), e);
+        }
+    }
+
+    /** Забывает самые старые завершённые задания сверх RETAINED_JOBS */
+    private void evictFinished() {
+        int excess = jobs.size() - RETAINED_JOBS;
+        for (Iterator<String> it = order.iterator(); excess > 0 && it.hasNext(); ) {
+            String id = it.next();
+            IngestionJob job = jobs.get(id);
+            if (job == null || job.getStatus() == IngestionJob.Status.SUCCEEDED
+                    || job.getStatus() == IngestionJob.Status.FAILED) {
+                it.remove();
+                if (job != null) {
+                    jobs.remove(id);
+                    excess--;
+                }
+            }
+        }
+    }
+
+    /** Не принимает новых заданий и ждёт выполняющиеся */
+    @Override
+    public void close() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+}
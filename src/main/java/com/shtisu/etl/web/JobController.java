@@ -0,0 +1,65 @@
+package com.shtisu.etl.web;
+
+import com.shtisu.etl.job.JobSpec;
+import com.shtisu.etl.job.JobSpecLoader;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Задания загрузки:
+ * <ul>
+ *     <li>{@code POST /jobs} — тело: задание в JSON (как файл задания для WeatherJobCommand); ответ 202 со ссылкой
+ *     на состояние, 400 — задание некорректно, 503 — очередь заданий заполнена;</li>
+ *     <li>{@code GET /jobs/{id}} — состояние (QUEUED, RUNNING, SUCCEEDED, FAILED) и итог выполнения.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/jobs")
+public class JobController {
+
+    private final IngestionService ingestion;
+
+    public JobController(IngestionService ingestion) {
+        this.ingestion = ingestion;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> submit(@RequestBody String body) {
+        JobSpec spec;
+        try {
+            spec = JobSpecLoader.parseJson(body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        IngestionJob job;
+        try {
+            job = ingestion.submit(spec);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "job queue is full");
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/" + job.getId()))
+                .body(job.describe());
+    }
+
+    @GetMapping("/{id}")
+    public Map<String, Object> status(@PathVariable String id) {
+        IngestionJob job = ingestion.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no such job: " + id);
+        }
+        return job.describe();
+    }
+}
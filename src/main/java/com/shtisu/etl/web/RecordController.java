@@ -0,0 +1,75 @@
+package com.shtisu.etl.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.query.FinalRecordQuery;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+/**
+ * {@code GET /records?latitude=&longitude=&from=&to=[&after=][&limit=]} — записи final_records точки за даты
+ * [from, to] по возрастанию даты, страницами до limit записей.
+ *
+ * Ответ {@code {"records": [...], "next": "2025-06-30"}} пишется в поток по мере чтения строк, без списка
+ * в памяти; next — курсор следующей страницы (передаётся как after) или null на последней странице.
+ */
+@RestController
+public class RecordController {
+
+    private final FinalRecordQuery query;
+    private final ObjectMapper mapper;
+    // запись строки без сброса потока после каждой: сбрасывает буфер сам генератор
+    private final ObjectWriter recordWriter;
+    private final int maxPageSize;
+
+    public RecordController(FinalRecordQuery query, ObjectMapper mapper, int maxPageSize) {
+        this.query = query;
+        this.mapper = mapper;
+        this.recordWriter = mapper.writerFor(FinalRecord.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.maxPageSize = maxPageSize;
+    }
+
+    @GetMapping("/records")
+    public ResponseEntity<StreamingResponseBody> records(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate after,
+            @RequestParam(defaultValue = "1000") int limit) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "to is before from");
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageSize);
+        }
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = mapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("records");
+                LocalDate next = query.stream(latitude, longitude, from, to, after, limit,
+                        r -> recordWriter.writeValue(json, r));
+                json.writeEndArray();
+                json.writeStringField("next", next == null ? null : next.toString());
+                json.writeEndObject();
+            } catch (Exception e) {
+                // заголовки уже отправлены: клиент получит оборванный JSON
+                System.err.println("Ошибка чтения final_records: " + e.getMessage());
+                throw new IllegalStateException(e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
@@ -0,0 +1,108 @@
+package com.shtisu.etl.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shtisu.etl.config.AppProperties;
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.metrics.MetricsServer;
+import com.shtisu.etl.query.CachedFinalRecordQuery;
+import com.shtisu.etl.query.FinalRecordQuery;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * REST-сервис загрузки и чтения: {@link JobController} (/jobs) и {@link RecordController} (/records),
+ * а также метрики конвейера на /actuator/prometheus — на том же контексте Spring Boot, что и {@link MetricsServer}.
+ *
+ * Задания выполняет {@link IngestionService} (web.jobThreads потоков, очередь web.jobQueue),
+ * записи читает {@link FinalRecordQuery} из базы {@link DataSourceFactory} (через кэш {@link CachedFinalRecordQuery});
+ * страница — не больше web.maxPageSize.
+ */
+public class WeatherServer implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final IngestionService ingestion;
+    private final FinalRecordQuery query;
+
+    private WeatherServer(ConfigurableApplicationContext context, IngestionService ingestion, FinalRecordQuery query) {
+        this.context = context;
+        this.ingestion = ingestion;
+        this.query = query;
+    }
+
+    /** Контроллеры поверх сервиса заданий и запроса, зарегистрированных при старте */
+    @Configuration(proxyBeanMethods = false)
+    static class Config {
+
+        @Bean
+        JobController jobController(IngestionService ingestion) {
+            return new JobController(ingestion);
+        }
+
+        @Bean
+        RecordController recordController(FinalRecordQuery query, ObjectMapper mapper) {
+            return new RecordController(query, mapper, AppProperties.getInt("web.maxPageSize", 10_000));
+        }
+    }
+
+    /** Сервер с настройками из application.properties; query.cache.maxBytes > 0 — чтение через кэш */
+    @NotNull
+    public static WeatherServer start(int port) {
+        long cacheBytes = AppProperties.getLong("query.cache.maxBytes", 64L * 1024 * 1024);
+        FinalRecordQuery query = cacheBytes > 0
+                ? new CachedFinalRecordQuery(DataSourceFactory.getDataSource(), cacheBytes,
+                        AppProperties.getLong("query.cache.expireMinutes", 10))
+                : new FinalRecordQuery(DataSourceFactory.getDataSource());
+        return start(port,
+                new IngestionService(AppProperties.getInt("web.jobThreads", 2), AppProperties.getInt("web.jobQueue", 16)),
+                query);
+    }
+
+    /**
+     * @param port      порт (0 — свободный)
+     * @param ingestion выполняет задания; закрывается вместе с сервером
+     * @param query     чтение final_records; кэш ({@link CachedFinalRecordQuery}) закрывается вместе с сервером
+     */
+    @NotNull
+    public static WeatherServer start(int port, @NotNull IngestionService ingestion, @NotNull FinalRecordQuery query) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MetricsServer.Config.class, Config.class)
+                .web(WebApplicationType.SERVLET)
+                .initializers(ctx -> {
+                    ctx.getBeanFactory().registerSingleton("ingestionService", ingestion);
+                    ctx.getBeanFactory().registerSingleton("finalRecordQuery", query);
+                })
+                .properties(
+                        "server.port=" + port,
+                        "spring.main.banner-mode=off",
+                        "spring.main.register-shutdown-hook=false",
+                        "spring.config.name=weather-server",
+                        "management.endpoints.web.exposure.include=prometheus,health")
+                .run();
+        return new WeatherServer(context, ingestion, query);
+    }
+
+    /** Фактический порт сервера */
+    public int getPort() {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    /** Останавливает приём запросов и дожидается выполняющихся заданий */
+    @Override
+    public void close() throws InterruptedException {
+        try {
+            context.close();
+        } finally {
+            try {
+                ingestion.close();
+            } finally {
+                if (query instanceof CachedFinalRecordQuery cached) {
+                    cached.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.shtisu.etl.web;
+
+import com.shtisu.etl.config.AppProperties;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Запуск REST-сервиса: {@code WeatherCli serve [--port N]}. Работает до остановки процесса;
+ * при остановке дожидается выполняющихся заданий.
+ */
+@Command(name = "serve", mixinStandardHelpOptions = true,
+        description = "HTTP-сервис: задания загрузки (/jobs) и чтение final_records (/records).")
+public class WeatherServerCommand implements Callable<Integer> {
+
+    @Option(names = "--port", description = "Порт HTTP (по умолчанию web.port из application.properties)")
+    private Integer port;
+
+    /** Выполняет команду и возвращает код возврата */
+    public static int execute(String... args) {
+        return new CommandLine(new WeatherServerCommand()).execute(args);
+    }
+
+    @Override
+    public Integer call() throws InterruptedException {
+        WeatherServer server = WeatherServer.start(port != null ? port : AppProperties.getInt("web.port", 8080));
+        System.out.println("Сервис: http://localhost:" + server.getPort() + " (/jobs, /records, /actuator/prometheus)");
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (Exception e) {
+                System.err.println("Ошибка остановки сервиса: " + e.getMessage());
+            } finally {
+                stopped.countDown();
+            }
+        }, "server-shutdown"));
+        stopped.await();
+        return 0;
+    }
+}
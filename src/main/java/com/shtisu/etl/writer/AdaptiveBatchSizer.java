@@ -0,0 +1,101 @@
+package com.shtisu.etl.writer;
+
+/**
+ * Подбирает размер пачки (chunk) для JDBC-записи по наблюдаемой задержке коммита.
+ *
+ * Маленькие пачки дают много round-trip'ов и коммитов, огромные — долгие транзакции, рост WAL и блокировок.
+ * Контроллер работает как "восхождение на холм": пока коммит укладывается в целевую задержку и скорость
+ * (строк в секунду) не ниже лучшей, размер пачки увеличивается; если скорость упала — возвращается к размеру
+ * с лучшей скоростью и больше не растёт; если коммит дольше целевой задержки — размер уменьшается вдвое,
+ * и поиск начинается заново от него.
+ * Без адаптации ({@link #fixed(int)}) размер пачки всегда постоянный.
+ */
+public class AdaptiveBatchSizer {
+
+    // Во сколько раз увеличиваем пачку, пока скорость растёт
+    private static final double GROW_FACTOR = 1.5;
+    // Скорость считается упавшей, если она ниже лучшей на 5%
+    private static final double TOLERANCE = 0.95;
+
+    private final int min;
+    private final int max;
+    private final long targetCommitNanos;
+    private final boolean adaptive;
+
+    private int current;
+    // Размер с лучшей скоростью и сама скорость
+    private int bestSize;
+    private double bestRowsPerSecond;
+    // После возврата к лучшему размеру пачка больше не растёт
+    private boolean settled;
+
+    private AdaptiveBatchSizer(int initial, int min, int max, long targetCommitMillis, boolean adaptive) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid batch size bounds: " + min + ".." + max);
+        }
+        this.min = min;
+        this.max = max;
+        this.targetCommitNanos = targetCommitMillis * 1_000_000L;
+        this.adaptive = adaptive;
+        this.current = Math.max(min, Math.min(max, initial));
+        this.bestSize = current;
+    }
+
+    /** Постоянный размер пачки */
+    public static AdaptiveBatchSizer fixed(int batchSize) {
+        return new AdaptiveBatchSizer(batchSize, Math.max(1, batchSize), Math.max(1, batchSize), Long.MAX_VALUE / 1_000_000L, false);
+    }
+
+    /**
+     * Адаптивный размер пачки.
+     *
+     * @param initial            начальный размер
+     * @param min                минимальный размер
+     * @param max                максимальный размер (ограничивает длину транзакции)
+     * @param targetCommitMillis целевая задержка executeBatch + commit одной пачки
+     */
+    public static AdaptiveBatchSizer adaptive(int initial, int min, int max, long targetCommitMillis) {
+        return new AdaptiveBatchSizer(initial, min, max, targetCommitMillis, true);
+    }
+
+    /** Текущий размер пачки */
+    public int current() {
+        return current;
+    }
+
+    /**
+     * Учитывает результат записи одной пачки и при необходимости меняет размер следующей.
+     *
+     * @param rows         сколько строк было в пачке
+     * @param elapsedNanos время executeBatch + commit
+     */
+    public void record(int rows, long elapsedNanos) {
+        if (!adaptive || rows <= 0 || elapsedNanos <= 0) return;
+        // Неполная пачка (хвост write) ничего не говорит о выбранном размере
+        if (rows < current) return;
+
+        double rowsPerSecond = rows * 1_000_000_000.0 / elapsedNanos;
+        int next;
+        if (elapsedNanos > targetCommitNanos) {
+            // прежние замеры больше не показательны — ищем заново от меньшего размера
+            next = current / 2;
+            bestRowsPerSecond = 0;
+            settled = false;
+        } else if (current == bestSize || rowsPerSecond >= bestRowsPerSecond * TOLERANCE) {
+            // свежий замер лучшего размера заменяет старый: скорость базы со временем меняется
+            if (current == bestSize || rowsPerSecond > bestRowsPerSecond) {
+                bestSize = current;
+                bestRowsPerSecond = rowsPerSecond;
+            }
+            next = settled ? current : (int) Math.ceil(current * GROW_FACTOR);
+        } else {
+            // лучший размер был быстрее — возвращаемся к нему и остаёмся на нём
+            next = bestSize;
+            settled = true;
+        }
+        current = Math.max(min, Math.min(max, next));
+        if (bestRowsPerSecond == 0) {
+            bestSize = current;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Потокобезопасная обёртка над любым {@link FinalRecordWriter} (CSV или база данных).
+ *
+ * Сами CsvItemWriter и DataBaseItemWriter рассчитаны на один поток: строки CSV перемешались бы,
+ * а у DbSession одно соединение и одна пачка. Здесь любое число потоков-обработчиков вызывает
+ * {@link #write(List)} одновременно: записи копятся в буфере своего потока, полный буфер уходит
+ * в ограниченную очередь, а единственный поток-писатель сливает накопившиеся буферы в одну пачку
+ * и передаёт её обёрнутому writer'у. Обработчики не конкурируют ни за файл, ни за соединение,
+ * а при отставании писателя ждут на очереди (backpressure), а не копят записи в памяти.
+ *
+ * Дедупликация остаётся за обёрнутым writer'ом; его фильтр (например, dedup.filter=lockfree)
+ * читается и пополняется только потоком-писателем.
+ */
+public class ConcurrentFinalRecordWriter implements FinalRecordWriter {
+
+    private final FinalRecordWriter delegate;
+    private final int bufferSize;
+    private final int maxMergedRecords;
+    private final BlockingQueue<Batch> queue;
+    private final Thread flusher;
+
+    // Буферы всех потоков, чтобы flush() мог забрать недозаполненные
+    private final ConcurrentLinkedQueue<ThreadBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ThreadBuffer> localBuffer = ThreadLocal.withInitial(() -> {
+        ThreadBuffer b = new ThreadBuffer();
+        buffers.add(b);
+        return b;
+    });
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final AtomicLong flushedRecords = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param delegate      writer, в который пишет единственный поток-писатель
+     * @param bufferSize    сколько записей поток копит у себя, прежде чем отдать их писателю
+     * @param queueCapacity сколько полных буферов может ждать писателя
+     */
+    public ConcurrentFinalRecordWriter(@NotNull FinalRecordWriter delegate, int bufferSize, int queueCapacity) {
+        if (bufferSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("bufferSize and queueCapacity must be positive");
+        }
+        this.delegate = delegate;
+        this.bufferSize = bufferSize;
+        // Писатель сливает в одну пачку не больше, чем поместилось бы в очередь целиком
+        this.maxMergedRecords = bufferSize * queueCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::flushLoop, "record-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Кладёт записи в буфер текущего потока. Метод можно вызывать из любого числа потоков.
+     * Ошибка записи, случившаяся в потоке-писателе, пробрасывается из следующего вызова как IOException.
+     */
+    @Override
+    public void write(List<FinalRecord> records) throws Exception {
+        checkOpen();
+        ThreadBuffer buffer = localBuffer.get();
+        for (FinalRecord r : records) {
+            List<FinalRecord> full = buffer.add(r, bufferSize);
+            if (full != null) {
+                enqueue(new Batch(full, null));
+            }
+        }
+    }
+
+    /**
+     * Отдаёт писателю буферы всех потоков и ждёт, пока всё, что было записано до вызова,
+     * дойдёт до обёрнутого writer'а и будет им записано (его flush()).
+     */
+    @Override
+    public void flush() throws Exception {
+        checkOpen();
+        for (ThreadBuffer buffer : buffers) {
+            List<FinalRecord> rest = buffer.drain();
+            if (!rest.isEmpty()) {
+                enqueue(new Batch(rest, null));
+            }
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        enqueue(new Batch(List.of(), done));
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            throw failed((Exception) e.getCause());
+        }
+    }
+
+    /** Сколько записей передано обёрнутому writer'у */
+    public long getFlushedRecords() {
+        return flushedRecords.get();
+    }
+
+    /** Сколько пачек передано обёрнутому writer'у */
+    public long getFlushedBatches() {
+        return flushedBatches.get();
+    }
+
+    /** Дописывает всё накопленное, останавливает писателя и закрывает обёрнутый writer */
+    @Override
+    public void close() throws Exception {
+        if (closed) return;
+        try {
+            if (failure.get() == null) {
+                flush();
+            }
+        } finally {
+            closed = true;
+            flusher.interrupt();
+            flusher.join();
+            delegate.close();
+        }
+        Exception e = failure.get();
+        if (e != null) throw failed(e);
+    }
+
+    private void enqueue(Batch batch) throws Exception {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            // писатель упал — очередь больше не разбирается
+            checkOpen();
+        }
+    }
+
+    private void checkOpen() throws Exception {
+        Exception e = failure.get();
+        if (e != null) {
+            throw failed(e);
+        }
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+    }
+
+    private static IOException failed(Exception cause) {
+        return new IOException("Concurrent writer failed: " + cause.getMessage(), cause);
+    }
+
+    private void flushLoop() {
+        List<Batch> taken = new ArrayList<>();
+        List<FinalRecord> merged = new ArrayList<>();
+        while (true) {
+            try {
+                taken.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Сливаем всё, что уже накопилось, в одну пачку: меньше коммитов и обращений к файлу
+            queue.drainTo(taken);
+            int i = 0;
+            while (i < taken.size()) {
+                merged.clear();
+                List<CompletableFuture<Void>> waiting = new ArrayList<>();
+                for (; i < taken.size() && merged.size() < maxMergedRecords; i++) {
+                    Batch b = taken.get(i);
+                    merged.addAll(b.records);
+                    if (b.done != null) waiting.add(b.done);
+                }
+                try {
+                    if (!merged.isEmpty() && failure.get() == null) {
+                        delegate.write(merged);
+                        flushedRecords.addAndGet(merged.size());
+                        flushedBatches.incrementAndGet();
+                    }
+                    if (!waiting.isEmpty() && failure.get() == null) {
+                        delegate.flush();
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+                Exception e = failure.get();
+                for (CompletableFuture<Void> done : waiting) {
+                    if (e == null) done.complete(null);
+                    else done.completeExceptionally(e);
+                }
+            }
+            taken.clear();
+        }
+    }
+
+    /** Буфер одного потока; блокировка берётся без конкуренции, кроме момента flush() */
+    private static final class ThreadBuffer {
+        private List<FinalRecord> records = new ArrayList<>();
+
+        synchronized List<FinalRecord> add(FinalRecord r, int limit) {
+            records.add(r);
+            if (records.size() < limit) return null;
+            List<FinalRecord> full = records;
+            records = new ArrayList<>(limit);
+            return full;
+        }
+
+        synchronized List<FinalRecord> drain() {
+            List<FinalRecord> rest = records;
+            records = new ArrayList<>();
+            return rest;
+        }
+    }
+
+    /** Пачка записей в очереди; done — отметка flush(), завершается после записи всего, что было до неё */
+    private static final class Batch {
+        final List<FinalRecord> records;
+        final CompletableFuture<Void> done;
+
+        Batch(List<FinalRecord> records, CompletableFuture<Void> done) {
+            this.records = records;
+            this.done = done;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.shtisu.etl.writer;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+
+/**
+ * Компактный (64 бита) хэш содержимого записи для колонки final_records.content_hash.
+ *
+ * В хэш входят только данные погоды: ключ (latitude, longitude, date) у сравниваемых строк и так совпадает,
+ * а fetched_at меняется при каждой загрузке — с ним любая повторная загрузка выглядела бы как изменение.
+ * Порядок полей менять нельзя: иначе все уже сохранённые хэши перестанут совпадать и при следующем
+ * обновлении будут переписаны все строки окна.
+ */
+final class ContentHash {
+
+    private ContentHash() { }
+
+    static long of(@NotNull FinalRecord r) {
+        Hasher h = Hashing.murmur3_128().newHasher();
+        putInstant(h, r.getSunriseIso());
+        putInstant(h, r.getSunsetIso());
+        h.putDouble(r.getDaylightHours());
+
+        h.putDouble(r.getAvgTemperature2m24h());
+        h.putDouble(r.getAvgRelativeHumidity2m24h());
+        h.putDouble(r.getAvgDewPoint2m24h());
+        h.putDouble(r.getAvgApparentTemperature24h());
+        h.putDouble(r.getAvgTemperature80m24h());
+        h.putDouble(r.getAvgTemperature120m24h());
+        h.putDouble(r.getAvgWindSpeed10m24h());
+        h.putDouble(r.getAvgWindSpeed80m24h());
+        h.putDouble(r.getAvgVisibility24h());
+        h.putDouble(r.getTotalRain24h());
+        h.putDouble(r.getTotalShowers24h());
+        h.putDouble(r.getTotalSnowfall24h());
+
+        h.putDouble(r.getAvgTemperature2mDaylight());
+        h.putDouble(r.getAvgRelativeHumidity2mDaylight());
+        h.putDouble(r.getAvgDewPoint2mDaylight());
+        h.putDouble(r.getAvgApparentTemperatureDaylight());
+        h.putDouble(r.getAvgTemperature80mDaylight());
+        h.putDouble(r.getAvgTemperature120mDaylight());
+        h.putDouble(r.getAvgWindSpeed10mDaylight());
+        h.putDouble(r.getAvgWindSpeed80mDaylight());
+        h.putDouble(r.getAvgVisibilityDaylight());
+        h.putDouble(r.getTotalRainDaylight());
+        h.putDouble(r.getTotalShowersDaylight());
+        h.putDouble(r.getTotalSnowfallDaylight());
+
+        h.putDouble(r.getWindSpeed10mMPerS());
+        h.putDouble(r.getWindSpeed80mMPerS());
+        h.putDouble(r.getTemperature2mCelsius());
+        h.putDouble(r.getApparentTemperatureCelsius());
+        h.putDouble(r.getTemperature80mCelsius());
+        h.putDouble(r.getTemperature120mCelsius());
+        h.putDouble(r.getSoilTemperature0cmCelsius());
+        h.putDouble(r.getSoilTemperature6cmCelsius());
+        h.putDouble(r.getRainMm());
+        h.putDouble(r.getShowersMm());
+        h.putDouble(r.getSnowfallMm());
+        return h.hash().asLong();
+    }
+
+    private static void putInstant(Hasher h, Instant t) {
+        // NULL и Instant.EPOCH должны давать разные хэши
+        if (t == null) {
+            h.putBoolean(false);
+        } else {
+            h.putBoolean(true).putLong(t.getEpochSecond()).putInt(t.getNano());
+        }
+    }
+}
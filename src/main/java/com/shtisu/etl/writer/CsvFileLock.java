@@ -0,0 +1,60 @@
+package com.shtisu.etl.writer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Исключительная блокировка CSV между процессами: {@link FileLock} на файле {@code <csv>.lock} рядом с CSV.
+ *
+ * FileLock принадлежит всей JVM (второй lock() того же файла в том же процессе бросает
+ * OverlappingFileLockException), поэтому внутри процесса писатели дополнительно упорядочиваются
+ * обычным ReentrantLock на путь. Блокировка не реентерабельна — брать её повторно в одном потоке нельзя.
+ */
+final class CsvFileLock implements AutoCloseable {
+
+    private static final ConcurrentHashMap<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock local;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private CsvFileLock(ReentrantLock local, FileChannel channel, FileLock lock) {
+        this.local = local;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /** Ждёт, пока CSV освободят другие процессы и потоки, и захватывает его */
+    @NotNull
+    static CsvFileLock acquire(@NotNull Path csvPath) throws IOException {
+        Path lockPath = csvPath.toAbsolutePath().normalize().resolveSibling(csvPath.getFileName() + ".lock");
+        ReentrantLock local = LOCAL_LOCKS.computeIfAbsent(lockPath, p -> new ReentrantLock());
+        local.lock();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return new CsvFileLock(local, channel, channel.lock());
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) channel.close();
+            local.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+            channel.close();
+        } finally {
+            local.unlock();
+        }
+    }
+}
@@ -1,35 +1,78 @@
 package com.shtisu.etl.writer;
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
 import com.opencsv.CSVWriter;
 import com.opencsv.ICSVWriter;
+import com.shtisu.etl.config.AppProperties;
+import com.shtisu.etl.dedup.DedupFilter;
+import com.shtisu.etl.dedup.DedupFilterRebuilder;
+import com.shtisu.etl.dedup.DedupFilterStore;
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.dedup.DedupStats;
+import com.shtisu.etl.metrics.EtlMetrics;
 import com.shtisu.etl.model.FinalRecord;
+import io.micrometer.core.instrument.Counter;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * CsvItemWriter с использованием BloomFilter для предотвращения вставки дубликатов на основе ключа date+latitude+longitude.
  * BloomFilter сохраняется на диск, чтобы не сканировать CSV-файл целиком при каждом запуске. Далее за сложность O(1) (в лучшем случае) мы можем обратиться к ключу
  * и узнать если у нас такой дубликат, это намного эфективнее чем каждый раз заново считывать csv файл и за O(n) проходиться по всем его значениям
  * при больших колличествах данных O(n) может работать слишком долгго. Но у способа с BloomFilter так же есть недостатки возможны коллизий при получений хэша у ключа,
- * а также придется выделить память для хранения ключей на диске, но даже для огромного файла ключи не будут весить слишком много
+ * а также придется выделить память для хранения ключей на диске, но даже для огромного файла ключи не будут весить слишком много.
+ * Если коллизии недопустимы, вместо BloomFilter можно использовать точное множество ключей (dedup.filter=exact, см. {@link DedupFilterType}).
+ *
+ * В один CSV и один файл фильтра могут одновременно писать несколько процессов. Каждая запись идёт под
+ * исключительной блокировкой файла {@code <csv>.lock} (см. {@link CsvFileLock}): если с прошлой записи CSV
+ * дописал другой процесс, фильтр сначала перечитывается с диска (тот процесс сохранил его под той же
+ * блокировкой), затем записи проверяются, дописываются в CSV, и фильтр сохраняется до снятия блокировки.
+ * Поэтому строки разных процессов не перемешиваются, ключ не записывается дважды, а файл фильтра
+ * всегда соответствует CSV.
  */
-public class CsvItemWriter implements AutoCloseable {
+public class CsvItemWriter implements FinalRecordWriter {
 
 
     private final Path outputCsvPath;
     private final Path bloomPath;
+    private final long expectedEntries;
+    private final double fpp;
+    private final DedupFilterType filterType;
 
-    // BloomFilter для предотвращения вставки дубликотаов, и сохранения уже вставленных значений
-    private final BloomFilter<CharSequence> bloomFilter;
+    // Проверять ли положительные ответы фильтра по точному индексу CSV (dedup.verify)
+    private final boolean verify = AppProperties.getBoolean("dedup.verify", true);
+
+    // Точный индекс ключей CSV для проверки положительных ответов фильтра (строится при первой проверке,
+    // чужие дозаписи дочитываются в него с syncedSize)
+    private DedupFilter index;
+
+    // Счётчики дедупликации
+    private final DedupStats dedupStats = new DedupStats("csv");
+
+    // Сколько строк дописано этим writer'ом
+    private long writtenRows;
+
+    // Объём и число строк, дописанных в CSV всеми writer'ами
+    private static final Counter CSV_BYTES = Counter.builder("etl.csv.bytes")
+            .baseUnit("bytes")
+            .register(EtlMetrics.registry());
+    private static final Counter CSV_ROWS = Counter.builder("etl.csv.rows")
+            .register(EtlMetrics.registry());
+
+    // Количество потоков для перестроения фильтра по содержимому CSV
+    private static final int REBUILD_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Фильтр для предотвращения вставки дубликотаов, и сохранения уже вставленных значений
+    private DedupFilter dedupFilter;
+
+    // Размер CSV, которому соответствует фильтр в памяти; другой размер значит, что CSV дописал другой процесс
+    private long syncedSize;
 
     // Форматер для форматирвоания даты
     private final DateTimeFormatter fmtDate = DateTimeFormatter.ISO_DATE;
@@ -49,6 +92,12 @@ public class CsvItemWriter implements AutoCloseable {
             "rainMm","showersMm","snowfallMm","fetchedAt"
     };
 
+    /** Колонки CSV в порядке записи (схема файла, который пишет этот writer) */
+    @NotNull
+    public static String[] header() {
+        return HEADER.clone();
+    }
+
     /**
      * Инициализирует пути для CSV и BloomFilter.
      * Если CSV ещё не существует — создаёт файл и записывает заголовок.
@@ -74,8 +123,26 @@ public class CsvItemWriter implements AutoCloseable {
                          Path bloomPath,
                          long expectedEntries,
                          double fpp) throws IOException {
+        this(outputCsvPath, bloomPath, expectedEntries, fpp, DedupFilterType.configured());
+    }
+
+    /**
+     * @param outputCsvPath         путь к CSV-файлу
+     * @param bloomPath             путь к файлу для сериализации фильтра
+     * @param expectedEntries       оценка числа уникальных записей
+     * @param fpp                   допустимая вероятность ложного срабатывания (только для BloomFilter)
+     * @param filterType            тип фильтра дедупликации
+     */
+    public CsvItemWriter(@NotNull Path outputCsvPath,
+                         Path bloomPath,
+                         long expectedEntries,
+                         double fpp,
+                         @NotNull DedupFilterType filterType) throws IOException {
         this.outputCsvPath = outputCsvPath;
+        this.filterType = filterType;
         this.bloomPath = bloomPath;
+        this.expectedEntries = expectedEntries;
+        this.fpp = fpp;
 
         if (outputCsvPath.getParent() != null) {
             Files.createDirectories(outputCsvPath.getParent());
@@ -84,53 +151,118 @@ public class CsvItemWriter implements AutoCloseable {
             Files.createDirectories(bloomPath.getParent());
         }
 
-        boolean bloomFileExists   = Files.exists(bloomPath);
-        boolean bloomFileNotEmpty = bloomFileExists && Files.size(bloomPath) > 0;
-
-        // Проверяем BloomFilter если его не существует, тогда создаем
-        BloomFilter<CharSequence> filter;
-        if (bloomFileNotEmpty) {
-            try (InputStream is = Files.newInputStream(bloomPath, StandardOpenOption.READ)) {
-                filter = BloomFilter.readFrom(
-                        is,
-                        Funnels.stringFunnel(StandardCharsets.UTF_8)
-                );
-            } catch (IOException e) {
-                filter = BloomFilter.create(
-                        Funnels.stringFunnel(StandardCharsets.UTF_8),
-                        expectedEntries,
-                        fpp
-                );
+        try (CsvFileLock lock = CsvFileLock.acquire(outputCsvPath)) {
+            // если CSV не существует (или его только что создал другой процесс и ещё не записал), пишем header
+            if (!Files.exists(outputCsvPath) || Files.size(outputCsvPath) == 0) {
+                try (BufferedWriter bw = Files.newBufferedWriter(outputCsvPath,
+                        StandardOpenOption.CREATE);
+                     CSVWriter csv = new CSVWriter(
+                             bw,
+                             ';',
+                             ICSVWriter.NO_QUOTE_CHARACTER,
+                             ICSVWriter.DEFAULT_ESCAPE_CHARACTER,
+                             ICSVWriter.DEFAULT_LINE_END
+                     )) {
+                    csv.writeNext(HEADER, false);
+                }
             }
-        } else {
-            filter = BloomFilter.create(
-                    Funnels.stringFunnel(StandardCharsets.UTF_8),
-                    expectedEntries,
-                    fpp
-            );
+            loadDedupFilter();
+        }
+    }
+
+    /**
+     * Принудительно перестраивает фильтр по текущему содержимому CSV и сохраняет его на диск.
+     */
+    public void rebuildDedupFilter() throws IOException {
+        try (CsvFileLock lock = CsvFileLock.acquire(outputCsvPath)) {
+            rebuildLocked();
         }
-        this.bloomFilter = filter;
-
-        // если CSV не существует, создаём и пишем header
-        if (!Files.exists(outputCsvPath)) {
-            try (BufferedWriter bw = Files.newBufferedWriter(outputCsvPath,
-                    StandardOpenOption.CREATE);
-                 CSVWriter csv = new CSVWriter(
-                         bw,
-                         ';',
-                         ICSVWriter.NO_QUOTE_CHARACTER,
-                         ICSVWriter.DEFAULT_ESCAPE_CHARACTER,
-                         ICSVWriter.DEFAULT_LINE_END
-                 )) {
-                csv.writeNext(HEADER, false);
+    }
+
+    private void rebuildLocked() throws IOException {
+        this.index = null;
+        this.dedupFilter = DedupFilterRebuilder.fromCsv(outputCsvPath, filterType, expectedEntries, fpp, REBUILD_THREADS);
+        saveDedupFilter();
+    }
+
+    /**
+     * Загружает фильтр с диска. Если файла нет, он повреждён, другого типа или не соответствует текущему CSV
+     * (в файл писали в обход фильтра) — перестраивает фильтр по содержимому CSV. Вызывается под блокировкой CSV.
+     */
+    private void loadDedupFilter() throws IOException {
+        long size = Files.size(outputCsvPath);
+        Optional<DedupFilter> stored = DedupFilterStore.load(bloomPath, size, filterType);
+        if (stored.isPresent()) {
+            if (index != null) {
+                // другой процесс только дописывал: в индекс дочитываем его строки, а не весь файл
+                if (size > syncedSize) {
+                    DedupFilterRebuilder.appendFromCsv(outputCsvPath, syncedSize, index);
+                } else {
+                    index = null;
+                }
             }
+            this.dedupFilter = stored.get();
+            this.syncedSize = size;
+        } else {
+            rebuildLocked();
+        }
+    }
+
+    /** Счётчики дедупликации (в том числе фактические ложные срабатывания фильтра) */
+    public DedupStats getDedupStats() {
+        return dedupStats;
+    }
+
+    /**
+     * Проверяет положительный ответ фильтра по точному индексу ключей CSV. Индекс строится по файлу
+     * при первом положительном ответе (перед этим буфер writer'а сбрасывается на диск) и дальше
+     * поддерживается при каждой записи, а строки других процессов дочитываются в него по мере дозаписи.
+     * Для точного фильтра и при dedup.verify=false проверки нет.
+     *
+     * @return true, если записи в CSV нет и фильтр ошибся
+     */
+    private boolean isFalsePositive(@NotNull FinalRecord r, @NotNull CSVWriter csv) throws IOException {
+        if (!verify || dedupFilter.isExact()) {
+            return false;
+        }
+        if (index == null) {
+            csv.flush();
+            // ёмкость — по числу строк файла: множество растёт само, резерв под expectedEntries не нужен
+            index = DedupFilterRebuilder.fromCsv(outputCsvPath, DedupFilterType.EXACT, 1, fpp, REBUILD_THREADS);
         }
+        boolean falsePositive = !index.mightContain(r);
+        dedupStats.recordVerification(falsePositive ? 0 : 1, falsePositive ? 1 : 0);
+        return falsePositive;
+    }
+
+    /** Количество строк, дописанных этим writer'ом */
+    public long getWrittenRows() {
+        return writtenRows;
+    }
+
+    /** Фильтр дедупликации (тип, заполнение, оценка FPP) */
+    public DedupFilter getDedupFilter() {
+        return dedupFilter;
     }
 
     /**
-     * Дописывает новые записи, проверяя BloomFilter перед записью.
+     * Дописывает новые записи, проверяя фильтр перед записью.
      */
     public void write(@NotNull List<FinalRecord> records) throws IOException {
+        try (CsvFileLock lock = CsvFileLock.acquire(outputCsvPath)) {
+            // CSV дописал другой процесс — его ключи есть в сохранённом им фильтре
+            if (Files.size(outputCsvPath) != syncedSize) {
+                loadDedupFilter();
+            }
+            append(records);
+            // сохраняем фильтр на диск до снятия блокировки
+            saveDedupFilter();
+        }
+    }
+
+    private void append(@NotNull List<FinalRecord> records) throws IOException {
+        long sizeBefore = Files.size(outputCsvPath);
+        long rowsBefore = writtenRows;
         try (BufferedWriter bw = Files.newBufferedWriter(outputCsvPath,
                 StandardOpenOption.APPEND);
              CSVWriter csv = new CSVWriter(bw, ';',
@@ -138,32 +270,22 @@ public class CsvItemWriter implements AutoCloseable {
                      ICSVWriter.DEFAULT_ESCAPE_CHARACTER,
                      ICSVWriter.DEFAULT_LINE_END)) {
             for (FinalRecord r : records) {
-                String key = buildKey(r);
-                // проверяем, возможно ли присутствие ключа
-                if (!bloomFilter.mightContain(key)) {
-                    String[] line = buildLine(r);
-                    csv.writeNext(line, false);
-                    bloomFilter.put(key);
+                // проверяем, возможно ли присутствие ключа date + latitude + longitude
+                boolean positive = dedupFilter.mightContain(r);
+                dedupStats.recordCheck(positive);
+                if (positive && !isFalsePositive(r, csv)) {
+                    continue;
+                }
+                csv.writeNext(buildLine(r), false);
+                writtenRows++;
+                dedupFilter.put(r);
+                if (index != null) {
+                    index.put(r);
                 }
             }
         }
-        // сохраняем BloomFilter на диск
-        try (OutputStream os = Files.newOutputStream(bloomPath,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            bloomFilter.writeTo(os);
-        }
-    }
-
-
-    /**
-     * Сздаем ключ на основе date + latitude + longitude, который будет использоваться в BloomFilter
-     */
-    @NotNull
-    private String buildKey(@NotNull FinalRecord r) {
-        return r.getDate().format(fmtDate)
-                + ":" + r.getLatitude()
-                + ":" + r.getLongitude();
+        CSV_BYTES.increment(Files.size(outputCsvPath) - sizeBefore);
+        CSV_ROWS.increment(writtenRows - rowsBefore);
     }
 
     /**
@@ -230,13 +352,26 @@ public class CsvItemWriter implements AutoCloseable {
 
     @Override
     public void close() throws Exception {
-        // Сохраняем BloomFilter на диск ещё раз на случай,
-        // если после последней записи были добавлены ключи.
-        try (OutputStream os = Files.newOutputStream(
-                bloomPath,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            bloomFilter.writeTo(os);
+        // Сохраняем фильтр на диск ещё раз на случай, если после последней записи были добавлены ключи.
+        // Если CSV с тех пор дописал другой процесс, на диске уже его фильтр, более полный, чем наш.
+        try (CsvFileLock lock = CsvFileLock.acquire(outputCsvPath)) {
+            if (Files.size(outputCsvPath) == syncedSize) {
+                saveDedupFilter();
+            }
+        }
+    }
+
+    /**
+     * Сохраняет фильтр вместе с текущим размером CSV, по которому при следующем запуске (и другими процессами)
+     * проверяется актуальность фильтра. Вызывается под блокировкой CSV.
+     */
+    private void saveDedupFilter() throws IOException {
+        syncedSize = Files.size(outputCsvPath);
+        DedupFilterStore.save(bloomPath, dedupFilter, syncedSize);
+        if (dedupFilter.isSaturated(fpp)) {
+            System.err.printf("Фильтр CSV переполнен: оценка FPP %.4f при заданной %.4f, новые записи могут теряться. " +
+                    "Увеличьте expectedEntries или используйте dedup.filter=scalable|exact: %s%n",
+                    dedupFilter.estimatedFpp(), fpp, bloomPath);
         }
     }
 }
@@ -1,41 +1,68 @@
 package com.shtisu.etl.writer;
 
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
+import com.shtisu.etl.config.AppProperties;
 import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.dedup.DedupFilter;
+import com.shtisu.etl.dedup.DedupFilterRebuilder;
+import com.shtisu.etl.dedup.DedupFilterStore;
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.dedup.DedupStats;
 import com.shtisu.etl.model.FinalRecord;
+import com.zaxxer.hikari.HikariDataSource;
 
 import javax.sql.DataSource;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.sql.*;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 /**
- * DataBaseItemWriter с использованием BloomFilter для предотвращения вставки дубликатов
- * на основе ключа date+latitude+longitude.
+ * DataBaseItemWriter с использованием фильтра дедупликации (BloomFilter или точного множества ключей,
+ * см. {@link DedupFilterType}) для предотвращения вставки дубликатов на основе ключа date+latitude+longitude.
  */
-public class DataBaseItemWriter implements AutoCloseable {
+public class DataBaseItemWriter implements FinalRecordWriter {
     // DataSource для подключенияк базе данных
-    private final DataSource ds;
+    final DataSource ds;
     private final Path bloomPath;
+    private final long expectedEntries;
+    private final double fpp;
+    private final DedupFilterType filterType;
 
-    // BloomFilter для предотвращения вставки дубликотаов, и сохранения уже вставленных значений
-    private final BloomFilter<CharSequence> bloomFilter;
+    // Фильтр для предотвращения вставки дубликотаов, и сохранения уже вставленных значений
+    DedupFilter dedupFilter;
 
-    // Форматер для форматирования даты
-    private static final DateTimeFormatter FMT_DATE = DateTimeFormatter.ISO_DATE;
+    // Число строк в final_records (отпечаток для проверки актуальности фильтра), -1 — неизвестно
+    private long rowCount;
 
-    // Список колонок таблицы final_records
-    private static final String COLUMN_LIST =
+    // Способ загрузки пачки
+    private final DbWriteMode writeMode;
+
+    // В режиме REFRESH — ширина окна обновления в днях (db.refreshDays), иначе -1
+    private final int refreshDays;
+
+    // Проверять ли положительные ответы фильтра по таблице (dedup.verify)
+    private final boolean verify = AppProperties.getBoolean("dedup.verify", true);
+
+    // Счётчики дедупликации
+    private final DedupStats dedupStats = new DedupStats("db");
+
+    // Долгоживущая сессия записи (соединение, INSERT и текущая пачка)
+    private final DbSession session;
+
+    // Сколько строк вставлено этим writer'ом
+    private long insertedRows;
+
+    // Список колонок таблицы final_records (в этом же порядке их читает FinalRecordQuery)
+    public static final String COLUMN_LIST =
             "latitude, longitude, date, sunrise_iso, sunset_iso, daylight_hours, " +
                     "avg_temperature_2m24h, avg_relative_humidity_2m24h, avg_dew_point_2m24h, avg_apparent_temperature_24h, " +
                     "avg_temperature_80m24h, avg_temperature_120m24h, avg_wind_speed_10m24h, avg_wind_speed_80m24h, " +
@@ -45,19 +72,24 @@ public class DataBaseItemWriter implements AutoCloseable {
                     "avg_visibility_daylight, total_rain_daylight, total_showers_daylight, total_snowfall_daylight, " +
                     "wind_speed_10m_mpers, wind_speed_80m_mpers, temperature_2m_celsius, apparent_temperature_celsius, " +
                     "temperature_80m_celsius, temperature_120m_celsius, soil_temperature_0cm_celsius, soil_temperature_6cm_celsius, " +
-                    "rain_mm, showers_mm, snowfall_mm, fetched_at";
+                    "rain_mm, showers_mm, snowfall_mm, fetched_at, content_hash";
 
-    // Генерим 42 знака "?" через Collections.nCopies
+    // Размер пачки по умолчанию, если db.batchSize не задан
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+
+    // Генерим 43 знака "?" через Collections.nCopies
     private static final String PLACEHOLDERS = String.join(
             ", ", Collections.nCopies(COLUMN_LIST.split(",").length, "?")
     );
     // Строка для вствки в базу данных (ON CONFLICT  DO NOTHING) дополнительно защищает от дубликатов
-    private static final String INSERT_SQL =
+    static final String INSERT_SQL =
                     "INSERT INTO final_records (" + COLUMN_LIST + ") " +
                     "VALUES (" + PLACEHOLDERS + ") " +
                     "ON CONFLICT  DO NOTHING";
 
     /**
+     * Writer с размером пачки из application.properties (db.batchSize, db.adaptiveBatch).
+     *
      * @param bloomPath       путь к файлу сериализации BloomFilter
      * @param expectedEntries оценка числа уникальных записей для Bloom‑фильтра
      * @param fpp             допустимая ложноположительная вероятность (0–1)
@@ -65,133 +97,416 @@ public class DataBaseItemWriter implements AutoCloseable {
     public DataBaseItemWriter(Path bloomPath,
                               long expectedEntries,
                               double fpp) throws IOException{
-        this.ds = DataSourceFactory.getDataSource();
+        this(bloomPath, expectedEntries, fpp, AppProperties.getInt("db.batchSize", DEFAULT_BATCH_SIZE));
+    }
+
+    /**
+     * @param bloomPath       путь к файлу сериализации BloomFilter
+     * @param expectedEntries оценка числа уникальных записей для Bloom‑фильтра
+     * @param fpp             допустимая ложноположительная вероятность (0–1)
+     * @param batchSize       сколько строк отправлять и коммитить за один раз
+     */
+    public DataBaseItemWriter(Path bloomPath,
+                              long expectedEntries,
+                              double fpp,
+                              int batchSize) throws IOException {
+        this(bloomPath, expectedEntries, fpp, batchSize, configuredWriteMode());
+    }
+
+    /**
+     * @param bloomPath       путь к файлу сериализации BloomFilter
+     * @param expectedEntries оценка числа уникальных записей для Bloom‑фильтра
+     * @param fpp             допустимая ложноположительная вероятность (0–1)
+     * @param batchSize       сколько строк отправлять и коммитить за один раз
+     * @param writeMode       способ загрузки (пакетный INSERT, COPY через staging-таблицу или REFRESH)
+     */
+    public DataBaseItemWriter(Path bloomPath,
+                              long expectedEntries,
+                              double fpp,
+                              int batchSize,
+                              DbWriteMode writeMode) throws IOException {
+        this(DataSourceFactory.getDataSource(), bloomPath, expectedEntries, fpp, batchSizerFor(batchSize), writeMode);
+    }
+
+    /**
+     * @param ds              пул соединений, в котором находится таблица final_records
+     * @param bloomPath       путь к файлу сериализации BloomFilter
+     * @param expectedEntries оценка числа уникальных записей для Bloom‑фильтра
+     * @param fpp             допустимая ложноположительная вероятность (0–1)
+     * @param batchSizer      стратегия выбора размера пачки
+     * @param writeMode       способ загрузки (пакетный INSERT, COPY через staging-таблицу или REFRESH)
+     */
+    public DataBaseItemWriter(DataSource ds,
+                              Path bloomPath,
+                              long expectedEntries,
+                              double fpp,
+                              AdaptiveBatchSizer batchSizer,
+                              DbWriteMode writeMode) throws IOException {
+        this(ds, bloomPath, expectedEntries, fpp, batchSizer, writeMode, DedupFilterType.configured());
+    }
+
+    /**
+     * @param ds              пул соединений, в котором находится таблица final_records
+     * @param bloomPath       путь к файлу сериализации фильтра
+     * @param expectedEntries оценка числа уникальных записей для фильтра
+     * @param fpp             допустимая ложноположительная вероятность (0–1), только для BloomFilter
+     * @param batchSizer      стратегия выбора размера пачки
+     * @param writeMode       способ загрузки (пакетный INSERT, COPY через staging-таблицу или REFRESH)
+     * @param filterType      тип фильтра дедупликации
+     */
+    public DataBaseItemWriter(DataSource ds,
+                              Path bloomPath,
+                              long expectedEntries,
+                              double fpp,
+                              AdaptiveBatchSizer batchSizer,
+                              DbWriteMode writeMode,
+                              DedupFilterType filterType) throws IOException {
+        this.ds = ds;
+        this.filterType = filterType;
+        this.writeMode = writeMode;
+        this.refreshDays = writeMode == DbWriteMode.REFRESH ? AppProperties.getInt("db.refreshDays", 7) : -1;
+        this.session = new DbSession(ds, batchSizer, writeMode);
         this.bloomPath = bloomPath;
+        this.expectedEntries = expectedEntries;
+        this.fpp = fpp;
 
-        if(bloomPath.getParent() == null){
+        if (bloomPath.getParent() != null) {
             Files.createDirectories(bloomPath.getParent());
         }
 
-        boolean exists = Files.exists(bloomPath) && Files.size(bloomPath) > 0;
-        BloomFilter<CharSequence> filter;
-        if (exists) {
-            try (InputStream is = Files.newInputStream(bloomPath, StandardOpenOption.READ)) {
-                filter = BloomFilter.readFrom(is, Funnels.stringFunnel(StandardCharsets.UTF_8));
-            } catch (IOException e) {
-                // повреждённый файл → стартуем с нуля
-                filter = BloomFilter.create(
-                        Funnels.stringFunnel(StandardCharsets.UTF_8),
-                        expectedEntries, fpp
-                );
-            }
+        addContentHashColumn(ds);
+
+        // Загружаем фильтр с диска. Если файла нет, он повреждён, другого типа или число строк в таблице не совпадает
+        // с сохранённым (в таблицу писали в обход фильтра) — перестраиваем фильтр по содержимому final_records
+        this.rowCount = countRows();
+        Optional<DedupFilter> stored = rowCount >= 0
+                ? DedupFilterStore.load(bloomPath, rowCount, filterType)
+                : Optional.empty();
+        if (stored.isPresent()) {
+            this.dedupFilter = stored.get();
+        } else if (rowCount >= 0) {
+            rebuildDedupFilter();
         } else {
-            filter = BloomFilter.create(
-                    Funnels.stringFunnel(StandardCharsets.UTF_8),
-                    expectedEntries, fpp
-            );
+            // таблица недоступна — перестраивать не из чего, стартуем с пустым фильтром
+            System.err.println("final_records недоступна, фильтр DB создан пустым: " + bloomPath);
+            this.dedupFilter = filterType.create(expectedEntries, fpp);
+        }
+    }
+
+    /**
+     * Принудительно перестраивает фильтр по текущему содержимому final_records и сохраняет его на диск.
+     * Таблица сканируется несколькими соединениями параллельно (но не больше, чем позволяет пул).
+     */
+    public void rebuildDedupFilter() throws IOException {
+        try {
+            this.dedupFilter = DedupFilterRebuilder.fromDatabase(ds, filterType, expectedEntries, fpp, poolParallelism(ds));
+            this.rowCount = countRows();
+        } catch (SQLException e) {
+            throw new IOException("Не удалось перестроить фильтр по final_records: " + e.getMessage(), e);
         }
-        this.bloomFilter = filter;
+        saveDedupFilter();
     }
 
 
 
 
     /**
-     * Вставляет список FinalRecord в БД, пропуская уже виденные по BloomFilter.
-     * После вставки сериализует BloomFilter на диск.
+     * Вставляет список FinalRecord в БД, пропуская уже записанные
+     * (в режиме REFRESH записи последних db.refreshDays дней не пропускаются, а сливаются с таблицей).
+     * Записи отправляются пачками по {@link AdaptiveBatchSizer#current()} строк (пакетным INSERT или через COPY,
+     * см. {@link DbWriteMode}), каждая пачка коммитится отдельно,
+     * поэтому длина транзакции не зависит от размера входного списка. Ключи попадают в фильтр только
+     * после коммита своей пачки. После вставки сериализует фильтр на диск.
      */
     public void write(List<FinalRecord> records) throws SQLException, IOException {
-        try (Connection conn = ds.getConnection();
-             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
-            conn.setAutoCommit(false);
+        try {
+            trackInserted(writeThrough(session, records));
+        } catch (SQLException | IOException e) {
+            // часть пачек могла быть закоммичена — число строк будет пересчитано при сохранении фильтра
+            trackInserted(-1);
+            throw e;
+        }
+
+        // Сохраняем состояние фильтра
+        saveDedupFilter();
+    }
 
+    /**
+     * Пишет записи через сессию. Ключи, которых точно нет в фильтре, сразу идут в пачку.
+     * Положительный ответ BloomFilter — только "возможно, уже записана": такие записи собираются
+     * и проверяются по таблице одним пакетным запросом ({@link DbKeyLookup}); отбрасываются только
+     * подтверждённые дубликаты, ложные срабатывания фильтра записываются (dedup.verify=false отключает проверку).
+     *
+     * @return число вставленных строк, -1 — если драйвер его не сообщает
+     */
+    long writeThrough(DbSession session, List<FinalRecord> records) throws SQLException, IOException {
+        long inserted = 0;
+        try {
+            List<FinalRecord> suspects = new ArrayList<>();
+            // окно считается на каждую запись: долгоживущий writer (демон, REST-сервис) не застревает в дне запуска
+            LocalDate refreshFrom = refreshFrom();
             for (FinalRecord r : records) {
-                String key = buildKey(r);
-
-                if (!bloomFilter.mightContain(key)) {
-                    int idx = 1;
-
-                    ps.setDouble(idx++, r.getLatitude());
-                    ps.setDouble(idx++, r.getLongitude());
-                    ps.setDate  (idx++, Date.valueOf((r.getDate())));
-                    ps.setTimestamp(idx++, Timestamp.from(r.getSunriseIso()));
-                    ps.setTimestamp(idx++, Timestamp.from(r.getSunsetIso()));
-                    ps.setDouble(idx++, r.getDaylightHours());
-
-                    ps.setDouble(idx++, r.getAvgTemperature2m24h());
-                    ps.setDouble(idx++, r.getAvgRelativeHumidity2m24h());
-                    ps.setDouble(idx++, r.getAvgDewPoint2m24h());
-                    ps.setDouble(idx++, r.getAvgApparentTemperature24h());
-                    ps.setDouble(idx++, r.getAvgTemperature80m24h());
-                    ps.setDouble(idx++, r.getAvgTemperature120m24h());
-                    ps.setDouble(idx++, r.getAvgWindSpeed10m24h());
-                    ps.setDouble(idx++, r.getAvgWindSpeed80m24h());
-                    ps.setDouble(idx++, r.getAvgVisibility24h());
-                    ps.setDouble(idx++, r.getTotalRain24h());
-                    ps.setDouble(idx++, r.getTotalShowers24h());
-                    ps.setDouble(idx++, r.getTotalSnowfall24h());
-
-                    ps.setDouble(idx++, r.getAvgTemperature2mDaylight());
-                    ps.setDouble(idx++, r.getAvgRelativeHumidity2mDaylight());
-                    ps.setDouble(idx++, r.getAvgDewPoint2mDaylight());
-                    ps.setDouble(idx++, r.getAvgApparentTemperatureDaylight());
-                    ps.setDouble(idx++, r.getAvgTemperature80mDaylight());
-                    ps.setDouble(idx++, r.getAvgTemperature120mDaylight());
-                    ps.setDouble(idx++, r.getAvgWindSpeed10mDaylight());
-                    ps.setDouble(idx++, r.getAvgWindSpeed80mDaylight());
-                    ps.setDouble(idx++, r.getAvgVisibilityDaylight());
-                    ps.setDouble(idx++, r.getTotalRainDaylight());
-                    ps.setDouble(idx++, r.getTotalShowersDaylight());
-                    ps.setDouble(idx++, r.getTotalSnowfallDaylight());
-
-                    ps.setDouble(idx++, r.getWindSpeed10mMPerS());
-                    ps.setDouble(idx++, r.getWindSpeed80mMPerS());
-                    ps.setDouble(idx++, r.getTemperature2mCelsius());
-                    ps.setDouble(idx++, r.getApparentTemperatureCelsius());
-                    ps.setDouble(idx++, r.getTemperature80mCelsius());
-                    ps.setDouble(idx++, r.getTemperature120mCelsius());
-                    ps.setDouble(idx++, r.getSoilTemperature0cmCelsius());
-                    ps.setDouble(idx++, r.getSoilTemperature6cmCelsius());
-                    ps.setDouble(idx++, r.getRainMm());
-                    ps.setDouble(idx++, r.getShowersMm());
-                    ps.setDouble(idx++, r.getSnowfallMm());
-
-                    ps.setTimestamp(idx, Timestamp.from(r.getFetchedAt()));
-                    ps.addBatch();
-
-                    bloomFilter.put(key);
+                if (refreshes(r, refreshFrom)) {
+                    if (session.add(buildKey(r), r, true)) {
+                        inserted = sum(inserted, session.flush(dedupFilter));
+                    }
+                    continue;
+                }
+                boolean positive = dedupFilter.mightContain(r);
+                dedupStats.recordCheck(positive);
+                if (!positive) {
+                    inserted = add(session, r, inserted);
+                } else if (verify && !dedupFilter.isExact()) {
+                    suspects.add(r);
                 }
             }
 
-            ps.executeBatch();
-            conn.commit();
+            if (!suspects.isEmpty()) {
+                Set<String> existing = session.existingKeys(suspects);
+                long falsePositives = 0;
+                for (FinalRecord r : suspects) {
+                    if (!existing.contains(buildKey(r))) {
+                        falsePositives++;
+                        inserted = add(session, r, inserted);
+                    }
+                }
+                dedupStats.recordVerification(suspects.size() - falsePositives, falsePositives);
+            }
+            return sum(inserted, session.flush(dedupFilter));
+        } catch (SQLException | IOException e) {
+            // Незакоммиченная пачка откатывается, соединение закрывается и будет открыто заново при следующей записи
+            session.abort();
+            throw e;
         }
+    }
 
-        // Сохраняем состояние BloomFilter
-        try (OutputStream os = Files.newOutputStream(bloomPath,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            bloomFilter.writeTo(os);
+    /** Добавляет запись в пачку сессии и отправляет пачку, если она заполнена */
+    private long add(DbSession session, FinalRecord r, long inserted) throws SQLException, IOException {
+        if (session.add(buildKey(r), r)) {
+            return sum(inserted, session.flush(dedupFilter));
         }
+        return inserted;
+    }
+
+    static long sum(long a, long b) {
+        return a < 0 || b < 0 ? -1 : a + b;
+    }
+
+    /** Счётчики дедупликации (в том числе фактические ложные срабатывания фильтра) */
+    public DedupStats getDedupStats() {
+        return dedupStats;
+    }
+
+    /** Количество строк, вставленных этим writer'ом (по данным драйвера) */
+    public long getInsertedRows() {
+        return insertedRows;
+    }
+
+    /** Количество существующих строк, обновлённых этим writer'ом в режиме REFRESH */
+    public long getUpdatedRows() {
+        return session.updatedRows();
+    }
+
+    /** Фильтр дедупликации (тип, заполнение, оценка FPP) */
+    public DedupFilter getDedupFilter() {
+        return dedupFilter;
+    }
+
+    /** Текущий размер пачки */
+    public int getBatchSize() {
+        return session.batchSize();
+    }
+
+    /** Способ загрузки */
+    public DbWriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    /**
+     * Заполняет параметры INSERT значениями записи (порядок совпадает с COLUMN_LIST).
+     */
+    static void bind(PreparedStatement ps, FinalRecord r) throws SQLException {
+        int idx = 1;
+
+        ps.setDouble(idx++, r.getLatitude());
+        ps.setDouble(idx++, r.getLongitude());
+        ps.setDate  (idx++, Date.valueOf((r.getDate())));
+        ps.setTimestamp(idx++, Timestamp.from(r.getSunriseIso()));
+        ps.setTimestamp(idx++, Timestamp.from(r.getSunsetIso()));
+        ps.setDouble(idx++, r.getDaylightHours());
+
+        ps.setDouble(idx++, r.getAvgTemperature2m24h());
+        ps.setDouble(idx++, r.getAvgRelativeHumidity2m24h());
+        ps.setDouble(idx++, r.getAvgDewPoint2m24h());
+        ps.setDouble(idx++, r.getAvgApparentTemperature24h());
+        ps.setDouble(idx++, r.getAvgTemperature80m24h());
+        ps.setDouble(idx++, r.getAvgTemperature120m24h());
+        ps.setDouble(idx++, r.getAvgWindSpeed10m24h());
+        ps.setDouble(idx++, r.getAvgWindSpeed80m24h());
+        ps.setDouble(idx++, r.getAvgVisibility24h());
+        ps.setDouble(idx++, r.getTotalRain24h());
+        ps.setDouble(idx++, r.getTotalShowers24h());
+        ps.setDouble(idx++, r.getTotalSnowfall24h());
+
+        ps.setDouble(idx++, r.getAvgTemperature2mDaylight());
+        ps.setDouble(idx++, r.getAvgRelativeHumidity2mDaylight());
+        ps.setDouble(idx++, r.getAvgDewPoint2mDaylight());
+        ps.setDouble(idx++, r.getAvgApparentTemperatureDaylight());
+        ps.setDouble(idx++, r.getAvgTemperature80mDaylight());
+        ps.setDouble(idx++, r.getAvgTemperature120mDaylight());
+        ps.setDouble(idx++, r.getAvgWindSpeed10mDaylight());
+        ps.setDouble(idx++, r.getAvgWindSpeed80mDaylight());
+        ps.setDouble(idx++, r.getAvgVisibilityDaylight());
+        ps.setDouble(idx++, r.getTotalRainDaylight());
+        ps.setDouble(idx++, r.getTotalShowersDaylight());
+        ps.setDouble(idx++, r.getTotalSnowfallDaylight());
+
+        ps.setDouble(idx++, r.getWindSpeed10mMPerS());
+        ps.setDouble(idx++, r.getWindSpeed80mMPerS());
+        ps.setDouble(idx++, r.getTemperature2mCelsius());
+        ps.setDouble(idx++, r.getApparentTemperatureCelsius());
+        ps.setDouble(idx++, r.getTemperature80mCelsius());
+        ps.setDouble(idx++, r.getTemperature120mCelsius());
+        ps.setDouble(idx++, r.getSoilTemperature0cmCelsius());
+        ps.setDouble(idx++, r.getSoilTemperature6cmCelsius());
+        ps.setDouble(idx++, r.getRainMm());
+        ps.setDouble(idx++, r.getShowersMm());
+        ps.setDouble(idx++, r.getSnowfallMm());
+
+        ps.setTimestamp(idx++, Timestamp.from(r.getFetchedAt()));
+        ps.setLong(idx, ContentHash.of(r));
+    }
+
+    /** Первый день окна обновления режима REFRESH на сегодня (UTC) или null в остальных режимах */
+    LocalDate refreshFrom() {
+        return refreshDays < 0 ? null : LocalDate.now(ZoneOffset.UTC).minusDays(refreshDays);
+    }
+
+    /** Запись попадает в окно обновления режима REFRESH и идёт в базу в обход фильтра */
+    static boolean refreshes(FinalRecord r, LocalDate refreshFrom) {
+        return refreshFrom != null && !r.getDate().isBefore(refreshFrom);
     }
 
     /** Ключ для фильтрации: date:lat:lon */
-    private String buildKey(FinalRecord r) {
-        return r.getDate().format(FMT_DATE)
-                + ":" + r.getLatitude()
-                + ":" + r.getLongitude();
+    String buildKey(FinalRecord r) {
+        return DedupKeys.of(r);
+    }
+
+    /**
+     * Учитывает вставленные строки в счётчике строк таблицы. Если драйвер не сообщает число строк
+     * (например, PostgreSQL с reWriteBatchedInserts), счётчик сбрасывается и будет пересчитан при сохранении.
+     */
+    void trackInserted(long inserted) {
+        if (inserted < 0) {
+            rowCount = -1;
+            return;
+        }
+        insertedRows += inserted;
+        if (rowCount >= 0) {
+            rowCount += inserted;
+        }
+    }
+
+    /** Количество строк в final_records или -1, если таблица недоступна */
+    /**
+     * Добавляет колонку content_hash в final_records, созданную по схеме без неё: writer пишет её во всех режимах.
+     * Если таблицы нет, ничего не делает (см. {@link #countRows()}).
+     *
+     * @throws IllegalStateException если колонки нет и добавить её не удалось (например, нет прав на ALTER)
+     */
+    static void addContentHashColumn(DataSource ds) {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement()) {
+            try {
+                st.executeQuery("SELECT content_hash FROM final_records WHERE 1 = 0").close();
+                return;
+            } catch (SQLException missing) {
+                // колонки (или всей таблицы) нет
+            }
+            try {
+                st.execute("ALTER TABLE final_records ADD COLUMN IF NOT EXISTS content_hash BIGINT");
+                if (!conn.getAutoCommit()) conn.commit();
+                System.err.println("В final_records добавлена колонка content_hash");
+            } catch (SQLException e) {
+                if (!tableExists(st)) return;
+                throw new IllegalStateException("final_records has no content_hash column and it could not be added; "
+                        + "run ALTER TABLE final_records ADD COLUMN IF NOT EXISTS content_hash BIGINT (db/init.sql): "
+                        + e.getMessage(), e);
+            }
+        } catch (SQLException e) {
+            // база недоступна — как и при подсчёте строк, ошибка проявится при записи
+        }
+    }
+
+    private static boolean tableExists(Statement st) {
+        try {
+            st.executeQuery("SELECT 1 FROM final_records WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private long countRows() {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM final_records")) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /** Способ загрузки из application.properties (db.writeMode=insert|copy|refresh) */
+    static DbWriteMode configuredWriteMode() {
+        return DbWriteMode.parse(AppProperties.get("db.writeMode", "insert"));
+    }
+
+    /**
+     * Стратегия размера пачки: постоянный размер или адаптивный (db.adaptiveBatch=true),
+     * границы и целевая задержка коммита берутся из application.properties.
+     */
+    static AdaptiveBatchSizer batchSizerFor(int batchSize) {
+        if (!AppProperties.getBoolean("db.adaptiveBatch", false)) {
+            return AdaptiveBatchSizer.fixed(batchSize);
+        }
+        return AdaptiveBatchSizer.adaptive(batchSize,
+                AppProperties.getInt("db.minBatchSize", 100),
+                AppProperties.getInt("db.maxBatchSize", 50_000),
+                AppProperties.getLong("db.targetCommitMillis", 500));
+    }
+
+    /** Сколько соединений можно занять параллельной работой: все соединения пула, кроме одного */
+    static int poolParallelism(DataSource ds) {
+        if (ds instanceof HikariDataSource hikari) {
+            return Math.max(1, hikari.getMaximumPoolSize() - 1);
+        }
+        return 1;
+    }
+
+    /**
+     * Сохраняет фильтр вместе с текущим числом строк таблицы, по которому при следующем запуске
+     * проверяется актуальность фильтра.
+     */
+    void saveDedupFilter() throws IOException {
+        if (rowCount < 0) {
+            rowCount = countRows();
+        }
+        DedupFilterStore.save(bloomPath, dedupFilter, rowCount);
+        if (dedupFilter.isSaturated(fpp)) {
+            System.err.printf("Фильтр DB переполнен: оценка FPP %.4f при заданной %.4f, новые записи могут теряться. " +
+                    "Увеличьте expectedEntries или используйте dedup.filter=scalable|exact: %s%n",
+                    dedupFilter.estimatedFpp(), fpp, bloomPath);
+        }
     }
 
 
     @Override
     public void close() throws Exception {
-        // Сохраняем BloomFilter на диск ещё раз на случай,
+        session.close();
+        // Сохраняем фильтр на диск ещё раз на случай,
         // если после последней записи были добавлены ключи.
-        try (OutputStream os = Files.newOutputStream(
-                bloomPath,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            bloomFilter.writeTo(os);
-        }
+        saveDedupFilter();
     }
 }
@@ -0,0 +1,51 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Подписчики на коммиты final_records в этом процессе: после каждого коммита пачки {@link DataBaseItemWriter}
+ * (любой режим записи, любой writer) подписчики получают записи пачки — вставленные, обновлённые или
+ * отброшенные как уже существующие. Так кэш чтения сбрасывает ровно те точки и даты, которые могли измениться.
+ *
+ * Подписчик вызывается в потоке записи сразу после коммита и не должен надолго его задерживать;
+ * его ошибка пишется в System.err и не прерывает запись.
+ */
+public final class DbCommitListeners {
+
+    /** Подписчик на коммиты */
+    @FunctionalInterface
+    public interface Listener {
+        void committed(Collection<FinalRecord> records);
+    }
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private DbCommitListeners() {
+    }
+
+    public static void add(@NotNull Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void remove(@NotNull Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    static void committed(Collection<FinalRecord> records) {
+        if (LISTENERS.isEmpty() || records.isEmpty()) return;
+        Collection<FinalRecord> view = Collections.unmodifiableCollection(records);
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.committed(view);
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка подписчика на коммит final_records: " + e.getMessage());
+            }
+        }
+    }
+}
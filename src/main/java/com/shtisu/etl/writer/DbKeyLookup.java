@@ -0,0 +1,71 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Точная проверка ключей по final_records: какие из записей уже есть в таблице.
+ * Сравниваются ключи {@link DedupKeys#of}, а не сами double: строка 40.800003 (координата ячейки, прочитанная
+ * как float) — дубликат записи с 40.8, как и в CSV. Ключи проверяются пачками одним запросом
+ * {@code WHERE (latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ? AND date = ?) OR ...} — диапазоны
+ * координат одного значения ключа ({@link DedupKeys#coordinateRange}), который обслуживается первичным ключом. Запрос идёт по соединению сессии записи ({@link DbSession}),
+ * а не по второму соединению из пула: потоки параллельной записи держат по соединению и не ждут свободного.
+ */
+final class DbKeyLookup {
+
+    // Ключей в одном запросе (5 параметров на ключ)
+    static final int LOOKUP_BATCH = 1_000;
+
+    private DbKeyLookup() { }
+
+    /**
+     * @return ключи {@link DedupKeys#of} тех записей, которые уже есть в final_records
+     */
+    @NotNull
+    static Set<String> existingKeys(@NotNull Connection conn, @NotNull List<FinalRecord> records) throws SQLException {
+        if (records.isEmpty()) return Collections.emptySet();
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < records.size(); from += LOOKUP_BATCH) {
+            List<FinalRecord> part = records.subList(from, Math.min(records.size(), from + LOOKUP_BATCH));
+            try (PreparedStatement ps = conn.prepareStatement(sqlFor(part.size()))) {
+                int idx = 1;
+                for (FinalRecord r : part) {
+                    double[] lat = DedupKeys.coordinateRange(r.getLatitude());
+                    double[] lon = DedupKeys.coordinateRange(r.getLongitude());
+                    ps.setDouble(idx++, lat[0]);
+                    ps.setDouble(idx++, lat[1]);
+                    ps.setDouble(idx++, lon[0]);
+                    ps.setDouble(idx++, lon[1]);
+                    ps.setDate(idx++, Date.valueOf(r.getDate()));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(DedupKeys.of(rs.getDate(3).toLocalDate(), rs.getDouble(1), rs.getDouble(2)));
+                    }
+                }
+            }
+        }
+        return existing;
+    }
+
+    @NotNull
+    private static String sqlFor(int keys) {
+        StringBuilder sql = new StringBuilder("SELECT latitude, longitude, date FROM final_records WHERE ");
+        List<String> ranges = new ArrayList<>(Collections.nCopies(keys,
+                "(latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ? AND date = ?)"));
+        sql.append(String.join(" OR ", ranges));
+        return sql.toString();
+    }
+}
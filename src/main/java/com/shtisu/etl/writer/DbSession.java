@@ -0,0 +1,240 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.config.AppProperties;
+import com.shtisu.etl.dedup.DedupFilter;
+import com.shtisu.etl.metrics.EtlMetrics;
+import com.shtisu.etl.model.FinalRecord;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Долгоживущая сессия записи в final_records: одно соединение, подготовленный INSERT и текущая пачка.
+ * Соединение открывается при первой записи, переиспользуется между пачками и вызовами write
+ * и закрывается в {@link #close()}. Сессия не потокобезопасна — ей пользуется ровно один поток.
+ */
+final class DbSession implements AutoCloseable {
+
+    private final DataSource ds;
+    private final AdaptiveBatchSizer batchSizer;
+    private final DbWriteMode writeMode;
+
+    // Задержка отправки пачки и коммита, размер пачки
+    private static final DistributionSummary BATCH_ROWS = DistributionSummary.builder("etl.db.batch.rows")
+            .register(EtlMetrics.registry());
+    private final Timer batchTimer;
+    private final Timer commitTimer;
+
+    private Connection connection;
+    private PreparedStatement statement;
+
+    // Доступен ли COPY для текущего соединения
+    private boolean copySupported;
+
+    // Сколько существующих строк обновлено в режиме REFRESH
+    private long updatedRows;
+
+    // Записи текущей (ещё не закоммиченной) пачки по ключу дедупликации
+    private final Map<String, FinalRecord> pending = new LinkedHashMap<>();
+
+    // Ключи пачки из окна обновления REFRESH: они сливаются с таблицей, остальные вставляются как при INSERT
+    private final Set<String> refreshing = new HashSet<>();
+
+    // Обновление агрегатов final_records_weekly/monthly в транзакции пачки (db.rollups), иначе null
+    private final RollupUpdater rollups;
+
+    DbSession(DataSource ds, AdaptiveBatchSizer batchSizer, DbWriteMode writeMode) {
+        this(ds, batchSizer, writeMode, AppProperties.getBoolean("db.rollups", false));
+    }
+
+    /**
+     * @param rollups обновлять агрегаты {@link RollupTables} вместе с каждой пачкой
+     */
+    DbSession(DataSource ds, AdaptiveBatchSizer batchSizer, DbWriteMode writeMode, boolean rollups) {
+        this.ds = ds;
+        this.batchSizer = batchSizer;
+        this.writeMode = writeMode;
+        this.rollups = rollups ? new RollupUpdater() : null;
+        String mode = writeMode.name().toLowerCase();
+        this.batchTimer = Timer.builder("etl.db.batch")
+                .description("Sending one batch (executeBatch, COPY or staging merge) before commit")
+                .tag("mode", mode)
+                .register(EtlMetrics.registry());
+        this.commitTimer = Timer.builder("etl.db.commit")
+                .tag("mode", mode)
+                .register(EtlMetrics.registry());
+    }
+
+    /**
+     * Добавляет запись в текущую пачку (повтор ключа внутри пачки игнорируется).
+     *
+     * @return true, если пачка заполнена и её пора отправить через {@link #flush(DedupFilter)}
+     */
+    boolean add(String key, FinalRecord r) {
+        return add(key, r, false);
+    }
+
+    /**
+     * @param refresh запись из окна обновления режима REFRESH: сливается с таблицей (существующая строка
+     *                обновляется, если изменилось содержимое); иначе только вставляется, если строки ещё нет
+     */
+    boolean add(String key, FinalRecord r, boolean refresh) {
+        if (pending.putIfAbsent(key, r) == null && refresh) {
+            refreshing.add(key);
+        }
+        return pending.size() >= batchSizer.current();
+    }
+
+    /**
+     * Отправляет накопленную пачку, коммитит её и добавляет её ключи в фильтр дедупликации.
+     *
+     * @return число вставленных строк, -1 — если драйвер его не сообщает
+     */
+    long flush(DedupFilter filter) throws SQLException, IOException {
+        if (pending.isEmpty()) return 0;
+        open();
+
+        Timer.Sample batch = Timer.start(EtlMetrics.registry());
+        long started = System.nanoTime();
+        long inserted;
+        long updated = 0;
+        if (rollups != null) {
+            rollups.beforeLoad(connection, pending.values());
+        }
+        if (refreshing.isEmpty()) {
+            inserted = load(pending.values());
+        } else {
+            List<FinalRecord> merge = new ArrayList<>(refreshing.size());
+            List<FinalRecord> insert = new ArrayList<>(pending.size() - refreshing.size());
+            for (Map.Entry<String, FinalRecord> e : pending.entrySet()) {
+                (refreshing.contains(e.getKey()) ? merge : insert).add(e.getValue());
+            }
+            RefreshMerger.stage(connection, merge, copySupported);
+            updated = RefreshMerger.updateChanged(connection);
+            inserted = RefreshMerger.insertNew(connection);
+            if (!insert.isEmpty()) {
+                inserted = DataBaseItemWriter.sum(inserted, load(insert));
+            }
+        }
+        if (rollups != null) {
+            rollups.afterLoad(connection, pending, refreshing);
+        }
+        batch.stop(batchTimer);
+        long committing = System.nanoTime();
+        connection.commit();
+        commitTimer.record(System.nanoTime() - committing, TimeUnit.NANOSECONDS);
+        BATCH_ROWS.record(pending.size());
+        updatedRows += updated;
+        batchSizer.record(pending.size(), System.nanoTime() - started);
+
+        for (FinalRecord r : pending.values()) {
+            filter.put(r);
+        }
+        // кэш чтения сбрасывает закоммиченные точки и даты
+        DbCommitListeners.committed(pending.values());
+        pending.clear();
+        refreshing.clear();
+        return inserted;
+    }
+
+    /**
+     * Какие из записей уже есть в final_records ({@link DbKeyLookup}) — по соединению сессии.
+     *
+     * @return ключи {@link com.shtisu.etl.dedup.DedupKeys#of} найденных записей
+     */
+    Set<String> existingKeys(List<FinalRecord> records) throws SQLException {
+        open();
+        return DbKeyLookup.existingKeys(connection, records);
+    }
+
+    /**
+     * Откатывает незакоммиченную пачку и закрывает соединение; при следующей записи оно будет открыто заново.
+     */
+    void abort() throws SQLException {
+        pending.clear();
+        refreshing.clear();
+        close(true);
+    }
+
+    /** Сколько существующих строк обновлено в режиме REFRESH */
+    long updatedRows() {
+        return updatedRows;
+    }
+
+    /** Текущий размер пачки */
+    int batchSize() {
+        return batchSizer.current();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        close(false);
+    }
+
+    /** Вставляет записи, которых ещё нет в таблице: через COPY, если он доступен, иначе пакетным INSERT */
+    private long load(Collection<FinalRecord> records) throws SQLException, IOException {
+        return copySupported
+                ? PgCopyLoader.load(connection, records, DataBaseItemWriter.COLUMN_LIST)
+                : insertBatch(records);
+    }
+
+    /**
+     * Пакетный INSERT ... ON CONFLICT DO NOTHING.
+     *
+     * @return число вставленных строк или -1, если драйвер его не сообщает
+     */
+    private long insertBatch(Collection<FinalRecord> records) throws SQLException {
+        for (FinalRecord r : records) {
+            DataBaseItemWriter.bind(statement, r);
+            statement.addBatch();
+        }
+        long inserted = 0;
+        for (int c : statement.executeBatch()) {
+            if (c == Statement.SUCCESS_NO_INFO) return -1;
+            if (c > 0) inserted += c;
+        }
+        return inserted;
+    }
+
+    private void open() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = ds.getConnection();
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(DataBaseItemWriter.INSERT_SQL);
+            // COPY доступен только для PostgreSQL, для остальных баз остаётся пакетный INSERT.
+            // REFRESH тоже загружает staging-таблицу через COPY, если это PostgreSQL
+            copySupported = writeMode != DbWriteMode.INSERT && PgCopyLoader.supports(connection);
+        }
+    }
+
+    private void close(boolean rollback) throws SQLException {
+        if (connection == null) return;
+        try {
+            if (rollback && !connection.isClosed()) {
+                connection.rollback();
+            }
+        } finally {
+            try {
+                statement.close();
+            } finally {
+                connection.close();
+                connection = null;
+                statement = null;
+            }
+        }
+    }
+}
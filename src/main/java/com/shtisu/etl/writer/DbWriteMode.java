@@ -0,0 +1,29 @@
+package com.shtisu.etl.writer;
+
+import java.util.Locale;
+
+/**
+ * Способ загрузки записей в final_records.
+ */
+public enum DbWriteMode {
+    /** Пакетный INSERT ... ON CONFLICT DO NOTHING (по строке на параметры) */
+    INSERT,
+    /**
+     * Потоковая загрузка пачки в бинарном формате COPY во временную staging-таблицу
+     * и один INSERT ... SELECT ... ON CONFLICT DO NOTHING. Работает только с PostgreSQL,
+     * для остальных баз (H2 в тестах) используется пакетный INSERT.
+     */
+    COPY,
+    /**
+     * Обновление последних дней (db.refreshDays): записи этих дат идут в базу в обход BloomFilter,
+     * пачка загружается в staging-таблицу и сливается с final_records — существующие строки
+     * обновляются, только если изменился их content_hash, новые вставляются.
+     * Более старые даты обрабатываются как при INSERT.
+     */
+    REFRESH;
+
+    /** Разбирает значение из настроек/CLI (insert, copy, refresh) */
+    public static DbWriteMode parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,24 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+
+import java.util.List;
+
+/**
+ * Общий интерфейс хранилищ итоговых записей (CSV, база данных).
+ * Реализация сама отсекает уже записанные ключи date+latitude+longitude.
+ */
+public interface FinalRecordWriter extends AutoCloseable {
+
+    /**
+     * Записывает новые записи, пропуская уже записанные.
+     */
+    void write(List<FinalRecord> records) throws Exception;
+
+    /**
+     * Дожидается записи всего, что было передано в write(). Для синхронных writer'ов (CSV, база данных)
+     * всё записано уже при возврате из write(); асинхронные обёртки переопределяют метод.
+     */
+    default void flush() throws Exception {
+    }
+}
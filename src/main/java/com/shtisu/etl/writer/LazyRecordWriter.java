@@ -0,0 +1,72 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Writer, который открывает настоящее хранилище только при первой непустой записи.
+ *
+ * Открытие хранилища — самая дорогая часть старта: чтение фильтра дедупликации с диска, пул соединений
+ * и его первое подключение. Задание открывает хранилища за обёрткой {@link ConcurrentFinalRecordWriter},
+ * поэтому через эту обёртку всё это происходит в потоке-писателе, пока первые запросы к API ещё идут,
+ * а хранилище, до которого не дошло ни одной записи, не открывается вовсе.
+ * Ошибка открытия пробрасывается из write(), как и любая ошибка записи. Не потокобезопасен, как и обёрнутый writer.
+ */
+public class LazyRecordWriter<W extends FinalRecordWriter> implements FinalRecordWriter {
+
+    /** Открывает хранилище */
+    @FunctionalInterface
+    public interface Opener<W> {
+        W open() throws Exception;
+    }
+
+    private final Opener<W> opener;
+    // читается из другого потока (отчёт задания) после закрытия
+    private volatile W delegate;
+    private boolean closed;
+
+    public LazyRecordWriter(@NotNull Opener<W> opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public void write(List<FinalRecord> records) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        if (records.isEmpty()) return;
+        W w = delegate;
+        if (w == null) {
+            w = opener.open();
+            delegate = w;
+        }
+        w.write(records);
+    }
+
+    @Override
+    public void flush() throws Exception {
+        W w = delegate;
+        if (w != null) {
+            w.flush();
+        }
+    }
+
+    /** Открытое хранилище или null, если записей в него не было */
+    @Nullable
+    public W getIfOpen() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (closed) return;
+        closed = true;
+        W w = delegate;
+        if (w != null) {
+            w.close();
+        }
+    }
+}
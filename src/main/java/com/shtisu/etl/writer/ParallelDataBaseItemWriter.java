@@ -0,0 +1,183 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.model.FinalRecord;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Параллельный DataBaseItemWriter: записи шардируются по хэшу (latitude, longitude) между N рабочими потоками.
+ *
+ * У каждого потока своя {@link DbSession} — своё соединение из пула, свой подготовленный INSERT и своя пачка.
+ * Все записи одной точки всегда попадают в один и тот же поток, поэтому потоки пишут непересекающиеся
+ * множества первичных ключей и не ждут друг друга на блокировках строк (и не попадают в deadlock).
+ * По той же причине проверка и добавление ключа в общий фильтр дедупликации (он потокобезопасен)
+ * не гоняются между потоками.
+ *
+ * write() возвращает управление, только когда все потоки закоммитили свои части, поэтому число
+ * записанных строк точно такое же, как у последовательного {@link DataBaseItemWriter}.
+ */
+public class ParallelDataBaseItemWriter extends DataBaseItemWriter {
+
+    private final DbSession[] sessions;
+    private final ExecutorService[] workers;
+
+    /**
+     * Writer на пуле из {@link DataSourceFactory} с числом потоков по размеру пула (db.maximumPoolSize - 1).
+     *
+     * @param bloomPath       путь к файлу сериализации BloomFilter
+     * @param expectedEntries оценка числа уникальных записей для Bloom‑фильтра
+     * @param fpp             допустимая ложноположительная вероятность (0–1)
+     * @param batchSize       размер пачки каждого потока
+     * @param writeMode       способ загрузки
+     */
+    public ParallelDataBaseItemWriter(Path bloomPath,
+                                      long expectedEntries,
+                                      double fpp,
+                                      int batchSize,
+                                      DbWriteMode writeMode) throws IOException {
+        this(DataSourceFactory.getDataSource(), bloomPath, expectedEntries, fpp, batchSize, writeMode,
+                poolParallelism(DataSourceFactory.getDataSource()));
+    }
+
+    /**
+     * @param ds              пул соединений, в котором находится таблица final_records
+     * @param bloomPath       путь к файлу сериализации BloomFilter
+     * @param expectedEntries оценка числа уникальных записей для Bloom‑фильтра
+     * @param fpp             допустимая ложноположительная вероятность (0–1)
+     * @param batchSize       размер пачки каждого потока
+     * @param writeMode       способ загрузки
+     * @param workerCount     число потоков (и одновременно занятых соединений пула); больше
+     *                        db.maximumPoolSize - 1 не бывает — одно соединение остаётся для подсчёта строк
+     */
+    public ParallelDataBaseItemWriter(DataSource ds,
+                                      Path bloomPath,
+                                      long expectedEntries,
+                                      double fpp,
+                                      int batchSize,
+                                      DbWriteMode writeMode,
+                                      int workerCount) throws IOException {
+        super(ds, bloomPath, expectedEntries, fpp, batchSizerFor(batchSize), writeMode);
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be positive: " + workerCount);
+        }
+        int limit = poolParallelism(ds);
+        if (ds instanceof HikariDataSource && workerCount > limit) {
+            System.err.printf("Потоков записи %d больше, чем свободных соединений пула, использую %d%n", workerCount, limit);
+            workerCount = limit;
+        }
+        this.sessions = new DbSession[workerCount];
+        this.workers = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            // у каждого потока свой контроллер размера пачки: задержка коммита у потоков своя
+            sessions[i] = new DbSession(ds, batchSizerFor(batchSize), writeMode);
+            int n = i;
+            workers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "db-writer-" + n);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Раскладывает записи по шардам, пишет шарды параллельно и ждёт коммита всех частей.
+     * Если хотя бы один поток упал, исключение пробрасывается после завершения остальных;
+     * пачки, закоммиченные к этому моменту, остаются в базе и в фильтре.
+     */
+    @Override
+    public void write(List<FinalRecord> records) throws SQLException, IOException {
+        List<List<FinalRecord>> shards = new ArrayList<>(sessions.length);
+        for (int i = 0; i < sessions.length; i++) {
+            shards.add(new ArrayList<>(records.size() / sessions.length + 1));
+        }
+        for (FinalRecord r : records) {
+            shards.get(shardOf(r.getLatitude(), r.getLongitude(), sessions.length)).add(r);
+        }
+
+        List<Future<Long>> futures = new ArrayList<>(sessions.length);
+        for (int i = 0; i < sessions.length; i++) {
+            DbSession session = sessions[i];
+            List<FinalRecord> shard = shards.get(i);
+            futures.add(workers[i].submit(() -> writeThrough(session, shard)));
+        }
+
+        long inserted = 0;
+        Exception failure = null;
+        for (Future<Long> f : futures) {
+            try {
+                long n = f.get();
+                inserted = inserted < 0 || n < 0 ? -1 : inserted + n;
+            } catch (ExecutionException e) {
+                if (failure == null) failure = (Exception) e.getCause();
+                inserted = -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) failure = new IOException("Parallel write interrupted", e);
+                inserted = -1;
+            }
+        }
+        trackInserted(inserted);
+        saveDedupFilter();
+
+        if (failure instanceof SQLException sql) throw sql;
+        if (failure instanceof IOException io) throw io;
+        if (failure != null) throw new IOException(failure.getMessage(), failure);
+    }
+
+    @Override
+    public long getUpdatedRows() {
+        long updated = 0;
+        for (DbSession session : sessions) {
+            updated += session.updatedRows();
+        }
+        return updated;
+    }
+
+    /** Количество рабочих потоков */
+    public int getWorkerCount() {
+        return sessions.length;
+    }
+
+    /**
+     * Номер шарда для точки. Хэшируются координаты в единицах ключа дедупликации ({@link DedupKeys#coordinate}):
+     * разные записи одной точки (40.8 и 40.800003) попадают в один шард, и его сессия отбрасывает повтор ключа.
+     * Хэш перемешивается (финализатор MurmurHash3), чтобы соседние координаты равномерно расходились по потокам.
+     */
+    static int shardOf(double latitude, double longitude, int shards) {
+        long h = DedupKeys.coordinate(latitude) * 31 + DedupKeys.coordinate(longitude);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) shards);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (int i = 0; i < sessions.length; i++) {
+            DbSession session = sessions[i];
+            try {
+                workers[i].submit(() -> {
+                    session.close();
+                    return null;
+                }).get();
+            } finally {
+                workers[i].shutdown();
+            }
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,119 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Кодирует {@link FinalRecord} в бинарный формат PostgreSQL COPY (FORMAT BINARY).
+ * Порядок полей совпадает со списком колонок final_records в {@link DataBaseItemWriter}.
+ *
+ * Формат: заголовок "PGCOPY\n\377\r\n\0" + флаги + длина расширения, затем для каждой строки
+ * число полей (int16) и для каждого поля длина (int32) и значение в сетевом порядке байт,
+ * в конце -1 (int16). double — 8 байт IEEE 754, date — дни от 2000-01-01 (int32),
+ * timestamptz — микросекунды от 2000-01-01T00:00Z (int64), bigint — 8 байт, NULL — длина -1.
+ */
+final class PgBinaryCopyEncoder {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    // Эпоха PostgreSQL для date и timestamp
+    private static final LocalDate PG_EPOCH_DATE = LocalDate.of(2000, 1, 1);
+    private static final long PG_EPOCH_MICROS = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.parse("2000-01-01T00:00:00Z"));
+
+    // Количество колонок в строке COPY
+    static final short FIELD_COUNT = 43;
+
+    private PgBinaryCopyEncoder() { }
+
+    static void writeHeader(@NotNull DataOutputStream out) throws IOException {
+        out.write(SIGNATURE);
+        out.writeInt(0); // флаги
+        out.writeInt(0); // длина расширения заголовка
+    }
+
+    static void writeTrailer(@NotNull DataOutputStream out) throws IOException {
+        out.writeShort(-1);
+    }
+
+    static void writeRecord(@NotNull DataOutputStream out, @NotNull FinalRecord r) throws IOException {
+        out.writeShort(FIELD_COUNT);
+
+        writeDouble(out, r.getLatitude());
+        writeDouble(out, r.getLongitude());
+        writeDate(out, r.getDate());
+        writeTimestamp(out, r.getSunriseIso());
+        writeTimestamp(out, r.getSunsetIso());
+        writeDouble(out, r.getDaylightHours());
+
+        writeDouble(out, r.getAvgTemperature2m24h());
+        writeDouble(out, r.getAvgRelativeHumidity2m24h());
+        writeDouble(out, r.getAvgDewPoint2m24h());
+        writeDouble(out, r.getAvgApparentTemperature24h());
+        writeDouble(out, r.getAvgTemperature80m24h());
+        writeDouble(out, r.getAvgTemperature120m24h());
+        writeDouble(out, r.getAvgWindSpeed10m24h());
+        writeDouble(out, r.getAvgWindSpeed80m24h());
+        writeDouble(out, r.getAvgVisibility24h());
+        writeDouble(out, r.getTotalRain24h());
+        writeDouble(out, r.getTotalShowers24h());
+        writeDouble(out, r.getTotalSnowfall24h());
+
+        writeDouble(out, r.getAvgTemperature2mDaylight());
+        writeDouble(out, r.getAvgRelativeHumidity2mDaylight());
+        writeDouble(out, r.getAvgDewPoint2mDaylight());
+        writeDouble(out, r.getAvgApparentTemperatureDaylight());
+        writeDouble(out, r.getAvgTemperature80mDaylight());
+        writeDouble(out, r.getAvgTemperature120mDaylight());
+        writeDouble(out, r.getAvgWindSpeed10mDaylight());
+        writeDouble(out, r.getAvgWindSpeed80mDaylight());
+        writeDouble(out, r.getAvgVisibilityDaylight());
+        writeDouble(out, r.getTotalRainDaylight());
+        writeDouble(out, r.getTotalShowersDaylight());
+        writeDouble(out, r.getTotalSnowfallDaylight());
+
+        writeDouble(out, r.getWindSpeed10mMPerS());
+        writeDouble(out, r.getWindSpeed80mMPerS());
+        writeDouble(out, r.getTemperature2mCelsius());
+        writeDouble(out, r.getApparentTemperatureCelsius());
+        writeDouble(out, r.getTemperature80mCelsius());
+        writeDouble(out, r.getTemperature120mCelsius());
+        writeDouble(out, r.getSoilTemperature0cmCelsius());
+        writeDouble(out, r.getSoilTemperature6cmCelsius());
+        writeDouble(out, r.getRainMm());
+        writeDouble(out, r.getShowersMm());
+        writeDouble(out, r.getSnowfallMm());
+
+        writeTimestamp(out, r.getFetchedAt());
+        out.writeInt(8);
+        out.writeLong(ContentHash.of(r));
+    }
+
+    private static void writeDouble(DataOutputStream out, double v) throws IOException {
+        out.writeInt(8);
+        out.writeDouble(v);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate d) throws IOException {
+        if (d == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(4);
+        out.writeInt((int) ChronoUnit.DAYS.between(PG_EPOCH_DATE, d));
+    }
+
+    private static void writeTimestamp(DataOutputStream out, Instant t) throws IOException {
+        if (t == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(Instant.EPOCH, t) - PG_EPOCH_MICROS);
+    }
+}
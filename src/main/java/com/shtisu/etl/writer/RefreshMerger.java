@@ -0,0 +1,88 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * Слияние пачки с final_records для режима {@link DbWriteMode#REFRESH}.
+ *
+ * Пачка загружается во временную таблицу final_records_stage (через COPY на PostgreSQL, пакетным INSERT
+ * на остальных базах), затем два set-based оператора:
+ * UPDATE ... FROM stage обновляет только строки, у которых изменился content_hash,
+ * INSERT ... SELECT ... ON CONFLICT DO NOTHING добавляет новые строки.
+ * Строки с тем же содержимым не переписываются: ни новых версий строк, ни записей в индексы и WAL.
+ */
+final class RefreshMerger {
+
+    private static final String STAGE = PgCopyLoader.STAGE_TABLE;
+
+    // Колонки, которые переписываются при изменении содержимого (всё, кроме первичного ключа)
+    private static final String SET_CLAUSE = Arrays.stream(DataBaseItemWriter.COLUMN_LIST.split(","))
+            .map(String::trim)
+            .filter(c -> !c.equals("latitude") && !c.equals("longitude") && !c.equals("date"))
+            .map(c -> c + " = s." + c)
+            .collect(Collectors.joining(", "));
+
+    private static final String UPDATE_CHANGED_SQL =
+            "UPDATE final_records f SET " + SET_CLAUSE + " " +
+            "FROM " + STAGE + " s " +
+            "WHERE f.latitude = s.latitude AND f.longitude = s.longitude AND f.date = s.date " +
+            "AND f.content_hash IS DISTINCT FROM s.content_hash";
+
+    private static final String INSERT_NEW_SQL =
+            "INSERT INTO final_records (" + DataBaseItemWriter.COLUMN_LIST + ") " +
+            "SELECT " + DataBaseItemWriter.COLUMN_LIST + " FROM " + STAGE + " " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_STAGE_SQL =
+            "INSERT INTO " + STAGE + " (" + DataBaseItemWriter.COLUMN_LIST + ") VALUES (" +
+            String.join(", ", Collections.nCopies(DataBaseItemWriter.COLUMN_LIST.split(",").length, "?")) + ")";
+
+    private RefreshMerger() { }
+
+    /**
+     * Загружает пачку в staging-таблицу в рамках текущей транзакции (commit выполняет вызывающий код).
+     *
+     * @param copy использовать COPY (соединение PostgreSQL)
+     */
+    static void stage(@NotNull Connection conn,
+                      @NotNull Collection<FinalRecord> records,
+                      boolean copy) throws SQLException, IOException {
+        PgCopyLoader.prepareStage(conn, DataBaseItemWriter.COLUMN_LIST);
+        if (copy) {
+            PgCopyLoader.copyIntoStage(conn, records, DataBaseItemWriter.COLUMN_LIST);
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_STAGE_SQL)) {
+            for (FinalRecord r : records) {
+                DataBaseItemWriter.bind(ps, r);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Обновляет строки, содержимое которых изменилось; возвращает их число */
+    static long updateChanged(@NotNull Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            return st.executeUpdate(UPDATE_CHANGED_SQL);
+        }
+    }
+
+    /** Вставляет строки, которых ещё нет в final_records; возвращает их число */
+    static long insertNew(@NotNull Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            return st.executeUpdate(INSERT_NEW_SQL);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+
+/**
+ * Пересчёт агрегатов: {@code WeatherCli rollup [--from DATE] [--to DATE]}. Создаёт таблицы агрегатов,
+ * если их нет, и пересчитывает периоды диапазона по final_records (без дат — всю таблицу).
+ * Нужен после догрузки истории в обход writer'а и перед первым включением db.rollups.
+ */
+@Command(name = "rollup", mixinStandardHelpOptions = true,
+        description = "Пересчитывает недельные и месячные агрегаты final_records.")
+public class RollupCommand implements Callable<Integer> {
+
+    @Option(names = "--from", description = "Первая дата пересчёта (ISO), по умолчанию — без границы")
+    private LocalDate from;
+
+    @Option(names = "--to", description = "Последняя дата пересчёта (ISO), по умолчанию — без границы")
+    private LocalDate to;
+
+    /** Выполняет команду и возвращает код возврата */
+    public static int execute(String... args) {
+        return new CommandLine(new RollupCommand()).execute(args);
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        RollupTables.create(DataSourceFactory.getDataSource());
+        long started = System.nanoTime();
+        long rows = RollupTables.rebuild(DataSourceFactory.getDataSource(), from, to);
+        System.out.printf("Агрегаты пересчитаны: %d строк за %d мс%n", rows, (System.nanoTime() - started) / 1_000_000);
+        return 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.shtisu.etl.writer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Период агрегатов final_records (см. {@link RollupTables}): неделя с понедельника или календарный месяц.
+ */
+public enum RollupPeriod {
+    // Неделя считается от понедельника через ISODOW: DATE_TRUNC('week') в H2 зависит от локали
+    WEEK("final_records_weekly", "date - (CAST(EXTRACT(ISODOW FROM date) AS INTEGER) - 1)"),
+    MONTH("final_records_monthly", "CAST(DATE_TRUNC('month', date) AS DATE)");
+
+    private final String table;
+    // SQL-выражение первого дня периода
+    private final String startSql;
+
+    RollupPeriod(String table, String startSql) {
+        this.table = table;
+        this.startSql = startSql;
+    }
+
+    /** Таблица агрегатов периода */
+    @NotNull
+    public String table() {
+        return table;
+    }
+
+    /** Первый день периода, в который попадает дата */
+    @NotNull
+    public LocalDate start(@NotNull LocalDate date) {
+        return this == WEEK
+                ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                : date.withDayOfMonth(1);
+    }
+
+    /** Первый день следующего периода */
+    @NotNull
+    public LocalDate next(@NotNull LocalDate date) {
+        LocalDate start = start(date);
+        return this == WEEK ? start.plusWeeks(1) : start.plusMonths(1);
+    }
+
+    /** SQL-выражение начала периода для колонки date */
+    @NotNull
+    String startSql() {
+        return startSql;
+    }
+}
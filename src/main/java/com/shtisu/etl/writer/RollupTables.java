@@ -0,0 +1,189 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Агрегаты final_records по точке и периоду ({@link RollupPeriod}): таблицы final_records_weekly
+ * и final_records_monthly с ключом (latitude, longitude, period_start).
+ *
+ * В таблицах только сливаемые величины — число дней (days) и суммы показателей {@link #MEASURES}
+ * (колонки sum_&lt;показатель&gt;); среднее за период — sum / days. Поэтому новая пачка не пересчитывает
+ * период целиком: при db.rollups=true writer прибавляет к строкам периодов разницу, внесённую пачкой,
+ * в той же транзакции, что и сами строки (см. {@link RollupUpdater}).
+ *
+ * {@link #rebuild} пересчитывает агрегаты по final_records — после загрузки в обход writer'а
+ * или перед включением db.rollups на уже заполненной таблице.
+ */
+public final class RollupTables {
+
+    /** Показатель, суммируемый в агрегатах: колонка final_records и её значение в записи */
+    static final class Measure {
+        final String column;
+        final ToDoubleFunction<FinalRecord> value;
+
+        Measure(String column, ToDoubleFunction<FinalRecord> value) {
+            this.column = column;
+            this.value = value;
+        }
+
+        String sumColumn() {
+            return "sum_" + column;
+        }
+    }
+
+    static final Measure[] MEASURES = {
+            new Measure("daylight_hours", FinalRecord::getDaylightHours),
+            new Measure("avg_temperature_2m24h", FinalRecord::getAvgTemperature2m24h),
+            new Measure("avg_relative_humidity_2m24h", FinalRecord::getAvgRelativeHumidity2m24h),
+            new Measure("avg_dew_point_2m24h", FinalRecord::getAvgDewPoint2m24h),
+            new Measure("avg_apparent_temperature_24h", FinalRecord::getAvgApparentTemperature24h),
+            new Measure("avg_wind_speed_10m24h", FinalRecord::getAvgWindSpeed10m24h),
+            new Measure("avg_visibility_24h", FinalRecord::getAvgVisibility24h),
+            new Measure("total_rain_24h", FinalRecord::getTotalRain24h),
+            new Measure("total_showers_24h", FinalRecord::getTotalShowers24h),
+            new Measure("total_snowfall_24h", FinalRecord::getTotalSnowfall24h),
+    };
+
+    /** Показатели через запятую (колонки final_records) */
+    static final String MEASURE_LIST = Arrays.stream(MEASURES)
+            .map(m -> m.column)
+            .collect(Collectors.joining(", "));
+
+    /** Колонки сумм через запятую */
+    public static final String SUM_LIST = Arrays.stream(MEASURES)
+            .map(Measure::sumColumn)
+            .collect(Collectors.joining(", "));
+
+    private RollupTables() { }
+
+    /** Имена показателей, по которым в агрегатах есть суммы */
+    @NotNull
+    public static String[] measures() {
+        return Arrays.stream(MEASURES).map(m -> m.column).toArray(String[]::new);
+    }
+
+    /** Создаёт таблицы агрегатов, если их нет */
+    public static void create(@NotNull DataSource ds) throws SQLException {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement()) {
+            for (RollupPeriod period : RollupPeriod.values()) {
+                st.execute(ddl(period));
+            }
+        }
+    }
+
+    /**
+     * Пересчитывает агрегаты периодов, пересекающихся с [from, to] (null — без границы), по final_records.
+     * Обе таблицы пересчитываются в одной транзакции: читатели видят либо старые, либо новые агрегаты.
+     *
+     * @return число записанных строк агрегатов
+     */
+    public static long rebuild(@NotNull DataSource ds, @Nullable LocalDate from, @Nullable LocalDate to) throws SQLException {
+        long rows = 0;
+        try (Connection conn = ds.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (RollupPeriod period : RollupPeriod.values()) {
+                    // границы выравниваются по периодам: неполный период пересчитывается целиком
+                    LocalDate lower = from == null ? LocalDate.of(1, 1, 1) : period.start(from);
+                    LocalDate upper = to == null ? LocalDate.of(9999, 1, 1) : period.next(to);
+                    try (PreparedStatement delete = conn.prepareStatement(
+                            "DELETE FROM " + period.table() + " WHERE period_start >= ? AND period_start < ?")) {
+                        delete.setDate(1, Date.valueOf(lower));
+                        delete.setDate(2, Date.valueOf(upper));
+                        delete.executeUpdate();
+                    }
+                    try (PreparedStatement insert = conn.prepareStatement(rebuildSql(period))) {
+                        insert.setDate(1, Date.valueOf(lower));
+                        insert.setDate(2, Date.valueOf(upper));
+                        rows += insert.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return rows;
+    }
+
+    @NotNull
+    static String ddl(@NotNull RollupPeriod period) {
+        String sums = Arrays.stream(MEASURES)
+                .map(m -> m.sumColumn() + " DOUBLE PRECISION NOT NULL")
+                .collect(Collectors.joining(", "));
+        return "CREATE TABLE IF NOT EXISTS " + period.table() + " (" +
+                "latitude DOUBLE PRECISION NOT NULL, longitude DOUBLE PRECISION NOT NULL, period_start DATE NOT NULL, " +
+                "days INTEGER NOT NULL, " + sums + ", " +
+                "PRIMARY KEY (latitude, longitude, period_start))";
+    }
+
+    @NotNull
+    private static String rebuildSql(@NotNull RollupPeriod period) {
+        String sums = Arrays.stream(MEASURES)
+                .map(m -> "SUM(" + m.column + ")")
+                .collect(Collectors.joining(", "));
+        return "INSERT INTO " + period.table() + " (latitude, longitude, period_start, days, " + SUM_LIST + ") " +
+                "SELECT latitude, longitude, " + period.startSql() + ", COUNT(*), " + sums + " " +
+                "FROM final_records WHERE date >= ? AND date < ? " +
+                "GROUP BY latitude, longitude, " + period.startSql();
+    }
+
+    /**
+     * Upsert строки агрегата, прибавляющий days и суммы к существующей строке или вставляющий новую
+     * одним оператором: параметры — ключ, days, суммы. На PostgreSQL — INSERT ... ON CONFLICT DO UPDATE,
+     * на остальных базах (H2) — MERGE.
+     */
+    @NotNull
+    static String upsertSql(@NotNull RollupPeriod period, boolean postgres) {
+        String columns = "latitude, longitude, period_start, days, " + SUM_LIST;
+        String placeholders = String.join(", ", Collections.nCopies(4 + MEASURES.length, "?"));
+        String source = postgres ? "EXCLUDED" : "s";
+        String sums = Arrays.stream(MEASURES)
+                .map(m -> m.sumColumn() + " = t." + m.sumColumn() + " + " + source + "." + m.sumColumn())
+                .collect(Collectors.joining(", "));
+        String add = "days = t.days + " + source + ".days, " + sums;
+        if (postgres) {
+            return "INSERT INTO " + period.table() + " AS t (" + columns + ") VALUES (" + placeholders + ") " +
+                    "ON CONFLICT (latitude, longitude, period_start) DO UPDATE SET " + add;
+        }
+        String values = Arrays.stream(columns.split(", "))
+                .map(c -> "s." + c)
+                .collect(Collectors.joining(", "));
+        return "MERGE INTO " + period.table() + " t USING (VALUES (" + placeholders + ")) s (" + columns + ") " +
+                "ON t.latitude = s.latitude AND t.longitude = s.longitude AND t.period_start = s.period_start " +
+                "WHEN MATCHED THEN UPDATE SET " + add + " " +
+                "WHEN NOT MATCHED THEN INSERT (" + columns + ") VALUES (" + values + ")";
+    }
+
+    /** INSERT строки агрегата без дней, если её ещё нет (ключ — параметры) */
+    @NotNull
+    static String insertEmptySql(@NotNull RollupPeriod period) {
+        return "INSERT INTO " + period.table() + " (latitude, longitude, period_start, days, " + SUM_LIST + ") " +
+                "VALUES (?, ?, ?, 0" + ", 0".repeat(MEASURES.length) + ") ON CONFLICT DO NOTHING";
+    }
+
+    /** DELETE строки агрегата без дней (ключ — параметры) */
+    @NotNull
+    static String deleteEmptySql(@NotNull RollupPeriod period) {
+        return "DELETE FROM " + period.table() + " WHERE latitude = ? AND longitude = ? AND period_start = ? AND days = 0";
+    }
+}
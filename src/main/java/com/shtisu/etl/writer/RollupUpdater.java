@@ -0,0 +1,254 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Инкрементальное обновление агрегатов {@link RollupTables} пачкой {@link DbSession} в её транзакции.
+ *
+ * До загрузки пачки {@link #beforeLoad} блокирует строки агрегатов её периодов (upsert с нулевой разницей
+ * создаёт недостающие) и читает уже существующие строки её ключей (показатели и content_hash),
+ * после загрузки {@link #afterLoad} прибавляет к агрегатам периодов разницу: новая строка даёт +1 день
+ * и свои значения, обновлённая в режиме REFRESH (изменился content_hash) — новые значения минус старые,
+ * остальные ничего. Строки агрегатов, так и не получившие дней, удаляются.
+ *
+ * Блокировка сериализует writer'ов, пишущих в одни периоды одной точки: второй ждёт коммита первого
+ * и уже после него читает final_records, поэтому строка, вставленная или обновлённая другим writer'ом,
+ * не учитывается дважды. Строки блокируются в одном порядке (период, точка, начало) — без взаимных
+ * блокировок. Запись в final_records в обход writer'а агрегаты не видят — их исправляет {@link RollupTables#rebuild}.
+ */
+final class RollupUpdater {
+
+    private static final String SELECT_EXISTING =
+            "SELECT latitude, longitude, date, content_hash, " + RollupTables.MEASURE_LIST +
+                    " FROM final_records WHERE (latitude, longitude, date) IN (";
+
+    /** Строка агрегата: точка и начало периода */
+    private static final class Cell {
+        final double latitude;
+        final double longitude;
+        final LocalDate start;
+
+        Cell(double latitude, double longitude, LocalDate start) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.start = start;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cell c)) return false;
+            return Double.compare(latitude, c.latitude) == 0 && Double.compare(longitude, c.longitude) == 0
+                    && start.equals(c.start);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Double.hashCode(latitude) + Double.hashCode(longitude)) + start.hashCode();
+        }
+    }
+
+    // Порядок блокировки строк агрегата
+    private static final Comparator<Cell> CELL_ORDER = Comparator.<Cell>comparingDouble(c -> c.latitude)
+            .thenComparingDouble(c -> c.longitude)
+            .thenComparing(c -> c.start);
+
+    // Нулевая разница: upsert с ней только создаёт и блокирует строку агрегата
+    private static final double[] NO_DELTA = new double[1 + RollupTables.MEASURES.length];
+
+    /** Строка final_records до загрузки пачки */
+    private static final class Existing {
+        final Long contentHash;
+        final double[] values;
+
+        Existing(Long contentHash, double[] values) {
+            this.contentHash = contentHash;
+            this.values = values;
+        }
+    }
+
+    // Существующие строки текущей пачки по ключу DedupKeys
+    private final Map<String, Existing> existing = new HashMap<>();
+
+    // Заблокированные строки агрегатов текущей пачки
+    private final Map<RollupPeriod, Set<Cell>> locked = new EnumMap<>(RollupPeriod.class);
+
+    /**
+     * Блокирует строки агрегатов периодов пачки и читает строки final_records с её ключами;
+     * вызывается в транзакции пачки до её загрузки
+     */
+    void beforeLoad(@NotNull Connection conn, @NotNull Collection<FinalRecord> batch) throws SQLException {
+        existing.clear();
+        locked.clear();
+        for (RollupPeriod period : RollupPeriod.values()) {
+            Set<Cell> cells = new TreeSet<>(CELL_ORDER);
+            for (FinalRecord r : batch) {
+                cells.add(new Cell(r.getLatitude(), r.getLongitude(), period.start(r.getDate())));
+            }
+            Map<Cell, double[]> zero = new LinkedHashMap<>();
+            for (Cell cell : cells) {
+                zero.put(cell, NO_DELTA);
+            }
+            if (!PgCopyLoader.supports(conn)) {
+                // MERGE на H2 не атомарен: одновременная вставка новой строки нарушила бы первичный ключ
+                insertMissing(conn, period, cells);
+            }
+            upsert(conn, period, zero);
+            locked.put(period, cells);
+        }
+        List<FinalRecord> records = new ArrayList<>(batch);
+        for (int from = 0; from < records.size(); from += DbKeyLookup.LOOKUP_BATCH) {
+            List<FinalRecord> part = records.subList(from, Math.min(records.size(), from + DbKeyLookup.LOOKUP_BATCH));
+            String sql = SELECT_EXISTING + String.join(", ", Collections.nCopies(part.size(), "(?, ?, ?)")) + ")";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int idx = 1;
+                for (FinalRecord r : part) {
+                    ps.setDouble(idx++, r.getLatitude());
+                    ps.setDouble(idx++, r.getLongitude());
+                    ps.setDate(idx++, Date.valueOf(r.getDate()));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long hash = rs.getLong(4);
+                        Long contentHash = rs.wasNull() ? null : hash;
+                        double[] values = new double[RollupTables.MEASURES.length];
+                        for (int m = 0; m < values.length; m++) {
+                            values[m] = rs.getDouble(5 + m);
+                        }
+                        existing.put(DedupKeys.of(rs.getDate(3).toLocalDate(), rs.getDouble(1), rs.getDouble(2)),
+                                new Existing(contentHash, values));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Прибавляет изменения пачки к агрегатам; вызывается в транзакции пачки после её загрузки.
+     *
+     * @param batch     пачка по ключу {@link DedupKeys#of}
+     * @param refreshed ключи, слитые с таблицей в режиме REFRESH (строки с изменившимся content_hash обновлены)
+     */
+    void afterLoad(@NotNull Connection conn, @NotNull Map<String, FinalRecord> batch,
+                   @NotNull Set<String> refreshed) throws SQLException {
+        Map<RollupPeriod, Map<Cell, double[]>> deltas = new EnumMap<>(RollupPeriod.class);
+        for (Map.Entry<String, FinalRecord> e : batch.entrySet()) {
+            FinalRecord r = e.getValue();
+            Existing old = existing.get(e.getKey());
+            if (old == null) {
+                add(deltas, r, values(r), 1);
+            } else if (refreshed.contains(e.getKey())
+                    && (old.contentHash == null || old.contentHash != ContentHash.of(r))) {
+                add(deltas, r, values(r), 1);
+                add(deltas, r, old.values, -1);
+            }
+        }
+        existing.clear();
+        for (RollupPeriod period : RollupPeriod.values()) {
+            Map<Cell, double[]> changes = new LinkedHashMap<>();
+            List<Cell> empty = new ArrayList<>();
+            for (Cell cell : locked.getOrDefault(period, Set.of())) {
+                double[] delta = deltas.getOrDefault(period, Map.of()).get(cell);
+                if (delta == null || delta[0] == 0) empty.add(cell);
+                if (delta != null && !isZero(delta)) changes.put(cell, delta);
+            }
+            upsert(conn, period, changes);
+            deleteEmpty(conn, period, empty);
+        }
+        locked.clear();
+    }
+
+    private static void add(Map<RollupPeriod, Map<Cell, double[]>> deltas, FinalRecord r, double[] values, int sign) {
+        for (RollupPeriod period : RollupPeriod.values()) {
+            Cell cell = new Cell(r.getLatitude(), r.getLongitude(), period.start(r.getDate()));
+            double[] delta = deltas.computeIfAbsent(period, p -> new LinkedHashMap<>())
+                    .computeIfAbsent(cell, c -> new double[1 + RollupTables.MEASURES.length]);
+            delta[0] += sign;
+            for (int m = 0; m < values.length; m++) {
+                delta[1 + m] += sign * values[m];
+            }
+        }
+    }
+
+    private static double[] values(FinalRecord r) {
+        double[] values = new double[RollupTables.MEASURES.length];
+        for (int m = 0; m < values.length; m++) {
+            values[m] = RollupTables.MEASURES[m].value.applyAsDouble(r);
+        }
+        return values;
+    }
+
+    /** Прибавляет разницы к строкам агрегата одним пакетом upsert'ов ({@link RollupTables#upsertSql}) */
+    private static void upsert(Connection conn, RollupPeriod period, Map<Cell, double[]> deltas) throws SQLException {
+        if (deltas.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(
+                RollupTables.upsertSql(period, PgCopyLoader.supports(conn)))) {
+            for (Map.Entry<Cell, double[]> e : deltas.entrySet()) {
+                int idx = 1;
+                ps.setDouble(idx++, e.getKey().latitude);
+                ps.setDouble(idx++, e.getKey().longitude);
+                ps.setDate(idx++, Date.valueOf(e.getKey().start));
+                ps.setInt(idx++, (int) e.getValue()[0]);
+                for (int m = 1; m < e.getValue().length; m++) {
+                    ps.setDouble(idx++, e.getValue()[m]);
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Вставляет нулевые строки агрегата, которых ещё нет (INSERT ... ON CONFLICT DO NOTHING) */
+    private static void insertMissing(Connection conn, RollupPeriod period, Set<Cell> cells) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(RollupTables.insertEmptySql(period))) {
+            for (Cell cell : cells) {
+                ps.setDouble(1, cell.latitude);
+                ps.setDouble(2, cell.longitude);
+                ps.setDate(3, Date.valueOf(cell.start));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Удаляет строки агрегата, созданные блокировкой, но не получившие ни одного дня */
+    private static void deleteEmpty(Connection conn, RollupPeriod period, List<Cell> cells) throws SQLException {
+        if (cells.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(RollupTables.deleteEmptySql(period))) {
+            for (Cell cell : cells) {
+                ps.setDouble(1, cell.latitude);
+                ps.setDouble(2, cell.longitude);
+                ps.setDate(3, Date.valueOf(cell.start));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static boolean isZero(double[] delta) {
+        for (double d : delta) {
+            if (d != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,224 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Развилка: одна и та же пачка записей уходит в несколько хранилищ (например, база данных и CSV)
+ * после одного запроса к API и одной обработки.
+ *
+ * У каждого хранилища свой поток, своя ограниченная очередь пачек и свой writer со своим фильтром
+ * дедупликации. {@link #write(List)} сначала кладёт пачку во все очереди, где есть место, и только потом
+ * ждёт места в заполненных: медленное хранилище притормаживает поставщика (backpressure), но быстрые
+ * к этому моменту уже получили пачку и пишут её, не дожидаясь медленного.
+ *
+ * Как и writer'ы хранилищ, write() вызывается из одного потока; для нескольких поставщиков развилку
+ * можно обернуть в {@link ConcurrentFinalRecordWriter}.
+ */
+public class TeeRecordWriter implements FinalRecordWriter {
+
+    // Как часто поставщик, ожидающий места в очереди, проверяет, не упало ли хранилище
+    private static final long OFFER_POLL_MILLIS = 100;
+
+    private final List<Sink> sinks;
+    private volatile boolean closed;
+
+    /**
+     * @param writers       хранилища; каждый writer используется только своим потоком
+     * @param queueCapacity сколько пачек может ждать записи в каждое хранилище
+     */
+    public TeeRecordWriter(@NotNull List<? extends FinalRecordWriter> writers, int queueCapacity) {
+        if (writers.isEmpty() || queueCapacity < 1) {
+            throw new IllegalArgumentException("At least one writer and a positive queueCapacity are required");
+        }
+        this.sinks = new ArrayList<>(writers.size());
+        for (int i = 0; i < writers.size(); i++) {
+            sinks.add(new Sink(i, writers.get(i), queueCapacity));
+        }
+    }
+
+    /**
+     * Отдаёт пачку всем хранилищам. Возвращается, когда пачка стоит в очереди каждого из них
+     * (но не обязательно записана — для этого {@link #flush()}).
+     */
+    @Override
+    public void write(List<FinalRecord> records) throws Exception {
+        checkOpen();
+        if (records.isEmpty()) return;
+        Batch batch = new Batch(List.copyOf(records), null);
+        List<Sink> waiting = new ArrayList<>(sinks.size());
+        for (Sink sink : sinks) {
+            if (!sink.queue.offer(batch)) waiting.add(sink);
+        }
+        // место освобождается в любой из заполненных очередей — не ждём их строго по порядку
+        while (!waiting.isEmpty()) {
+            for (int i = waiting.size() - 1; i >= 0; i--) {
+                Sink sink = waiting.get(i);
+                sink.checkFailure();
+                long t0 = System.nanoTime();
+                boolean queued = sink.queue.offer(batch, OFFER_POLL_MILLIS / waiting.size() + 1, TimeUnit.MILLISECONDS);
+                sink.blockedNanos.addAndGet(System.nanoTime() - t0);
+                if (queued) waiting.remove(i);
+            }
+        }
+    }
+
+    /** Ждёт, пока все хранилища запишут всё, что было отдано до вызова */
+    @Override
+    public void flush() throws Exception {
+        // упавшее хранилище не проверяем заранее: сначала исправные должны дописать отданное
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        List<CompletableFuture<Void>> done = new ArrayList<>(sinks.size());
+        for (Sink sink : sinks) {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            sink.enqueue(new Batch(List.of(), f));
+            done.add(f);
+        }
+        // ждём все хранилища, даже если одно уже упало: исправные должны дописать своё
+        Exception failure = null;
+        for (CompletableFuture<Void> f : done) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (failure == null) failure = (Exception) e.getCause();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Сколько записей передано writer'у хранилища с номером index (в порядке конструктора), до дедупликации */
+    public long getDeliveredRecords(int index) {
+        return sinks.get(index).deliveredRecords.get();
+    }
+
+    /**
+     * Сколько миллисекунд поставщик ждал места в очереди хранилища index — чем больше, тем сильнее
+     * это хранилище тормозит развилку.
+     */
+    public long getBlockedMillis(int index) {
+        return TimeUnit.NANOSECONDS.toMillis(sinks.get(index).blockedNanos.get());
+    }
+
+    /** Дописывает всё отданное, останавливает потоки и закрывает writer'ы хранилищ */
+    @Override
+    public void close() throws Exception {
+        if (closed) return;
+        Exception failure = null;
+        try {
+            flush();
+        } catch (Exception e) {
+            failure = e;
+        }
+        closed = true;
+        for (Sink sink : sinks) {
+            sink.thread.interrupt();
+            sink.thread.join();
+            try {
+                sink.writer.close();
+            } catch (Exception e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        for (Sink sink : sinks) {
+            sink.checkFailure();
+        }
+    }
+
+    /** Хранилище развилки: очередь пачек и поток, который их пишет */
+    private static final class Sink {
+        final int index;
+        final FinalRecordWriter writer;
+        final BlockingQueue<Batch> queue;
+        final Thread thread;
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicLong deliveredRecords = new AtomicLong();
+        final AtomicLong blockedNanos = new AtomicLong();
+
+        Sink(int index, FinalRecordWriter writer, int queueCapacity) {
+            this.index = index;
+            this.writer = writer;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this::loop, "tee-sink-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void enqueue(Batch batch) throws Exception {
+            while (!queue.offer(batch, OFFER_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        }
+
+        void checkFailure() throws IOException {
+            Exception e = failure.get();
+            if (e != null) {
+                throw new IOException("Sink " + index + " (" + writer.getClass().getSimpleName() + ") failed: "
+                        + e.getMessage(), e);
+            }
+        }
+
+        private void loop() {
+            while (true) {
+                Batch batch;
+                try {
+                    batch = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!batch.records.isEmpty() && failure.get() == null) {
+                    try {
+                        writer.write(batch.records);
+                        deliveredRecords.addAndGet(batch.records.size());
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+                if (batch.done != null) {
+                    Exception e = failure.get();
+                    if (e == null) {
+                        batch.done.complete(null);
+                    } else {
+                        try {
+                            checkFailure();
+                        } catch (IOException wrapped) {
+                            batch.done.completeExceptionally(wrapped);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Пачка в очереди хранилища; done — отметка flush() */
+    private static final class Batch {
+        final List<FinalRecord> records;
+        final CompletableFuture<Void> done;
+
+        Batch(List<FinalRecord> records, CompletableFuture<Void> done) {
+            this.records = records;
+            this.done = done;
+        }
+    }
+}
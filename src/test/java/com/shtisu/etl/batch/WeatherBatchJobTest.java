@@ -0,0 +1,111 @@
+package com.shtisu.etl.batch;
+
+import com.shtisu.etl.job.JobSpec;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeatherBatchJobTest {
+
+    @TempDir
+    Path tempDir;
+
+    private volatile boolean failFourthLocation = true;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Test
+    void failedPartitionIsRestartedWithoutRedoingCompletedWork() throws Exception {
+        String sample;
+        try (InputStream in = WeatherBatchJobTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    requests.incrementAndGet();
+                    String lat = request.getRequestUrl().queryParameter("latitude");
+                    String lon = request.getRequestUrl().queryParameter("longitude");
+                    if (failFourthLocation && Double.parseDouble(lat) == 13.0) {
+                        return new MockResponse().setResponseCode(503);
+                    }
+                    return new MockResponse().setBody(sample
+                            .replaceFirst("\"latitude\": [^,]+,", "\"latitude\": " + lat + ",")
+                            .replaceFirst("\"longitude\": [^,]+,", "\"longitude\": " + lon + ","));
+                }
+            });
+            server.start();
+
+            // 6 точек, 3 диапазона по 2 точки, чанк — один запрос
+            JobSpec spec = new JobSpec();
+            spec.setApiBaseUrl(server.url("").toString().replaceAll("/$", ""));
+            spec.setStartDate(LocalDate.of(2025, 7, 1));
+            spec.setEndDate(LocalDate.of(2025, 7, 1));
+            for (int i = 0; i < 6; i++) {
+                JobSpec.Location l = new JobSpec.Location();
+                l.setLatitude(10.0 + i);
+                l.setLongitude(20.0 + i);
+                spec.getLocations().add(l);
+            }
+            spec.getParallelism().setFetchThreads(3);
+            spec.getParallelism().setChunkSize(1);
+            JobSpec.Sink sink = new JobSpec.Sink();
+            sink.setType("csv");
+            sink.setPath(tempDir.resolve("weather.csv").toString());
+            sink.setFilterPath(tempDir.resolve("weather.bloom").toString());
+            spec.getSinks().add(sink);
+
+            String specId = tempDir.resolve("job.yaml").toString();
+            JobExecution first = WeatherBatchJob.run(spec, specId, 1L);
+            assertEquals(BatchStatus.FAILED, first.getStatus());
+            assertEquals(2, rangesWithStatus(first, BatchStatus.COMPLETED));
+            // 5 успешных запросов и три попытки упавшего
+            assertEquals(5 + 3, requests.get());
+
+            failFourthLocation = false;
+            requests.set(0);
+            JobExecution second = WeatherBatchJob.run(spec, specId, 1L);
+            assertEquals(BatchStatus.COMPLETED, second.getStatus());
+            assertEquals(first.getJobInstance().getId(), second.getJobInstance().getId());
+            // перезапущен только упавший диапазон, и только с незафиксированного запроса
+            assertEquals(1, requests.get());
+        }
+
+        List<String> lines = Files.readAllLines(tempDir.resolve("weather.csv"), StandardCharsets.UTF_8);
+        Set<String> points = new HashSet<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(";");
+            points.add(f[0] + ":" + f[1]);
+        }
+        assertEquals(6, points.size());
+    }
+
+    private static long rangesWithStatus(JobExecution execution, BatchStatus status) {
+        return execution.getStepExecutions().stream()
+                .filter(s -> s.getStepName().startsWith("fetchRange:"))
+                .map(StepExecution::getStatus)
+                .filter(status::equals)
+                .count();
+    }
+}
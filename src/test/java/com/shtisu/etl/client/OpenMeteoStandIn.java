@@ -0,0 +1,132 @@
+package com.shtisu.etl.client;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальная замена Open Meteo API для нагрузочных тестов: на любой запрос /v1/forecast отвечает
+ * синтетическими данными ({@link SyntheticOpenMeteo}) для запрошенных координат и периода,
+ * в том числе массивом на запрос с несколькими координатами.
+ *
+ * Настраиваются задержка ответа (latency + случайно до jitter), ограничение числа запросов в секунду
+ * (сверх него — 429) и доля ответов 500. Случайность с фиксированным зерном — прогоны повторяемы.
+ */
+public final class OpenMeteoStandIn implements AutoCloseable {
+
+    private final MockWebServer server = new MockWebServer();
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final int maxRequestsPerSecond;
+    private final double errorRate;
+    private final Random random = new Random(42);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    // Окно ограничения: текущая секунда и число запросов в ней
+    private long windowSecond;
+    private int windowRequests;
+
+    /**
+     * @param latencyMillis        задержка перед ответом
+     * @param jitterMillis         случайная добавка к задержке, 0..jitterMillis
+     * @param maxRequestsPerSecond сколько запросов в секунду обслуживается (0 — без ограничения)
+     * @param errorRate            доля ответов 500 (0–1)
+     */
+    public OpenMeteoStandIn(long latencyMillis, long jitterMillis, int maxRequestsPerSecond, double errorRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.errorRate = errorRate;
+        server.setDispatcher(new Dispatcher() {
+            @NotNull
+            @Override
+            public MockResponse dispatch(@NotNull RecordedRequest request) {
+                return respond(request);
+            }
+        });
+        server.start();
+    }
+
+    /** Адрес для {@link OpenMeteoApiClient} */
+    public String baseUrl() {
+        return server.url("").toString().replaceAll("/$", "");
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /** Запросы, отклонённые ограничением (429) */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /** Запросы, на которые отвечено 500 */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        requests.incrementAndGet();
+        long delay;
+        boolean fail;
+        synchronized (this) {
+            if (maxRequestsPerSecond > 0) {
+                long second = System.nanoTime() / 1_000_000_000L;
+                if (second != windowSecond) {
+                    windowSecond = second;
+                    windowRequests = 0;
+                }
+                if (++windowRequests > maxRequestsPerSecond) {
+                    throttled.incrementAndGet();
+                    return new MockResponse().setResponseCode(429).setHeader("Retry-After", "1");
+                }
+            }
+            delay = latencyMillis + (jitterMillis > 0 ? (long) (random.nextDouble() * (jitterMillis + 1)) : 0);
+            fail = errorRate > 0 && random.nextDouble() < errorRate;
+        }
+        if (fail) {
+            errors.incrementAndGet();
+            return new MockResponse().setResponseCode(500).setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+        }
+
+        HttpUrl url = request.getRequestUrl();
+        String[] lats = url.queryParameter("latitude").split(",");
+        String[] lons = url.queryParameter("longitude").split(",");
+        LocalDate start = LocalDate.parse(url.queryParameter("start_date"));
+        LocalDate end = LocalDate.parse(url.queryParameter("end_date"));
+        String body;
+        if (lats.length == 1) {
+            body = SyntheticOpenMeteo.json(Double.parseDouble(lats[0]), Double.parseDouble(lons[0]), start, end);
+        } else {
+            double[] la = new double[lats.length];
+            double[] lo = new double[lons.length];
+            for (int i = 0; i < lats.length; i++) {
+                la[i] = Double.parseDouble(lats[i]);
+                lo[i] = Double.parseDouble(lons[i]);
+            }
+            body = SyntheticOpenMeteo.jsonAll(la, lo, start, end);
+        }
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body)
+                .setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+}
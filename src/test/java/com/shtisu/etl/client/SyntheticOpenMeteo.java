@@ -0,0 +1,93 @@
+package com.shtisu.etl.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Синтетические ответы Open Meteo любой длины для любой точки: дни берутся по кругу из
+ * sample-open-meteo.json (15 дней по 24 часа), время, восход и закат сдвигаются на нужную дату.
+ * Набор фиксированный — одинаковые аргументы дают одинаковый JSON.
+ */
+public final class SyntheticOpenMeteo {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectNode SAMPLE = load();
+    private static final int SAMPLE_DAYS = SAMPLE.get("daily").get("time").size();
+    private static final LocalDate SAMPLE_START = LocalDate.ofInstant(
+            Instant.ofEpochSecond(SAMPLE.get("daily").get("time").get(0).asLong()), ZoneOffset.UTC);
+
+    private SyntheticOpenMeteo() {
+    }
+
+    /** JSON ответа на запрос точки за дни [start, end] */
+    public static String json(double latitude, double longitude, LocalDate start, LocalDate end) {
+        return response(latitude, longitude, start, end).toString();
+    }
+
+    /** JSON-массив ответов на запрос с несколькими координатами */
+    public static String jsonAll(double[] latitudes, double[] longitudes, LocalDate start, LocalDate end) {
+        ArrayNode all = MAPPER.createArrayNode();
+        for (int i = 0; i < latitudes.length; i++) {
+            all.add(response(latitudes[i], longitudes[i], start, end));
+        }
+        return all.toString();
+    }
+
+    private static ObjectNode response(double latitude, double longitude, LocalDate start, LocalDate end) {
+        int days = (int) ChronoUnit.DAYS.between(start, end) + 1;
+        ObjectNode out = SAMPLE.deepCopy();
+        out.put("latitude", latitude);
+        out.put("longitude", longitude);
+        out.set("hourly", resample((ObjectNode) SAMPLE.get("hourly"), 24, start, days));
+        out.set("daily", resample((ObjectNode) SAMPLE.get("daily"), 1, start, days));
+        return out;
+    }
+
+    /**
+     * Собирает блок hourly/daily из days дней: день i — это день (i mod 15) образца, у которого
+     * метки времени (time, sunrise, sunset) сдвинуты на разницу дат.
+     */
+    private static ObjectNode resample(ObjectNode block, int perDay, LocalDate start, int days) {
+        ObjectNode out = MAPPER.createObjectNode();
+        for (Iterator<Map.Entry<String, JsonNode>> it = block.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            boolean timestamp = field.getKey().equals("time") || field.getKey().equals("sunrise")
+                    || field.getKey().equals("sunset");
+            ArrayNode src = (ArrayNode) field.getValue();
+            ArrayNode dst = out.putArray(field.getKey());
+            for (int day = 0; day < days; day++) {
+                int sampleDay = day % SAMPLE_DAYS;
+                long shift = ChronoUnit.DAYS.between(SAMPLE_START.plusDays(sampleDay), start.plusDays(day)) * 86_400L;
+                for (int k = 0; k < perDay; k++) {
+                    JsonNode v = src.get(sampleDay * perDay + k);
+                    if (timestamp && !v.isNull()) {
+                        dst.add(v.asLong() + shift);
+                    } else {
+                        dst.add(v);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static ObjectNode load() {
+        try (InputStream in = SyntheticOpenMeteo.class.getResourceAsStream("/sample-open-meteo.json")) {
+            return (ObjectNode) MAPPER.readTree(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
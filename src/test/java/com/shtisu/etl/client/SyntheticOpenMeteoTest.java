@@ -0,0 +1,30 @@
+package com.shtisu.etl.client;
+
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.parser.OpenMeteoApiJsonParser;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SyntheticOpenMeteoTest {
+
+    @Test
+    void generatesOneRecordPerDayForAnyRange() throws Exception {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        LocalDate end = LocalDate.of(2024, 12, 31);
+        List<FinalRecord> records = new FinalRecordItemProcessor()
+                .processRange(OpenMeteoApiJsonParser.parse(SyntheticOpenMeteo.json(12.5, 34.5, start, end)));
+
+        assertEquals(366, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(12.5, records.get(i).getLatitude());
+            assertEquals(start.plusDays(i), records.get(i).getDate());
+        }
+        assertEquals(2, OpenMeteoApiJsonParser.parseAll(
+                SyntheticOpenMeteo.jsonAll(new double[]{1, 2}, new double[]{3, 4}, start, start)).size());
+    }
+}
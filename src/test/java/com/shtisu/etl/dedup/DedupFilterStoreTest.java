@@ -0,0 +1,62 @@
+package com.shtisu.etl.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DedupFilterStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void filterWithOldKeyFormatIsRebuilt() throws Exception {
+        Path path = tempDir.resolve("data.bloom");
+        DedupFilter filter = DedupFilterType.EXACT.create(100, 0.01);
+        filter.put(LocalDate.of(2025, 7, 1), 40.8, -73.95);
+        DedupFilterStore.save(path, filter, 42);
+
+        Optional<DedupFilter> loaded = DedupFilterStore.load(path, 42, DedupFilterType.EXACT);
+        assertTrue(loaded.isPresent());
+        assertTrue(loaded.get().mightContain(LocalDate.of(2025, 7, 1), 40.8, -73.95));
+        assertEquals(Integer.toString(DedupKeys.FORMAT_VERSION), meta(path).getProperty("keyFormat"));
+
+        // метаданные до появления версии формата: ключи версии 1, фильтр устарел
+        Properties v1 = meta(path);
+        v1.remove("keyFormat");
+        store(path, v1);
+        assertTrue(DedupFilterStore.load(path, 42, DedupFilterType.EXACT).isEmpty());
+
+        v1.setProperty("keyFormat", "1");
+        store(path, v1);
+        assertTrue(DedupFilterStore.load(path, 42, DedupFilterType.EXACT).isEmpty());
+
+        // после перестроения фильтр сохраняется с текущей версией и снова читается
+        DedupFilterStore.save(path, filter, 42);
+        assertTrue(DedupFilterStore.load(path, 42, DedupFilterType.EXACT).isPresent());
+    }
+
+    private static Properties meta(Path path) throws Exception {
+        Properties meta = new Properties();
+        try (InputStream is = Files.newInputStream(DedupFilterStore.metaPath(path))) {
+            meta.load(is);
+        }
+        return meta;
+    }
+
+    private static void store(Path path, Properties meta) throws Exception {
+        try (OutputStream os = Files.newOutputStream(DedupFilterStore.metaPath(path))) {
+            meta.store(os, null);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.shtisu.etl.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockFreeBloomFilterTest {
+
+    @Test
+    void concurrentPutsLoseNoKeys() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        LockFreeBloomFilter filter = new LockFreeBloomFilter((long) threads * perThread, 0.01);
+        LocalDate start = LocalDate.of(2024, 1, 1);
+
+        // Все потоки стартуют одновременно и пишут соседние ключи — в одни и те же слова массива
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < perThread; i++) {
+                    filter.put(start.plusDays(i % 700), -60.0 + (i / 700) * 0.01, offset * 0.01);
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                assertTrue(filter.mightContain(start.plusDays(i % 700), -60.0 + (i / 700) * 0.01, t * 0.01));
+            }
+        }
+        // put считает только ключи, изменившие биты: коллизии с ложным срабатыванием в пределах fpp
+        assertTrue(filter.size() > threads * perThread * 0.98, "size " + filter.size());
+        assertTrue(filter.estimatedFpp() < 0.02, "fpp " + filter.estimatedFpp());
+    }
+
+    @Test
+    void survivesSerializationThroughFilterType() throws Exception {
+        LockFreeBloomFilter filter = (LockFreeBloomFilter) DedupFilterType.parse("lockfree").create(10_000, 0.001);
+        LocalDate day = LocalDate.of(2025, 7, 1);
+        for (int i = 0; i < 5_000; i++) {
+            filter.put(day.plusDays(i % 50), 55.0 + i / 50 * 0.001, 83.0);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(bytes);
+        DedupFilter restored = DedupFilterType.LOCKFREE.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(DedupFilterType.LOCKFREE, restored.type());
+        assertEquals(filter.size(), restored.size());
+        assertEquals(filter.estimatedFpp(), restored.estimatedFpp(), 1e-12);
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(restored.mightContain(day.plusDays(i % 50), 55.0 + i / 50 * 0.001, 83.0));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (restored.mightContain(day, -10.0 - i * 0.001, 20.0)) falsePositives++;
+        }
+        assertTrue(falsePositives < 50, "false positives " + falsePositives);
+    }
+}
@@ -0,0 +1,82 @@
+package com.shtisu.etl.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedKeySetTest {
+
+    @Test
+    void packKeepsCoordinatesAtFourDecimalPlaces() {
+        LocalDate day = LocalDate.of(2025, 7, 1);
+        assertEquals(DedupKeys.pack(day, 55.0001, 83.0), DedupKeys.pack(day, 55.00012, 83.0));
+        assertNotEquals(DedupKeys.pack(day, 55.0001, 83.0), DedupKeys.pack(day, 55.0002, 83.0));
+        assertNotEquals(DedupKeys.pack(day, 55.0, 83.0), DedupKeys.pack(day.plusDays(1), 55.0, 83.0));
+        assertNotEquals(DedupKeys.pack(day, 55.0, 83.0), DedupKeys.pack(day, 83.0, 55.0));
+        // строковый ключ тоже с точностью 1e-4: координата ячейки, прочитанная как float, и её запись не различаются
+        assertEquals(DedupKeys.of(day, 40.8, -73.95), DedupKeys.of(day, 40.800003, -73.950001));
+        assertNotEquals(DedupKeys.of(day, 40.8, -73.95), DedupKeys.of(day, 40.8001, -73.95));
+
+        // Границы диапазона упаковываются, выход за них — ошибка
+        DedupKeys.pack(LocalDate.of(1900, 1, 1), -90, -180);
+        DedupKeys.pack(day, 90, 180);
+        assertThrows(IllegalArgumentException.class, () -> DedupKeys.pack(day, 90.001, 0));
+        assertThrows(IllegalArgumentException.class, () -> DedupKeys.pack(LocalDate.of(1899, 12, 31), 0, 0));
+    }
+
+    @Test
+    void behavesAsExactSetAcrossGrowthAndSerialization() throws Exception {
+        // Маленькая начальная ёмкость: таблица несколько раз растёт
+        PackedKeySet set = new PackedKeySet(4);
+        Set<Long> expected = new HashSet<>();
+        Random rnd = new Random(42);
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < 20_000; i++) {
+            double lat = Math.round((rnd.nextDouble() * 180 - 90) * 100) / 100.0;
+            double lon = Math.round((rnd.nextDouble() * 360 - 180) * 100) / 100.0;
+            LocalDate day = start.plusDays(rnd.nextInt(400));
+            assertEquals(expected.add(DedupKeys.pack(day, lat, lon)), !set.mightContain(day, lat, lon));
+            set.put(day, lat, lon);
+        }
+        // ключ 0 (южный полюс, -180, 1900-01-01) хранится отдельно от пустых ячеек
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        expected.add(0L);
+        assertEquals(expected.size(), set.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.writeTo(bytes);
+        PackedKeySet restored = PackedKeySet.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(expected.size(), restored.size());
+        for (long key : expected) {
+            assertTrue(restored.contains(key));
+        }
+        assertFalse(restored.mightContain(start, 0.123, 0.456));
+    }
+
+    @Test
+    void consecutiveDaysOfOneLocationTakeAboutOneByteOnDisk() throws Exception {
+        PackedKeySet set = new PackedKeySet(10_000);
+        LocalDate start = LocalDate.of(2000, 1, 1);
+        for (int loc = 0; loc < 10; loc++) {
+            for (int d = 0; d < 1_000; d++) {
+                set.put(start.plusDays(d), 50 + loc * 0.25, 80.0);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.writeTo(bytes);
+        assertTrue(bytes.size() < 10_000 + 100, "bytes: " + bytes.size());
+    }
+}
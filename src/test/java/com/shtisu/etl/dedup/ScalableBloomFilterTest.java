@@ -0,0 +1,80 @@
+package com.shtisu.etl.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScalableBloomFilterTest {
+
+    private static final double FPP = 0.01;
+
+    @Test
+    void chainGrowsAndKeepsFalsePositiveRateBounded() {
+        // Ёмкость 1024 на месяц, а пишем 30 000 ключей в один месяц: обычный BloomFilter давно бы насытился
+        ScalableBloomFilter filter = new ScalableBloomFilter(0, FPP, 0);
+        LocalDate day = LocalDate.of(2025, 7, 1);
+        int keys = 30_000;
+        for (int i = 0; i < keys; i++) {
+            filter.put(day.plusDays(i % 28), i / 28 * 0.01, 10.0);
+        }
+        for (int i = 0; i < keys; i++) {
+            assertTrue(filter.mightContain(day.plusDays(i % 28), i / 28 * 0.01, 10.0));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < keys; i++) {
+            if (filter.mightContain(day.plusDays(i % 28), i / 28 * 0.01, 20.0)) falsePositives++;
+        }
+        assertTrue(falsePositives < keys * FPP * 1.5, "false positives: " + falsePositives);
+        assertTrue(filter.subFilterCount() > 1);
+        assertTrue(filter.estimatedFpp() <= FPP, "estimated fpp: " + filter.estimatedFpp());
+        assertFalse(filter.isSaturated(FPP));
+
+        // HyperLogLog оценивает число различных ключей с погрешностью в несколько процентов
+        assertEquals(keys, filter.size(), keys * 0.05);
+    }
+
+    @Test
+    void plainBloomFilterReportsSaturation() {
+        DedupFilter bloom = DedupFilterType.BLOOM.create(1_000, FPP);
+        LocalDate day = LocalDate.of(2025, 7, 1);
+        for (int i = 0; i < 10_000; i++) {
+            bloom.put(day, i * 0.01, 10.0);
+        }
+        assertTrue(bloom.isSaturated(FPP));
+    }
+
+    @Test
+    void newMonthIsSizedFromPreviousMonthAndOldMonthsAreRetired() throws Exception {
+        ScalableBloomFilter filter = new ScalableBloomFilter(0, FPP, 2);
+        for (int m = 0; m < 4; m++) {
+            LocalDate first = LocalDate.of(2025, 1 + m, 1);
+            for (int i = 0; i < 5_000; i++) {
+                filter.put(first.plusDays(i % 28), i / 28 * 0.01, 10.0);
+            }
+        }
+        // Январь вырос цепочкой, следующие месяцы сразу получили ёмкость по оценке HyperLogLog
+        assertEquals(2, filter.shardCount());
+        assertEquals(YearMonth.of(2025, 3), filter.retiredBefore());
+        assertEquals(2, filter.subFilterCount());
+
+        // Ключи выведенных из оборота месяцев считаются уже записанными
+        assertTrue(filter.mightContain(LocalDate.of(2025, 1, 15), 89.0, 10.0));
+        assertFalse(filter.mightContain(LocalDate.of(2025, 4, 15), 89.0, 10.0));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(bytes);
+        DedupFilter restored = DedupFilterType.SCALABLE.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(restored.mightContain(LocalDate.of(2025, 4, 1), 0.0, 10.0));
+        assertTrue(restored.mightContain(LocalDate.of(2025, 1, 15), 89.0, 10.0));
+        assertEquals(filter.size(), restored.size());
+        assertEquals(filter.estimatedFpp(), restored.estimatedFpp(), 1e-12);
+    }
+}
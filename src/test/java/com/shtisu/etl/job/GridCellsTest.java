@@ -0,0 +1,35 @@
+package com.shtisu.etl.job;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GridCellsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void unknownPointResolvesToNearestCellWithinHalfStep() throws Exception {
+        Path file = tempDir.resolve("grid-cells");
+        GridCells cells = GridCells.open(file, 0.25);
+        cells.learn(55.1, 82.9, 55.0, 83.0);
+        cells.learn(55.2, 83.2, 55.25, 83.25);
+        cells.save();
+
+        assertArrayEquals(new double[]{55.0, 83.0}, cells.cellOf(54.9, 83.1));
+        assertArrayEquals(new double[]{55.25, 83.25}, cells.cellOf(55.13, 83.2));
+        // соседняя ячейка (55.0, 83.25) не выучена: точка рядом с ней не относится к другим
+        assertNull(cells.cellOf(55.0, 83.2));
+        assertNull(cells.cellOf(55.125, 83.0));
+
+        // без шага радиус — наибольшее отклонение запрошенных точек от своих ячеек (0.1 и 0.1)
+        GridCells inferred = GridCells.open(file);
+        assertArrayEquals(new double[]{55.0, 83.0}, inferred.cellOf(55.05, 83.08));
+        assertNull(inferred.cellOf(54.88, 83.0));
+    }
+}
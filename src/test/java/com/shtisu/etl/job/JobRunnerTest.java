@@ -0,0 +1,397 @@
+package com.shtisu.etl.job;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runsYamlSpecOverLocationsAndGridIntoCsv() throws Exception {
+        String sample;
+        try (InputStream in = JobRunnerTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        try (MockWebServer server = new MockWebServer()) {
+            // Ответ-образец с координатами из запроса; точка 0,0 отвечает ошибкой
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    String lat = request.getRequestUrl().queryParameter("latitude");
+                    String lon = request.getRequestUrl().queryParameter("longitude");
+                    if (Double.parseDouble(lat) == 0.0) {
+                        return new MockResponse().setResponseCode(500);
+                    }
+                    return new MockResponse().setBody(sample
+                            .replaceFirst("\"latitude\": [^,]+,", "\"latitude\": " + lat + ",")
+                            .replaceFirst("\"longitude\": [^,]+,", "\"longitude\": " + lon + ","));
+                }
+            });
+            server.start();
+
+            Path csv = tempDir.resolve("out/weather.csv");
+            Path spec = tempDir.resolve("job.yaml");
+            Files.writeString(spec, String.join("\n",
+                    "name: test-job",
+                    "apiBaseUrl: " + server.url("").toString().replaceAll("/$", ""),
+                    "startDate: 2025-07-01",
+                    "endDate: 2025-07-01",
+                    "locations:",
+                    "  - {latitude: 55.0, longitude: 83.0}",
+                    "  - {latitude: 0.0, longitude: 0.0}",
+                    "grid: {minLatitude: 10, maxLatitude: 11, minLongitude: 20, maxLongitude: 21.5, step: 0.5}",
+                    "parallelism: {fetchThreads: 3}",
+                    "sinks:",
+                    "  - {type: csv, path: '" + csv + "', filterPath: '" + tempDir.resolve("out/weather.bloom") + "'}",
+                    ""));
+
+            JobSpec loaded = JobSpecLoader.load(spec);
+            assertEquals(LocalDate.of(2025, 7, 1), loaded.getStartDate());
+            // 2 точки + сетка 3 x 4
+            assertEquals(14, JobRunner.plan(loaded).size());
+
+            JobReport report = new JobRunner(new OpenMeteoApiClient(loaded.getApiBaseUrl()), new FinalRecordItemProcessor())
+                    .run(loaded);
+            assertEquals(14, report.getTasks());
+            assertEquals(1, report.getFailedTasks());
+            long perLocation = report.getFetchedRecords() / 13;
+            assertTrue(perLocation > 0);
+            assertEquals(13 * perLocation, report.getFetchedRecords());
+
+            // повторный запуск того же задания ничего не дописывает
+            JobReport again = new JobRunner(new OpenMeteoApiClient(loaded.getApiBaseUrl()), new FinalRecordItemProcessor())
+                    .run(loaded);
+            assertEquals(0, again.getSinks().get(0).getWrittenRows());
+
+            List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+            assertEquals(report.getFetchedRecords() + 1, lines.size());
+            assertEquals(report.getFetchedRecords(), report.getSinks().get(0).getWrittenRows());
+            Set<String> points = new HashSet<>();
+            for (String line : lines.subList(1, lines.size())) {
+                String[] f = line.split(";");
+                points.add(f[0] + ":" + f[1]);
+            }
+            assertEquals(13, points.size());
+        }
+    }
+
+    @Test
+    void checkpointResumesOnlyUnfinishedRequests() throws Exception {
+        String sample;
+        try (InputStream in = JobRunnerTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AtomicInteger requests = new AtomicInteger();
+
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    requests.incrementAndGet();
+                    String lat = request.getRequestUrl().queryParameter("latitude");
+                    if (failing.get() && Double.parseDouble(lat) == 12.0) {
+                        return new MockResponse().setResponseCode(503);
+                    }
+                    return new MockResponse().setBody(sample.replaceFirst("\"latitude\": [^,]+,", "\"latitude\": " + lat + ","));
+                }
+            });
+            server.start();
+
+            JobSpec spec = new JobSpec();
+            spec.setApiBaseUrl(server.url("").toString().replaceAll("/$", ""));
+            spec.setStartDate(LocalDate.of(2025, 7, 1));
+            spec.setEndDate(LocalDate.of(2025, 7, 1));
+            JobSpec.Grid grid = new JobSpec.Grid();
+            grid.setMinLatitude(10);
+            grid.setMaxLatitude(15);
+            grid.setMinLongitude(83);
+            grid.setMaxLongitude(83);
+            grid.setStep(1);
+            spec.setGrid(grid);
+            spec.getParallelism().setFetchThreads(2);
+            spec.setCheckpointPath(tempDir.resolve("job.checkpoint").toString());
+            spec.setCheckpointEvery(2);
+            JobSpec.Sink sink = new JobSpec.Sink();
+            sink.setType("csv");
+            sink.setPath(tempDir.resolve("weather.csv").toString());
+            sink.setFilterPath(tempDir.resolve("weather.bloom").toString());
+            spec.getSinks().add(sink);
+
+            JobReport first = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(6, first.getTasks());
+            assertEquals(1, first.getFailedTasks());
+            assertEquals(5, Files.readAllLines(tempDir.resolve("job.checkpoint")).size());
+
+            failing.set(false);
+            requests.set(0);
+            JobReport second = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(5, second.getSkippedTasks());
+            assertEquals(1, second.getTasks());
+            assertEquals(0, second.getFailedTasks());
+            assertEquals(1, requests.get());
+            assertEquals(first.getSinks().get(0).getWrittenRows(), second.getSinks().get(0).getWrittenRows() * 5);
+        }
+    }
+
+    @Test
+    void fetchesGridTilesWithMultiCoordinateRequests() throws Exception {
+        String sample;
+        try (InputStream in = JobRunnerTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        AtomicInteger requests = new AtomicInteger();
+
+        try (MockWebServer server = new MockWebServer()) {
+            // На запрос с несколькими координатами API отвечает массивом — по объекту на координату
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    requests.incrementAndGet();
+                    String[] lats = request.getRequestUrl().queryParameter("latitude").split(",");
+                    String[] lons = request.getRequestUrl().queryParameter("longitude").split(",");
+                    StringJoiner body = new StringJoiner(",", "[", "]");
+                    for (int i = 0; i < lats.length; i++) {
+                        body.add(sample
+                                .replaceFirst("\"latitude\": [^,]+,", "\"latitude\": " + lats[i] + ",")
+                                .replaceFirst("\"longitude\": [^,]+,", "\"longitude\": " + lons[i] + ","));
+                    }
+                    return new MockResponse().setBody(lats.length == 1 ? body.toString().substring(1, body.length() - 1) : body.toString());
+                }
+            });
+            server.start();
+
+            JobSpec spec = new JobSpec();
+            spec.setApiBaseUrl(server.url("").toString().replaceAll("/$", ""));
+            spec.setStartDate(LocalDate.of(2025, 7, 1));
+            spec.setEndDate(LocalDate.of(2025, 7, 2));
+            spec.setChunkDays(1);
+            JobSpec.Grid grid = new JobSpec.Grid();
+            grid.setMinLatitude(10);
+            grid.setMaxLatitude(12);
+            grid.setMinLongitude(20);
+            grid.setMaxLongitude(22);
+            grid.setStep(1);
+            grid.setTileSize(2);
+            spec.setGrid(grid);
+            spec.getParallelism().setFetchThreads(2);
+            JobSpec.Sink sink = new JobSpec.Sink();
+            sink.setType("csv");
+            sink.setPath(tempDir.resolve("tiles.csv").toString());
+            sink.setFilterPath(tempDir.resolve("tiles.bloom").toString());
+            spec.getSinks().add(sink);
+
+            // сетка 3 x 3 режется на тайлы 2x2, 2x1, 1x2, 1x1; у каждого тайла оба дня подряд
+            FetchPlan plan = JobRunner.plan(spec);
+            assertEquals(9, plan.pointCount());
+            assertEquals(8, plan.size());
+            FetchTask first = plan.get(0);
+            assertArrayEquals(new double[]{10, 10, 11, 11}, first.getLatitudes());
+            assertArrayEquals(new double[]{20, 21, 20, 21}, first.getLongitudes());
+            assertEquals(LocalDate.of(2025, 7, 2), plan.get(1).getStart());
+            assertArrayEquals(first.getLatitudes(), plan.get(1).getLatitudes());
+            assertArrayEquals(new double[]{22, 22}, plan.get(2).getLongitudes());
+            assertArrayEquals(new double[]{12, 12}, plan.get(4).getLatitudes());
+            assertEquals(1, plan.get(7).size());
+
+            JobReport report = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(8, report.getTasks());
+            assertEquals(0, report.getFailedTasks());
+            assertEquals(8, requests.get());
+
+            Set<String> points = new HashSet<>();
+            List<String> lines = Files.readAllLines(tempDir.resolve("tiles.csv"), StandardCharsets.UTF_8);
+            for (String line : lines.subList(1, lines.size())) {
+                String[] f = line.split(";");
+                points.add(f[0] + ":" + f[1]);
+            }
+            assertEquals(9, points.size());
+        }
+    }
+
+    @Test
+    void nearbyPointsOfOneGridCellSkipTheApi() throws Exception {
+        String sample;
+        try (InputStream in = JobRunnerTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        AtomicInteger requests = new AtomicInteger();
+
+        try (MockWebServer server = new MockWebServer()) {
+            // API привязывает точку к ячейке сетки 0.1 градуса и отвечает координатами ячейки (как float)
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    requests.incrementAndGet();
+                    double lat = Double.parseDouble(request.getRequestUrl().queryParameter("latitude"));
+                    double lon = Double.parseDouble(request.getRequestUrl().queryParameter("longitude"));
+                    return new MockResponse().setBody(sample
+                            .replaceFirst("\"latitude\": [^,]+,", "\"latitude\": " + (double) (float) (Math.round(lat * 10) / 10.0) + ",")
+                            .replaceFirst("\"longitude\": [^,]+,", "\"longitude\": " + (double) (float) (Math.round(lon * 10) / 10.0) + ","));
+                }
+            });
+            server.start();
+
+            JobSpec spec = new JobSpec();
+            spec.setApiBaseUrl(server.url("").toString().replaceAll("/$", ""));
+            spec.setStartDate(LocalDate.of(2025, 7, 1));
+            spec.setEndDate(LocalDate.of(2025, 7, 1));
+            spec.getLocations().add(location(55.01, 82.92));
+            spec.setCheckpointPath(tempDir.resolve("cells.checkpoint").toString());
+            spec.setGridCellsPath(tempDir.resolve("grid-cells").toString());
+            spec.setGridCellStep(0.1);
+            JobSpec.Sink sink = new JobSpec.Sink();
+            sink.setType("csv");
+            sink.setPath(tempDir.resolve("cells.csv").toString());
+            sink.setFilterPath(tempDir.resolve("cells.bloom").toString());
+            spec.getSinks().add(sink);
+            new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(1, requests.get());
+            assertEquals(1, Files.readAllLines(tempDir.resolve("grid-cells")).size());
+
+            // та же точка в другой записи и новая точка ближе половины шага к выученной ячейке — без запросов
+            spec.getLocations().add(location(55.0100000000001, 82.9199999999999));
+            spec.getLocations().add(location(55.04, 82.9));
+            requests.set(0);
+            JobReport again = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(0, requests.get());
+            assertEquals(3, again.getSkippedTasks());
+            assertEquals(0, again.getSinks().get(0).getWrittenRows());
+
+            // следующий день: все три точки в одной ячейке — один запрос
+            spec.setEndDate(LocalDate.of(2025, 7, 2));
+            spec.setChunkDays(1);
+            requests.set(0);
+            JobReport next = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(1, requests.get());
+            assertEquals(1, next.getTasks());
+            assertEquals(5, next.getSkippedTasks());
+        }
+    }
+
+    @Test
+    void failedCellRequestDoesNotSkipOtherPointsOfTheCell() throws Exception {
+        String sample;
+        try (InputStream in = JobRunnerTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        AtomicInteger requests = new AtomicInteger();
+        AtomicBoolean failing = new AtomicBoolean();
+
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    requests.incrementAndGet();
+                    if (failing.get()) {
+                        return new MockResponse().setResponseCode(500);
+                    }
+                    double lat = Double.parseDouble(request.getRequestUrl().queryParameter("latitude"));
+                    double lon = Double.parseDouble(request.getRequestUrl().queryParameter("longitude"));
+                    return new MockResponse().setBody(sample
+                            .replaceFirst("\"latitude\": [^,]+,", "\"latitude\": " + (double) (float) (Math.round(lat * 10) / 10.0) + ",")
+                            .replaceFirst("\"longitude\": [^,]+,", "\"longitude\": " + (double) (float) (Math.round(lon * 10) / 10.0) + ","));
+                }
+            });
+            server.start();
+
+            JobSpec spec = new JobSpec();
+            spec.setApiBaseUrl(server.url("").toString().replaceAll("/$", ""));
+            spec.setStartDate(LocalDate.of(2025, 7, 1));
+            spec.setEndDate(LocalDate.of(2025, 7, 1));
+            spec.setChunkDays(1);
+            spec.getLocations().add(location(55.01, 82.92));
+            spec.setCheckpointPath(tempDir.resolve("failed-cell.checkpoint").toString());
+            spec.setGridCellsPath(tempDir.resolve("failed-cell-grid").toString());
+            spec.setGridCellStep(0.1);
+            JobSpec.Sink sink = new JobSpec.Sink();
+            sink.setType("csv");
+            sink.setPath(tempDir.resolve("failed-cell.csv").toString());
+            sink.setFilterPath(tempDir.resolve("failed-cell.bloom").toString());
+            spec.getSinks().add(sink);
+            new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+
+            // следующий день: запрос ячейки не удался — вторая точка ячейки тоже не загружена и считается неудавшейся
+            spec.getLocations().add(location(55.04, 82.9));
+            spec.setEndDate(LocalDate.of(2025, 7, 2));
+            failing.set(true);
+            JobReport failed = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(2, failed.getFailedTasks());
+            assertEquals(2, failed.getSkippedTasks());
+
+            // после восстановления API день загружается одним запросом ячейки
+            failing.set(false);
+            requests.set(0);
+            JobReport recovered = new JobRunner(new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor()).run(spec);
+            assertEquals(1, requests.get());
+            assertEquals(0, recovered.getFailedTasks());
+            assertEquals(3, recovered.getSkippedTasks());
+        }
+    }
+
+    private static JobSpec.Location location(double latitude, double longitude) {
+        JobSpec.Location location = new JobSpec.Location();
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+
+    @Test
+    void checkpointIgnoresTornLastLine() throws Exception {
+        Path file = tempDir.resolve("torn.checkpoint");
+        FetchTask a = new FetchTask(1.0, 2.0, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
+        FetchTask b = new FetchTask(3.0, 4.0, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
+        Files.writeString(file, a.key() + "\n" + b.key().substring(0, 5));
+
+        try (JobCheckpoint checkpoint = JobCheckpoint.open(file)) {
+            assertTrue(checkpoint.isDone(a));
+            assertEquals(1, checkpoint.size());
+            checkpoint.markAll(List.of(b));
+        }
+        try (JobCheckpoint checkpoint = JobCheckpoint.open(file)) {
+            assertTrue(checkpoint.isDone(a));
+            assertTrue(checkpoint.isDone(b));
+            assertEquals(2, checkpoint.size());
+        }
+    }
+
+    @Test
+    void rejectsIncompleteSpec() throws Exception {
+        Path spec = tempDir.resolve("job.json");
+        Files.writeString(spec, "{\"startDate\": \"2025-07-01\", \"endDate\": \"2025-07-02\", "
+                + "\"locations\": [{\"latitude\": 1, \"longitude\": 2}], \"sinks\": []}");
+        assertThrows(IllegalArgumentException.class, () -> JobSpecLoader.load(spec));
+    }
+}
@@ -0,0 +1,188 @@
+package com.shtisu.etl.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.client.OpenMeteoStandIn;
+import com.shtisu.etl.model.OpenMeteoResponse;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный прогон всего конвейера ({@link JobRunner}: запросы → processRange → CSV) против локальной
+ * замены API ({@link OpenMeteoStandIn}) на сетке из 10 000+ точек.
+ *
+ * Печатает и сохраняет в JSON (--result) записей в секунду, p50/p99 задержки запроса к API (со стороны
+ * клиента), число неудавшихся запросов и пиковый размер кучи — чтобы сравнивать версии между собой.
+ *
+ * Запуск: {@code mvn -Ploadtest test-compile exec:exec@loadtest -Dloadtest.args="--locations 10000"}.
+ */
+@Command(name = "load-test", mixinStandardHelpOptions = true,
+        description = "Нагрузочный прогон конвейера против синтетического Open Meteo API.")
+public class LoadTestDriver implements Callable<Integer> {
+
+    @Option(names = "--locations", description = "Число точек (сетка примерно квадратная), по умолчанию ${DEFAULT-VALUE}")
+    int locations = 10_000;
+
+    @Option(names = "--days", description = "Длина периода в днях, по умолчанию ${DEFAULT-VALUE}")
+    int days = 31;
+
+    @Option(names = "--tile-size", description = "Размер тайла сетки (координат в запросе = tileSize²)")
+    int tileSize = 1;
+
+    @Option(names = "--fetch-threads", description = "Параллельных запросов к API")
+    int fetchThreads = 32;
+
+    @Option(names = "--latency", description = "Задержка ответа API, мс")
+    long latencyMillis = 20;
+
+    @Option(names = "--jitter", description = "Случайная добавка к задержке, мс")
+    long jitterMillis = 30;
+
+    @Option(names = "--max-rps", description = "Ограничение запросов в секунду (0 — нет), сверх него API отвечает 429")
+    int maxRequestsPerSecond;
+
+    @Option(names = "--error-rate", description = "Доля ответов 500 (0–1)")
+    double errorRate;
+
+    @Option(names = "--result", description = "Файл для результатов в JSON")
+    Path resultPath;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new LoadTestDriver()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        Map<String, Object> result = run();
+        result.forEach((k, v) -> System.out.printf("%-22s %s%n", k, v));
+        if (resultPath != null) {
+            if (resultPath.getParent() != null) {
+                Files.createDirectories(resultPath.getParent());
+            }
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultPath.toFile(), result);
+        }
+        return 0;
+    }
+
+    /** Выполняет прогон и возвращает его показатели (в порядке вывода) */
+    Map<String, Object> run() throws Exception {
+        Path dir = Files.createTempDirectory("etl-load-test");
+        List<MemoryPoolMXBean> heap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP).toList();
+        System.gc();
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        try (OpenMeteoStandIn api = new OpenMeteoStandIn(latencyMillis, jitterMillis, maxRequestsPerSecond, errorRate)) {
+            JobSpec spec = spec(api.baseUrl(), dir);
+            TimedClient client = new TimedClient(api.baseUrl());
+            JobReport report = new JobRunner(client, new FinalRecordItemProcessor()).run(spec);
+
+            long[] latencies = client.latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : heap) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("locations", JobRunner.plan(spec).pointCount());
+            result.put("requests", report.getTasks());
+            result.put("failedRequests", report.getFailedTasks());
+            result.put("throttled", api.getThrottled());
+            result.put("records", report.getFetchedRecords());
+            result.put("writtenRows", report.getSinks().get(0).getWrittenRows());
+            result.put("recordsPerSecond", Math.round(report.recordsPerSecond()));
+            result.put("latencyP50Millis", percentile(latencies, 0.50) / 1e6);
+            result.put("latencyP99Millis", percentile(latencies, 0.99) / 1e6);
+            result.put("peakHeapMb", peakHeap / (1024 * 1024));
+            return result;
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private JobSpec spec(String baseUrl, Path dir) {
+        JobSpec spec = new JobSpec();
+        spec.setName("load-test");
+        spec.setApiBaseUrl(baseUrl);
+        spec.setStartDate(LocalDate.of(2024, 1, 1));
+        spec.setEndDate(spec.getStartDate().plusDays(days - 1L));
+        spec.setChunkDays(days);
+        // примерно квадратная сетка не меньше чем из locations узлов с шагом 0.01°
+        int rows = (int) Math.ceil(Math.sqrt(locations));
+        int cols = (int) Math.ceil((double) locations / rows);
+        JobSpec.Grid grid = new JobSpec.Grid();
+        grid.setMinLatitude(40);
+        grid.setMaxLatitude(40 + (rows - 1) * 0.01);
+        grid.setMinLongitude(60);
+        grid.setMaxLongitude(60 + (cols - 1) * 0.01);
+        grid.setStep(0.01);
+        grid.setTileSize(tileSize);
+        spec.setGrid(grid);
+        spec.getParallelism().setFetchThreads(fetchThreads);
+        JobSpec.Sink sink = new JobSpec.Sink();
+        sink.setType("csv");
+        sink.setPath(dir.resolve("weather.csv").toString());
+        sink.setFilterPath(dir.resolve("weather.bloom").toString());
+        sink.setExpectedEntries((long) rows * cols * days);
+        spec.getSinks().add(sink);
+        return spec;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /** Клиент, который запоминает задержку каждого успешного запроса */
+    private static final class TimedClient extends OpenMeteoApiClient {
+        final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        TimedClient(String baseUrl) {
+            super(baseUrl);
+        }
+
+        @Override
+        public OpenMeteoResponse fetch(double latitude, double longitude, LocalDate start, LocalDate end)
+                throws IOException, InterruptedException {
+            long t0 = System.nanoTime();
+            OpenMeteoResponse response = super.fetch(latitude, longitude, start, end);
+            latencies.add(System.nanoTime() - t0);
+            return response;
+        }
+
+        @Override
+        public List<OpenMeteoResponse> fetchAll(double[] latitudes, double[] longitudes, LocalDate start, LocalDate end)
+                throws IOException, InterruptedException {
+            long t0 = System.nanoTime();
+            List<OpenMeteoResponse> responses = super.fetchAll(latitudes, longitudes, start, end);
+            latencies.add(System.nanoTime() - t0);
+            return responses;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.shtisu.etl.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadTestDriverTest {
+
+    @Test
+    void reportsThroughputLatencyAndFailures() throws Exception {
+        LoadTestDriver driver = new LoadTestDriver();
+        driver.locations = 100;
+        driver.days = 3;
+        driver.tileSize = 2;
+        driver.fetchThreads = 4;
+        driver.latencyMillis = 1;
+        driver.jitterMillis = 2;
+        driver.errorRate = 0.2;
+
+        Map<String, Object> result = driver.run();
+        assertEquals(100L, result.get("locations"));
+        // тайлы 2x2 на сетке 10x10 — 25 запросов
+        assertEquals(25, result.get("requests"));
+        int failed = (int) result.get("failedRequests");
+        assertTrue(failed > 0 && failed < 25, "failed: " + failed);
+        assertEquals((25L - failed) * 4 * 3, result.get("records"));
+        assertEquals(result.get("records"), result.get("writtenRows"));
+        assertTrue((double) result.get("latencyP99Millis") >= (double) result.get("latencyP50Millis"));
+        assertTrue((long) result.get("peakHeapMb") > 0);
+    }
+
+    @Test
+    void throttledRequestsCountAsFailures() throws Exception {
+        LoadTestDriver driver = new LoadTestDriver();
+        driver.locations = 30;
+        driver.days = 1;
+        driver.fetchThreads = 4;
+        driver.latencyMillis = 0;
+        driver.jitterMillis = 0;
+        driver.maxRequestsPerSecond = 5;
+
+        Map<String, Object> result = driver.run();
+        long throttled = (long) result.get("throttled");
+        assertTrue(throttled > 0);
+        assertEquals((int) throttled, result.get("failedRequests"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.shtisu.etl.job;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RefreshDaemonTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void fetchesOnlyDaysAfterWatermark() throws Exception {
+        String sample;
+        try (InputStream in = RefreshDaemonTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AtomicInteger requests = new AtomicInteger();
+
+        try (MockWebServer server = new MockWebServer()) {
+            // Второй кусок периода точки 12.0 падает, пока failing
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    requests.incrementAndGet();
+                    String lat = request.getRequestUrl().queryParameter("latitude");
+                    String start = request.getRequestUrl().queryParameter("start_date");
+                    if (failing.get() && Double.parseDouble(lat) == 12.0 && start.equals("2025-07-03")) {
+                        return new MockResponse().setResponseCode(503);
+                    }
+                    return new MockResponse().setBody(sample.replaceFirst("\"latitude\": [^,]+,", "\"latitude\": " + lat + ","));
+                }
+            });
+            server.start();
+
+            JobSpec spec = spec(server.url("").toString().replaceAll("/$", ""));
+            OpenMeteoApiClient client = new OpenMeteoApiClient(spec.getApiBaseUrl());
+            Path watermarks = tempDir.resolve("refresh.watermarks");
+
+            try (RefreshDaemon daemon = new RefreshDaemon(spec, client, new FinalRecordItemProcessor(), clockAt(2025, 7, 5))) {
+                // по вчерашний день (04.07) кусками по 2 дня: 01–02 и 03–04 для каждой точки
+                JobReport first = daemon.tick();
+                assertEquals(4, first.getTasks());
+                assertEquals(1, first.getFailedTasks());
+                WatermarkStore store = WatermarkStore.open(watermarks);
+                assertEquals(LocalDate.of(2025, 7, 4), store.get(11.0, 83.0));
+                assertEquals(LocalDate.of(2025, 7, 2), store.get(12.0, 83.0));
+
+                failing.set(false);
+                requests.set(0);
+                JobReport second = daemon.tick();
+                assertEquals(1, requests.get());
+                assertEquals(1, second.getSkippedTasks());
+                assertEquals(LocalDate.of(2025, 7, 4), WatermarkStore.open(watermarks).get(12.0, 83.0));
+
+                requests.set(0);
+                JobReport third = daemon.tick();
+                assertEquals(0, requests.get());
+                assertEquals(2, third.getSkippedTasks());
+            }
+
+            // водяные знаки переживают перезапуск: на следующий день — по запросу на точку
+            requests.set(0);
+            try (RefreshDaemon daemon = new RefreshDaemon(spec, client, new FinalRecordItemProcessor(), clockAt(2025, 7, 6))) {
+                JobReport next = daemon.tick();
+                assertEquals(2, next.getTasks());
+                assertEquals(2, requests.get());
+                assertEquals(LocalDate.of(2025, 7, 5), WatermarkStore.open(watermarks).get(11.0, 83.0));
+            }
+        }
+    }
+
+    @Test
+    void requiresWatermarkPath() {
+        JobSpec spec = spec("http://localhost");
+        spec.getRefresh().setWatermarkPath(null);
+        assertThrows(IllegalArgumentException.class, () -> new RefreshDaemon(spec,
+                new OpenMeteoApiClient(spec.getApiBaseUrl()), new FinalRecordItemProcessor(), clockAt(2025, 7, 5)));
+    }
+
+    private JobSpec spec(String apiBaseUrl) {
+        JobSpec spec = new JobSpec();
+        spec.setApiBaseUrl(apiBaseUrl);
+        spec.setStartDate(LocalDate.of(2025, 7, 1));
+        spec.setEndDate(LocalDate.of(2025, 7, 1));
+        spec.setChunkDays(2);
+        for (double lat : new double[]{11.0, 12.0}) {
+            JobSpec.Location location = new JobSpec.Location();
+            location.setLatitude(lat);
+            location.setLongitude(83.0);
+            spec.getLocations().add(location);
+        }
+        spec.getParallelism().setFetchThreads(2);
+        spec.getRefresh().setWatermarkPath(tempDir.resolve("refresh.watermarks").toString());
+        JobSpec.Sink sink = new JobSpec.Sink();
+        sink.setType("csv");
+        sink.setPath(tempDir.resolve("weather.csv").toString());
+        sink.setFilterPath(tempDir.resolve("weather.bloom").toString());
+        spec.getSinks().add(sink);
+        return spec;
+    }
+
+    private static Clock clockAt(int year, int month, int day) {
+        return Clock.fixed(Instant.parse(LocalDate.of(year, month, day) + "T12:00:00Z"), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,196 @@
+package com.shtisu.etl.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shtisu.etl.WeatherCli;
+import com.shtisu.etl.client.OpenMeteoStandIn;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Замер холодного старта CLI: время от запуска JVM до первой строки в CSV и до выхода, без архива классов
+ * и с архивом AppCDS. Каждый прогон — отдельная JVM ({@code WeatherCli <spec.yaml>}) на пустом каталоге
+ * против локальной замены API ({@link OpenMeteoStandIn}) без задержки, так что время уходит на загрузку
+ * классов, открытие хранилища и первый запрос.
+ *
+ * Архив строится обучающим прогоном того же задания ({@code -XX:ArchiveClassesAtExit}) и затем
+ * подключается {@code -XX:SharedArchiveFile}. CDS берёт классы только из jar, поэтому приложение
+ * запускается из собранного jar и каталога зависимостей.
+ *
+ * Запуск: {@code mvn -Pappcds -DskipTests package exec:exec@appcds}.
+ */
+@Command(name = "startup-probe", mixinStandardHelpOptions = true,
+        description = "Замер времени до первой записанной строки без AppCDS и с ним.")
+public class StartupProbe implements Callable<Integer> {
+
+    @Option(names = "--app-jar", required = true, description = "Jar приложения")
+    Path appJar;
+
+    @Option(names = "--lib", required = true, description = "Каталог jar зависимостей")
+    Path libDir;
+
+    @Option(names = "--archive", description = "Куда сохранить архив AppCDS, по умолчанию ${DEFAULT-VALUE}")
+    Path archive = Paths.get("target/etl.jsa");
+
+    @Option(names = "--runs", description = "Прогонов в каждом режиме, по умолчанию ${DEFAULT-VALUE}")
+    int runs = 5;
+
+    @Option(names = "--result", description = "Файл для результатов в JSON")
+    Path resultPath;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new StartupProbe()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        String classpath = classpath();
+        Path dir = Files.createTempDirectory("etl-startup");
+        Map<String, Object> result = new LinkedHashMap<>();
+        try (OpenMeteoStandIn api = new OpenMeteoStandIn(0, 0, 0, 0)) {
+            Path spec = writeSpec(dir, api.baseUrl());
+
+            long[][] baseline = measure(classpath, spec, dir, List.of());
+            Files.deleteIfExists(archive);
+            if (archive.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(archive.toAbsolutePath().getParent());
+            }
+            // обучающий прогон: при выходе JVM сохраняет все загруженные классы приложения и библиотек
+            launch(classpath, spec, dir, List.of("-XX:ArchiveClassesAtExit=" + archive));
+            System.out.printf("Архив AppCDS: %s (%d КБ)%n", archive, Files.size(archive) / 1024);
+            long[][] cds = measure(classpath, spec, dir, List.of("-XX:SharedArchiveFile=" + archive));
+
+            result.put("runs", runs);
+            result.put("firstRowMillis", median(baseline[0]));
+            result.put("exitMillis", median(baseline[1]));
+            result.put("appCdsFirstRowMillis", median(cds[0]));
+            result.put("appCdsExitMillis", median(cds[1]));
+            result.put("archiveKb", Files.size(archive) / 1024);
+        } finally {
+            deleteRecursively(dir);
+        }
+        result.forEach((k, v) -> System.out.printf("%-22s %s%n", k, v));
+        if (resultPath != null) {
+            if (resultPath.getParent() != null) {
+                Files.createDirectories(resultPath.getParent());
+            }
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultPath.toFile(), result);
+        }
+        return 0;
+    }
+
+    /** Jar приложения и зависимости в постоянном порядке: архив действителен только для того же classpath */
+    private String classpath() throws IOException {
+        List<String> jars = new ArrayList<>();
+        jars.add(appJar.toAbsolutePath().toString());
+        try (Stream<Path> files = Files.list(libDir)) {
+            files.filter(p -> p.toString().endsWith(".jar")).sorted()
+                    .forEach(p -> jars.add(p.toAbsolutePath().toString()));
+        }
+        return String.join(File.pathSeparator, jars);
+    }
+
+    private static Path writeSpec(Path dir, String baseUrl) throws IOException {
+        Path spec = dir.resolve("startup-job.yaml");
+        Files.writeString(spec, String.join("\n",
+                "name: startup",
+                "apiBaseUrl: " + baseUrl,
+                "startDate: 2024-01-01",
+                "endDate: 2024-01-31",
+                "chunkDays: 31",
+                "locations:",
+                "  - latitude: 55.75",
+                "    longitude: 37.62",
+                "sinks:",
+                "  - type: csv",
+                "    path: " + dir.resolve("out/weather.csv").toAbsolutePath().toString().replace('\\', '/'),
+                "    filterPath: " + dir.resolve("out/weather.bloom").toAbsolutePath().toString().replace('\\', '/'),
+                ""));
+        return spec;
+    }
+
+    /** runs прогонов; [0] — до первой строки, [1] — до выхода, мс */
+    private long[][] measure(String classpath, Path spec, Path dir, List<String> jvmArgs) throws Exception {
+        long[][] times = new long[2][runs];
+        for (int i = 0; i < runs; i++) {
+            long[] t = launch(classpath, spec, dir, jvmArgs);
+            times[0][i] = t[0];
+            times[1][i] = t[1];
+        }
+        return times;
+    }
+
+    /** Один холодный прогон на пустом каталоге вывода */
+    private static long[] launch(String classpath, Path spec, Path dir, List<String> jvmArgs) throws Exception {
+        Path out = dir.resolve("out");
+        if (Files.exists(out)) {
+            deleteRecursively(out);
+        }
+        Path csv = out.resolve("weather.csv");
+        Path log = dir.resolve("run.log");
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", classpath, WeatherCli.class.getName(), spec.toString()));
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        long firstRow = -1;
+        while (process.isAlive()) {
+            if (firstRow < 0 && hasDataRow(csv)) {
+                firstRow = System.nanoTime() - started;
+            }
+            TimeUnit.MICROSECONDS.sleep(200);
+        }
+        long exited = System.nanoTime() - started;
+        if (process.exitValue() != 0 || !hasDataRow(csv)) {
+            throw new IllegalStateException("Прогон завершился с кодом " + process.exitValue() + ":\n" + Files.readString(log));
+        }
+        // строка могла появиться между последней проверкой и выходом
+        if (firstRow < 0) {
+            firstRow = exited;
+        }
+        return new long[]{TimeUnit.NANOSECONDS.toMillis(firstRow), TimeUnit.NANOSECONDS.toMillis(exited)};
+    }
+
+    /** В CSV есть строка после заголовка */
+    private static boolean hasDataRow(Path csv) throws IOException {
+        if (!Files.exists(csv)) return false;
+        byte[] bytes = Files.readAllBytes(csv);
+        int lines = 0;
+        for (byte b : bytes) {
+            if (b == '\n' && ++lines == 2) return true;
+        }
+        return false;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
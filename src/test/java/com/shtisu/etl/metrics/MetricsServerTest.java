@@ -0,0 +1,57 @@
+package com.shtisu.etl.metrics;
+
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsServerTest {
+
+    @Test
+    void exposesPipelineMetricsOnPrometheusEndpoint() throws Exception {
+        String sample;
+        try (InputStream in = MetricsServerTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        try (MockWebServer api = new MockWebServer()) {
+            api.enqueue(new MockResponse().setBody(sample));
+            api.enqueue(new MockResponse().setResponseCode(500));
+            api.start();
+            OpenMeteoApiClient client = new OpenMeteoApiClient(api.url("").toString().replaceAll("/$", ""));
+            new FinalRecordItemProcessor().processRange(client.fetch(55, 83, LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 1)));
+            try {
+                client.fetch(55, 83, LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 1));
+            } catch (Exception expected) {
+                // ошибка тоже учитывается в etl.fetch
+            }
+        }
+
+        try (MetricsServer server = MetricsServer.start(0)) {
+            HttpResponse<String> resp = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/actuator/prometheus")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, resp.statusCode());
+            String body = resp.body();
+            assertTrue(body.contains("etl_fetch_seconds_count{outcome=\"success\"}"), body);
+            assertTrue(body.contains("etl_fetch_seconds_count{outcome=\"error\"}"), body);
+            assertTrue(body.contains("etl_fetch_bytes_sum"), body);
+            assertTrue(body.contains("etl_parse_seconds_count"), body);
+            assertTrue(body.contains("etl_process_days_total"), body);
+            // JVM-метрики добавляет Actuator к тому же реестру
+            assertTrue(body.contains("jvm_memory_used_bytes"), body);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.shtisu.etl.query;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.metrics.EtlMetrics;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.writer.DataBaseItemWriter;
+import com.shtisu.etl.writer.FinalRecordsTestTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedFinalRecordQueryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DataSource ds = DataSourceFactory.getDataSource();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        FinalRecordsTestTable.clear(ds);
+    }
+
+    @Test
+    void servesRangesFromCacheUntilWriterCommitsLocation() throws Exception {
+        List<FinalRecord> records = new ArrayList<>();
+        // 20 июня – 9 июля: диапазон через границу месяцев
+        for (int d = 0; d < 20; d++) {
+            records.add(FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 20).plusDays(d)));
+            records.add(FinalRecordsTestTable.record(56.0, 83.0, LocalDate.of(2025, 6, 20).plusDays(d)));
+        }
+        write(records);
+
+        try (CachedFinalRecordQuery query = new CachedFinalRecordQuery(ds, 1024 * 1024, 10)) {
+            List<FinalRecord> page = new ArrayList<>();
+            LocalDate next = query.stream(55.0, 83.0, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 7, 31),
+                    null, 15, page::add);
+            assertEquals(15, page.size());
+            assertEquals(LocalDate.of(2025, 7, 4), next);
+            assertEquals(records.get(0), page.get(0));
+            assertEquals(records.get(28), page.get(14));
+            assertEquals(20, read(query, 56.0).size());
+
+            // удалённое в обход writer'а не видно: блоки в кэше
+            execute("DELETE FROM final_records WHERE date = DATE '2025-06-25'");
+            assertEquals(20, read(query, 55.0).size());
+            assertEquals(20, read(query, 56.0).size());
+
+            // коммит writer'а сбрасывает только июнь точки 55.0
+            write(List.of(FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 1))));
+            List<FinalRecord> refreshed = read(query, 55.0);
+            assertEquals(20, refreshed.size());
+            assertEquals(LocalDate.of(2025, 6, 1), refreshed.get(0).getDate());
+            assertEquals(20, read(query, 56.0).size());
+
+            // запрос и коммит с разной записью координат точки попадают в один блок
+            assertEquals(20, read(query, (float) 56.0 + 1e-5).size());
+            write(List.of(FinalRecordsTestTable.record(56.00003, 83.0, LocalDate.of(2025, 6, 2))));
+            assertEquals(LocalDate.of(2025, 6, 2), read(query, 56.0).get(0).getDate());
+            assertEquals(LocalDate.of(2025, 6, 2), read(query, (float) 56.0 + 1e-5).get(0).getDate());
+
+            assertNull(query.stream(55.0, 83.0, LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 31),
+                    LocalDate.of(2025, 7, 9), 10, r -> { }));
+            assertTrue(EtlMetrics.registry().get("cache.gets").tags("cache", "final-records", "result", "hit")
+                    .functionCounter().count() > 0);
+        }
+    }
+
+    private List<FinalRecord> read(FinalRecordQuery query, double latitude) throws Exception {
+        List<FinalRecord> out = new ArrayList<>();
+        query.stream(latitude, 83.0, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 7, 31), null, 100, out::add);
+        return out;
+    }
+
+    private void write(List<FinalRecord> records) throws Exception {
+        try (DataBaseItemWriter writer = new DataBaseItemWriter(tempDir.resolve("db.bloom"), 1_000, 0.01)) {
+            writer.write(records);
+        }
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.shtisu.etl.query;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.writer.DataBaseItemWriter;
+import com.shtisu.etl.writer.FinalRecordsTestTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FinalRecordQueryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DataSource ds = DataSourceFactory.getDataSource();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        FinalRecordsTestTable.clear(ds);
+    }
+
+    @Test
+    void findsRowsStoredAtFloatCellCoordinates() throws Exception {
+        // API отдаёт координаты ячейки как float: строка хранится с 40.79999923706055 и -73.94999694824219
+        List<FinalRecord> records = new ArrayList<>();
+        for (int d = 0; d < 5; d++) {
+            records.add(FinalRecordsTestTable.record((float) 40.8, (float) -73.95, LocalDate.of(2025, 7, 1).plusDays(d)));
+        }
+        records.add(FinalRecordsTestTable.record(40.8001, -73.95, LocalDate.of(2025, 7, 1)));
+        try (DataBaseItemWriter writer = new DataBaseItemWriter(tempDir.resolve("db.bloom"), 1_000, 0.01)) {
+            writer.write(records);
+        }
+
+        List<FinalRecord> page = new ArrayList<>();
+        new FinalRecordQuery(ds).stream(40.8, -73.95, LocalDate.of(2025, 7, 1), LocalDate.of(2025, 7, 31),
+                null, 100, page::add);
+        assertEquals(records.subList(0, 5), page);
+    }
+}
@@ -0,0 +1,126 @@
+package com.shtisu.etl.scan;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvScannerTest {
+
+    private static final Path CSV = Path.of("data", "weather.csv");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parsesNumbersLikeDoubleParseDoubleWithinTwoUlps() {
+        for (String s : List.of("0.0", "-0.0", "5.08", "-10.064814814814817", "5496.052000000001", "1.0E-4",
+                "2.5E10", "123", "-7", "4.9E-324", "1.7976931348623157E308")) {
+            assertClose(Double.parseDouble(s), parse(s), s);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+            assertClose(v, parse(Double.toString(v)), Double.toString(v));
+        }
+        assertTrue(Double.isNaN(parse("NaN")));
+        assertTrue(Double.isNaN(parse("")));
+        assertTrue(Double.isNaN(parse("1.2.3")));
+        assertEquals(Double.NEGATIVE_INFINITY, parse("-Infinity"));
+        assertEquals(20250630, CsvNumbers.parseDate(bytes("2025-06-30"), 0, 10));
+    }
+
+    @Test
+    void aggregatesMatchLineByLineComputation() throws Exception {
+        List<String[]> rows = Files.readAllLines(CSV).stream().skip(1).map(l -> l.split(";")).toList();
+        List<String> header = Arrays.asList(Files.readAllLines(CSV).get(0).split(";"));
+        int lat = header.indexOf("latitude");
+        int lon = header.indexOf("longitude");
+        int date = header.indexOf("date");
+        int temp = header.indexOf("avgTemperature2m24h");
+        int rain = header.indexOf("totalRain24h");
+
+        // по месяцам: среднее и максимум температуры для дней с дождём не меньше 1 мм
+        CsvScanQuery byMonth = new CsvScanQuery();
+        byMonth.setGroupBy(CsvScanQuery.GroupBy.MONTH);
+        byMonth.setMeasures(List.of("avgTemperature2m24h"));
+        byMonth.getFilters().add(new CsvScanQuery.Range("totalRain24h", 1.0, null));
+        Map<String, double[]> expected = new TreeMap<>();
+        for (String[] r : rows) {
+            if (Double.parseDouble(r[rain]) < 1.0) continue;
+            double[] a = expected.computeIfAbsent(r[date].substring(0, 7), k -> new double[]{0, 0, Double.NEGATIVE_INFINITY});
+            double t = Double.parseDouble(r[temp]);
+            a[0]++;
+            a[1] += t;
+            a[2] = Math.max(a[2], t);
+        }
+        for (int threads : new int[]{1, 4}) {
+            CsvScanResult result = CsvScanner.scan(CSV, byMonth, threads);
+            assertEquals(rows.size(), result.getScannedRows());
+            assertEquals(expected.keySet().stream().toList(),
+                    result.getGroups().stream().map(CsvScanResult.Group::getKey).toList());
+            for (CsvScanResult.Group g : result.getGroups()) {
+                double[] a = expected.get(g.getKey());
+                assertEquals((long) a[0], g.getRows());
+                assertEquals(a[1] / a[0], g.avg(0), 1e-9);
+                assertEquals(a[2], g.max(0), 1e-12);
+            }
+        }
+
+        // по точкам (координаты с точностью 1e-4): сумма дождя за диапазон дат
+        LocalDate from = LocalDate.of(2025, 7, 1);
+        CsvScanQuery byLocation = new CsvScanQuery();
+        byLocation.setGroupBy(CsvScanQuery.GroupBy.LOCATION);
+        byLocation.setMeasures(List.of("totalRain24h"));
+        byLocation.setFrom(from);
+        Map<String, Double> sums = new TreeMap<>();
+        for (String[] r : rows) {
+            if (LocalDate.parse(r[date]).isBefore(from)) continue;
+            sums.merge(Math.round(Double.parseDouble(r[lat]) * 1e4) / 1e4 + ";" + Math.round(Double.parseDouble(r[lon]) * 1e4) / 1e4,
+                    Double.parseDouble(r[rain]), Double::sum);
+        }
+        CsvScanResult result = CsvScanner.scan(CSV, byLocation, 3);
+        assertEquals(sums.size(), result.getGroups().size());
+        for (CsvScanResult.Group g : result.getGroups()) {
+            assertEquals(sums.get(g.getKey()), g.sum(0), 1e-6, g.getKey());
+        }
+    }
+
+    @Test
+    void skipsTruncatedLinesAndReadsFilesWithoutHeader() throws Exception {
+        Path csv = tempDir.resolve("no-header.csv");
+        String full = String.join(";", Files.readAllLines(CSV).get(1).split(";"));
+        Files.writeString(csv, full + "\r\n" + full + "\r\n" + "-38.75;21.125;2025-06-30;2025");
+
+        CsvScanQuery query = new CsvScanQuery();
+        query.setMeasures(List.of("snowfallMm", "totalRain24h"));
+        CsvScanResult result = CsvScanner.scan(csv, query, 2);
+        assertEquals(3, result.getScannedRows());
+        assertEquals(2, result.getMatchedRows());
+        assertEquals(2 * Double.parseDouble(full.split(";")[15]), result.getGroups().get(0).sum(1), 1e-9);
+    }
+
+    private static double parse(String s) {
+        return CsvNumbers.parseDouble(bytes(s), 0, s.length());
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void assertClose(double expected, double actual, String text) {
+        assertTrue(Math.abs(expected - actual) <= 2 * Math.ulp(expected), text + ": " + actual);
+    }
+}
@@ -0,0 +1,173 @@
+package com.shtisu.etl.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shtisu.etl.client.OpenMeteoApiClient;
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.job.JobRunner;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.processor.FinalRecordItemProcessor;
+import com.shtisu.etl.query.FinalRecordQuery;
+import com.shtisu.etl.writer.DataBaseItemWriter;
+import com.shtisu.etl.writer.FinalRecordsTestTable;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DataSource ds = DataSourceFactory.getDataSource();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        FinalRecordsTestTable.clear(ds);
+    }
+
+    @Test
+    void pagesRecordsWithKeysetCursor() throws Exception {
+        List<FinalRecord> records = new ArrayList<>();
+        for (int d = 0; d < 10; d++) {
+            records.add(FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 1).plusDays(d)));
+            records.add(FinalRecordsTestTable.record(56.0, 83.0, LocalDate.of(2025, 6, 1).plusDays(d)));
+        }
+        try (DataBaseItemWriter writer = new DataBaseItemWriter(tempDir.resolve("db.bloom"), 1_000, 0.01)) {
+            writer.write(records);
+        }
+
+        IngestionService ingestion = new IngestionService(spec -> null, 1, 1, Clock.systemUTC());
+        try (WeatherServer server = WeatherServer.start(0, ingestion, new FinalRecordQuery(ds))) {
+            String base = "http://localhost:" + server.getPort()
+                    + "/records?latitude=55.0&longitude=83.0&from=2025-06-02&to=2025-06-30&limit=4";
+            List<String> dates = new ArrayList<>();
+            String after = null;
+            int pages = 0;
+            do {
+                HttpResponse<String> resp = get(base + (after != null ? "&after=" + after : ""));
+                assertEquals(200, resp.statusCode());
+                JsonNode page = mapper.readTree(resp.body());
+                for (JsonNode r : page.get("records")) {
+                    assertEquals(55.0, r.get("latitude").asDouble());
+                    dates.add(r.get("date").asText());
+                }
+                after = page.get("next").isNull() ? null : page.get("next").asText();
+                pages++;
+            } while (after != null);
+
+            // 02..10 июня: страницы 4 + 4 + 1
+            assertEquals(3, pages);
+            assertEquals(9, dates.size());
+            assertEquals("2025-06-02", dates.get(0));
+            assertEquals("2025-06-10", dates.get(8));
+
+            assertEquals(400, get(base.replace("limit=4", "limit=0")).statusCode());
+            assertEquals(400, get(base.replace("to=2025-06-30", "to=2025-05-01")).statusCode());
+        }
+    }
+
+    @Test
+    void runsSubmittedJobsOnBoundedQueue() throws Exception {
+        String sample;
+        try (InputStream in = WeatherServerTest.class.getResourceAsStream("/sample-open-meteo.json")) {
+            sample = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (MockWebServer api = new MockWebServer()) {
+            api.enqueue(new MockResponse().setBody(sample));
+            api.start();
+            JobRunner runner = new JobRunner(new OpenMeteoApiClient(api.url("").toString().replaceAll("/$", "")),
+                    new FinalRecordItemProcessor());
+            CountDownLatch gate = new CountDownLatch(1);
+            IngestionService ingestion = new IngestionService(spec -> {
+                gate.await();
+                if (spec.getName().equals("broken")) {
+                    throw new IllegalStateException("sink unavailable");
+                }
+                return runner.run(spec);
+            }, 1, 1, Clock.systemUTC());
+
+            try (WeatherServer server = WeatherServer.start(0, ingestion, new FinalRecordQuery(ds))) {
+                String jobs = "http://localhost:" + server.getPort() + "/jobs";
+                HttpResponse<String> first = post(jobs, spec("ok"));
+                assertEquals(202, first.statusCode());
+                String firstId = mapper.readTree(first.body()).get("id").asText();
+                assertEquals("/jobs/" + firstId, first.headers().firstValue("Location").orElseThrow());
+
+                HttpResponse<String> second = post(jobs, spec("broken"));
+                assertEquals(202, second.statusCode());
+                String secondId = mapper.readTree(second.body()).get("id").asText();
+                // один выполняется, один в очереди — третьему места нет
+                assertEquals(503, post(jobs, spec("ok")).statusCode());
+                assertEquals(400, post(jobs, "{\"name\": \"no dates\"}").statusCode());
+                assertEquals(404, get(jobs + "/missing").statusCode());
+
+                gate.countDown();
+                JsonNode done = awaitFinished(jobs + "/" + firstId);
+                assertEquals("SUCCEEDED", done.get("status").asText(), done.toString());
+                assertTrue(done.get("sinks").get(0).get("writtenRows").asLong() > 0, done.toString());
+
+                JsonNode failed = awaitFinished(jobs + "/" + secondId);
+                assertEquals("FAILED", failed.get("status").asText());
+                assertEquals("sink unavailable", failed.get("error").asText());
+            }
+        }
+    }
+
+    private String spec(String name) {
+        String dir = tempDir.toString().replace('\\', '/');
+        return "{\"name\": \"" + name + "\", \"startDate\": \"2025-07-01\", \"endDate\": \"2025-07-01\","
+                + " \"locations\": [{\"latitude\": 55.0, \"longitude\": 83.0}],"
+                + " \"sinks\": [{\"type\": \"csv\", \"path\": \"" + dir + "/weather.csv\","
+                + " \"filterPath\": \"" + dir + "/weather.bloom\"}]}";
+    }
+
+    private JsonNode awaitFinished(String url) throws Exception {
+        for (int i = 0; i < 200; i++) {
+            JsonNode job = mapper.readTree(get(url).body());
+            String status = job.get("status").asText();
+            if (status.equals("SUCCEEDED") || status.equals("FAILED")) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("job did not finish: " + url);
+    }
+
+    private HttpResponse<String> get(String url) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String url, String json) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,58 @@
+package com.shtisu.etl.writer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveBatchSizerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void growsWhileThroughputImprovesAndShrinksOnSlowCommit() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.adaptive(100, 10, 10_000, 200);
+
+        // Коммит быстрый и скорость растёт — пачка увеличивается
+        sizer.record(100, 10 * MS);
+        int grown = sizer.current();
+        assertTrue(grown > 100);
+
+        sizer.record(grown, 12 * MS);
+        assertTrue(sizer.current() > grown);
+
+        // Коммит дольше целевых 200 мс — пачка уменьшается вдвое
+        int before = sizer.current();
+        sizer.record(before, 400 * MS);
+        assertEquals(before / 2, sizer.current());
+    }
+
+    @Test
+    void stepsBackWhenThroughputDrops() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.adaptive(100, 10, 10_000, 1_000);
+        sizer.record(100, 10 * MS);     // 10 000 строк/с → 150
+        sizer.record(150, 100 * MS);    // 1 500 строк/с — медленнее → назад к 100
+        assertEquals(100, sizer.current());
+    }
+
+    @Test
+    void settlesOnBestSizeInsteadOfFlipping() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.adaptive(100, 10, 10_000, 1_000);
+        // 100 строк — 10 000 строк/с, 150 строк — 1 500 строк/с: после одного возврата размер больше не меняется
+        for (int i = 0; i < 20; i++) {
+            int size = sizer.current();
+            sizer.record(size, size == 100 ? 10 * MS : 100 * MS);
+            if (i >= 1) {
+                assertEquals(100, sizer.current());
+            }
+        }
+    }
+
+    @Test
+    void fixedSizeNeverChanges() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.fixed(500);
+        sizer.record(500, 1);
+        sizer.record(500, 10_000 * MS);
+        assertEquals(500, sizer.current());
+    }
+}
@@ -0,0 +1,137 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.model.FinalRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrentFinalRecordWriterTest {
+
+    private static final int THREADS = 8;
+    // 200 точек x 30 дней
+    private static final int DISTINCT = 6_000;
+
+    @TempDir
+    Path tempDir;
+
+    private final DataSource ds = DataSourceFactory.getDataSource();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        FinalRecordsTestTable.clear(ds);
+    }
+
+    @Test
+    void manyThreadsFeedOneCsvWithoutLostOrTornLines() throws Exception {
+        Path csv = tempDir.resolve("data.csv");
+        CsvItemWriter csvWriter = new CsvItemWriter(csv, tempDir.resolve("data.bloom"), DISTINCT, 0.0001,
+                DedupFilterType.LOCKFREE);
+        try (ConcurrentFinalRecordWriter writer = new ConcurrentFinalRecordWriter(csvWriter, 64, 8)) {
+            feed(writer);
+            writer.flush();
+            assertEquals(DISTINCT, csvWriter.getDedupFilter().size());
+        }
+
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        // заголовок + по строке на ключ, каждая строка целая (одинаковое число полей) и ключи не повторяются
+        assertEquals(DISTINCT + 1, lines.size());
+        int columns = lines.get(0).split(";", -1).length;
+        Set<String> keys = new HashSet<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(";", -1);
+            assertEquals(columns, fields.length, line);
+            keys.add(fields[0] + ":" + fields[1] + ":" + fields[2]);
+        }
+        assertEquals(DISTINCT, keys.size());
+    }
+
+    @Test
+    void manyThreadsFeedOneDatabaseSession() throws Exception {
+        DataBaseItemWriter dbWriter = new DataBaseItemWriter(ds, tempDir.resolve("db.bloom"), DISTINCT, 0.0001,
+                AdaptiveBatchSizer.fixed(500), DbWriteMode.INSERT, DedupFilterType.LOCKFREE);
+        try (ConcurrentFinalRecordWriter writer = new ConcurrentFinalRecordWriter(dbWriter, 100, 4)) {
+            feed(writer);
+            writer.flush();
+            assertEquals(DISTINCT, dbWriter.getInsertedRows());
+        }
+        assertEquals(DISTINCT, FinalRecordsTestTable.count(ds));
+    }
+
+    @Test
+    void flusherFailureIsRethrownToProducers() throws Exception {
+        FinalRecordWriter failing = new FinalRecordWriter() {
+            @Override
+            public void write(List<FinalRecord> records) throws Exception {
+                throw new IllegalStateException("disk full");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ConcurrentFinalRecordWriter writer = new ConcurrentFinalRecordWriter(failing, 1, 1);
+        writer.write(List.of(FinalRecordsTestTable.record(1.0, 2.0, LocalDate.of(2025, 7, 1))));
+        IOException e = assertThrows(IOException.class, writer::flush);
+        assertEquals("disk full", e.getCause().getMessage());
+        assertThrows(IOException.class, () -> writer.write(List.of(FinalRecordsTestTable.record(1.0, 2.0, LocalDate.of(2025, 7, 2)))));
+        assertThrows(IOException.class, writer::close);
+    }
+
+    /**
+     * Каждый поток пишет все ключи в своём порядке маленькими порциями,
+     * то есть каждый ключ приходит THREADS раз из разных потоков.
+     */
+    private static void feed(ConcurrentFinalRecordWriter writer) throws Exception {
+        List<FinalRecord> all = new ArrayList<>(DISTINCT);
+        for (int p = 0; p < 200; p++) {
+            for (int d = 0; d < 30; d++) {
+                all.add(FinalRecordsTestTable.record(-50.0 + p * 0.5, 30.0 + p * 0.125, LocalDate.of(2025, 1, 1).plusDays(d)));
+            }
+        }
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<FinalRecord> mine = new ArrayList<>(all);
+            Collections.shuffle(mine, new Random(t));
+            futures.add(pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < mine.size(); i += 37) {
+                    writer.write(mine.subList(i, Math.min(mine.size(), i + 37)));
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+    }
+}
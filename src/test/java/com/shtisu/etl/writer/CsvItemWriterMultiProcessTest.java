@@ -0,0 +1,97 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.model.FinalRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Несколько JVM одновременно дописывают один CSV и один файл фильтра.
+ */
+class CsvItemWriterMultiProcessTest {
+
+    private static final int PROCESSES = 3;
+    // 60 точек x 20 дней
+    private static final int DISTINCT = 1_200;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parallelProcessesWriteEachKeyOnceAndKeepFilterInSync() throws Exception {
+        Path csv = tempDir.resolve("weather.csv");
+        Path bloom = tempDir.resolve("weather.bloom");
+
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<Process> processes = new ArrayList<>();
+        for (int p = 0; p < PROCESSES; p++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    CsvItemWriterMultiProcessTest.class.getName(), csv.toString(), bloom.toString(), String.valueOf(p))
+                    .redirectErrorStream(true)
+                    .redirectOutput(tempDir.resolve("process-" + p + ".log").toFile())
+                    .start());
+        }
+        for (int p = 0; p < PROCESSES; p++) {
+            assertTrue(processes.get(p).waitFor(2, TimeUnit.MINUTES), "process " + p + " timed out");
+            assertEquals(0, processes.get(p).exitValue(),
+                    Files.readString(tempDir.resolve("process-" + p + ".log")));
+        }
+
+        // заголовок один, каждая строка целая, каждый ключ ровно один раз
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        assertEquals(DISTINCT + 1, lines.size());
+        int columns = lines.get(0).split(";", -1).length;
+        Set<String> keys = new HashSet<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(";", -1);
+            assertEquals(columns, fields.length, line);
+            keys.add(fields[0] + ":" + fields[1] + ":" + fields[2]);
+        }
+        assertEquals(DISTINCT, keys.size());
+
+        // фильтр на диске соответствует итоговому CSV: новый writer берёт его без перестроения и знает все ключи
+        try (CsvItemWriter reopened = new CsvItemWriter(csv, bloom, DISTINCT, 0.001, DedupFilterType.EXACT)) {
+            assertEquals(DISTINCT, reopened.getDedupFilter().size());
+            reopened.write(records(99));
+        }
+        assertEquals(DISTINCT + 1, Files.readAllLines(csv, StandardCharsets.UTF_8).size());
+    }
+
+    /** Один «процесс»: пишет все ключи в своём порядке небольшими пачками */
+    public static void main(String[] args) throws Exception {
+        try (CsvItemWriter writer = new CsvItemWriter(Paths.get(args[0]), Paths.get(args[1]), DISTINCT, 0.001,
+                DedupFilterType.EXACT)) {
+            List<FinalRecord> mine = records(Integer.parseInt(args[2]));
+            for (int i = 0; i < mine.size(); i += 25) {
+                writer.write(mine.subList(i, Math.min(mine.size(), i + 25)));
+            }
+        }
+    }
+
+    private static List<FinalRecord> records(int seed) {
+        List<FinalRecord> all = new ArrayList<>(DISTINCT);
+        for (int p = 0; p < 60; p++) {
+            for (int d = 0; d < 20; d++) {
+                all.add(FinalRecordsTestTable.record(40.0 + p * 0.25, -70.0 + p * 0.5, LocalDate.of(2025, 3, 1).plusDays(d)));
+            }
+        }
+        Collections.shuffle(all, new Random(seed));
+        return all;
+    }
+}
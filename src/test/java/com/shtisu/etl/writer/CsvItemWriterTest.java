@@ -1,5 +1,6 @@
 package com.shtisu.etl.writer;
 
+import com.shtisu.etl.dedup.DedupFilterType;
 import com.shtisu.etl.model.FinalRecord;
 import com.shtisu.etl.util.UnitConverter;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,6 +15,8 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -100,7 +103,114 @@ class CsvItemWriterTest {
 
     }
 
+    @Test
+    void rebuildBloomFromCsvWhenBloomFileIsLost() throws Exception {
+        // Пишем записи, затем удаляем bloom-файл: новый writer должен восстановить фильтр по CSV и не писать дубликаты
+        List<FinalRecord> records = List.of(
+                record(10.0, 20.0, LocalDate.of(2025, 7, 1)),
+                record(10.0, 20.0, LocalDate.of(2025, 7, 2)),
+                record(-38.75, 21.125, LocalDate.of(2025, 7, 1)));
+        writer.write(records);
+        writer.close();
+        Files.delete(bloomPath);
 
+        try (CsvItemWriter restored = new CsvItemWriter(csvPath, bloomPath, 100, 0.01)) {
+            restored.write(records);
+        }
 
+        List<String> lines = Files.readAllLines(csvPath, StandardCharsets.UTF_8);
+        assertEquals(4, lines.size(), "CSV должен содержать header и три записи без дубликатов");
+    }
 
-}
\ No newline at end of file
+    @Test
+    void rebuildBloomFromCsvWhenCsvChangedBypassingFilter() throws Exception {
+        // Дописываем строку в CSV в обход фильтра: сохранённый фильтр устарел и должен быть перестроен
+        FinalRecord first = record(10.0, 20.0, LocalDate.of(2025, 7, 1));
+        FinalRecord second = record(10.0, 20.0, LocalDate.of(2025, 7, 2));
+        writer.write(List.of(first));
+        writer.close();
+
+        Path other = tempDir.resolve("other.bloom");
+        try (CsvItemWriter bypass = new CsvItemWriter(csvPath, other, 100, 0.01)) {
+            bypass.write(List.of(second));
+        }
+
+        try (CsvItemWriter restored = new CsvItemWriter(csvPath, bloomPath, 100, 0.01)) {
+            restored.write(List.of(first, second));
+        }
+
+        List<String> lines = Files.readAllLines(csvPath, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size(), "CSV должен содержать header и две записи без дубликатов");
+    }
+
+    @Test
+    void exactFilterSurvivesRestartAndSwitchFromBloom() throws Exception {
+        // CSV, записанный с BloomFilter, открывается с точным фильтром: файл фильтра другого типа перестраивается по CSV
+        FinalRecord first = record(10.0, 20.0, LocalDate.of(2025, 7, 1));
+        FinalRecord second = record(10.0, 20.0001, LocalDate.of(2025, 7, 1));
+        writer.write(List.of(first));
+        writer.close();
+
+        try (CsvItemWriter exact = new CsvItemWriter(csvPath, bloomPath, 100, 0.01, DedupFilterType.EXACT)) {
+            exact.write(List.of(first, second, second));
+        }
+        try (CsvItemWriter reopened = new CsvItemWriter(csvPath, bloomPath, 100, 0.01, DedupFilterType.EXACT)) {
+            reopened.write(List.of(first, second));
+        }
+
+        List<String> lines = Files.readAllLines(csvPath, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size(), "CSV должен содержать header и две записи без дубликатов");
+    }
+
+    @Test
+    void bloomPositivesAreVerifiedAgainstCsvIndex() throws Exception {
+        // Переполненный BloomFilter: ложные срабатывания проверяются по индексу CSV и всё равно записываются
+        List<FinalRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(record(10.0 + i * 0.01, 20.0, LocalDate.of(2025, 7, 1)));
+        }
+        try (CsvItemWriter lossy = new CsvItemWriter(csvPath, tempDir.resolve("lossy.bloom"), 10, 0.3, DedupFilterType.BLOOM)) {
+            lossy.write(records.subList(0, 100));
+            lossy.write(records);
+            assertThat(lossy.getDedupStats().getFalsePositives()).isPositive();
+            assertEquals(100, lossy.getDedupStats().getConfirmedDuplicates());
+        }
+
+        List<String> lines = Files.readAllLines(csvPath, StandardCharsets.UTF_8);
+        assertEquals(201, lines.size(), "CSV должен содержать header и 200 записей без дубликатов и без потерь");
+    }
+
+    @Test
+    void csvIndexCatchesUpWithRowsAppendedByAnotherWriter() throws Exception {
+        List<FinalRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(record(10.0 + i * 0.01, 20.0, LocalDate.of(2025, 7, 1)));
+        }
+        Path lossyBloom = tempDir.resolve("shared-lossy.bloom");
+        try (CsvItemWriter a = new CsvItemWriter(csvPath, lossyBloom, 10, 0.3, DedupFilterType.BLOOM);
+             CsvItemWriter b = new CsvItemWriter(csvPath, lossyBloom, 10, 0.3, DedupFilterType.BLOOM)) {
+            a.write(records.subList(0, 100));
+            // повтор строит индекс CSV у первого writer'а
+            a.write(records.subList(0, 100));
+            b.write(records.subList(100, 150));
+            // строки второго writer'а дочитаны в индекс: они подтверждаются, а не пишутся повторно
+            a.write(records);
+            assertEquals(250, a.getDedupStats().getConfirmedDuplicates());
+            assertEquals(150, a.getWrittenRows());
+        }
+
+        List<String> lines = Files.readAllLines(csvPath, StandardCharsets.UTF_8);
+        assertEquals(201, lines.size(), "CSV должен содержать header и 200 записей без дубликатов");
+    }
+
+    private static FinalRecord record(double lat, double lon, LocalDate date) {
+        FinalRecord r = new FinalRecord();
+        r.setLatitude(lat);
+        r.setLongitude(lon);
+        r.setDate(date);
+        r.setSunriseIso(date.atTime(4, 0).toInstant(ZoneOffset.UTC));
+        r.setSunsetIso(date.atTime(20, 0).toInstant(ZoneOffset.UTC));
+        r.setFetchedAt(Instant.parse("2025-07-01T00:00:00Z"));
+        return r;
+    }
+}
@@ -1,7 +1,12 @@
 package com.shtisu.etl.writer;
 
 import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.dedup.DedupFilter;
+import com.shtisu.etl.dedup.DedupFilterRebuilder;
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.dedup.DedupKeys;
 import com.shtisu.etl.model.FinalRecord;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,6 +19,8 @@ import java.nio.file.Path;
 import java.sql.*;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -35,25 +42,8 @@ public class DataBaseItemWriterTest {
 
         this.writer = new DataBaseItemWriter(bloomFile, 100, 0.01);
 
-        // Используем базу данных H2 in memory
-        DataSource ds = DataSourceFactory.getDataSource();
-        try (Connection conn = ds.getConnection();
-             // Создаем таблицу
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("CREATE TABLE IF NOT EXISTS final_records (" +
-                    "latitude DOUBLE, longitude DOUBLE, date DATE, sunrise_iso TIMESTAMP, sunset_iso TIMESTAMP, daylight_hours DOUBLE, " +
-                    "avg_temperature_2m24h DOUBLE, avg_relative_humidity_2m24h DOUBLE, avg_dew_point_2m24h DOUBLE, avg_apparent_temperature_24h DOUBLE, " +
-                    "avg_temperature_80m24h DOUBLE, avg_temperature_120m24h DOUBLE, avg_wind_speed_10m24h DOUBLE, avg_wind_speed_80m24h DOUBLE, " +
-                    "avg_visibility_24h DOUBLE, total_rain_24h DOUBLE, total_showers_24h DOUBLE, total_snowfall_24h DOUBLE, " +
-                    "avg_temperature_2m_daylight DOUBLE, avg_relative_humidity_2m_daylight DOUBLE, avg_dew_point_2m_daylight DOUBLE, avg_apparent_temperature_daylight DOUBLE, " +
-                    "avg_temperature_80m_daylight DOUBLE, avg_temperature_120m_daylight DOUBLE, avg_wind_speed_10m_daylight DOUBLE, avg_wind_speed_80m_daylight DOUBLE, " +
-                    "avg_visibility_daylight DOUBLE, total_rain_daylight DOUBLE, total_showers_daylight DOUBLE, total_snowfall_daylight DOUBLE, " +
-                    "wind_speed_10m_mpers DOUBLE, wind_speed_80m_mpers DOUBLE, temperature_2m_celsius DOUBLE, apparent_temperature_celsius DOUBLE, " +
-                    "temperature_80m_celsius DOUBLE, temperature_120m_celsius DOUBLE, soil_temperature_0cm_celsius DOUBLE, soil_temperature_6cm_celsius DOUBLE, " +
-                    "rain_mm DOUBLE, showers_mm DOUBLE, snowfall_mm DOUBLE, fetched_at TIMESTAMP, " +
-                    "PRIMARY KEY(latitude, longitude, date)" +
-                    ")");
-        }
+        // Используем базу данных H2 in memory, создаем таблицу
+        FinalRecordsTestTable.create(DataSourceFactory.getDataSource());
     }
 
     @Test
@@ -123,4 +113,216 @@ public class DataBaseItemWriterTest {
 
     }
 
+    @Test
+    public void rebuildBloomFromDataBaseFindsEveryStoredKey() throws Exception {
+        // Записываем строки по разным широтам, затем перестраиваем фильтр несколькими соединениями
+        List<FinalRecord> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            records.add(record(-80.0 + i * 3.25, 20.0 + i, LocalDate.of(2025, 7, 1).plusDays(i % 7)));
+        }
+        try (DataBaseItemWriter dataBaseItemWriter = new DataBaseItemWriter(bloomFile, 100, 0.01)) {
+            dataBaseItemWriter.write(records);
+        }
+
+        DedupFilter rebuilt =
+                DedupFilterRebuilder.fromDatabase(DataSourceFactory.getDataSource(), DedupFilterType.BLOOM, 10, 0.01, 4);
+
+        for (FinalRecord r : records) {
+            assertTrue(rebuilt.mightContain(r), "Ключ должен быть в перестроенном фильтре: " + DedupKeys.of(r));
+        }
+        assertTrue(rebuilt.size() >= records.size() - 2);
+
+        // Точный фильтр знает ровно записанные ключи
+        DedupFilter exact =
+                DedupFilterRebuilder.fromDatabase(DataSourceFactory.getDataSource(), DedupFilterType.EXACT, 10, 0.01, 4);
+        assertEquals(records.size(), exact.size());
+        for (FinalRecord r : records) {
+            assertTrue(exact.mightContain(r));
+        }
+    }
+
+    @Test
+    public void writeCommitsInChunksAndReusesSessionAcrossWrites() throws Exception {
+        // Пачки по 7 строк, два вызова write через одно соединение; повторы внутри и между вызовами отсекаются
+        List<FinalRecord> first = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            first.add(record(10.0, 20.0 + i, LocalDate.of(2025, 7, 1)));
+        }
+        first.add(first.get(3));
+        List<FinalRecord> second = new ArrayList<>(first.subList(20, 30));
+        for (int i = 30; i < 45; i++) {
+            second.add(record(10.0, 20.0 + i, LocalDate.of(2025, 7, 1)));
+        }
+
+        try (DataBaseItemWriter chunked = new DataBaseItemWriter(DataSourceFactory.getDataSource(), bloomFile,
+                100, 0.01, AdaptiveBatchSizer.fixed(7), DbWriteMode.INSERT)) {
+            chunked.write(first);
+            chunked.write(second);
+            assertEquals(45, chunked.getInsertedRows());
+        }
+
+        try (Connection conn = DataSourceFactory.getDataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM final_records");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(45, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void copyModeFallsBackToBatchedInsertOutsidePostgres() throws Exception {
+        // В H2 COPY недоступен: writer в режиме COPY должен записать те же строки пакетным INSERT
+        List<FinalRecord> records = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            records.add(record(11.0, 20.0 + i, LocalDate.of(2025, 7, 1)));
+        }
+        records.add(records.get(0));
+
+        try (DataBaseItemWriter copyWriter = new DataBaseItemWriter(DataSourceFactory.getDataSource(), bloomFile,
+                100, 0.01, AdaptiveBatchSizer.fixed(5), DbWriteMode.COPY)) {
+            copyWriter.write(records);
+            assertEquals(12, copyWriter.getInsertedRows());
+        }
+    }
+
+    @Test
+    public void refreshModeUpdatesOnlyChangedRowsOfRecentDays() throws Exception {
+        // Первая загрузка: 10 строк за вчера и 1 строка за прошлый год
+        LocalDate recent = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        List<FinalRecord> first = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            first.add(record(12.0, 20.0 + i, recent));
+        }
+        FinalRecord old = record(12.0, 20.0, recent.minusYears(1));
+        first.add(old);
+        try (DataBaseItemWriter insertWriter = new DataBaseItemWriter(DataSourceFactory.getDataSource(), bloomFile,
+                100, 0.01, AdaptiveBatchSizer.fixed(4), DbWriteMode.INSERT)) {
+            insertWriter.write(first);
+        }
+
+        // Повторная загрузка: у 3 строк поменялись данные, 2 строки новые, старый день тоже пришёл с другими данными
+        List<FinalRecord> second = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            FinalRecord r = record(12.0, 20.0 + i, recent);
+            if (i < 3) r.setTotalRain24h(5.0);
+            r.setFetchedAt(Instant.parse("2025-07-02T00:00:00Z"));
+            second.add(r);
+        }
+        FinalRecord oldChanged = record(12.0, 20.0, old.getDate());
+        oldChanged.setTotalRain24h(5.0);
+        second.add(oldChanged);
+
+        try (DataBaseItemWriter refreshWriter = new DataBaseItemWriter(DataSourceFactory.getDataSource(), bloomFile,
+                100, 0.01, AdaptiveBatchSizer.fixed(4), DbWriteMode.REFRESH)) {
+            refreshWriter.write(second);
+            assertEquals(3, refreshWriter.getUpdatedRows());
+            assertEquals(2, refreshWriter.getInsertedRows());
+        }
+
+        try (Connection conn = DataSourceFactory.getDataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT date, COUNT(*) FROM final_records WHERE total_rain_24h = 5.0 GROUP BY date");
+             ResultSet rs = ps.executeQuery()) {
+            // изменились только строки окна обновления, старый день остался как был
+            assertTrue(rs.next());
+            assertEquals(recent, rs.getDate(1).toLocalDate());
+            assertEquals(3, rs.getInt(2));
+            assertTrue(!rs.next());
+        }
+        assertEquals(12 + 1, FinalRecordsTestTable.count(DataSourceFactory.getDataSource()));
+    }
+
+    @Test
+    public void refreshModeNeverOverwritesOlderDaysEvenWithStaleFilter() throws Exception {
+        LocalDate recent = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        FinalRecord old = record(14.0, 20.0, recent.minusYears(1));
+        FinalRecord fresh = record(14.0, 20.0, recent);
+        try (DataBaseItemWriter insertWriter = new DataBaseItemWriter(DataSourceFactory.getDataSource(), bloomFile,
+                100, 0.01, AdaptiveBatchSizer.fixed(4), DbWriteMode.INSERT)) {
+            insertWriter.write(List.of(old, fresh));
+        }
+
+        // Пустой (устаревший) фильтр пропускает обе записи в пачку; слить с таблицей можно только день из окна
+        FinalRecord oldChanged = record(14.0, 20.0, old.getDate());
+        oldChanged.setTotalRain24h(5.0);
+        FinalRecord freshChanged = record(14.0, 20.0, recent);
+        freshChanged.setTotalRain24h(5.0);
+        try (DbSession session = new DbSession(DataSourceFactory.getDataSource(), AdaptiveBatchSizer.fixed(10),
+                DbWriteMode.REFRESH, false)) {
+            session.add(DedupKeys.of(oldChanged), oldChanged, false);
+            session.add(DedupKeys.of(freshChanged), freshChanged, true);
+            assertEquals(0, session.flush(DedupFilterType.BLOOM.create(100, 0.01)));
+            assertEquals(1, session.updatedRows());
+        }
+
+        try (Connection conn = DataSourceFactory.getDataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT date FROM final_records WHERE total_rain_24h = 5.0");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(recent, rs.getDate(1).toLocalDate());
+            assertTrue(!rs.next());
+        }
+    }
+
+    @Test
+    public void bloomPositivesAreVerifiedSoFalsePositivesAreStillWritten() throws Exception {
+        // Маленький BloomFilter с высокой вероятностью ложных срабатываний: без проверки часть новых строк потерялась бы
+        List<FinalRecord> records = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            records.add(record(13.0 + i * 0.01, 20.0, LocalDate.of(2025, 7, 1)));
+        }
+
+        try (DataBaseItemWriter lossy = new DataBaseItemWriter(DataSourceFactory.getDataSource(), bloomFile,
+                10, 0.3, AdaptiveBatchSizer.fixed(20), DbWriteMode.INSERT, DedupFilterType.BLOOM)) {
+            lossy.write(records);
+            assertEquals(300, lossy.getInsertedRows());
+            assertTrue(lossy.getDedupStats().getFalsePositives() > 0, lossy.getDedupStats().toString());
+            assertEquals(0, lossy.getDedupStats().getConfirmedDuplicates());
+
+            // Повторная запись: все положительные ответы подтверждаются таблицей, ничего не вставляется
+            lossy.write(records);
+            assertEquals(300, lossy.getInsertedRows());
+            assertEquals(300, lossy.getDedupStats().getConfirmedDuplicates());
+        }
+        assertEquals(300, FinalRecordsTestTable.count(DataSourceFactory.getDataSource()));
+    }
+
+    @Test
+    public void verifiedPositivesMatchCoordinatesByDedupKeyLikeCsv() throws Exception {
+        // 40.80000305175781 — та же ячейка 40.8, прочитанная как float: ключ DedupKeys один, строка вторая не нужна
+        LocalDate day = LocalDate.of(2025, 7, 1);
+        try (DataBaseItemWriter bloom = new DataBaseItemWriter(DataSourceFactory.getDataSource(), bloomFile,
+                100, 0.01, AdaptiveBatchSizer.fixed(20), DbWriteMode.INSERT, DedupFilterType.BLOOM)) {
+            bloom.write(List.of(record(40.8, 82.9, day)));
+            bloom.write(List.of(record((float) 40.8, (float) 82.9, day), record(40.8001, 82.9, day)));
+            assertEquals(2, bloom.getInsertedRows());
+            assertEquals(1, bloom.getDedupStats().getConfirmedDuplicates());
+        }
+        assertEquals(2, FinalRecordsTestTable.count(DataSourceFactory.getDataSource()));
+    }
+
+    @Test
+    public void writerAddsContentHashColumnToTableCreatedByOldSchema() throws Exception {
+        DataSource ds = DataSourceFactory.getDataSource();
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("ALTER TABLE final_records DROP COLUMN content_hash");
+        }
+        try (DataBaseItemWriter upgraded = new DataBaseItemWriter(ds, bloomFile, 100, 0.01,
+                AdaptiveBatchSizer.fixed(20), DbWriteMode.INSERT, DedupFilterType.EXACT)) {
+            upgraded.write(List.of(record(10.0, 20.0, LocalDate.of(2025, 7, 1))));
+            assertEquals(1, upgraded.getInsertedRows());
+        }
+        assertEquals(1, FinalRecordsTestTable.count(ds));
+    }
+
+    @AfterEach
+    void cleanUp() throws SQLException {
+        // Таблица общая для всех тестов (H2 in memory), поэтому очищаем её после каждого теста
+        FinalRecordsTestTable.clear(DataSourceFactory.getDataSource());
+    }
+
+    private static FinalRecord record(double lat, double lon, LocalDate date) {
+        return FinalRecordsTestTable.record(lat, lon, date);
+    }
 }
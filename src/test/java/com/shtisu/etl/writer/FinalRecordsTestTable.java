@@ -0,0 +1,71 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Схема final_records для тестов на H2 и генерация тестовых записей.
+ */
+public final class FinalRecordsTestTable {
+
+    static final String DDL = "CREATE TABLE IF NOT EXISTS final_records (" +
+            "latitude DOUBLE, longitude DOUBLE, date DATE, sunrise_iso TIMESTAMP, sunset_iso TIMESTAMP, daylight_hours DOUBLE, " +
+            "avg_temperature_2m24h DOUBLE, avg_relative_humidity_2m24h DOUBLE, avg_dew_point_2m24h DOUBLE, avg_apparent_temperature_24h DOUBLE, " +
+            "avg_temperature_80m24h DOUBLE, avg_temperature_120m24h DOUBLE, avg_wind_speed_10m24h DOUBLE, avg_wind_speed_80m24h DOUBLE, " +
+            "avg_visibility_24h DOUBLE, total_rain_24h DOUBLE, total_showers_24h DOUBLE, total_snowfall_24h DOUBLE, " +
+            "avg_temperature_2m_daylight DOUBLE, avg_relative_humidity_2m_daylight DOUBLE, avg_dew_point_2m_daylight DOUBLE, avg_apparent_temperature_daylight DOUBLE, " +
+            "avg_temperature_80m_daylight DOUBLE, avg_temperature_120m_daylight DOUBLE, avg_wind_speed_10m_daylight DOUBLE, avg_wind_speed_80m_daylight DOUBLE, " +
+            "avg_visibility_daylight DOUBLE, total_rain_daylight DOUBLE, total_showers_daylight DOUBLE, total_snowfall_daylight DOUBLE, " +
+            "wind_speed_10m_mpers DOUBLE, wind_speed_80m_mpers DOUBLE, temperature_2m_celsius DOUBLE, apparent_temperature_celsius DOUBLE, " +
+            "temperature_80m_celsius DOUBLE, temperature_120m_celsius DOUBLE, soil_temperature_0cm_celsius DOUBLE, soil_temperature_6cm_celsius DOUBLE, " +
+            "rain_mm DOUBLE, showers_mm DOUBLE, snowfall_mm DOUBLE, fetched_at TIMESTAMP, content_hash BIGINT, " +
+            "PRIMARY KEY(latitude, longitude, date)" +
+            ")";
+
+    private FinalRecordsTestTable() { }
+
+    public static void create(DataSource ds) throws SQLException {
+        try (Connection conn = ds.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(DDL);
+        }
+    }
+
+    public static void clear(DataSource ds) throws SQLException {
+        try (Connection conn = ds.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM final_records");
+        }
+    }
+
+    public static long count(DataSource ds) throws SQLException {
+        try (Connection conn = ds.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM final_records")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** Запись с заполненными обязательными (не примитивными) полями */
+    public static FinalRecord record(double lat, double lon, LocalDate date) {
+        FinalRecord r = new FinalRecord();
+        r.setLatitude(lat);
+        r.setLongitude(lon);
+        r.setDate(date);
+        r.setSunriseIso(date.atTime(4, 0).toInstant(ZoneOffset.UTC));
+        r.setSunsetIso(date.atTime(20, 0).toInstant(ZoneOffset.UTC));
+        r.setDaylightHours(16);
+        r.setAvgTemperature2m24h(lat / 10 + date.getDayOfMonth());
+        r.setFetchedAt(Instant.parse("2025-07-01T00:00:00Z"));
+        return r;
+    }
+}
@@ -0,0 +1,68 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazyRecordWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void opensSinkOnFirstNonEmptyWrite() throws Exception {
+        Path csv = tempDir.resolve("weather.csv");
+        AtomicInteger opened = new AtomicInteger();
+        try (LazyRecordWriter<CsvItemWriter> writer = new LazyRecordWriter<>(() -> {
+            opened.incrementAndGet();
+            return new CsvItemWriter(csv, tempDir.resolve("weather.bloom"), 1_000, 0.01);
+        })) {
+            writer.write(List.of());
+            writer.flush();
+            assertEquals(0, opened.get());
+            assertFalse(Files.exists(csv));
+            assertNull(writer.getIfOpen());
+
+            List<FinalRecord> records = List.of(
+                    FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 1)),
+                    FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 2)));
+            writer.write(records);
+            writer.write(records);
+            assertEquals(1, opened.get());
+            assertEquals(2, writer.getIfOpen().getWrittenRows());
+        }
+    }
+
+    @Test
+    void closeWithoutWritesDoesNotOpen() throws Exception {
+        LazyRecordWriter<CsvItemWriter> writer = new LazyRecordWriter<>(() -> {
+            throw new IOException("must not open");
+        });
+        writer.close();
+        assertNull(writer.getIfOpen());
+        assertThrows(IllegalStateException.class, () -> writer.write(List.of()));
+    }
+
+    @Test
+    void openFailureIsThrownFromWrite() {
+        LazyRecordWriter<CsvItemWriter> writer = new LazyRecordWriter<>(() -> {
+            throw new IOException("disk full");
+        });
+        IOException e = assertThrows(IOException.class,
+                () -> writer.write(List.of(FinalRecordsTestTable.record(1.0, 2.0, LocalDate.of(2025, 7, 1)))));
+        assertTrue(e.getMessage().contains("disk full"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.model.FinalRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelDataBaseItemWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DataSource ds = DataSourceFactory.getDataSource();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        FinalRecordsTestTable.clear(ds);
+    }
+
+    @Test
+    void writesExactlyTheDistinctRowsAcrossShards() throws Exception {
+        // 40 точек x 10 дней, перемешаны и с повторами — в таблице должно оказаться ровно 400 строк
+        List<FinalRecord> records = new ArrayList<>();
+        for (int p = 0; p < 40; p++) {
+            for (int d = 0; d < 10; d++) {
+                records.add(FinalRecordsTestTable.record(-40.0 + p * 2.5, 10.0 + p * 0.25, LocalDate.of(2025, 7, 1).plusDays(d)));
+            }
+        }
+        List<FinalRecord> withDuplicates = new ArrayList<>(records);
+        withDuplicates.addAll(records.subList(0, 150));
+        // те же строки с другой записью координат (как у float-артефакта): ключ дедупликации тот же
+        for (FinalRecord r : records.subList(150, 250)) {
+            withDuplicates.add(FinalRecordsTestTable.record(r.getLatitude() + 3e-5, r.getLongitude() - 3e-5, r.getDate()));
+        }
+        Collections.shuffle(withDuplicates, new Random(42));
+
+        try (ParallelDataBaseItemWriter writer = new ParallelDataBaseItemWriter(ds, tempDir.resolve("db.bloom"),
+                1_000, 0.001, 16, DbWriteMode.INSERT, 4)) {
+            writer.write(withDuplicates.subList(0, 300));
+            writer.write(withDuplicates.subList(300, withDuplicates.size()));
+            assertEquals(400, writer.getInsertedRows());
+        }
+
+        assertEquals(400, FinalRecordsTestTable.count(ds));
+    }
+
+    @Test
+    void clampsWorkersToPoolAndVerifiesPositivesOnSessionConnections() throws Exception {
+        List<FinalRecord> records = new ArrayList<>();
+        for (int p = 0; p < 20; p++) {
+            records.add(FinalRecordsTestTable.record(10.0 + p, 20.0 + p, LocalDate.of(2025, 7, 1)));
+        }
+        // в тестовом пуле 5 соединений: потоков не больше 4, проверка повторов не ждёт свободного соединения
+        try (ParallelDataBaseItemWriter writer = new ParallelDataBaseItemWriter(ds, tempDir.resolve("clamp.bloom"),
+                1_000, 0.001, 16, DbWriteMode.INSERT, 16)) {
+            assertEquals(4, writer.getWorkerCount());
+            writer.write(records);
+            long started = System.nanoTime();
+            writer.write(records);
+            assertTrue(System.nanoTime() - started < 5_000_000_000L);
+            assertEquals(20, writer.getDedupStats().getConfirmedDuplicates());
+        }
+        assertEquals(20, FinalRecordsTestTable.count(ds));
+    }
+
+    @Test
+    void sameLocationAlwaysMapsToTheSameShard() {
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            shards.add(ParallelDataBaseItemWriter.shardOf(55.0, 83.0, 8));
+        }
+        assertEquals(1, shards.size());
+        // координаты ячейки, прочитанные как float, — та же точка и тот же шард
+        for (int i = 0; i < 200; i++) {
+            double lat = 40.0 + i * 0.1;
+            double lon = -74.0 + i * 0.05;
+            assertEquals(ParallelDataBaseItemWriter.shardOf(lat, lon, 8),
+                    ParallelDataBaseItemWriter.shardOf((float) lat, (float) lon, 8));
+        }
+
+        // разные точки расходятся по всем шардам
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            used.add(ParallelDataBaseItemWriter.shardOf(50.0 + i * 0.25, 80.0, 8));
+        }
+        assertTrue(used.size() == 8);
+    }
+}
@@ -0,0 +1,62 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.model.FinalRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PgBinaryCopyEncoderTest {
+
+    @Test
+    void encodesHeaderRecordAndTrailerInPgCopyBinaryLayout() throws Exception {
+        FinalRecord r = new FinalRecord();
+        r.setLatitude(55.0);
+        r.setLongitude(83.0);
+        r.setDate(LocalDate.of(2000, 1, 2));
+        r.setSunriseIso(Instant.parse("2000-01-01T00:00:01Z"));
+        r.setSunsetIso(null);
+        r.setFetchedAt(Instant.parse("2000-01-01T00:00:00Z"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            PgBinaryCopyEncoder.writeHeader(out);
+            PgBinaryCopyEncoder.writeRecord(out, r);
+            PgBinaryCopyEncoder.writeTrailer(out);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+
+        // Заголовок: сигнатура (11 байт) + флаги + длина расширения
+        byte[] signature = new byte[11];
+        buf.get(signature);
+        assertEquals("PGCOPY\n", new String(signature, 0, 7));
+        assertEquals(0, buf.getInt());
+        assertEquals(0, buf.getInt());
+
+        // Строка: число полей, latitude, longitude, date (дни от 2000-01-01), sunrise (мкс от 2000-01-01), sunset = NULL
+        assertEquals(43, buf.getShort());
+        assertEquals(8, buf.getInt());
+        assertEquals(55.0, buf.getDouble());
+        assertEquals(8, buf.getInt());
+        assertEquals(83.0, buf.getDouble());
+        assertEquals(4, buf.getInt());
+        assertEquals(1, buf.getInt());
+        assertEquals(8, buf.getInt());
+        assertEquals(1_000_000L, buf.getLong());
+        assertEquals(-1, buf.getInt());
+
+        // 36 double-полей, затем fetched_at, content_hash и завершающий -1
+        buf.position(buf.position() + 36 * 12);
+        assertEquals(8, buf.getInt());
+        assertEquals(0L, buf.getLong());
+        assertEquals(8, buf.getInt());
+        assertEquals(ContentHash.of(r), buf.getLong());
+        assertEquals(-1, buf.getShort());
+        assertEquals(0, buf.remaining());
+    }
+}
@@ -0,0 +1,181 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.dedup.DedupFilter;
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.dedup.DedupKeys;
+import com.shtisu.etl.model.FinalRecord;
+import com.shtisu.etl.query.RollupQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupTablesTest {
+
+    private final DataSource ds = DataSourceFactory.getDataSource();
+    private final DedupFilter filter = DedupFilterType.EXACT.create(1_000, 0.01);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FinalRecordsTestTable.create(ds);
+        RollupTables.create(ds);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        FinalRecordsTestTable.clear(ds);
+        execute("DROP TABLE final_records_weekly");
+        execute("DROP TABLE final_records_monthly");
+    }
+
+    @Test
+    void writerKeepsRollupsEqualToRebuild() throws Exception {
+        // 25 мая – 13 июня: недели и месяцы через границу
+        List<FinalRecord> records = new ArrayList<>();
+        for (int d = 0; d < 20; d++) {
+            records.add(FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 5, 25).plusDays(d)));
+            records.add(FinalRecordsTestTable.record(56.0, 83.0, LocalDate.of(2025, 5, 25).plusDays(d)));
+        }
+        try (DbSession session = new DbSession(ds, AdaptiveBatchSizer.fixed(7), DbWriteMode.INSERT, true)) {
+            for (FinalRecord r : records) {
+                if (session.add(DedupKeys.of(r), r)) session.flush(filter);
+            }
+            // повтор уже записанных строк агрегаты не меняет
+            session.add(DedupKeys.of(records.get(0)), records.get(0));
+            session.flush(filter);
+        }
+
+        List<RollupQuery.Row> june = new RollupQuery(ds).read(RollupPeriod.MONTH, 55.0, 83.0,
+                LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30));
+        assertEquals(1, june.size());
+        assertEquals(13, june.get(0).getDays());
+        // координаты ячейки, прочитанные как float, — та же точка
+        assertEquals(13, new RollupQuery(ds).read(RollupPeriod.MONTH, (float) 55.00003, (float) 83.00002,
+                LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30)).get(0).getDays());
+        // avg_temperature_2m24h = lat / 10 + день месяца: 5.5 + среднее 1..13
+        assertEquals(12.5, june.get(0).getAverages().get("avg_temperature_2m24h"), 1e-9);
+        List<RollupQuery.Row> weeks = new RollupQuery(ds).read(RollupPeriod.WEEK, 55.0, 83.0,
+                LocalDate.of(2025, 5, 25), LocalDate.of(2025, 6, 13));
+        assertEquals(LocalDate.of(2025, 5, 19), weeks.get(0).getPeriodStart());
+        assertEquals(1, weeks.get(0).getDays());
+        assertEquals(4, weeks.size());
+
+        // REFRESH: изменённая строка заменяет свой вклад, неизменённая не учитывается повторно
+        FinalRecord changed = FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 2));
+        changed.setAvgTemperature2m24h(100);
+        try (DbSession session = new DbSession(ds, AdaptiveBatchSizer.fixed(10), DbWriteMode.REFRESH, true)) {
+            session.add(DedupKeys.of(changed), changed, true);
+            session.add(DedupKeys.of(records.get(20)), records.get(20), true);
+            FinalRecord added = FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 20));
+            session.add(DedupKeys.of(added), added, true);
+            session.flush(filter);
+        }
+        june = new RollupQuery(ds).read(RollupPeriod.MONTH, 55.0, 83.0, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30));
+        assertEquals(14, june.get(0).getDays());
+        assertEquals((13 * 12.5 - 7.5 + 100 + 25.5) / 14, june.get(0).getAverages().get("avg_temperature_2m24h"), 1e-9);
+
+        String weekly = dump("final_records_weekly");
+        String monthly = dump("final_records_monthly");
+        execute("DELETE FROM final_records_weekly");
+        execute("DELETE FROM final_records_monthly");
+        RollupTables.rebuild(ds, null, null);
+        assertEquals(weekly, dump("final_records_weekly"));
+        assertEquals(monthly, dump("final_records_monthly"));
+    }
+
+    @Test
+    void concurrentWritersOfSameRowsCountEachDayOnce() throws Exception {
+        List<FinalRecord> records = new ArrayList<>();
+        for (int d = 0; d < 40; d++) {
+            records.add(FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 5, 25).plusDays(d)));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                writers.add(pool.submit(() -> {
+                    DedupFilter own = DedupFilterType.EXACT.create(1_000, 0.01);
+                    try (DbSession session = new DbSession(ds, AdaptiveBatchSizer.fixed(5), DbWriteMode.INSERT, true)) {
+                        for (FinalRecord r : records) {
+                            if (session.add(DedupKeys.of(r), r)) session.flush(own);
+                        }
+                        session.flush(own);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        String weekly = dump("final_records_weekly");
+        String monthly = dump("final_records_monthly");
+        execute("DELETE FROM final_records_weekly");
+        execute("DELETE FROM final_records_monthly");
+        RollupTables.rebuild(ds, null, null);
+        assertEquals(weekly, dump("final_records_weekly"));
+        assertEquals(monthly, dump("final_records_monthly"));
+    }
+
+    @Test
+    void rebuildRecomputesOnlyPeriodsOfRange() throws Exception {
+        try (DbSession session = new DbSession(ds, AdaptiveBatchSizer.fixed(100), DbWriteMode.INSERT, false)) {
+            for (int d = 0; d < 60; d++) {
+                FinalRecord r = FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 5, 1).plusDays(d));
+                session.add(DedupKeys.of(r), r);
+            }
+            session.flush(filter);
+        }
+        RollupTables.rebuild(ds, LocalDate.of(2025, 6, 10), LocalDate.of(2025, 6, 10));
+
+        RollupQuery query = new RollupQuery(ds);
+        List<RollupQuery.Row> months = query.read(RollupPeriod.MONTH, 55.0, 83.0, LocalDate.of(2025, 5, 1), LocalDate.of(2025, 6, 30));
+        assertEquals(1, months.size());
+        assertEquals(LocalDate.of(2025, 6, 1), months.get(0).getPeriodStart());
+        // 60 дней с 1 мая — по 29 июня
+        assertEquals(29, months.get(0).getDays());
+        List<RollupQuery.Row> weeks = query.read(RollupPeriod.WEEK, 55.0, 83.0, LocalDate.of(2025, 5, 1), LocalDate.of(2025, 6, 30));
+        assertEquals(1, weeks.size());
+        assertEquals(LocalDate.of(2025, 6, 9), weeks.get(0).getPeriodStart());
+        assertEquals(7, weeks.get(0).getDays());
+    }
+
+    private String dump(String table) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT latitude, longitude, period_start, days, sum_avg_temperature_2m24h, "
+                     + "sum_daylight_hours FROM " + table + " ORDER BY latitude, longitude, period_start")) {
+            while (rs.next()) {
+                sb.append(rs.getDouble(1)).append(' ').append(rs.getDouble(2)).append(' ').append(rs.getDate(3))
+                        .append(' ').append(rs.getInt(4)).append(' ').append(Math.round(rs.getDouble(5) * 1e6))
+                        .append(' ').append(Math.round(rs.getDouble(6) * 1e6)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+}
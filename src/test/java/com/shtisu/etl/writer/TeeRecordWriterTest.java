@@ -0,0 +1,142 @@
+package com.shtisu.etl.writer;
+
+import com.shtisu.etl.database.DataSourceFactory;
+import com.shtisu.etl.dedup.DedupFilterType;
+import com.shtisu.etl.model.FinalRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TeeRecordWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DataSource ds = DataSourceFactory.getDataSource();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FinalRecordsTestTable.create(ds);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        FinalRecordsTestTable.clear(ds);
+    }
+
+    @Test
+    void oneBatchLandsInDatabaseAndCsvWithSeparateDedup() throws Exception {
+        List<FinalRecord> records = new ArrayList<>();
+        for (int d = 0; d < 50; d++) {
+            records.add(FinalRecordsTestTable.record(55.0, 83.0, LocalDate.of(2025, 6, 1).plusDays(d)));
+        }
+        Path csv = tempDir.resolve("weather.csv");
+        DataBaseItemWriter db = new DataBaseItemWriter(ds, tempDir.resolve("db.bloom"), 1_000, 0.001,
+                AdaptiveBatchSizer.fixed(20), DbWriteMode.INSERT, DedupFilterType.EXACT);
+        CsvItemWriter csvWriter = new CsvItemWriter(csv, tempDir.resolve("csv.bloom"), 1_000, 0.001, DedupFilterType.EXACT);
+
+        try (TeeRecordWriter tee = new TeeRecordWriter(List.of(db, csvWriter), 2)) {
+            tee.write(records.subList(0, 30));
+            tee.write(records.subList(20, 50));
+            tee.flush();
+            assertEquals(60, tee.getDeliveredRecords(0));
+            assertEquals(60, tee.getDeliveredRecords(1));
+            assertEquals(50, db.getInsertedRows());
+            assertEquals(50, csvWriter.getWrittenRows());
+            assertEquals(10, db.getDedupStats().getPositives());
+            assertEquals(10, csvWriter.getDedupStats().getPositives());
+        }
+        assertEquals(50, FinalRecordsTestTable.count(ds));
+        assertEquals(51, Files.readAllLines(csv, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void slowSinkDoesNotHoldBackFastSink() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<FinalRecord> fast = new CopyOnWriteArrayList<>();
+        FinalRecordWriter slowWriter = new FinalRecordWriter() {
+            @Override
+            public void write(List<FinalRecord> records) throws Exception {
+                release.await();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        FinalRecordWriter fastWriter = new FinalRecordWriter() {
+            @Override
+            public void write(List<FinalRecord> records) {
+                fast.addAll(records);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (TeeRecordWriter tee = new TeeRecordWriter(List.of(slowWriter, fastWriter), 3)) {
+            // медленное хранилище стоит на первой пачке, ещё три ждут в его очереди — поставщик не блокируется
+            for (int i = 0; i < 4; i++) {
+                tee.write(List.of(FinalRecordsTestTable.record(1.0 + i, 2.0, LocalDate.of(2025, 7, 1))));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fast.size() < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(4, fast.size());
+            assertEquals(0, tee.getDeliveredRecords(0));
+            release.countDown();
+            tee.flush();
+            assertEquals(4, tee.getDeliveredRecords(0));
+        }
+    }
+
+    @Test
+    void sinkFailureIsReportedWithoutLosingOtherSinks() throws Exception {
+        List<FinalRecord> ok = new CopyOnWriteArrayList<>();
+        FinalRecordWriter failing = new FinalRecordWriter() {
+            @Override
+            public void write(List<FinalRecord> records) {
+                throw new IllegalStateException("connection refused");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        FinalRecordWriter healthy = new FinalRecordWriter() {
+            @Override
+            public void write(List<FinalRecord> records) {
+                ok.addAll(records);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        TeeRecordWriter tee = new TeeRecordWriter(List.of(failing, healthy), 2);
+        tee.write(List.of(FinalRecordsTestTable.record(1.0, 2.0, LocalDate.of(2025, 7, 1))));
+        IOException e = assertThrows(IOException.class, tee::flush);
+        assertTrue(e.getMessage().contains("Sink 0"), e.getMessage());
+        assertEquals(1, ok.size());
+        assertThrows(IOException.class, tee::close);
+    }
+}